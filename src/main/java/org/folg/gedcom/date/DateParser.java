@@ -0,0 +1,327 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.date;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses GEDCOM 5.5 date values into {@link GedcomDate}s, remembering the result for each distinct string.
+ * <p>
+ * Understands dates in the Gregorian and Julian calendars (@#DGREGORIAN@, @#DJULIAN@), dual years like
+ * 1750/51, B.C. years, the qualifiers ABT, CAL, EST, BEF, AFT, BET .. AND .., FROM .. TO .. and INT, and the
+ * common spelled-out variants ABOUT, BEFORE, AFTER, BETWEEN and full month names, in any case.  Other
+ * calendars and free-text phrases aren't parsed.
+ * <p>
+ * Files repeat the same date strings many times, so parsed results are cached, up to maxCacheSize distinct
+ * strings.  A parser may be shared between threads.
+ */
+public class DateParser {
+   public static final int DEFAULT_MAX_CACHE_SIZE = 100000;
+
+   private static final GedcomDate UNPARSEABLE = new GedcomDate(0, 0, 0);
+   private static final Map<String, Integer> MONTHS = new HashMap<String, Integer>();
+   private static final Map<String, Integer> QUALIFIERS = new HashMap<String, Integer>();
+
+   static {
+      String[][] months = {
+         {"JAN", "JANUARY"}, {"FEB", "FEBRUARY"}, {"MAR", "MARCH"}, {"APR", "APRIL"}, {"MAY"}, {"JUN", "JUNE"},
+         {"JUL", "JULY"}, {"AUG", "AUGUST"}, {"SEP", "SEPT", "SEPTEMBER"}, {"OCT", "OCTOBER"},
+         {"NOV", "NOVEMBER"}, {"DEC", "DECEMBER"}};
+      for (int i = 0; i < months.length; i++) {
+         for (String name : months[i]) {
+            MONTHS.put(name, i + 1);
+         }
+      }
+      for (String name : new String[] {"ABT", "ABOUT", "CIRCA", "CA", "C"}) {
+         QUALIFIERS.put(name, GedcomDate.ABOUT);
+      }
+      QUALIFIERS.put("CAL", GedcomDate.CALCULATED);
+      QUALIFIERS.put("EST", GedcomDate.ESTIMATED);
+      QUALIFIERS.put("BEF", GedcomDate.BEFORE);
+      QUALIFIERS.put("BEFORE", GedcomDate.BEFORE);
+      QUALIFIERS.put("AFT", GedcomDate.AFTER);
+      QUALIFIERS.put("AFTER", GedcomDate.AFTER);
+      QUALIFIERS.put("BET", GedcomDate.BETWEEN);
+      QUALIFIERS.put("BETWEEN", GedcomDate.BETWEEN);
+      QUALIFIERS.put("FROM", GedcomDate.FROM);
+      QUALIFIERS.put("TO", GedcomDate.TO);
+      QUALIFIERS.put("INT", GedcomDate.INTERPRETED);
+   }
+
+   private final int maxCacheSize;
+   private final ConcurrentHashMap<String, GedcomDate> cache = new ConcurrentHashMap<String, GedcomDate>();
+
+   public DateParser() {
+      this(DEFAULT_MAX_CACHE_SIZE);
+   }
+
+   public DateParser(int maxCacheSize) {
+      this.maxCacheSize = maxCacheSize;
+   }
+
+   /**
+    * @return the parsed date, or null if date is null or can't be parsed
+    */
+   public GedcomDate parse(String date) {
+      if (date == null) {
+         return null;
+      }
+      GedcomDate result = cache.get(date);
+      if (result == null) {
+         result = parseUncached(date);
+         if (result == null) {
+            result = UNPARSEABLE;
+         }
+         if (cache.size() < maxCacheSize) {
+            cache.put(date, result);
+         }
+      }
+      return result == UNPARSEABLE ? null : result;
+   }
+
+   /**
+    * Number of distinct strings cached
+    */
+   public int getCacheSize() {
+      return cache.size();
+   }
+
+   public void clearCache() {
+      cache.clear();
+   }
+
+   private static GedcomDate parseUncached(String date) {
+      int paren = date.indexOf('(');
+      if (paren >= 0) {
+         date = date.substring(0, paren);
+      }
+      Tokens tokens = new Tokens(date);
+      if (!tokens.hasNext()) {
+         return null;
+      }
+      Integer qualifier = QUALIFIERS.get(tokens.peek());
+      int flags = 0;
+      if (qualifier != null) {
+         tokens.next();
+         flags = qualifier;
+      }
+      int[] first = parseDate(tokens);
+      if (first == null) {
+         return null;
+      }
+      flags |= first[2];
+      int earliest = first[0];
+      int latest = first[1];
+      if (qualifier != null && qualifier == GedcomDate.BEFORE) {
+         earliest = GedcomDate.UNBOUNDED_START;
+         latest = first[0] - 1;
+      }
+      else if (qualifier != null && qualifier == GedcomDate.AFTER) {
+         earliest = first[1] + 1;
+         latest = GedcomDate.UNBOUNDED_END;
+      }
+      else if (qualifier != null && qualifier == GedcomDate.TO) {
+         earliest = GedcomDate.UNBOUNDED_START;
+      }
+      else if (qualifier != null && (qualifier == GedcomDate.BETWEEN || qualifier == GedcomDate.FROM)) {
+         String separator = qualifier == GedcomDate.BETWEEN ? "AND" : "TO";
+         if (tokens.hasNext() && (tokens.peek().equals(separator) || tokens.peek().equals("-"))) {
+            tokens.next();
+            int[] second = parseDate(tokens);
+            if (second == null) {
+               return null;
+            }
+            flags |= second[2] | (qualifier == GedcomDate.FROM ? GedcomDate.TO : 0);
+            earliest = Math.min(first[0], second[0]);
+            latest = Math.max(first[1], second[1]);
+         }
+         else if (qualifier == GedcomDate.FROM) {
+            latest = GedcomDate.UNBOUNDED_END;
+         }
+         else {
+            return null;
+         }
+      }
+      if (tokens.hasNext()) {
+         return null;
+      }
+      return new GedcomDate(earliest, latest, flags);
+   }
+
+   /**
+    * Parse [calendar] [[day] month] year [B.C.]
+    *
+    * @return earliest day, latest day and flags, or null
+    */
+   private static int[] parseDate(Tokens tokens) {
+      int flags = 0;
+      boolean julian = false;
+      if (tokens.hasNext() && tokens.peek().startsWith("@#D")) {
+         String calendar = tokens.next();
+         if (calendar.equals("@#DJULIAN@")) {
+            julian = true;
+            flags |= GedcomDate.JULIAN;
+         }
+         else if (!calendar.equals("@#DGREGORIAN@")) {
+            return null;
+         }
+      }
+      List<String> parts = new ArrayList<String>(3);
+      while (tokens.hasNext() && parts.size() < 3 && !QUALIFIERS.containsKey(tokens.peek()) &&
+             !tokens.peek().equals("AND") && !tokens.peek().equals("-")) {
+         String part = tokens.next();
+         parts.add(part);
+         // a number followed by a month is a day
+         if (isYear(part) && !(tokens.hasNext() && MONTHS.containsKey(tokens.peek()))) {
+            break;
+         }
+      }
+      if (parts.isEmpty() || !isYear(parts.get(parts.size() - 1))) {
+         return null;
+      }
+      int year = parseYear(parts.get(parts.size() - 1));
+      if (tokens.hasNext() && isBC(tokens.peek())) {
+         tokens.next();
+         year = 1 - year;
+      }
+      int month = 0;
+      int day = 0;
+      if (parts.size() >= 2) {
+         Integer m = MONTHS.get(parts.get(parts.size() - 2));
+         if (m == null) {
+            return null;
+         }
+         month = m;
+      }
+      if (parts.size() == 3) {
+         day = parseNumber(parts.get(0));
+         if (day < 1 || day > daysInMonth(year, month, julian)) {
+            return null;
+         }
+      }
+      int firstMonth = month > 0 ? month : 1;
+      int lastMonth = month > 0 ? month : 12;
+      int firstDay = day > 0 ? day : 1;
+      int lastDay = day > 0 ? day : daysInMonth(year, lastMonth, julian);
+      if (day == 0) {
+         flags |= GedcomDate.PARTIAL;
+      }
+      return new int[] {
+         julian ? GedcomDate.julianDay(year, firstMonth, firstDay) : GedcomDate.gregorianDay(year, firstMonth, firstDay),
+         julian ? GedcomDate.julianDay(year, lastMonth, lastDay) : GedcomDate.gregorianDay(year, lastMonth, lastDay),
+         flags};
+   }
+
+   private static boolean isYear(String token) {
+      int slash = token.indexOf('/');
+      String digits = slash >= 0 ? token.substring(0, slash) : token;
+      if (digits.isEmpty() || digits.length() > 4 || parseNumber(digits) < 0) {
+         return false;
+      }
+      if (slash >= 0) {
+         String alternate = token.substring(slash + 1);
+         return !alternate.isEmpty() && alternate.length() <= digits.length() && parseNumber(alternate) >= 0;
+      }
+      return true;
+   }
+
+   /**
+    * The year, using the later year of a dual year such as 1750/51; the later year may cross into the next
+    * century, as in 1699/00
+    */
+   private static int parseYear(String token) {
+      int slash = token.indexOf('/');
+      if (slash < 0) {
+         return parseNumber(token);
+      }
+      String digits = token.substring(0, slash);
+      String alternate = token.substring(slash + 1);
+      int split = digits.length() - alternate.length();
+      int prefix = split > 0 ? parseNumber(digits.substring(0, split)) : 0;
+      int low = parseNumber(alternate);
+      if (low <= parseNumber(digits.substring(split))) {
+         prefix++;
+      }
+      int scale = 1;
+      for (int i = 0; i < alternate.length(); i++) {
+         scale *= 10;
+      }
+      return prefix * scale + low;
+   }
+
+   private static boolean isBC(String token) {
+      return token.equals("B.C.") || token.equals("BC") || token.equals("B.C") || token.equals("BCE");
+   }
+
+   private static int parseNumber(String token) {
+      if (token.isEmpty() || token.length() > 9) {
+         return -1;
+      }
+      int n = 0;
+      for (int i = 0; i < token.length(); i++) {
+         char c = token.charAt(i);
+         if (c < '0' || c > '9') {
+            return -1;
+         }
+         n = n * 10 + (c - '0');
+      }
+      return n;
+   }
+
+   private static int daysInMonth(int year, int month, boolean julian) {
+      switch (month) {
+         case 2:
+            boolean leap = Math.floorMod(year, 4) == 0 &&
+                  (julian || Math.floorMod(year, 100) != 0 || Math.floorMod(year, 400) == 0);
+            return leap ? 29 : 28;
+         case 4: case 6: case 9: case 11:
+            return 30;
+         default:
+            return 31;
+      }
+   }
+
+   /**
+    * Upper-cased words of a date value
+    */
+   private static final class Tokens {
+      private final String[] tokens;
+      private int pos = 0;
+
+      Tokens(String date) {
+         String text = date.trim().toUpperCase(Locale.ROOT).replace("@#DFRENCH R@", "@#DFRENCHR@");
+         tokens = text.isEmpty() ? new String[0] : text.split("\\s+");
+      }
+
+      boolean hasNext() {
+         return pos < tokens.length;
+      }
+
+      String peek() {
+         return tokens[pos];
+      }
+
+      String next() {
+         return tokens[pos++];
+      }
+   }
+}
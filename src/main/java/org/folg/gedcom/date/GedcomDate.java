@@ -0,0 +1,176 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.date;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.JulianFields;
+
+/**
+ * A parsed GEDCOM date: the range of days it can mean, plus flags for how it was qualified.
+ * <p>
+ * Days are Julian day numbers, so dates from the Gregorian and Julian calendars compare directly.  "1850" is
+ * 1 JAN 1850 to 31 DEC 1850, "BEF 1850" ends on 31 DEC 1849 and has no earliest day, "BET 1800 AND 1810" runs
+ * from 1 JAN 1800 to 31 DEC 1810, and "FROM 3 MAR 1901 TO 1902" from 3 MAR 1901 to 31 DEC 1902.  Approximate
+ * dates (ABT, CAL, EST) keep the range of the date they qualify and set a flag, leaving it to the caller to
+ * decide how far to widen them.
+ * <p>
+ * Dates order by earliest day, then latest day.  Use {@link DateParser} to create them.
+ */
+public final class GedcomDate implements Comparable<GedcomDate> {
+   public static final int UNBOUNDED_START = Integer.MIN_VALUE;
+   public static final int UNBOUNDED_END = Integer.MAX_VALUE;
+
+   public static final int ABOUT = 1;
+   public static final int CALCULATED = 1 << 1;
+   public static final int ESTIMATED = 1 << 2;
+   public static final int BEFORE = 1 << 3;
+   public static final int AFTER = 1 << 4;
+   public static final int BETWEEN = 1 << 5;
+   public static final int FROM = 1 << 6;
+   public static final int TO = 1 << 7;
+   public static final int INTERPRETED = 1 << 8;
+   public static final int JULIAN = 1 << 9;
+   /**
+    * Only a year or a month and year was given
+    */
+   public static final int PARTIAL = 1 << 10;
+   public static final int APPROXIMATE = ABOUT | CALCULATED | ESTIMATED;
+
+   private final int earliest;
+   private final int latest;
+   private final int flags;
+
+   public GedcomDate(int earliest, int latest, int flags) {
+      this.earliest = earliest;
+      this.latest = latest;
+      this.flags = flags;
+   }
+
+   /**
+    * Julian day number of the earliest day the date can mean, or UNBOUNDED_START
+    */
+   public int getEarliest() {
+      return earliest;
+   }
+
+   /**
+    * Julian day number of the latest day the date can mean, or UNBOUNDED_END
+    */
+   public int getLatest() {
+      return latest;
+   }
+
+   public int getFlags() {
+      return flags;
+   }
+
+   public boolean hasFlag(int flag) {
+      return (flags & flag) != 0;
+   }
+
+   public boolean isApproximate() {
+      return (flags & APPROXIMATE) != 0;
+   }
+
+   /**
+    * Whether the date means a single day
+    */
+   public boolean isExact() {
+      return earliest == latest && (flags & APPROXIMATE) == 0;
+   }
+
+   /**
+    * Whether some day could be meant by both dates
+    */
+   public boolean overlaps(GedcomDate other) {
+      return earliest <= other.latest && other.earliest <= latest;
+   }
+
+   /**
+    * The earliest day in the proleptic Gregorian calendar, or null if unbounded
+    */
+   public LocalDate getEarliestDate() {
+      return earliest == UNBOUNDED_START ? null : toLocalDate(earliest);
+   }
+
+   /**
+    * The latest day in the proleptic Gregorian calendar, or null if unbounded
+    */
+   public LocalDate getLatestDate() {
+      return latest == UNBOUNDED_END ? null : toLocalDate(latest);
+   }
+
+   public int compareTo(GedcomDate other) {
+      int result = Integer.compare(earliest, other.earliest);
+      return result != 0 ? result : Integer.compare(latest, other.latest);
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (!(o instanceof GedcomDate)) {
+         return false;
+      }
+      GedcomDate other = (GedcomDate)o;
+      return earliest == other.earliest && latest == other.latest && flags == other.flags;
+   }
+
+   @Override
+   public int hashCode() {
+      return (31 * earliest + latest) * 31 + flags;
+   }
+
+   @Override
+   public String toString() {
+      return (earliest == UNBOUNDED_START ? "..." : getEarliestDate().toString()) + " - " +
+             (latest == UNBOUNDED_END ? "..." : getLatestDate().toString());
+   }
+
+   /**
+    * Whole years from day "from" to day "to", as in age at an event; negative if "to" comes first
+    */
+   public static int yearsBetween(int from, int to) {
+      return (int)ChronoUnit.YEARS.between(toLocalDate(from), toLocalDate(to));
+   }
+
+   /**
+    * The day in the proleptic Gregorian calendar for a Julian day number
+    */
+   public static LocalDate toLocalDate(int julianDay) {
+      return LocalDate.MIN.with(JulianFields.JULIAN_DAY, julianDay);
+   }
+
+   /**
+    * Julian day number of a day in the Gregorian calendar, using astronomical years (1 B.C. is year 0)
+    */
+   public static int gregorianDay(int year, int month, int day) {
+      int a = (14 - month) / 12;
+      long y = year + 4800L - a;
+      long m = month + 12 * a - 3;
+      return (int)(day + (153 * m + 2) / 5 + 365 * y + Math.floorDiv(y, 4) - Math.floorDiv(y, 100) + Math.floorDiv(y, 400) - 32045);
+   }
+
+   /**
+    * Julian day number of a day in the Julian calendar, using astronomical years (1 B.C. is year 0)
+    */
+   public static int julianDay(int year, int month, int day) {
+      int a = (14 - month) / 12;
+      long y = year + 4800L - a;
+      long m = month + 12 * a - 3;
+      return (int)(day + (153 * m + 2) / 5 + 365 * y + Math.floorDiv(y, 4) - 32083);
+   }
+}
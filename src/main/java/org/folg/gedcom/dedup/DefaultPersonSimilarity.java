@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.dedup;
+
+import org.folg.gedcom.date.GedcomDate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Weighted blend of name, birth date and birth place similarity.
+ * <p>
+ * Names compare surnames by exact match, then by Double Metaphone code, then by shared letter pairs, and given
+ * names by shared words or the code of the first; dates score 1 when they overlap and fall off linearly to 0 at
+ * maxYearsApart; places score by their shared jurisdictions.  A component that's missing from either person scores
+ * {@link #MISSING_SCORE}, so sparse records neither match nor conflict on it.  People of different sex never match.
+ */
+public class DefaultPersonSimilarity implements PersonSimilarity {
+   public static final double MISSING_SCORE = 0.5;
+
+   private final double nameWeight;
+   private final double dateWeight;
+   private final double placeWeight;
+   private final int maxYearsApart;
+
+   public DefaultPersonSimilarity() {
+      this(0.5, 0.3, 0.2, 5);
+   }
+
+   /**
+    * @param maxYearsApart birth dates this many years apart score 0
+    */
+   public DefaultPersonSimilarity(double nameWeight, double dateWeight, double placeWeight, int maxYearsApart) {
+      double total = nameWeight + dateWeight + placeWeight;
+      this.nameWeight = nameWeight / total;
+      this.dateWeight = dateWeight / total;
+      this.placeWeight = placeWeight / total;
+      this.maxYearsApart = maxYearsApart;
+   }
+
+   public double score(PersonFeatures person1, PersonFeatures person2) {
+      if (person1.getSex() != null && person2.getSex() != null && !person1.getSex().equals(person2.getSex())) {
+         return 0.0;
+      }
+      return nameWeight * nameScore(person1, person2) +
+             dateWeight * dateScore(person1.getBirthDate(), person2.getBirthDate()) +
+             placeWeight * placeScore(person1.getBirthPlaceParts(), person2.getBirthPlaceParts());
+   }
+
+   protected double nameScore(PersonFeatures person1, PersonFeatures person2) {
+      double surname = surnameScore(person1, person2);
+      double given = givenScore(person1.getGivenNames(), person2.getGivenNames());
+      if (person1.getGivenNameCode() != null && person1.getGivenNameCode().equals(person2.getGivenNameCode())) {
+         given = Math.max(given, 0.8);
+      }
+      return 0.6 * surname + 0.4 * given;
+   }
+
+   private static double surnameScore(PersonFeatures person1, PersonFeatures person2) {
+      List<String> surnames1 = person1.getSurnames();
+      List<String> surnames2 = person2.getSurnames();
+      if (surnames1.isEmpty() || surnames2.isEmpty()) {
+         return MISSING_SCORE;
+      }
+      double best = 0.0;
+      for (String surname : surnames1) {
+         if (surnames2.contains(surname)) {
+            return 1.0;
+         }
+         for (String other : surnames2) {
+            best = Math.max(best, bigramSimilarity(surname, other));
+         }
+      }
+      for (String code : person1.getSurnameCodes()) {
+         if (person2.getSurnameCodes().contains(code)) {
+            best = Math.max(best, 0.8);
+         }
+      }
+      return best;
+   }
+
+   private static double givenScore(Set<String> given1, Set<String> given2) {
+      if (given1.isEmpty() || given2.isEmpty()) {
+         return MISSING_SCORE;
+      }
+      int shared = 0;
+      for (String word : given1) {
+         if (given2.contains(word)) {
+            shared++;
+         }
+         else {
+            // an initial matches a name starting with it
+            for (String other : given2) {
+               if ((word.length() == 1 || other.length() == 1) && word.charAt(0) == other.charAt(0)) {
+                  shared++;
+                  break;
+               }
+            }
+         }
+      }
+      return (double)shared / Math.max(given1.size(), given2.size());
+   }
+
+   /**
+    * Dice coefficient of the letter pairs of two strings
+    */
+   static double bigramSimilarity(String s1, String s2) {
+      if (s1.length() < 2 || s2.length() < 2) {
+         return s1.equals(s2) ? 1.0 : 0.0;
+      }
+      int shared = 0;
+      boolean[] used = new boolean[s2.length() - 1];
+      for (int i = 0; i < s1.length() - 1; i++) {
+         for (int j = 0; j < s2.length() - 1; j++) {
+            if (!used[j] && s1.charAt(i) == s2.charAt(j) && s1.charAt(i + 1) == s2.charAt(j + 1)) {
+               used[j] = true;
+               shared++;
+               break;
+            }
+         }
+      }
+      return 2.0 * shared / (s1.length() + s2.length() - 2);
+   }
+
+   protected double dateScore(GedcomDate date1, GedcomDate date2) {
+      if (date1 == null || date2 == null) {
+         return MISSING_SCORE;
+      }
+      if (date1.overlaps(date2)) {
+         return date1.isExact() && date2.isExact() ? 1.0 : 0.9;
+      }
+      int gap = date1.getLatest() < date2.getEarliest() ?
+            GedcomDate.yearsBetween(date1.getLatest(), date2.getEarliest()) :
+            GedcomDate.yearsBetween(date2.getLatest(), date1.getEarliest());
+      return Math.max(0.0, 1.0 - (double)gap / maxYearsApart);
+   }
+
+   protected double placeScore(String[] parts1, String[] parts2) {
+      if (parts1.length == 0 || parts2.length == 0) {
+         return MISSING_SCORE;
+      }
+      if (parts1[0].equals(parts2[0])) {
+         return Arrays.equals(parts1, parts2) ? 1.0 : 0.9;
+      }
+      int shared = 0;
+      for (String part : parts1) {
+         for (String other : parts2) {
+            if (part.equals(other)) {
+               shared++;
+               break;
+            }
+         }
+      }
+      return 0.6 * shared / Math.max(parts1.length, parts2.length);
+   }
+}
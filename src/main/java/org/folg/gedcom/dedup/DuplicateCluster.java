@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.dedup;
+
+import org.folg.gedcom.model.Person;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of people that {@link DuplicateDetector} thinks may be the same individual: the people linked by
+ * pairs scoring at least the threshold, directly or through one another.
+ */
+public final class DuplicateCluster {
+   /**
+    * Two people and their similarity score
+    */
+   public static final class Match {
+      private final Person person1;
+      private final Person person2;
+      private final double score;
+
+      Match(Person person1, Person person2, double score) {
+         this.person1 = person1;
+         this.person2 = person2;
+         this.score = score;
+      }
+
+      public Person getPerson1() {
+         return person1;
+      }
+
+      public Person getPerson2() {
+         return person2;
+      }
+
+      public double getScore() {
+         return score;
+      }
+
+      @Override
+      public String toString() {
+         return person1.getId() + "~" + person2.getId() + ":" + score;
+      }
+   }
+
+   private final List<Person> people;
+   private final List<Match> matches;
+   private final double score;
+
+   DuplicateCluster(List<Person> people, List<Match> matches, double score) {
+      this.people = Collections.unmodifiableList(people);
+      this.matches = Collections.unmodifiableList(matches);
+      this.score = score;
+   }
+
+   /**
+    * The people in the cluster, in the order they were searched
+    */
+   public List<Person> getPeople() {
+      return people;
+   }
+
+   /**
+    * The matching pairs that formed the cluster, highest score first
+    */
+   public List<Match> getMatches() {
+      return matches;
+   }
+
+   /**
+    * The highest score of any pair in the cluster
+    */
+   public double getScore() {
+      return score;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder buf = new StringBuilder();
+      for (Person person : people) {
+         buf.append(buf.length() == 0 ? "[" : ", ").append(person.getId());
+      }
+      return buf.append("]:").append(score).toString();
+   }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.dedup;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Finds people who may be recorded more than once.
+ * <p>
+ * Comparing every pair of people is quadratic, so people are first grouped into blocks by cheap keys, and only
+ * people sharing a block are scored.  The default keys combine the surname's Double Metaphone code with the
+ * birth decade or the start of the birth place, or the given name's code with both; a person gets a key for
+ * each combination they have the parts for.  A block larger than maxBlockSize, such as a common surname in a
+ * busy decade, is split by extending its key with the birth year, then the birth place, then the given name
+ * code, then the sex, until its parts fit; people missing a part share a block for the unknown value.  Only
+ * a block still too large after every split is skipped.  A pair sharing several blocks is scored only in the
+ * block with the smallest shared key.
+ * <p>
+ * Features are extracted and blocks scored in parallel on the pool.  Pairs scoring at least the threshold are
+ * joined into clusters, returned highest score first.
+ */
+public class DuplicateDetector {
+   public static final double DEFAULT_THRESHOLD = 0.8;
+   public static final int DEFAULT_MAX_BLOCK_SIZE = 1000;
+   private static final int MIN_CHUNK_SIZE = 1024;
+   private static final long MIN_PAIRS_PER_TASK = 50000;
+   private static final int PLACE_PREFIX_LENGTH = 4;
+   private static final int REFINEMENT_ROUNDS = 4;
+
+   private PersonSimilarity similarity = new DefaultPersonSimilarity();
+   private double threshold = DEFAULT_THRESHOLD;
+   private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+   private ForkJoinPool pool = ForkJoinPool.commonPool();
+   private DateParser dateParser = new DateParser();
+   private Function<PersonFeatures, Collection<String>> blockingKeys = DuplicateDetector::defaultBlockingKeys;
+
+   public void setSimilarity(PersonSimilarity similarity) {
+      this.similarity = similarity;
+   }
+
+   /**
+    * Pairs scoring at least threshold are reported
+    */
+   public void setThreshold(double threshold) {
+      this.threshold = threshold;
+   }
+
+   /**
+    * Blocks with more people than this are split by further features, and skipped if they can't be split small
+    * enough
+    */
+   public void setMaxBlockSize(int maxBlockSize) {
+      this.maxBlockSize = maxBlockSize;
+   }
+
+   public void setPool(ForkJoinPool pool) {
+      this.pool = pool;
+   }
+
+   public void setDateParser(DateParser dateParser) {
+      this.dateParser = dateParser;
+   }
+
+   /**
+    * Replace the default blocking keys; people are compared only if they share a key
+    */
+   public void setBlockingKeys(Function<PersonFeatures, Collection<String>> blockingKeys) {
+      this.blockingKeys = blockingKeys;
+   }
+
+   public List<DuplicateCluster> findDuplicates(Gedcom gedcom) {
+      return findDuplicates(gedcom.getPeople());
+   }
+
+   public List<DuplicateCluster> findDuplicates(List<Person> people) {
+      final PersonFeatures[] features = new PersonFeatures[people.size()];
+      final String[][] keys = new String[people.size()][];
+      extract(people, features, keys);
+      List<Block> blocks = block(keys, features);
+      List<ScoredPair> pairs = score(blocks, features, keys);
+      return cluster(pairs, features);
+   }
+
+   /**
+    * Keys for surname code with birth decade, surname code with birth place prefix, surname code with given
+    * name code, and given name code with birth decade and place prefix
+    */
+   public static Collection<String> defaultBlockingKeys(PersonFeatures person) {
+      Set<String> keys = new LinkedHashSet<String>();
+      Integer decade = person.getBirthDecade();
+      String[] places = person.getBirthPlaceParts();
+      String place = places.length > 0 ?
+            places[0].substring(0, Math.min(PLACE_PREFIX_LENGTH, places[0].length())) : null;
+      String given = person.getGivenNameCode();
+      for (String surname : person.getSurnameCodes()) {
+         if (decade != null) {
+            keys.add("sd|" + surname + "|" + decade);
+         }
+         if (place != null) {
+            keys.add("sp|" + surname + "|" + place);
+         }
+         if (given != null) {
+            keys.add("sg|" + surname + "|" + given);
+         }
+      }
+      if (given != null && decade != null && place != null) {
+         keys.add("gdp|" + given + "|" + decade + "|" + place);
+      }
+      return keys;
+   }
+
+   private void extract(final List<Person> people, final PersonFeatures[] features, final String[][] keys) {
+      int chunkSize = Math.max(MIN_CHUNK_SIZE, people.size() / (pool.getParallelism() * 4) + 1);
+      List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+      for (int start = 0; start < people.size(); start += chunkSize) {
+         final int from = start;
+         final int to = Math.min(start + chunkSize, people.size());
+         tasks.add(pool.submit(new Runnable() {
+            public void run() {
+               DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+               for (int number = from; number < to; number++) {
+                  features[number] = new PersonFeatures(people.get(number), number, dateParser, doubleMetaphone);
+                  Collection<String> personKeys = blockingKeys.apply(features[number]);
+                  keys[number] = personKeys.toArray(new String[personKeys.size()]);
+                  Arrays.sort(keys[number]);
+               }
+            }
+         }));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+         task.join();
+      }
+   }
+
+   private static final class Block {
+      final String key;
+      final int[] members;
+      int size = 0;
+
+      Block(String key, int capacity) {
+         this.key = key;
+         this.members = new int[capacity];
+      }
+
+      long pairCount() {
+         return (long)size * (size - 1) / 2;
+      }
+   }
+
+   /**
+    * The part a key is extended with at each round of splitting oversized blocks
+    */
+   private static String refinement(PersonFeatures person, int round) {
+      Object part;
+      switch (round) {
+         case 0:
+            part = person.getBirthYear();
+            break;
+         case 1:
+            part = person.getBirthPlaceParts().length > 0 ? person.getBirthPlaceParts()[0] : null;
+            break;
+         case 2:
+            part = person.getGivenNameCode();
+            break;
+         default:
+            part = person.getSex();
+            break;
+      }
+      return part != null ? part.toString() : "?";
+   }
+
+   private static Map<String, int[]> countKeys(String[][] keys) {
+      Map<String, int[]> counts = new HashMap<String, int[]>();
+      for (String[] personKeys : keys) {
+         for (String key : personKeys) {
+            int[] count = counts.get(key);
+            if (count == null) {
+               counts.put(key, new int[] {1});
+            }
+            else {
+               count[0]++;
+            }
+         }
+      }
+      return counts;
+   }
+
+   private List<Block> block(String[][] keys, PersonFeatures[] features) {
+      Map<String, int[]> counts = countKeys(keys);
+      for (int round = 0; round < REFINEMENT_ROUNDS; round++) {
+         Set<String> oversized = new HashSet<String>();
+         for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] > maxBlockSize) {
+               oversized.add(entry.getKey());
+            }
+         }
+         if (oversized.isEmpty()) {
+            break;
+         }
+         for (int number = 0; number < keys.length; number++) {
+            boolean changed = false;
+            for (int i = 0; i < keys[number].length; i++) {
+               if (oversized.contains(keys[number][i])) {
+                  keys[number][i] = keys[number][i] + "|" + refinement(features[number], round);
+                  changed = true;
+               }
+            }
+            if (changed) {
+               // firstSharedKey needs each person's keys sorted
+               Arrays.sort(keys[number]);
+            }
+         }
+         counts = countKeys(keys);
+      }
+      Map<String, Block> blocks = new HashMap<String, Block>();
+      for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+         int count = entry.getValue()[0];
+         if (count >= 2 && count <= maxBlockSize) {
+            blocks.put(entry.getKey(), new Block(entry.getKey(), count));
+         }
+      }
+      // drop the keys of skipped blocks, so a pair is scored in the first block they share that is scored
+      for (int number = 0; number < keys.length; number++) {
+         int kept = 0;
+         for (String key : keys[number]) {
+            Block block = blocks.get(key);
+            if (block != null) {
+               block.members[block.size++] = number;
+               keys[number][kept++] = key;
+            }
+         }
+         if (kept < keys[number].length) {
+            keys[number] = Arrays.copyOf(keys[number], kept);
+         }
+      }
+      return new ArrayList<Block>(blocks.values());
+   }
+
+   private static final class ScoredPair {
+      final int number1;
+      final int number2;
+      final double score;
+
+      ScoredPair(int number1, int number2, double score) {
+         this.number1 = number1;
+         this.number2 = number2;
+         this.score = score;
+      }
+   }
+
+   private List<ScoredPair> score(List<Block> blocks, final PersonFeatures[] features, final String[][] keys) {
+      long totalPairs = 0;
+      for (Block block : blocks) {
+         totalPairs += block.pairCount();
+      }
+      long pairsPerTask = Math.max(MIN_PAIRS_PER_TASK, totalPairs / (pool.getParallelism() * 4) + 1);
+      List<ForkJoinTask<List<ScoredPair>>> tasks = new ArrayList<ForkJoinTask<List<ScoredPair>>>();
+      List<Block> batch = new ArrayList<Block>();
+      long batchPairs = 0;
+      for (Block block : blocks) {
+         batch.add(block);
+         batchPairs += block.pairCount();
+         if (batchPairs >= pairsPerTask) {
+            tasks.add(pool.submit(scoreTask(batch, features, keys)));
+            batch = new ArrayList<Block>();
+            batchPairs = 0;
+         }
+      }
+      if (!batch.isEmpty()) {
+         tasks.add(pool.submit(scoreTask(batch, features, keys)));
+      }
+      List<ScoredPair> pairs = new ArrayList<ScoredPair>();
+      for (ForkJoinTask<List<ScoredPair>> task : tasks) {
+         pairs.addAll(task.join());
+      }
+      return pairs;
+   }
+
+   private Callable<List<ScoredPair>> scoreTask(final List<Block> blocks, final PersonFeatures[] features,
+                                                final String[][] keys) {
+      return new Callable<List<ScoredPair>>() {
+         public List<ScoredPair> call() {
+            List<ScoredPair> pairs = new ArrayList<ScoredPair>();
+            for (Block block : blocks) {
+               for (int i = 0; i < block.size; i++) {
+                  int number1 = block.members[i];
+                  for (int j = i + 1; j < block.size; j++) {
+                     int number2 = block.members[j];
+                     if (block.key.equals(firstSharedKey(keys[number1], keys[number2]))) {
+                        double score = similarity.score(features[number1], features[number2]);
+                        if (score >= threshold) {
+                           pairs.add(new ScoredPair(number1, number2, score));
+                        }
+                     }
+                  }
+               }
+            }
+            return pairs;
+         }
+      };
+   }
+
+   /**
+    * The smallest key in both sorted arrays, or null
+    */
+   private static String firstSharedKey(String[] keys1, String[] keys2) {
+      int i = 0;
+      int j = 0;
+      while (i < keys1.length && j < keys2.length) {
+         int cmp = keys1[i].compareTo(keys2[j]);
+         if (cmp == 0) {
+            return keys1[i];
+         }
+         else if (cmp < 0) {
+            i++;
+         }
+         else {
+            j++;
+         }
+      }
+      return null;
+   }
+
+   private List<DuplicateCluster> cluster(List<ScoredPair> pairs, PersonFeatures[] features) {
+      int[] parents = new int[features.length];
+      for (int i = 0; i < parents.length; i++) {
+         parents[i] = i;
+      }
+      for (ScoredPair pair : pairs) {
+         int root1 = find(parents, pair.number1);
+         int root2 = find(parents, pair.number2);
+         if (root1 != root2) {
+            parents[Math.max(root1, root2)] = Math.min(root1, root2);
+         }
+      }
+      pairs.sort(new Comparator<ScoredPair>() {
+         public int compare(ScoredPair pair1, ScoredPair pair2) {
+            int cmp = Double.compare(pair2.score, pair1.score);
+            if (cmp == 0) {
+               cmp = Integer.compare(pair1.number1, pair2.number1);
+            }
+            return cmp == 0 ? Integer.compare(pair1.number2, pair2.number2) : cmp;
+         }
+      });
+      Map<Integer, List<DuplicateCluster.Match>> matches = new HashMap<Integer, List<DuplicateCluster.Match>>();
+      for (ScoredPair pair : pairs) {
+         int root = find(parents, pair.number1);
+         List<DuplicateCluster.Match> rootMatches = matches.get(root);
+         if (rootMatches == null) {
+            rootMatches = new ArrayList<DuplicateCluster.Match>();
+            matches.put(root, rootMatches);
+         }
+         rootMatches.add(new DuplicateCluster.Match(features[pair.number1].getPerson(),
+               features[pair.number2].getPerson(), pair.score));
+      }
+      // roots in ascending order, so clusters with equal scores stay in the order they were searched
+      Map<Integer, List<Person>> members = new TreeMap<Integer, List<Person>>();
+      for (int number = 0; number < features.length; number++) {
+         int root = find(parents, number);
+         if (matches.containsKey(root)) {
+            List<Person> people = members.get(root);
+            if (people == null) {
+               people = new ArrayList<Person>();
+               members.put(root, people);
+            }
+            people.add(features[number].getPerson());
+         }
+      }
+      List<DuplicateCluster> clusters = new ArrayList<DuplicateCluster>(members.size());
+      for (Map.Entry<Integer, List<Person>> entry : members.entrySet()) {
+         List<DuplicateCluster.Match> clusterMatches = matches.get(entry.getKey());
+         clusters.add(new DuplicateCluster(entry.getValue(), clusterMatches, clusterMatches.get(0).getScore()));
+      }
+      clusters.sort(new Comparator<DuplicateCluster>() {
+         public int compare(DuplicateCluster cluster1, DuplicateCluster cluster2) {
+            return Double.compare(cluster2.getScore(), cluster1.getScore());
+         }
+      });
+      return clusters;
+   }
+
+   private static int find(int[] parents, int number) {
+      while (parents[number] != number) {
+         parents[number] = parents[parents[number]];
+         number = parents[number];
+      }
+      return number;
+   }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.dedup;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.date.GedcomDate;
+import org.folg.gedcom.index.Names;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The parts of a person that duplicate detection compares, extracted once per person: normalized surnames
+ * and given names with their Double Metaphone codes, birth (or christening) date and place, and sex.
+ */
+public final class PersonFeatures {
+   private final Person person;
+   private final int number;
+   private final List<String> surnames;
+   private final List<String> surnameCodes;
+   private final Set<String> givenNames;
+   private final String givenNameCode;
+   private final GedcomDate birthDate;
+   private final String birthPlace;
+   private final String[] birthPlaceParts;
+   private final String sex;
+
+   PersonFeatures(Person person, int number, DateParser dateParser, DoubleMetaphone doubleMetaphone) {
+      this.person = person;
+      this.number = number;
+      Set<String> surnames = new LinkedHashSet<String>();
+      Set<String> surnameCodes = new LinkedHashSet<String>();
+      Set<String> givenNames = new LinkedHashSet<String>();
+      String givenNameCode = null;
+      for (Name name : person.getNames()) {
+         String surname = Names.letters(Names.getSurname(name));
+         if (surname != null) {
+            surnames.add(surname);
+            surnameCodes.add(doubleMetaphone.doubleMetaphone(surname));
+         }
+         List<String> given = Names.words(Names.getGiven(name));
+         givenNames.addAll(given);
+         if (givenNameCode == null && !given.isEmpty()) {
+            String letters = Names.letters(given.get(0));
+            givenNameCode = letters != null ? doubleMetaphone.doubleMetaphone(letters) : null;
+         }
+      }
+      surnameCodes.remove("");
+      this.surnames = new ArrayList<String>(surnames);
+      this.surnameCodes = new ArrayList<String>(surnameCodes);
+      this.givenNames = givenNames;
+      this.givenNameCode = givenNameCode == null || givenNameCode.isEmpty() ? null : givenNameCode;
+
+      EventFact birth = null;
+      String sex = null;
+      for (EventFact eventFact : person.getEventsFacts()) {
+         String tag = eventFact.getTag();
+         if ("BIRT".equals(tag) || (birth == null && ("CHR".equals(tag) || "BAPM".equals(tag)))) {
+            if (birth == null || !"BIRT".equals(birth.getTag())) {
+               birth = eventFact;
+            }
+         }
+         else if ("SEX".equals(tag) && eventFact.getValue() != null) {
+            sex = eventFact.getValue().trim().toUpperCase();
+         }
+      }
+      this.birthDate = birth != null ? dateParser.parse(birth.getDate()) : null;
+      this.birthPlace = birth != null ? Names.normalize(birth.getPlace()) : null;
+      if (birthPlace != null) {
+         String[] parts = birth.getPlace().split(",");
+         List<String> normalized = new ArrayList<String>(parts.length);
+         for (String part : parts) {
+            String p = Names.normalize(part);
+            if (p != null) {
+               normalized.add(p);
+            }
+         }
+         this.birthPlaceParts = normalized.toArray(new String[normalized.size()]);
+      }
+      else {
+         this.birthPlaceParts = new String[0];
+      }
+      this.sex = "M".equals(sex) || "F".equals(sex) ? sex : null;
+   }
+
+   public Person getPerson() {
+      return person;
+   }
+
+   /**
+    * Position of the person in the list being searched
+    */
+   public int getNumber() {
+      return number;
+   }
+
+   /**
+    * Surnames as lower-case letters a-z
+    */
+   public List<String> getSurnames() {
+      return surnames;
+   }
+
+   /**
+    * Double Metaphone codes of the surnames
+    */
+   public List<String> getSurnameCodes() {
+      return surnameCodes;
+   }
+
+   /**
+    * Normalized words of the given names
+    */
+   public Set<String> getGivenNames() {
+      return givenNames;
+   }
+
+   /**
+    * Double Metaphone code of the first given name, or null
+    */
+   public String getGivenNameCode() {
+      return givenNameCode;
+   }
+
+   /**
+    * Birth date, or christening date if there is no birth; null if neither can be parsed
+    */
+   public GedcomDate getBirthDate() {
+      return birthDate;
+   }
+
+   /**
+    * Birth or christening place, normalized; null if none
+    */
+   public String getBirthPlace() {
+      return birthPlace;
+   }
+
+   /**
+    * Normalized jurisdictions of the birth place, most specific first
+    */
+   public String[] getBirthPlaceParts() {
+      return birthPlaceParts;
+   }
+
+   /**
+    * M, F, or null if unknown
+    */
+   public String getSex() {
+      return sex;
+   }
+
+   /**
+    * Year of birth, if the birth date is bounded on both sides and spans less than 20 years; else null.
+    * For a range, the year of its middle.
+    */
+   public Integer getBirthYear() {
+      if (birthDate == null || birthDate.getEarliest() == GedcomDate.UNBOUNDED_START ||
+          birthDate.getLatest() == GedcomDate.UNBOUNDED_END ||
+          birthDate.getLatest() - birthDate.getEarliest() > 20 * 366) {
+         return null;
+      }
+      int middle = birthDate.getEarliest() + (birthDate.getLatest() - birthDate.getEarliest()) / 2;
+      return GedcomDate.toLocalDate(middle).getYear();
+   }
+
+   /**
+    * Decade of birth, if {@link #getBirthYear} is known; else null
+    */
+   public Integer getBirthDecade() {
+      Integer year = getBirthYear();
+      return year != null ? Math.floorDiv(year, 10) : null;
+   }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * One kind of edge in a {@link PedigreeGraph}, stored in compressed sparse row form: the targets of node n are
+ * targets[offsets[n]] .. targets[offsets[n+1]-1].
+ * <p>
+ * Neighbors can be walked without allocating anything:
+ * <pre>
+ *    for (int i = adjacency.start(n), end = adjacency.end(n); i &lt; end; i++) {
+ *       int target = adjacency.target(i);
+ *    }
+ * </pre>
+ */
+public final class Adjacency {
+   private final int[] offsets;
+   private final int[] targets;
+
+   Adjacency(int[] offsets, int[] targets) {
+      this.offsets = offsets;
+      this.targets = targets;
+   }
+
+   /**
+    * Number of nodes on the source side
+    */
+   public int getNodeCount() {
+      return offsets.length - 1;
+   }
+
+   /**
+    * Total number of edges
+    */
+   public int getEdgeCount() {
+      return offsets[offsets.length - 1];
+   }
+
+   /**
+    * Position of node's first edge
+    */
+   public int start(int node) {
+      return offsets[node];
+   }
+
+   /**
+    * Position just past node's last edge
+    */
+   public int end(int node) {
+      return offsets[node + 1];
+   }
+
+   /**
+    * Target of the edge at position edge, between start(n) and end(n)
+    */
+   public int target(int edge) {
+      return targets[edge];
+   }
+
+   public int degree(int node) {
+      return offsets[node + 1] - offsets[node];
+   }
+
+   /**
+    * The i'th target of node
+    */
+   public int get(int node, int i) {
+      return targets[offsets[node] + i];
+   }
+
+   public boolean contains(int node, int target) {
+      for (int i = offsets[node], end = offsets[node + 1]; i < end; i++) {
+         if (targets[i] == target) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   public void forEach(int node, IntConsumer consumer) {
+      for (int i = offsets[node], end = offsets[node + 1]; i < end; i++) {
+         consumer.accept(targets[i]);
+      }
+   }
+
+   /**
+    * Copy of node's targets
+    */
+   public int[] toArray(int node) {
+      return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+   }
+
+   /**
+    * Collects edges one source node at a time, in node order
+    */
+   static final class Builder {
+      private final int[] offsets;
+      private int[] targets;
+      private int node = 0;
+      private int size = 0;
+
+      Builder(int nodeCount, int expectedEdges) {
+         offsets = new int[nodeCount + 1];
+         targets = new int[Math.max(expectedEdges, 16)];
+      }
+
+      /**
+       * Add an edge from the current node
+       */
+      void add(int target) {
+         if (size == targets.length) {
+            targets = Arrays.copyOf(targets, targets.length * 2);
+         }
+         targets[size++] = target;
+      }
+
+      /**
+       * Add an edge from the current node unless it already has one to target
+       */
+      void addDistinct(int target) {
+         for (int i = offsets[node]; i < size; i++) {
+            if (targets[i] == target) {
+               return;
+            }
+         }
+         add(target);
+      }
+
+      /**
+       * Finish the current node and move on to the next one
+       */
+      void next() {
+         offsets[++node] = size;
+      }
+
+      Adjacency build() {
+         while (node < offsets.length - 1) {
+            next();
+         }
+         return new Adjacency(offsets, size == targets.length ? targets : Arrays.copyOf(targets, size));
+      }
+   }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.ChildRef;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.SpouseFamilyRef;
+import org.folg.gedcom.model.SpouseRef;
+
+import java.util.List;
+
+/**
+ * Read-only snapshot of the people and families in a Gedcom and the links between them.
+ * <p>
+ * Each person gets a dense index 0..getPersonCount()-1 in {@link Gedcom#getPeople} order, and each family
+ * an index 0..getFamilyCount()-1 in {@link Gedcom#getFamilies} order.  Links are stored as {@link Adjacency}
+ * int arrays, so walking them allocates nothing and does no id lookups.  The links are the ones the model's
+ * convenience methods follow: parent families come from the person's FAMC refs, children from the family's
+ * CHIL refs, husbands and wives are listed preferred first, and refs to missing records are dropped.
+ * <p>
+ * The graph doesn't see changes made to the Gedcom after it is built.
+ */
+public class PedigreeGraph {
+   private final Person[] people;
+   private final Family[] families;
+   private final IdTable personIds;
+   private final IdTable familyIds;
+
+   private final Adjacency parentFamilies;
+   private final Adjacency spouseFamilies;
+   private final Adjacency husbands;
+   private final Adjacency wives;
+   private final Adjacency familyChildren;
+   private final Adjacency parents;
+   private final Adjacency children;
+   private final Adjacency spouses;
+
+   public PedigreeGraph(Gedcom gedcom) {
+      List<Person> personList = gedcom.getPeople();
+      List<Family> familyList = gedcom.getFamilies();
+      people = personList.toArray(new Person[personList.size()]);
+      families = familyList.toArray(new Family[familyList.size()]);
+      personIds = new IdTable(people.length);
+      for (int i = 0; i < people.length; i++) {
+         personIds.put(people[i].getId(), i);
+      }
+      familyIds = new IdTable(families.length);
+      for (int i = 0; i < families.length; i++) {
+         familyIds.put(families[i].getId(), i);
+      }
+
+      Adjacency.Builder parentFamiliesBuilder = new Adjacency.Builder(people.length, people.length);
+      Adjacency.Builder spouseFamiliesBuilder = new Adjacency.Builder(people.length, people.length);
+      for (Person person : people) {
+         for (ParentFamilyRef ref : person.getParentFamilyRefs()) {
+            addFamily(parentFamiliesBuilder, ref);
+         }
+         parentFamiliesBuilder.next();
+         for (SpouseFamilyRef ref : person.getSpouseFamilyRefs()) {
+            addFamily(spouseFamiliesBuilder, ref);
+         }
+         spouseFamiliesBuilder.next();
+      }
+      parentFamilies = parentFamiliesBuilder.build();
+      spouseFamilies = spouseFamiliesBuilder.build();
+
+      Adjacency.Builder husbandsBuilder = new Adjacency.Builder(families.length, families.length);
+      Adjacency.Builder wivesBuilder = new Adjacency.Builder(families.length, families.length);
+      Adjacency.Builder childrenBuilder = new Adjacency.Builder(families.length, families.length * 2);
+      for (Family family : families) {
+         addSpouses(husbandsBuilder, family.getHusbandRefs());
+         husbandsBuilder.next();
+         addSpouses(wivesBuilder, family.getWifeRefs());
+         wivesBuilder.next();
+         for (ChildRef ref : family.getChildRefs()) {
+            int child = personIds.get(ref.getRef());
+            if (child >= 0) {
+               childrenBuilder.add(child);
+            }
+         }
+         childrenBuilder.next();
+      }
+      husbands = husbandsBuilder.build();
+      wives = wivesBuilder.build();
+      familyChildren = childrenBuilder.build();
+
+      Adjacency.Builder parentsBuilder = new Adjacency.Builder(people.length, parentFamilies.getEdgeCount() * 2);
+      Adjacency.Builder personChildrenBuilder = new Adjacency.Builder(people.length, familyChildren.getEdgeCount());
+      Adjacency.Builder spousesBuilder = new Adjacency.Builder(people.length, spouseFamilies.getEdgeCount());
+      for (int p = 0; p < people.length; p++) {
+         for (int i = parentFamilies.start(p), end = parentFamilies.end(p); i < end; i++) {
+            int family = parentFamilies.target(i);
+            addDistinct(parentsBuilder, husbands, family, -1);
+            addDistinct(parentsBuilder, wives, family, -1);
+         }
+         parentsBuilder.next();
+         for (int i = spouseFamilies.start(p), end = spouseFamilies.end(p); i < end; i++) {
+            int family = spouseFamilies.target(i);
+            addDistinct(personChildrenBuilder, familyChildren, family, -1);
+            addDistinct(spousesBuilder, husbands, family, p);
+            addDistinct(spousesBuilder, wives, family, p);
+         }
+         personChildrenBuilder.next();
+         spousesBuilder.next();
+      }
+      parents = parentsBuilder.build();
+      children = personChildrenBuilder.build();
+      spouses = spousesBuilder.build();
+   }
+
+   private void addFamily(Adjacency.Builder builder, SpouseFamilyRef ref) {
+      int family = familyIds.get(ref.getRef());
+      if (family >= 0) {
+         builder.add(family);
+      }
+   }
+
+   /**
+    * Add resolved spouses in the order Family.getHusbands and getWives return them: preferred first
+    */
+   private void addSpouses(Adjacency.Builder builder, List<SpouseRef> refs) {
+      for (int i = refs.size() - 1; i >= 0; i--) {
+         if ("Y".equals(refs.get(i).getPreferred())) {
+            addPerson(builder, refs.get(i));
+         }
+      }
+      for (SpouseRef ref : refs) {
+         if (!"Y".equals(ref.getPreferred())) {
+            addPerson(builder, ref);
+         }
+      }
+   }
+
+   private void addPerson(Adjacency.Builder builder, SpouseRef ref) {
+      int person = personIds.get(ref.getRef());
+      if (person >= 0) {
+         builder.add(person);
+      }
+   }
+
+   private static void addDistinct(Adjacency.Builder builder, Adjacency adjacency, int node, int exclude) {
+      for (int i = adjacency.start(node), end = adjacency.end(node); i < end; i++) {
+         int target = adjacency.target(i);
+         if (target != exclude) {
+            builder.addDistinct(target);
+         }
+      }
+   }
+
+   public int getPersonCount() {
+      return people.length;
+   }
+
+   public int getFamilyCount() {
+      return families.length;
+   }
+
+   public Person getPerson(int person) {
+      return people[person];
+   }
+
+   public Family getFamily(int family) {
+      return families[family];
+   }
+
+   /**
+    * @return index of the person with the given GEDCOM id, or -1 if there isn't one
+    */
+   public int indexOfPerson(String id) {
+      return personIds.get(id);
+   }
+
+   /**
+    * @return index of the family with the given GEDCOM id, or -1 if there isn't one
+    */
+   public int indexOfFamily(String id) {
+      return familyIds.get(id);
+   }
+
+   /**
+    * Person to the families they are a child in
+    */
+   public Adjacency getParentFamilies() {
+      return parentFamilies;
+   }
+
+   /**
+    * Person to the families they are a spouse in
+    */
+   public Adjacency getSpouseFamilies() {
+      return spouseFamilies;
+   }
+
+   /**
+    * Family to its husbands
+    */
+   public Adjacency getHusbands() {
+      return husbands;
+   }
+
+   /**
+    * Family to its wives
+    */
+   public Adjacency getWives() {
+      return wives;
+   }
+
+   /**
+    * Family to its children
+    */
+   public Adjacency getFamilyChildren() {
+      return familyChildren;
+   }
+
+   /**
+    * Person to the distinct husbands and wives of their parent families
+    */
+   public Adjacency getParents() {
+      return parents;
+   }
+
+   /**
+    * Person to the distinct children of their spouse families
+    */
+   public Adjacency getChildren() {
+      return children;
+   }
+
+   /**
+    * Person to the distinct other husbands and wives of their spouse families
+    */
+   public Adjacency getSpouses() {
+      return spouses;
+   }
+
+   /**
+    * Open-addressing map from GEDCOM id to index; when an id repeats the last record wins, as in Gedcom
+    */
+   private static final class IdTable {
+      private final String[] keys;
+      private final int[] values;
+      private final int mask;
+
+      IdTable(int count) {
+         int size = 2;
+         while (size < count * 2) {
+            size <<= 1;
+         }
+         keys = new String[size];
+         values = new int[size];
+         mask = size - 1;
+      }
+
+      void put(String key, int value) {
+         if (key == null) {
+            return;
+         }
+         int slot = slot(key);
+         while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+         }
+         keys[slot] = key;
+         values[slot] = value;
+      }
+
+      int get(String key) {
+         if (key == null) {
+            return -1;
+         }
+         for (int slot = slot(key); keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+               return values[slot];
+            }
+         }
+         return -1;
+      }
+
+      private int slot(String key) {
+         int hash = key.hashCode();
+         return (hash ^ (hash >>> 16)) & mask;
+      }
+   }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ancestor and descendant queries over a {@link PedigreeGraph}.
+ * <p>
+ * Queries walk the graph breadth-first one generation at a time, without recursion, so they work on lines of
+ * any length, and stop after maxGenerations generations (1 is parents or children only; use
+ * {@link #ALL_GENERATIONS} for no limit).  Results are BitSets of person indexes, which can be combined with
+ * and/or and counted with cardinality.  A seed is only in the result if it is an ancestor (or descendant) of
+ * another seed, or of itself in a tree with a loop.
+ * <p>
+ * The *OfEach methods answer one query per seed, splitting the seeds across a fork-join pool.  The other
+ * methods walk from all seeds at once, which visits each person at most once however many seeds share them.
+ * Results grow only as far as their highest member, and each thread reuses one visited set across walks, so
+ * many small results from a large graph stay small.
+ */
+public class PedigreeTraversal {
+   public static final int ALL_GENERATIONS = Integer.MAX_VALUE;
+   private static final int SEEDS_PER_TASK = 16;
+
+   private final PedigreeGraph graph;
+   private final ForkJoinPool pool;
+   private final ThreadLocal<BitSet> visitedSets = new ThreadLocal<BitSet>() {
+      @Override
+      protected BitSet initialValue() {
+         return new BitSet(graph.getPersonCount());
+      }
+   };
+
+   public PedigreeTraversal(PedigreeGraph graph) {
+      this(graph, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * @param pool pool to run the *OfEach queries on
+    */
+   public PedigreeTraversal(PedigreeGraph graph, ForkJoinPool pool) {
+      this.graph = graph;
+      this.pool = pool;
+   }
+
+   public PedigreeGraph getGraph() {
+      return graph;
+   }
+
+   public BitSet getAncestors(int person, int maxGenerations) {
+      return walk(graph.getParents(), new int[] {person}, maxGenerations);
+   }
+
+   /**
+    * Ancestors of any of the seeds
+    */
+   public BitSet getAncestors(int[] people, int maxGenerations) {
+      return walk(graph.getParents(), people, maxGenerations);
+   }
+
+   public BitSet getDescendants(int person, int maxGenerations) {
+      return walk(graph.getChildren(), new int[] {person}, maxGenerations);
+   }
+
+   /**
+    * Descendants of any of the seeds
+    */
+   public BitSet getDescendants(int[] people, int maxGenerations) {
+      return walk(graph.getChildren(), people, maxGenerations);
+   }
+
+   /**
+    * @return the ancestors of people[i] in element i
+    */
+   public BitSet[] getAncestorsOfEach(int[] people, int maxGenerations) {
+      return walkEach(graph.getParents(), people, maxGenerations);
+   }
+
+   /**
+    * @return the descendants of people[i] in element i
+    */
+   public BitSet[] getDescendantsOfEach(int[] people, int maxGenerations) {
+      return walkEach(graph.getChildren(), people, maxGenerations);
+   }
+
+   /**
+    * The Person objects for the indexes in people, in index order
+    */
+   public List<Person> toPeople(BitSet people) {
+      List<Person> result = new ArrayList<Person>(people.cardinality());
+      for (int p = people.nextSetBit(0); p >= 0; p = people.nextSetBit(p + 1)) {
+         result.add(graph.getPerson(p));
+      }
+      return result;
+   }
+
+   private BitSet[] walkEach(Adjacency edges, int[] people, int maxGenerations) {
+      BitSet[] results = new BitSet[people.length];
+      pool.invoke(new WalkTask(edges, people, maxGenerations, results, 0, people.length));
+      return results;
+   }
+
+   private class WalkTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private final Adjacency edges;
+      private final int[] people;
+      private final int maxGenerations;
+      private final BitSet[] results;
+      private final int from;
+      private final int to;
+
+      WalkTask(Adjacency edges, int[] people, int maxGenerations, BitSet[] results, int from, int to) {
+         this.edges = edges;
+         this.people = people;
+         this.maxGenerations = maxGenerations;
+         this.results = results;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= SEEDS_PER_TASK) {
+            for (int i = from; i < to; i++) {
+               results[i] = walk(edges, new int[] {people[i]}, maxGenerations);
+            }
+         }
+         else {
+            int mid = (from + to) >>> 1;
+            invokeAll(new WalkTask(edges, people, maxGenerations, results, from, mid),
+                      new WalkTask(edges, people, maxGenerations, results, mid, to));
+         }
+      }
+   }
+
+   /**
+    * Breadth-first walk from all seeds at once, one generation per round
+    */
+   private BitSet walk(Adjacency edges, int[] seeds, int maxGenerations) {
+      int personCount = graph.getPersonCount();
+      for (int seed : seeds) {
+         if (seed < 0 || seed >= personCount) {
+            throw new IndexOutOfBoundsException("Person: " + seed + ", Count: " + personCount);
+         }
+      }
+      BitSet result = new BitSet();
+      // empty between walks: everyone visited is a seed or in the result, and is cleared at the end
+      BitSet visited = visitedSets.get();
+      try {
+         int[] frontier = new int[Math.max(seeds.length, 16)];
+         int frontierSize = 0;
+         for (int seed : seeds) {
+            if (!visited.get(seed)) {
+               visited.set(seed);
+               frontier[frontierSize++] = seed;
+            }
+         }
+         int[] next = new int[frontier.length];
+         for (int generation = 0; generation < maxGenerations && frontierSize > 0; generation++) {
+            int nextSize = 0;
+            for (int j = 0; j < frontierSize; j++) {
+               int person = frontier[j];
+               for (int i = edges.start(person), end = edges.end(person); i < end; i++) {
+                  int relative = edges.target(i);
+                  // in the result before it is visited, so the cleanup below finds it whatever happens
+                  result.set(relative);
+                  if (!visited.get(relative)) {
+                     visited.set(relative);
+                     if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, next.length * 2);
+                     }
+                     next[nextSize++] = relative;
+                  }
+               }
+            }
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+         }
+         return result;
+      }
+      finally {
+         for (int seed : seeds) {
+            visited.clear(seed);
+         }
+         for (int p = result.nextSetBit(0); p >= 0; p = result.nextSetBit(p + 1)) {
+            visited.clear(p);
+         }
+      }
+   }
+}
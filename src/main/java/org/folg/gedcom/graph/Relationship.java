@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Person;
+
+import java.util.List;
+
+/**
+ * How one person is related to another, as found by {@link RelationshipCalculator}.
+ * <p>
+ * The label says what the second person is to the first: for example "aunt/uncle" means the second person is
+ * the first person's aunt or uncle.
+ */
+public final class Relationship {
+   private final Person person1;
+   private final Person person2;
+   private final List<Person> commonAncestors;
+   private final int generations1;
+   private final int generations2;
+
+   Relationship(Person person1, Person person2, List<Person> commonAncestors, int generations1, int generations2) {
+      this.person1 = person1;
+      this.person2 = person2;
+      this.commonAncestors = commonAncestors;
+      this.generations1 = generations1;
+      this.generations2 = generations2;
+   }
+
+   public Person getPerson1() {
+      return person1;
+   }
+
+   public Person getPerson2() {
+      return person2;
+   }
+
+   /**
+    * The closest common ancestors; a person counts as their own ancestor, so when one person descends from
+    * the other this is the older of the two
+    */
+   public List<Person> getCommonAncestors() {
+      return commonAncestors;
+   }
+
+   /**
+    * Number of generations from the first person up to the common ancestors
+    */
+   public int getGenerations1() {
+      return generations1;
+   }
+
+   /**
+    * Number of generations from the second person up to the common ancestors
+    */
+   public int getGenerations2() {
+      return generations2;
+   }
+
+   public String getLabel() {
+      return getLabel(generations1, generations2);
+   }
+
+   @Override
+   public String toString() {
+      return getLabel();
+   }
+
+   /**
+    * Label for two people whose closest common ancestor is generations1 and generations2 generations up
+    */
+   public static String getLabel(int generations1, int generations2) {
+      if (generations1 == 0 && generations2 == 0) {
+         return "self";
+      }
+      else if (generations2 == 0) {
+         return ancestor(generations1, "parent");
+      }
+      else if (generations1 == 0) {
+         return ancestor(generations2, "child");
+      }
+      else if (generations1 == 1 && generations2 == 1) {
+         return "sibling";
+      }
+      else if (generations2 == 1) {
+         return greats(generations1 - 2) + "aunt/uncle";
+      }
+      else if (generations1 == 1) {
+         return generations2 == 2 ? "niece/nephew" : ancestor(generations2 - 1, "niece/nephew");
+      }
+      int removed = Math.abs(generations1 - generations2);
+      String cousin = ordinal(Math.min(generations1, generations2) - 1) + " cousin";
+      if (removed == 0) {
+         return cousin;
+      }
+      return cousin + " " + (removed == 1 ? "once" : removed == 2 ? "twice" : removed + " times") + " removed";
+   }
+
+   /**
+    * parent, grandparent, great-grandparent, 2nd great-grandparent, ...
+    */
+   private static String ancestor(int generations, String relative) {
+      if (generations == 1) {
+         return relative;
+      }
+      return greats(generations - 2) + "grand" + relative;
+   }
+
+   private static String greats(int count) {
+      if (count == 0) {
+         return "";
+      }
+      else if (count == 1) {
+         return "great-";
+      }
+      return numeral(count) + " great-";
+   }
+
+   private static final String[] ORDINALS = {"zeroth", "first", "second", "third", "fourth", "fifth", "sixth",
+         "seventh", "eighth", "ninth", "tenth"};
+
+   private static String ordinal(int n) {
+      return n < ORDINALS.length ? ORDINALS[n] : numeral(n);
+   }
+
+   private static String numeral(int n) {
+      String suffix = "th";
+      if (n % 100 < 11 || n % 100 > 13) {
+         switch (n % 10) {
+            case 1: suffix = "st"; break;
+            case 2: suffix = "nd"; break;
+            case 3: suffix = "rd"; break;
+         }
+      }
+      return n + suffix;
+   }
+}
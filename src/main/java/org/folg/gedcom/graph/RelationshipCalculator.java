@@ -0,0 +1,310 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds how two people are related through their closest common ancestors.
+ * <p>
+ * The search expands both people's ancestors one generation at a time, always extending the side that is
+ * fewer generations up, and stops as soon as no unexplored ancestor could be closer than the ones found.
+ * Each person's ancestors are kept as layers (the ancestors first reached 1, 2, 3... generations up), so an
+ * ancestor reached along several lines is expanded once and pedigree collapse doesn't multiply the work.
+ * The layers of recently queried people are kept in a least-recently-used cache and reused by later queries.
+ * <p>
+ * Searches stop after maxGenerations generations on each side, which bounds the time a query can take.
+ * A calculator may be shared between threads.
+ */
+public class RelationshipCalculator {
+   public static final int DEFAULT_MAX_GENERATIONS = 30;
+   public static final int DEFAULT_CACHE_SIZE = 10000;
+
+   private final PedigreeGraph graph;
+   private final int maxGenerations;
+   private final Map<Integer, AncestorLayers> cache;
+
+   public RelationshipCalculator(Gedcom gedcom) {
+      this(new PedigreeGraph(gedcom), DEFAULT_MAX_GENERATIONS, DEFAULT_CACHE_SIZE);
+   }
+
+   /**
+    * @param maxGenerations how many generations up from each person to search
+    * @param cacheSize number of people whose ancestors are kept between queries
+    */
+   public RelationshipCalculator(PedigreeGraph graph, int maxGenerations, final int cacheSize) {
+      this.graph = graph;
+      this.maxGenerations = maxGenerations;
+      this.cache = new LinkedHashMap<Integer, AncestorLayers>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Integer, AncestorLayers> eldest) {
+            return size() > cacheSize;
+         }
+      };
+   }
+
+   public PedigreeGraph getGraph() {
+      return graph;
+   }
+
+   /**
+    * @return the relationship, or null if either person isn't in the graph or no common ancestor was found
+    */
+   public Relationship getRelationship(Person person1, Person person2) {
+      int p1 = graph.indexOfPerson(person1.getId());
+      int p2 = graph.indexOfPerson(person2.getId());
+      if (p1 < 0 || p2 < 0) {
+         return null;
+      }
+      return getRelationship(p1, p2);
+   }
+
+   /**
+    * @return the relationship, or null if no common ancestor was found
+    */
+   public Relationship getRelationship(int person1, int person2) {
+      AncestorLayers layers1 = getLayers(person1);
+      AncestorLayers layers2 = getLayers(person2);
+      Search search = new Search();
+      search.check(layers1, 0, layers2, 0, false);
+      int depth1 = 0;
+      int depth2 = 0;
+      while (search.best >= lowerBound(layers1, depth1, layers2, depth2)) {
+         boolean more1 = depth1 < maxGenerations && layers1.hasLayer(depth1 + 1);
+         boolean more2 = depth2 < maxGenerations && layers2.hasLayer(depth2 + 1);
+         if (more1 && (!more2 || depth1 <= depth2)) {
+            depth1++;
+            search.check(layers1, depth1, layers2, depth2, false);
+         }
+         else if (more2) {
+            depth2++;
+            search.check(layers2, depth2, layers1, depth1, true);
+         }
+         else {
+            break;
+         }
+      }
+      if (search.ancestors.isEmpty()) {
+         return null;
+      }
+      List<Person> ancestors = new ArrayList<Person>(search.ancestors.size());
+      for (int ancestor : search.ancestors) {
+         ancestors.add(graph.getPerson(ancestor));
+      }
+      return new Relationship(graph.getPerson(person1), graph.getPerson(person2), ancestors,
+            search.generations1, search.generations2);
+   }
+
+   /**
+    * Smallest generation sum a common ancestor not found yet could have.  One found only on the first side
+    * is more than depth2 generations from the second person, and vice versa.
+    */
+   private int lowerBound(AncestorLayers layers1, int depth1, AncestorLayers layers2, int depth2) {
+      boolean done1 = depth1 >= maxGenerations || !layers1.hasLayer(depth1 + 1);
+      boolean done2 = depth2 >= maxGenerations || !layers2.hasLayer(depth2 + 1);
+      int bound = Integer.MAX_VALUE;
+      if (!done1) {
+         bound = depth1 + 1;
+      }
+      if (!done2) {
+         bound = Math.min(bound, depth2 + 1);
+      }
+      return bound;
+   }
+
+   /**
+    * Best common ancestors found so far
+    */
+   private static class Search {
+      int best = Integer.MAX_VALUE;
+      int generations1;
+      int generations2;
+      List<Integer> ancestors = new ArrayList<Integer>();
+
+      /**
+       * Look for the people in layer g of one side among the first depth layers of the other side
+       */
+      void check(AncestorLayers layers, int g, AncestorLayers other, int depth, boolean swapped) {
+         int[] order = layers.order();
+         for (int i = layers.layerStart(g), end = layers.layerEnd(g); i < end; i++) {
+            int ancestor = order[i];
+            int otherGeneration = other.generation(ancestor);
+            if (otherGeneration >= 0 && otherGeneration <= depth) {
+               int g1 = swapped ? otherGeneration : g;
+               int g2 = swapped ? g : otherGeneration;
+               add(ancestor, g1, g2);
+            }
+         }
+      }
+
+      /**
+       * Keep the closest ancestors; among equally close ones, prefer the most even split (cousins over
+       * aunts/uncles several times over)
+       */
+      private void add(int ancestor, int g1, int g2) {
+         int sum = g1 + g2;
+         int spread = Math.abs(g1 - g2);
+         if (sum < best || (sum == best && spread < Math.abs(generations1 - generations2))) {
+            best = sum;
+            generations1 = g1;
+            generations2 = g2;
+            ancestors.clear();
+         }
+         if (sum == best && g1 == generations1 && !ancestors.contains(ancestor)) {
+            ancestors.add(ancestor);
+         }
+      }
+   }
+
+   private AncestorLayers getLayers(int person) {
+      synchronized (cache) {
+         AncestorLayers layers = cache.get(person);
+         if (layers == null) {
+            layers = new AncestorLayers(graph.getParents(), person);
+            cache.put(person, layers);
+         }
+         return layers;
+      }
+   }
+
+   /**
+    * A person's ancestors, grouped by the generation they are first reached in and computed one generation
+    * at a time as queries need them.  Layer 0 is the person.
+    */
+   private static final class AncestorLayers {
+      private final Adjacency parents;
+      private int[] order;
+      private int size;
+      private int[] layerEnds;
+      private int layerCount;
+      // open-addressing map from person to generation; keys are stored as person + 1 so 0 means empty
+      private int[] keys;
+      private int[] generations;
+
+      AncestorLayers(Adjacency parents, int person) {
+         this.parents = parents;
+         order = new int[16];
+         layerEnds = new int[8];
+         keys = new int[32];
+         generations = new int[32];
+         append(person, 0);
+         layerEnds[0] = size;
+         layerCount = 1;
+      }
+
+      synchronized int[] order() {
+         return order;
+      }
+
+      synchronized int layerStart(int g) {
+         return g == 0 ? 0 : layerEnds[g - 1];
+      }
+
+      synchronized int layerEnd(int g) {
+         return layerEnds[g];
+      }
+
+      /**
+       * Whether layer g has anyone in it, computing it if necessary
+       */
+      synchronized boolean hasLayer(int g) {
+         while (layerCount <= g) {
+            if (layerEnds[layerCount - 1] == layerStart(layerCount - 1)) {
+               return false;
+            }
+            extend();
+         }
+         return layerEnds[g] > layerStart(g);
+      }
+
+      /**
+       * @return generation person was first reached in, or -1 if not reached in the layers computed so far
+       */
+      synchronized int generation(int person) {
+         int mask = keys.length - 1;
+         for (int slot = hash(person) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == person + 1) {
+               return generations[slot];
+            }
+         }
+         return -1;
+      }
+
+      private void extend() {
+         int start = layerStart(layerCount - 1);
+         int end = layerEnds[layerCount - 1];
+         for (int i = start; i < end; i++) {
+            int person = order[i];
+            for (int j = parents.start(person), parentsEnd = parents.end(person); j < parentsEnd; j++) {
+               int parent = parents.target(j);
+               if (generation(parent) < 0) {
+                  append(parent, layerCount);
+               }
+            }
+         }
+         if (layerCount == layerEnds.length) {
+            layerEnds = Arrays.copyOf(layerEnds, layerCount * 2);
+         }
+         layerEnds[layerCount++] = size;
+      }
+
+      private void append(int person, int generation) {
+         if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+         }
+         order[size++] = person;
+         if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+         }
+         put(person, generation);
+      }
+
+      private void put(int person, int generation) {
+         int mask = keys.length - 1;
+         int slot = hash(person) & mask;
+         while (keys[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+         keys[slot] = person + 1;
+         generations[slot] = generation;
+      }
+
+      private void rehash(int capacity) {
+         int[] oldKeys = keys;
+         int[] oldGenerations = generations;
+         keys = new int[capacity];
+         generations = new int[capacity];
+         for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+               put(oldKeys[i] - 1, oldGenerations[i]);
+            }
+         }
+      }
+
+      private static int hash(int person) {
+         int h = person * 0x9E3779B9;
+         return h ^ (h >>> 16);
+      }
+   }
+}
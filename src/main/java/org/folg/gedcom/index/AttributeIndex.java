@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Index of a Gedcom's people by surname, given name, event place and event tag.
+ * <p>
+ * People are numbered in {@link Gedcom#getPeople} order, and each indexed value maps to the ascending list of
+ * numbers of the people who have it.  Queries combining several values intersect or merge those lists rather
+ * than scanning the people.  Values are matched after lower-casing, removing accents and collapsing spaces and
+ * punctuation; given names are indexed word by word, so "john" matches "John Henry /Smith/".  Terms match
+ * people, not events: someone born in Boston who died in Salem matches both PLACE Salem and EVENT BIRT.
+ * <p>
+ * The index is built in one parallel pass and then listens to the Gedcom, indexing people added through
+ * {@link Gedcom#addPerson}.  Changes to a person already indexed aren't seen; build a new index after them.
+ * Call {@link #close} to stop listening.  Any number of threads may query the index.
+ */
+public class AttributeIndex extends PersonIndex {
+   public enum Field {
+      SURNAME, GIVEN_NAME, PLACE, EVENT
+   }
+
+   /**
+    * A field and value to query for
+    */
+   public static final class Term {
+      private final Field field;
+      private final String value;
+
+      public Term(Field field, String value) {
+         this.field = field;
+         this.value = value;
+      }
+
+      public Field getField() {
+         return field;
+      }
+
+      public String getValue() {
+         return value;
+      }
+   }
+
+   public AttributeIndex(Gedcom gedcom) {
+      this(gedcom, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * @param pool pool to build the index on
+    */
+   public AttributeIndex(Gedcom gedcom, ForkJoinPool pool) {
+      super(gedcom);
+      build(Field.values().length, pool);
+   }
+
+   void index(PostingsMap[] postings, Person person, int number) {
+      for (Name name : person.getNames()) {
+         postings[Field.SURNAME.ordinal()].add(Names.normalize(Names.getSurname(name)), number);
+         for (String word : Names.words(Names.getGiven(name))) {
+            postings[Field.GIVEN_NAME.ordinal()].add(word, number);
+         }
+      }
+      for (EventFact eventFact : person.getEventsFacts()) {
+         postings[Field.PLACE.ordinal()].add(Names.normalize(eventFact.getPlace()), number);
+         postings[Field.EVENT.ordinal()].add(normalizeTag(eventFact.getTag()), number);
+      }
+   }
+
+   private static String normalizeTag(String tag) {
+      return tag != null ? tag.trim().toUpperCase(Locale.ROOT) : null;
+   }
+
+   /**
+    * Numbers of the people with value in field, ascending.  A multi-word given name matches people who
+    * have all of the words.
+    */
+   public int[] get(Field field, String value) {
+      return matchAll(new Term(field, value));
+   }
+
+   /**
+    * Numbers of the people matching all of the terms, ascending
+    */
+   public int[] matchAll(Term... terms) {
+      lock().readLock().lock();
+      try {
+         List<Postings> lists = new ArrayList<Postings>();
+         for (Term term : terms) {
+            for (String key : keys(term)) {
+               Postings list = postings()[term.getField().ordinal()].get(key);
+               if (list == null) {
+                  return Postings.EMPTY;
+               }
+               lists.add(list);
+            }
+         }
+         if (lists.isEmpty()) {
+            return Postings.EMPTY;
+         }
+         // start with the shortest list so intermediate results stay small
+         Postings shortest = lists.get(0);
+         for (Postings list : lists) {
+            if (list.size() < shortest.size()) {
+               shortest = list;
+            }
+         }
+         int[] result = shortest.toArray();
+         for (Postings list : lists) {
+            if (list != shortest && result.length > 0) {
+               result = Postings.intersect(result, result.length, list.values(), list.size());
+            }
+         }
+         return withoutRemoved(result);
+      }
+      finally {
+         lock().readLock().unlock();
+      }
+   }
+
+   /**
+    * Numbers of the people matching any of the terms, ascending
+    */
+   public int[] matchAny(Term... terms) {
+      int[] result = Postings.EMPTY;
+      for (Term term : terms) {
+         result = or(result, matchAll(term));
+      }
+      return result;
+   }
+
+   /**
+    * Numbers in both a and b, for combining query results
+    */
+   public static int[] and(int[] a, int[] b) {
+      return Postings.intersect(a, a.length, b, b.length);
+   }
+
+   /**
+    * Numbers in either a or b, for combining query results
+    */
+   public static int[] or(int[] a, int[] b) {
+      return Postings.union(a, a.length, b, b.length);
+   }
+
+   private static List<String> keys(Term term) {
+      List<String> keys = new ArrayList<String>();
+      if (term.getField() == Field.GIVEN_NAME) {
+         keys.addAll(Names.words(term.getValue()));
+      }
+      else {
+         String key = term.getField() == Field.EVENT ? normalizeTag(term.getValue()) : Names.normalize(term.getValue());
+         if (key != null) {
+            keys.add(key);
+         }
+      }
+      return keys;
+   }
+}
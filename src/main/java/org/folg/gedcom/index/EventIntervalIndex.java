@@ -0,0 +1,238 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.date.GedcomDate;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.PersonFamilyCommonContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of the dated events and facts of a Gedcom's people and families, for finding the ones whose date can
+ * fall in a given range.
+ * <p>
+ * Each EventFact is indexed under its tag by the earliest and latest day its date can mean (see
+ * {@link GedcomDate}); events without a date DateParser understands aren't indexed.  For each tag the events
+ * are sorted by earliest day and overlaid with an implicit balanced tree recording the latest day under each
+ * subtree, so a query skips whole subtrees that end before the range or start after it, taking logarithmic
+ * time plus time proportional to the number of events found.  Results come back in order of earliest day.
+ * <p>
+ * The index is a snapshot: events added or changed afterwards aren't seen.  Any number of threads may query it.
+ */
+public class EventIntervalIndex {
+   /**
+    * An indexed event, with the person or family it belongs to
+    */
+   public static final class Entry {
+      private final EventFact eventFact;
+      private final PersonFamilyCommonContainer owner;
+      private final GedcomDate date;
+      private final String place;
+
+      private Entry(EventFact eventFact, PersonFamilyCommonContainer owner, GedcomDate date) {
+         this.eventFact = eventFact;
+         this.owner = owner;
+         this.date = date;
+         this.place = Names.normalize(eventFact.getPlace());
+      }
+
+      public EventFact getEventFact() {
+         return eventFact;
+      }
+
+      /**
+       * The Person or Family the event belongs to
+       */
+      public PersonFamilyCommonContainer getOwner() {
+         return owner;
+      }
+
+      public GedcomDate getDate() {
+         return date;
+      }
+   }
+
+   private static final Comparator<Entry> BY_DATE = new Comparator<Entry>() {
+      public int compare(Entry e1, Entry e2) {
+         return e1.date.compareTo(e2.date);
+      }
+   };
+
+   /**
+    * The events for one tag, sorted by earliest day, with latest-day maxima over implicit subtrees
+    */
+   private static final class IntervalTree {
+      private final Entry[] entries;
+      private final int[] starts;
+      private final int[] ends;
+      private final int[] maxEnds;
+
+      IntervalTree(List<Entry> list) {
+         entries = list.toArray(new Entry[list.size()]);
+         Arrays.sort(entries, BY_DATE);
+         starts = new int[entries.length];
+         ends = new int[entries.length];
+         for (int i = 0; i < entries.length; i++) {
+            starts[i] = entries[i].date.getEarliest();
+            ends[i] = entries[i].date.getLatest();
+         }
+         maxEnds = new int[entries.length];
+         computeMaxEnds(0, entries.length);
+      }
+
+      /**
+       * The subtree over [lo, hi) has its root at the midpoint
+       */
+      private int computeMaxEnds(int lo, int hi) {
+         if (lo >= hi) {
+            return Integer.MIN_VALUE;
+         }
+         int mid = (lo + hi) >>> 1;
+         int max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+         maxEnds[mid] = max;
+         return max;
+      }
+
+      void find(int lo, int hi, int from, int to, String place, List<Entry> result) {
+         if (lo >= hi) {
+            return;
+         }
+         int mid = (lo + hi) >>> 1;
+         if (maxEnds[mid] < from) {
+            return;
+         }
+         find(lo, mid, from, to, place, result);
+         if (starts[mid] > to) {
+            return;
+         }
+         if (ends[mid] >= from && (place == null || place.equals(entries[mid].place))) {
+            result.add(entries[mid]);
+         }
+         find(mid + 1, hi, from, to, place, result);
+      }
+
+      int size() {
+         return entries.length;
+      }
+   }
+
+   private final Map<String, IntervalTree> trees = new HashMap<String, IntervalTree>();
+
+   public EventIntervalIndex(Gedcom gedcom) {
+      this(gedcom, new DateParser());
+   }
+
+   public EventIntervalIndex(Gedcom gedcom, DateParser dateParser) {
+      Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+      for (Person person : gedcom.getPeople()) {
+         add(entries, person, dateParser);
+      }
+      for (Family family : gedcom.getFamilies()) {
+         add(entries, family, dateParser);
+      }
+      for (Map.Entry<String, List<Entry>> entry : entries.entrySet()) {
+         trees.put(entry.getKey(), new IntervalTree(entry.getValue()));
+      }
+   }
+
+   private static void add(Map<String, List<Entry>> entries, PersonFamilyCommonContainer owner, DateParser dateParser) {
+      for (EventFact eventFact : owner.getEventsFacts()) {
+         String tag = normalizeTag(eventFact.getTag());
+         GedcomDate date = dateParser.parse(eventFact.getDate());
+         if (tag != null && date != null) {
+            List<Entry> list = entries.get(tag);
+            if (list == null) {
+               list = new ArrayList<Entry>();
+               entries.put(tag, list);
+            }
+            list.add(new Entry(eventFact, owner, date));
+         }
+      }
+   }
+
+   private static String normalizeTag(String tag) {
+      return tag != null ? tag.trim().toUpperCase(Locale.ROOT) : null;
+   }
+
+   /**
+    * Number of events indexed under tag, or under all tags if tag is null
+    */
+   public int size(String tag) {
+      if (tag != null) {
+         IntervalTree tree = trees.get(normalizeTag(tag));
+         return tree != null ? tree.size() : 0;
+      }
+      int size = 0;
+      for (IntervalTree tree : trees.values()) {
+         size += tree.size();
+      }
+      return size;
+   }
+
+   /**
+    * Events whose date can fall between the given Julian day numbers, inclusive
+    *
+    * @param tag event tag such as BIRT, or null for all tags
+    * @param place place to match after normalizing as {@link AttributeIndex} does, or null for any place
+    */
+   public List<Entry> find(String tag, int fromDay, int toDay, String place) {
+      String normalizedPlace = place != null ? Names.normalize(place) : null;
+      if (place != null && normalizedPlace == null) {
+         return Collections.emptyList();
+      }
+      List<Entry> result = new ArrayList<Entry>();
+      if (tag != null) {
+         IntervalTree tree = trees.get(normalizeTag(tag));
+         if (tree != null) {
+            tree.find(0, tree.size(), fromDay, toDay, normalizedPlace, result);
+         }
+      }
+      else {
+         for (IntervalTree tree : trees.values()) {
+            tree.find(0, tree.size(), fromDay, toDay, normalizedPlace, result);
+         }
+         Collections.sort(result, BY_DATE);
+      }
+      return result;
+   }
+
+   /**
+    * Events whose date can overlap date
+    */
+   public List<Entry> find(String tag, GedcomDate date, String place) {
+      return find(tag, date.getEarliest(), date.getLatest(), place);
+   }
+
+   /**
+    * Events whose date can fall between the start of fromYear and the end of toYear, Gregorian calendar
+    */
+   public List<Entry> findYears(String tag, int fromYear, int toYear, String place) {
+      return find(tag, GedcomDate.gregorianDay(fromYear, 1, 1), GedcomDate.gregorianDay(toYear, 12, 31), place);
+   }
+}
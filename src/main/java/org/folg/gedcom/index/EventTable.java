@@ -0,0 +1,409 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.date.GedcomDate;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.PersonFamilyCommonContainer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The events and facts of a Gedcom's people and families as a table with one row per event, stored by column in
+ * off-heap memory, for statistics over millions of events.
+ * <p>
+ * Each column is a direct, native-order buffer of ints: a code for the owning person or family, the tag, the earliest and
+ * latest day the date can mean (see {@link GedcomDate}), the date's flags, and dictionary codes for the place,
+ * the TYPE and the CAUS.  Places are {@link PlaceDictionary} ids, so the events within a jurisdiction are a
+ * range of place ids.  Owners are coded by position, people first and then families, and the table keeps only
+ * their ids, not the model objects.  Missing values are -1, as are the date flags of events without a date
+ * DateParser understands.
+ * <p>
+ * Queries are built from scans that touch only the columns they need, in simple loops over the buffers:
+ * {@link #select} and friends return the matching rows as a BitSet, which can be combined with BitSet's and/or,
+ * and {@link #count} and {@link #countByYears} group the selected rows.  The table is a read-only snapshot, so
+ * any number of threads may query it.
+ */
+public class EventTable {
+   public static final int NONE = -1;
+
+   public enum Column {
+      OWNER, TAG, EARLIEST, LATEST, DATE_FLAGS, PLACE, TYPE, CAUSE
+   }
+
+   /**
+    * Codes for the distinct values of a column, in order of first appearance
+    */
+   private static final class Dictionary {
+      private final Map<String, Integer> codes = new HashMap<String, Integer>();
+      private final List<String> values = new ArrayList<String>();
+
+      int code(String value) {
+         if (value == null) {
+            return NONE;
+         }
+         Integer code = codes.get(value);
+         if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+         }
+         return code;
+      }
+   }
+
+   private final int size;
+   private final IntBuffer[] columns = new IntBuffer[Column.values().length];
+   private final String[] ownerIds;
+   private final int personCount;
+   private final PlaceDictionary places;
+   private final String[] tags;
+   private final String[] types;
+   private final String[] causes;
+
+   public EventTable(Gedcom gedcom) {
+      this(gedcom, new DateParser());
+   }
+
+   public EventTable(Gedcom gedcom, DateParser dateParser) {
+      List<PersonFamilyCommonContainer> owners = new ArrayList<PersonFamilyCommonContainer>(
+            gedcom.getPeople().size() + gedcom.getFamilies().size());
+      owners.addAll(gedcom.getPeople());
+      owners.addAll(gedcom.getFamilies());
+      this.personCount = gedcom.getPeople().size();
+      this.ownerIds = new String[owners.size()];
+      int ownerCount = 0;
+      for (Person person : gedcom.getPeople()) {
+         ownerIds[ownerCount++] = person.getId();
+      }
+      for (Family family : gedcom.getFamilies()) {
+         ownerIds[ownerCount++] = family.getId();
+      }
+
+      // one dictionary event per row, so the dictionary's event numbers are row numbers
+      PlaceDictionary.Builder placeBuilder = new PlaceDictionary.Builder();
+      int rows = 0;
+      for (PersonFamilyCommonContainer owner : owners) {
+         for (EventFact eventFact : owner.getEventsFacts()) {
+            if (eventFact.getTag() != null) {
+               placeBuilder.addEvent(eventFact);
+               rows++;
+            }
+         }
+      }
+      this.places = placeBuilder.build();
+      size = rows;
+      for (Column column : Column.values()) {
+         columns[column.ordinal()] = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+      }
+
+      Dictionary tagCodes = new Dictionary();
+      Dictionary typeCodes = new Dictionary();
+      Dictionary causeCodes = new Dictionary();
+      int row = 0;
+      for (int owner = 0; owner < ownerIds.length; owner++) {
+         for (EventFact eventFact : owners.get(owner).getEventsFacts()) {
+            if (eventFact.getTag() == null) {
+               continue;
+            }
+            GedcomDate date = dateParser.parse(eventFact.getDate());
+            int place = places.getEventPlace(row);
+            put(Column.OWNER, row, owner);
+            put(Column.TAG, row, tagCodes.code(eventFact.getTag().toUpperCase(Locale.ROOT)));
+            put(Column.EARLIEST, row, date != null ? date.getEarliest() : 0);
+            put(Column.LATEST, row, date != null ? date.getLatest() : 0);
+            put(Column.DATE_FLAGS, row, date != null ? date.getFlags() : NONE);
+            put(Column.PLACE, row, place == PlaceDictionary.ROOT ? NONE : place);
+            put(Column.TYPE, row, typeCodes.code(Names.normalize(eventFact.getType())));
+            put(Column.CAUSE, row, causeCodes.code(Names.normalize(eventFact.getCause())));
+            row++;
+         }
+      }
+      tags = tagCodes.values.toArray(new String[tagCodes.values.size()]);
+      types = typeCodes.values.toArray(new String[typeCodes.values.size()]);
+      causes = causeCodes.values.toArray(new String[causeCodes.values.size()]);
+   }
+
+   private void put(Column column, int row, int value) {
+      columns[column.ordinal()].put(row, value);
+   }
+
+   /**
+    * Number of rows
+    */
+   public int size() {
+      return size;
+   }
+
+   public int get(Column column, int row) {
+      return columns[column.ordinal()].get(row);
+   }
+
+   /**
+    * A read-only view of a whole column, for scans the table doesn't provide
+    */
+   public IntBuffer getColumn(Column column) {
+      return columns[column.ordinal()].asReadOnlyBuffer();
+   }
+
+   /**
+    * The id of the Person or Family for a value of the OWNER column; look it up with Gedcom.getPerson or
+    * getFamily, as {@link #isPersonOwner} says
+    */
+   public String getOwner(int owner) {
+      return ownerIds[owner];
+   }
+
+   /**
+    * Whether a value of the OWNER column is a person rather than a family
+    */
+   public boolean isPersonOwner(int owner) {
+      return owner < personCount;
+   }
+
+   /**
+    * The dictionary that the PLACE column holds ids from; it counts the rows at each place but doesn't store
+    * their events, so select rows by place through this table
+    */
+   public PlaceDictionary getPlaces() {
+      return places;
+   }
+
+   /**
+    * @return the code of an upper-case tag, or NONE if no event has it
+    */
+   public int getTagCode(String tag) {
+      return indexOf(tags, tag.toUpperCase(Locale.ROOT));
+   }
+
+   public String getTag(int code) {
+      return tags[code];
+   }
+
+   /**
+    * @return the code of a TYPE value, compared after normalizing, or NONE if no event has it
+    */
+   public int getTypeCode(String type) {
+      return indexOf(types, Names.normalize(type));
+   }
+
+   /**
+    * The normalized TYPE value for a code
+    */
+   public String getType(int code) {
+      return types[code];
+   }
+
+   /**
+    * @return the code of a CAUS value, compared after normalizing, or NONE if no event has it
+    */
+   public int getCauseCode(String cause) {
+      return indexOf(causes, Names.normalize(cause));
+   }
+
+   /**
+    * The normalized CAUS value for a code
+    */
+   public String getCause(int code) {
+      return causes[code];
+   }
+
+   private static int indexOf(String[] values, String value) {
+      for (int i = 0; i < values.length; i++) {
+         if (values[i].equals(value)) {
+            return i;
+         }
+      }
+      return NONE;
+   }
+
+   /**
+    * Number of distinct values of a coded column, which are 0 up to this less one
+    */
+   public int getCardinality(Column column) {
+      switch (column) {
+         case OWNER:
+            return ownerIds.length;
+         case TAG:
+            return tags.length;
+         case PLACE:
+            return places.size();
+         case TYPE:
+            return types.length;
+         case CAUSE:
+            return causes.length;
+         default:
+            throw new IllegalArgumentException(column + " isn't a coded column");
+      }
+   }
+
+   /**
+    * Rows where column equals value
+    */
+   public BitSet select(Column column, int value) {
+      IntBuffer values = columns[column.ordinal()];
+      long[] words = new long[(size + 63) >>> 6];
+      for (int w = 0; w < words.length; w++) {
+         int base = w << 6;
+         int end = Math.min(64, size - base);
+         long word = 0;
+         for (int i = 0; i < end; i++) {
+            word |= (values.get(base + i) == value ? 1L : 0L) << i;
+         }
+         words[w] = word;
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * Rows where min &lt;= column &lt;= max; for example the events within a jurisdiction are the PLACE range
+    * from its id to its subtree end less one
+    */
+   public BitSet selectRange(Column column, int min, int max) {
+      if (min > max) {
+         return new BitSet();
+      }
+      IntBuffer values = columns[column.ordinal()];
+      // min <= v <= max is one unsigned comparison of v - min
+      int span = (max - min) ^ Integer.MIN_VALUE;
+      long[] words = new long[(size + 63) >>> 6];
+      for (int w = 0; w < words.length; w++) {
+         int base = w << 6;
+         int end = Math.min(64, size - base);
+         long word = 0;
+         for (int i = 0; i < end; i++) {
+            word |= (((values.get(base + i) - min) ^ Integer.MIN_VALUE) <= span ? 1L : 0L) << i;
+         }
+         words[w] = word;
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * Rows whose date can fall between fromDay and toDay, inclusive; undated rows never match
+    */
+   public BitSet selectDates(int fromDay, int toDay) {
+      IntBuffer earliest = columns[Column.EARLIEST.ordinal()];
+      IntBuffer latest = columns[Column.LATEST.ordinal()];
+      IntBuffer flags = columns[Column.DATE_FLAGS.ordinal()];
+      long[] words = new long[(size + 63) >>> 6];
+      for (int w = 0; w < words.length; w++) {
+         int base = w << 6;
+         int end = Math.min(64, size - base);
+         long word = 0;
+         for (int i = 0; i < end; i++) {
+            int row = base + i;
+            boolean match = earliest.get(row) <= toDay & latest.get(row) >= fromDay & flags.get(row) != NONE;
+            word |= (match ? 1L : 0L) << i;
+         }
+         words[w] = word;
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * Rows with the given tag
+    */
+   public BitSet selectTag(String tag) {
+      int code = getTagCode(tag);
+      return code != NONE ? select(Column.TAG, code) : new BitSet();
+   }
+
+   /**
+    * Count the rows by the value of a coded column
+    *
+    * @param rows the rows to count, or null for all
+    * @return counts indexed by value; rows where the column is NONE aren't counted
+    */
+   public long[] count(Column groupBy, BitSet rows) {
+      IntBuffer values = columns[groupBy.ordinal()];
+      long[] counts = new long[getCardinality(groupBy)];
+      if (rows == null) {
+         for (int row = 0; row < size; row++) {
+            int value = values.get(row);
+            if (value != NONE) {
+               counts[value]++;
+            }
+         }
+      }
+      else {
+         for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+            int value = values.get(row);
+            if (value != NONE) {
+               counts[value]++;
+            }
+         }
+      }
+      return counts;
+   }
+
+   /**
+    * Count the rows by period, such as births per decade: each dated row with a bounded date is counted in the
+    * period containing the middle of its range
+    *
+    * @param rows the rows to count, or null for all
+    * @param years length of each period; periods start at multiples of it
+    * @return counts by the first year of each period
+    */
+   public SortedMap<Integer, Long> countByYears(BitSet rows, int years) {
+      IntBuffer earliest = columns[Column.EARLIEST.ordinal()];
+      IntBuffer latest = columns[Column.LATEST.ordinal()];
+      IntBuffer flags = columns[Column.DATE_FLAGS.ordinal()];
+      if (rows == null) {
+         rows = new BitSet(size);
+         rows.set(0, size);
+      }
+      // count by day first, then convert each distinct middle day to a year once
+      Map<Integer, long[]> byDay = new HashMap<Integer, long[]>();
+      for (int row = rows.nextSetBit(0); row >= 0 && row < size; row = rows.nextSetBit(row + 1)) {
+         int from = earliest.get(row);
+         int to = latest.get(row);
+         if (flags.get(row) != NONE && from != GedcomDate.UNBOUNDED_START && to != GedcomDate.UNBOUNDED_END) {
+            int middle = from + (to - from) / 2;
+            long[] count = byDay.get(middle);
+            if (count == null) {
+               byDay.put(middle, new long[] {1});
+            }
+            else {
+               count[0]++;
+            }
+         }
+      }
+      SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+      for (Map.Entry<Integer, long[]> entry : byDay.entrySet()) {
+         int year = GedcomDate.toLocalDate(entry.getKey()).getYear();
+         int period = Math.floorDiv(year, years) * years;
+         Long count = counts.get(period);
+         counts.put(period, (count != null ? count : 0L) + entry.getValue()[0]);
+      }
+      return counts;
+   }
+}
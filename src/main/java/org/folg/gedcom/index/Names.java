@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.model.Name;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Name and text helpers shared by the indexes and the duplicate detector
+ */
+public final class Names {
+   private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+   private static final Pattern SEPARATORS = Pattern.compile("[\\s,.]+");
+
+   private Names() {
+   }
+
+   /**
+    * Lower-case text, remove accents, and collapse runs of spaces and punctuation to single spaces
+    *
+    * @return null if nothing is left
+    */
+   public static String normalize(String text) {
+      if (text == null) {
+         return null;
+      }
+      boolean ascii = true;
+      for (int i = 0; i < text.length() && ascii; i++) {
+         ascii = text.charAt(i) < 128;
+      }
+      if (!ascii) {
+         text = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+      }
+      text = SEPARATORS.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+      return text.isEmpty() ? null : text;
+   }
+
+   /**
+    * The surname: Name.getSurname if set, else the part of the value between slashes
+    */
+   public static String getSurname(Name name) {
+      String surname = name.getSurname();
+      if (surname == null && name.getValue() != null) {
+         String value = name.getValue();
+         int start = value.indexOf('/');
+         if (start >= 0) {
+            int end = value.indexOf('/', start + 1);
+            surname = end > start ? value.substring(start + 1, end) : value.substring(start + 1);
+         }
+      }
+      return surname;
+   }
+
+   /**
+    * The given names: Name.getGiven if set, else the part of the value before the surname
+    */
+   public static String getGiven(Name name) {
+      String given = name.getGiven();
+      if (given == null && name.getValue() != null) {
+         String value = name.getValue();
+         int start = value.indexOf('/');
+         given = start >= 0 ? value.substring(0, start) : value;
+      }
+      return given;
+   }
+
+   /**
+    * The letters a-z of the normalized text, or null if there are none
+    */
+   public static String letters(String text) {
+      String normalized = normalize(text);
+      if (normalized == null) {
+         return null;
+      }
+      StringBuilder buf = new StringBuilder(normalized.length());
+      for (int i = 0; i < normalized.length(); i++) {
+         char c = normalized.charAt(i);
+         if (c >= 'a' && c <= 'z') {
+            buf.append(c);
+         }
+      }
+      return buf.length() > 0 ? buf.toString() : null;
+   }
+
+   /**
+    * The normalized words of text
+    */
+   public static List<String> words(String text) {
+      String normalized = normalize(text);
+      if (normalized == null) {
+         return Collections.emptyList();
+      }
+      List<String> words = new ArrayList<String>();
+      for (String word : normalized.split(" ")) {
+         words.add(word);
+      }
+      return words;
+   }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomListener;
+import org.folg.gedcom.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Base for indexes that map keys to posting lists of people.
+ * <p>
+ * People are numbered in {@link Gedcom#getPeople} order.  The postings are built in parallel over chunks of
+ * people, and afterwards people added through {@link Gedcom#addPerson} are numbered and indexed as they
+ * arrive.  People removed through {@link Gedcom#removePerson} keep their numbers but are marked removed and
+ * left out of query results.  Subclasses read their postings inside {@link #lock}'s read lock and pass their
+ * results through {@link #withoutRemoved}.
+ * <p>
+ * An index listens to its Gedcom until it is closed, and stays reachable from the Gedcom until then, so close
+ * indexes you are done with, or open them in a try-with-resources statement.
+ */
+abstract class PersonIndex implements GedcomListener, AutoCloseable {
+   private static final int MIN_CHUNK_SIZE = 4096;
+
+   private final Gedcom gedcom;
+   private final List<Person> people;
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+   private PostingsMap[] postings;
+   private final BitSet removed = new BitSet();
+
+   PersonIndex(Gedcom gedcom) {
+      this.gedcom = gedcom;
+      this.people = new ArrayList<Person>(gedcom.getPeople());
+   }
+
+   /**
+    * Index the people, then start listening for added people.  Call at the end of the subclass constructor.
+    *
+    * @param mapCount number of separate key spaces the subclass uses
+    */
+   final void build(final int mapCount, ForkJoinPool pool) {
+      int chunkSize = Math.max(MIN_CHUNK_SIZE, people.size() / (pool.getParallelism() * 4) + 1);
+      List<ForkJoinTask<PostingsMap[]>> tasks = new ArrayList<ForkJoinTask<PostingsMap[]>>();
+      for (int start = 0; start < people.size(); start += chunkSize) {
+         final int from = start;
+         final int to = Math.min(start + chunkSize, people.size());
+         tasks.add(pool.submit(new Callable<PostingsMap[]>() {
+            public PostingsMap[] call() {
+               PostingsMap[] chunk = newPostings(mapCount);
+               for (int number = from; number < to; number++) {
+                  index(chunk, people.get(number), number);
+               }
+               return chunk;
+            }
+         }));
+      }
+      // chunks cover ascending ranges of numbers, so appending them in order keeps each list sorted
+      PostingsMap[] result = newPostings(mapCount);
+      for (ForkJoinTask<PostingsMap[]> task : tasks) {
+         PostingsMap[] chunk = task.join();
+         for (int i = 0; i < mapCount; i++) {
+            result[i].append(chunk[i]);
+         }
+      }
+      postings = result;
+      gedcom.addListener(this);
+   }
+
+   private static PostingsMap[] newPostings(int mapCount) {
+      PostingsMap[] postings = new PostingsMap[mapCount];
+      for (int i = 0; i < mapCount; i++) {
+         postings[i] = new PostingsMap();
+      }
+      return postings;
+   }
+
+   /**
+    * Add person's keys to postings; called from several threads at once during the build
+    */
+   abstract void index(PostingsMap[] postings, Person person, int number);
+
+   /**
+    * The postings; read them inside readLock
+    */
+   final PostingsMap[] postings() {
+      return postings;
+   }
+
+   final ReadWriteLock lock() {
+      return lock;
+   }
+
+   /**
+    * Index a person added to the Gedcom
+    */
+   public void recordAdded(ExtensionContainer record) {
+      if (record instanceof Person) {
+         lock.writeLock().lock();
+         try {
+            people.add((Person)record);
+            index(postings, (Person)record, people.size() - 1);
+         }
+         finally {
+            lock.writeLock().unlock();
+         }
+      }
+   }
+
+   /**
+    * Mark a person removed from the Gedcom, so queries no longer return them
+    */
+   public void recordRemoved(ExtensionContainer record) {
+      if (record instanceof Person) {
+         lock.writeLock().lock();
+         try {
+            // removals are rare, so find the number by scanning rather than keeping a map from person to number
+            for (int number = people.size() - 1; number >= 0; number--) {
+               if (people.get(number) == record && !removed.get(number)) {
+                  removed.set(number);
+                  break;
+               }
+            }
+         }
+         finally {
+            lock.writeLock().unlock();
+         }
+      }
+   }
+
+   /**
+    * Drop the numbers of removed people from an ascending list of numbers; call inside the read lock
+    */
+   final int[] withoutRemoved(int[] numbers) {
+      if (removed.isEmpty()) {
+         return numbers;
+      }
+      int[] result = new int[numbers.length];
+      int count = 0;
+      for (int number : numbers) {
+         if (!removed.get(number)) {
+            result[count++] = number;
+         }
+      }
+      return count == numbers.length ? numbers : Arrays.copyOf(result, count);
+   }
+
+   /**
+    * Whether the person with this number has been removed from the Gedcom
+    */
+   public boolean isRemoved(int number) {
+      lock.readLock().lock();
+      try {
+         return removed.get(number);
+      }
+      finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Stop listening to the Gedcom for added and removed people
+    */
+   @Override
+   public void close() {
+      gedcom.removeListener(this);
+   }
+
+   /**
+    * Number of people indexed, including removed people, whose numbers aren't reused
+    */
+   public int size() {
+      lock.readLock().lock();
+      try {
+         return people.size();
+      }
+      finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   public Person getPerson(int number) {
+      lock.readLock().lock();
+      try {
+         return people.get(number);
+      }
+      finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   public List<Person> getPeople(int[] numbers) {
+      lock.readLock().lock();
+      try {
+         List<Person> result = new ArrayList<Person>(numbers.length);
+         for (int number : numbers) {
+            result.add(people.get(number));
+         }
+         return result;
+      }
+      finally {
+         lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Map from key to the people who have it
+    */
+   static final class PostingsMap {
+      private final Map<String, Postings> map = new HashMap<String, Postings>();
+
+      void add(String key, int number) {
+         if (key != null) {
+            Postings list = map.get(key);
+            if (list == null) {
+               list = new Postings();
+               map.put(key, list);
+            }
+            list.add(number);
+         }
+      }
+
+      Postings get(String key) {
+         return map.get(key);
+      }
+
+      /**
+       * Append the postings of a map whose numbers are all larger than this map's
+       */
+      void append(PostingsMap later) {
+         for (Map.Entry<String, Postings> entry : later.map.entrySet()) {
+            Postings existing = map.get(entry.getKey());
+            if (existing == null) {
+               map.put(entry.getKey(), entry.getValue());
+            }
+            else {
+               existing.addAll(entry.getValue());
+            }
+         }
+      }
+   }
+}
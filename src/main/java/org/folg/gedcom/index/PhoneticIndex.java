@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.apache.commons.codec.language.DaitchMokotoffSoundex;
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.codec.language.Soundex;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Index of a Gedcom's people by the phonetic codes of their surnames, for finding people whose surname sounds
+ * like a given one.
+ * <p>
+ * The surname is {@link Name#getSurname} or else the part of {@link Name#getValue} between slashes; accents,
+ * spaces and punctuation are removed before encoding.  Some encodings give a surname more than one code
+ * (Double Metaphone's alternate code, Daitch-Mokotoff's branches), and a lookup matches people sharing any
+ * code with the query.  Each distinct surname is encoded once and its codes cached, as large trees repeat
+ * surnames many times.
+ * <p>
+ * Like {@link AttributeIndex}, the index is built in parallel, numbers people in {@link Gedcom#getPeople}
+ * order, and indexes people added through {@link Gedcom#addPerson} until it is closed.
+ */
+public class PhoneticIndex extends PersonIndex {
+   public enum Encoding {
+      SOUNDEX, DOUBLE_METAPHONE, DAITCH_MOKOTOFF
+   }
+
+   private static final String[] NO_CODES = new String[0];
+
+   private final Encoding encoding;
+   private final Soundex soundex = Soundex.US_ENGLISH;
+   private final DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+   private final DaitchMokotoffSoundex daitchMokotoff = new DaitchMokotoffSoundex();
+   private final ConcurrentHashMap<String, String[]> codes = new ConcurrentHashMap<String, String[]>();
+
+   public PhoneticIndex(Gedcom gedcom, Encoding encoding) {
+      this(gedcom, encoding, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * @param pool pool to build the index on
+    */
+   public PhoneticIndex(Gedcom gedcom, Encoding encoding, ForkJoinPool pool) {
+      super(gedcom);
+      this.encoding = encoding;
+      build(1, pool);
+   }
+
+   public Encoding getEncoding() {
+      return encoding;
+   }
+
+   void index(PostingsMap[] postings, Person person, int number) {
+      for (Name name : person.getNames()) {
+         String surname = Names.letters(Names.getSurname(name));
+         if (surname != null) {
+            String[] surnameCodes = codes.get(surname);
+            if (surnameCodes == null) {
+               surnameCodes = encodeClean(surname);
+               codes.putIfAbsent(surname, surnameCodes);
+            }
+            for (String code : surnameCodes) {
+               postings[0].add(code, number);
+            }
+         }
+      }
+   }
+
+   /**
+    * The codes for surname under this index's encoding
+    */
+   public String[] encode(String surname) {
+      String cleaned = Names.letters(surname);
+      if (cleaned == null) {
+         return NO_CODES;
+      }
+      String[] cached = codes.get(cleaned);
+      return (cached != null ? cached : encodeClean(cleaned)).clone();
+   }
+
+   /**
+    * Numbers of the people with a surname that sounds like surname, ascending
+    */
+   public int[] find(String surname) {
+      String[] queryCodes = encode(surname);
+      lock().readLock().lock();
+      try {
+         int[] result = Postings.EMPTY;
+         for (String code : queryCodes) {
+            Postings list = postings()[0].get(code);
+            if (list != null) {
+               result = Postings.union(result, result.length, list.values(), list.size());
+            }
+         }
+         return withoutRemoved(result);
+      }
+      finally {
+         lock().readLock().unlock();
+      }
+   }
+
+   /**
+    * The people with a surname that sounds like surname
+    */
+   public List<Person> findPeople(String surname) {
+      return getPeople(find(surname));
+   }
+
+   private String[] encodeClean(String surname) {
+      Set<String> result = new LinkedHashSet<String>();
+      switch (encoding) {
+         case SOUNDEX:
+            result.add(soundex.soundex(surname));
+            break;
+         case DOUBLE_METAPHONE:
+            result.add(doubleMetaphone.doubleMetaphone(surname, false));
+            result.add(doubleMetaphone.doubleMetaphone(surname, true));
+            break;
+         case DAITCH_MOKOTOFF:
+            for (String code : daitchMokotoff.soundex(surname).split("\\|")) {
+               result.add(code);
+            }
+            break;
+      }
+      result.remove("");
+      result.remove(null);
+      return result.toArray(new String[result.size()]);
+   }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.PersonFamilyCommonContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The places of a Gedcom's events as a hierarchy of jurisdictions.
+ * <p>
+ * A place such as "Springfield, Sangamon, Illinois, USA" is split at commas and stored as the path
+ * USA / Illinois / Sangamon / Springfield, so places sharing broader jurisdictions share those nodes.
+ * Jurisdictions are matched after normalizing as {@link AttributeIndex} does, and keep the spelling they
+ * were first seen with.  Empty jurisdictions are skipped.
+ * <p>
+ * Nodes are numbered in preorder from the root, node 0, so the places within a node are exactly the ids
+ * from the node up to {@link #getSubtreeEnd}, and "is X within Illinois" is two comparisons.
+ * <p>
+ * Events added are numbered in the order they were added, and the dictionary keeps only ints for them: each
+ * event's place id, and the event numbers sorted by place id, so the events within a node are one contiguous
+ * run and counting them takes constant time.  It holds no references to the events or their owners; callers
+ * that walk the same events in the same order match them up by number.
+ * <p>
+ * Use {@link #PlaceDictionary(Gedcom)} for a whole Gedcom, or a {@link Builder} to add places as records
+ * stream past.  A dictionary is read-only once built.
+ */
+public class PlaceDictionary {
+   public static final int ROOT = 0;
+
+   private final String[] names;
+   private final String[] keys;
+   private final int[] parents;
+   private final int[] subtreeEnds;
+   // children of id are childIds[childOffsets[id]] .. childIds[childOffsets[id+1]-1], sorted by key
+   private final int[] childOffsets;
+   private final int[] childIds;
+   // counts, and events with places, of ids below id
+   private final int[] countOffsets;
+   private final int[] eventOffsets;
+   // place id of each event, and event numbers sorted by place id
+   private final int[] eventPlaces;
+   private final int[] eventsByPlace;
+
+   /**
+    * Index the places of the events of all people and families
+    */
+   public PlaceDictionary(Gedcom gedcom) {
+      this(buildFrom(gedcom));
+   }
+
+   private static Builder buildFrom(Gedcom gedcom) {
+      Builder builder = new Builder();
+      for (Person person : gedcom.getPeople()) {
+         builder.addEvents(person);
+      }
+      for (Family family : gedcom.getFamilies()) {
+         builder.addEvents(family);
+      }
+      return builder;
+   }
+
+   private PlaceDictionary(Builder builder) {
+      // number the nodes in preorder
+      List<Node> order = new ArrayList<Node>();
+      List<Node> stack = new ArrayList<Node>();
+      stack.add(builder.root);
+      while (!stack.isEmpty()) {
+         Node node = stack.remove(stack.size() - 1);
+         node.id = order.size();
+         order.add(node);
+         List<Node> children = new ArrayList<Node>(node.children.values());
+         for (int i = children.size() - 1; i >= 0; i--) {
+            stack.add(children.get(i));
+         }
+      }
+      int size = order.size();
+      names = new String[size];
+      keys = new String[size];
+      parents = new int[size];
+      subtreeEnds = new int[size];
+      childOffsets = new int[size + 1];
+      childIds = new int[size - 1];
+      countOffsets = new int[size + 1];
+      eventOffsets = new int[size + 1];
+      for (Node node : order) {
+         int id = node.id;
+         names[id] = node.name;
+         keys[id] = node.key;
+         parents[id] = node.parent != null ? node.parent.id : -1;
+         childOffsets[id + 1] = childOffsets[id] + node.children.size();
+         int pos = childOffsets[id];
+         for (Node child : node.children.values()) {
+            childIds[pos++] = child.id;
+         }
+         countOffsets[id + 1] = countOffsets[id] + node.count;
+         eventOffsets[id + 1] = eventOffsets[id] + node.eventCount;
+      }
+      // a node's subtree ends where its last child's subtree ends
+      for (int id = size - 1; id >= 0; id--) {
+         subtreeEnds[id] = childOffsets[id + 1] > childOffsets[id] ? subtreeEnds[childIds[childOffsets[id + 1] - 1]] : id + 1;
+      }
+      eventPlaces = new int[builder.eventNodes.size()];
+      eventsByPlace = new int[eventOffsets[size]];
+      int[] next = Arrays.copyOf(eventOffsets, size);
+      for (int event = 0; event < eventPlaces.length; event++) {
+         Node node = builder.eventNodes.get(event);
+         eventPlaces[event] = node != null ? node.id : ROOT;
+         if (node != null) {
+            eventsByPlace[next[node.id]++] = event;
+         }
+      }
+   }
+
+   /**
+    * Number of nodes, including the root
+    */
+   public int size() {
+      return names.length;
+   }
+
+   /**
+    * @return id of the node for place, ROOT for an empty place, or -1 if the place isn't in the dictionary
+    */
+   public int lookup(String place) {
+      int id = ROOT;
+      if (place != null) {
+         String[] jurisdictions = place.split(",");
+         for (int i = jurisdictions.length - 1; i >= 0 && id >= 0; i--) {
+            String key = Names.normalize(jurisdictions[i]);
+            if (key != null) {
+               id = findChild(id, key);
+            }
+         }
+      }
+      return id;
+   }
+
+   private int findChild(int id, String key) {
+      int low = childOffsets[id];
+      int high = childOffsets[id + 1] - 1;
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+         int cmp = keys[childIds[mid]].compareTo(key);
+         if (cmp < 0) {
+            low = mid + 1;
+         }
+         else if (cmp > 0) {
+            high = mid - 1;
+         }
+         else {
+            return childIds[mid];
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * The jurisdiction's own name, such as "Illinois"; empty for the root
+    */
+   public String getName(int id) {
+      return names[id];
+   }
+
+   /**
+    * The full place, such as "Sangamon, Illinois, USA"
+    */
+   public String getFullName(int id) {
+      StringBuilder buf = new StringBuilder();
+      for (int node = id; node > ROOT; node = parents[node]) {
+         if (buf.length() > 0) {
+            buf.append(", ");
+         }
+         buf.append(names[node]);
+      }
+      return buf.toString();
+   }
+
+   /**
+    * @return the broader jurisdiction, or -1 for the root
+    */
+   public int getParent(int id) {
+      return parents[id];
+   }
+
+   /**
+    * Number of jurisdictions above id, 0 for the root
+    */
+   public int getDepth(int id) {
+      int depth = 0;
+      for (int node = id; node > ROOT; node = parents[node]) {
+         depth++;
+      }
+      return depth;
+   }
+
+   public int[] getChildren(int id) {
+      return Arrays.copyOfRange(childIds, childOffsets[id], childOffsets[id + 1]);
+   }
+
+   /**
+    * One past the last id within id
+    */
+   public int getSubtreeEnd(int id) {
+      return subtreeEnds[id];
+   }
+
+   /**
+    * Whether place id is jurisdiction or lies within it
+    */
+   public boolean isWithin(int id, int jurisdiction) {
+      return id >= jurisdiction && id < subtreeEnds[jurisdiction];
+   }
+
+   /**
+    * Number of times exactly this place was added
+    */
+   public int getCount(int id) {
+      return countOffsets[id + 1] - countOffsets[id];
+   }
+
+   /**
+    * Number of times this place or a place within it was added
+    */
+   public int getSubtreeCount(int id) {
+      return countOffsets[subtreeEnds[id]] - countOffsets[id];
+   }
+
+   /**
+    * Number of events added, with or without places
+    */
+   public int getEventCount() {
+      return eventPlaces.length;
+   }
+
+   /**
+    * Place id of an event, by the number it was given when added; ROOT if it has no place
+    */
+   public int getEventPlace(int event) {
+      return eventPlaces[event];
+   }
+
+   /**
+    * Numbers of the events at this place or within it, in place id order
+    */
+   public int[] getEventsWithin(int id) {
+      return Arrays.copyOfRange(eventsByPlace, eventOffsets[id], eventOffsets[subtreeEnds[id]]);
+   }
+
+   /**
+    * Number of events at this place or within it
+    */
+   public int getEventCountWithin(int id) {
+      return eventOffsets[subtreeEnds[id]] - eventOffsets[id];
+   }
+
+   /**
+    * Builds a PlaceDictionary one place at a time
+    */
+   public static class Builder {
+      private final Node root = new Node(null, "", "");
+      // node of each event added, or null for an event without a place
+      private final List<Node> eventNodes = new ArrayList<Node>();
+
+      /**
+       * Count a place without storing an event, for streaming
+       *
+       * @return false if the place is empty
+       */
+      public boolean addPlace(String place) {
+         Node node = insert(place);
+         if (node == null) {
+            return false;
+         }
+         node.count++;
+         return true;
+      }
+
+      /**
+       * Count the event's place, if it has one, and number the event
+       *
+       * @return the event's number, which {@link PlaceDictionary#getEventPlace} maps to its place id
+       */
+      public int addEvent(EventFact eventFact) {
+         Node node = insert(eventFact.getPlace());
+         if (node != null) {
+            node.count++;
+            node.eventCount++;
+         }
+         eventNodes.add(node);
+         return eventNodes.size() - 1;
+      }
+
+      public void addEvents(PersonFamilyCommonContainer owner) {
+         for (EventFact eventFact : owner.getEventsFacts()) {
+            addEvent(eventFact);
+         }
+      }
+
+      private Node insert(String place) {
+         if (place == null) {
+            return null;
+         }
+         Node node = root;
+         String[] jurisdictions = place.split(",");
+         for (int i = jurisdictions.length - 1; i >= 0; i--) {
+            String key = Names.normalize(jurisdictions[i]);
+            if (key != null) {
+               Node child = node.children.get(key);
+               if (child == null) {
+                  child = new Node(node, jurisdictions[i].trim(), key);
+                  node.children.put(key, child);
+               }
+               node = child;
+            }
+         }
+         return node == root ? null : node;
+      }
+
+      public PlaceDictionary build() {
+         return new PlaceDictionary(this);
+      }
+   }
+
+   private static final class Node {
+      final Node parent;
+      final String name;
+      final String key;
+      final TreeMap<String, Node> children = new TreeMap<String, Node>();
+      int id;
+      int count;
+      int eventCount;
+
+      Node(Node parent, String name, String key) {
+         this.parent = parent;
+         this.name = name;
+         this.key = key;
+      }
+   }
+}
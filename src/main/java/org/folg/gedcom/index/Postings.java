@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of person numbers in ascending order, with the set operations the indexes combine them with
+ */
+final class Postings {
+   static final int[] EMPTY = new int[0];
+
+   private int[] values = new int[4];
+   private int size = 0;
+
+   /**
+    * Add a number no smaller than the last one; adding the last number again does nothing
+    */
+   void add(int value) {
+      if (size > 0 && values[size - 1] == value) {
+         return;
+      }
+      if (size == values.length) {
+         values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+   }
+
+   /**
+    * Append all of other's numbers, which must all be larger than this list's
+    */
+   void addAll(Postings other) {
+      if (size + other.size > values.length) {
+         values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+      }
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+   }
+
+   int size() {
+      return size;
+   }
+
+   int[] toArray() {
+      return Arrays.copyOf(values, size);
+   }
+
+   /**
+    * Numbers in both lists.  When one list is much shorter, its numbers are found in the longer one by
+    * galloping search instead of walking both lists.
+    */
+   static int[] intersect(int[] a, int aSize, int[] b, int bSize) {
+      if (aSize > bSize) {
+         return intersect(b, bSize, a, aSize);
+      }
+      int[] result = new int[aSize];
+      int count = 0;
+      if (aSize * 16 < bSize) {
+         int low = 0;
+         for (int i = 0; i < aSize && low < bSize; i++) {
+            int target = a[i];
+            int step = 1;
+            int high = low;
+            while (high < bSize && b[high] < target) {
+               low = high + 1;
+               high += step;
+               step <<= 1;
+            }
+            int pos = Arrays.binarySearch(b, low, Math.min(high + 1, bSize), target);
+            if (pos >= 0) {
+               result[count++] = target;
+               low = pos + 1;
+            }
+            else {
+               low = -pos - 1;
+            }
+         }
+      }
+      else {
+         int i = 0;
+         int j = 0;
+         while (i < aSize && j < bSize) {
+            if (a[i] < b[j]) {
+               i++;
+            }
+            else if (a[i] > b[j]) {
+               j++;
+            }
+            else {
+               result[count++] = a[i];
+               i++;
+               j++;
+            }
+         }
+      }
+      return count == result.length ? result : Arrays.copyOf(result, count);
+   }
+
+   /**
+    * Numbers in either list
+    */
+   static int[] union(int[] a, int aSize, int[] b, int bSize) {
+      int[] result = new int[aSize + bSize];
+      int count = 0;
+      int i = 0;
+      int j = 0;
+      while (i < aSize || j < bSize) {
+         int next;
+         if (j == bSize || (i < aSize && a[i] < b[j])) {
+            next = a[i++];
+         }
+         else if (i == aSize || b[j] < a[i]) {
+            next = b[j++];
+         }
+         else {
+            next = a[i++];
+            j++;
+         }
+         result[count++] = next;
+      }
+      return count == result.length ? result : Arrays.copyOf(result, count);
+   }
+
+   int[] values() {
+      return values;
+   }
+}
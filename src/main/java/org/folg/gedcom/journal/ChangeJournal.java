@@ -0,0 +1,366 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.journal;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomListener;
+import org.folg.gedcom.model.Media;
+import org.folg.gedcom.model.Note;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.Repository;
+import org.folg.gedcom.model.Source;
+import org.folg.gedcom.model.Submitter;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.parser.RecordHandler;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.xml.sax.SAXParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of changes to a Gedcom's top-level records, so saving an edit costs a write the size of
+ * the edited record instead of rewriting the whole file.
+ * <p>
+ * The journal listens to the Gedcom: records added through the add methods, removed through the remove methods,
+ * or reported through {@link Gedcom#notifyRecordUpdated} are appended to the journal file as GEDCOM fragments.
+ * Each entry is a line <code>#ADD INDI I1</code>, <code>#UPDATE ...</code> or <code>#REMOVE ...</code>, the
+ * record's lines for ADD and UPDATE, and a closing <code>#END</code> line, so an entry cut short by a crash is
+ * ignored on replay.  Records must have ids; header and submission changes aren't journaled.
+ * <p>
+ * To load, parse the GEDCOM file and {@link #replay} the journal onto it, then open a journal on the same file to
+ * keep recording.  {@link #compact} writes the full GEDCOM and empties the journal.  Replay only keeps the last
+ * entry for each record, so replaying entries that were already compacted into the file is harmless.
+ */
+public class ChangeJournal implements GedcomListener, Closeable {
+   private static final String ADD = "ADD";
+   private static final String UPDATE = "UPDATE";
+   private static final String REMOVE = "REMOVE";
+   private static final String END = "#END";
+
+   /**
+    * The kinds of top-level record that are journaled
+    */
+   private enum RecordType {
+      INDI(Person.class) {
+         String getId(ExtensionContainer record) { return ((Person)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getPeople(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setPeople((List<Person>)records); }
+      },
+      FAM(Family.class) {
+         String getId(ExtensionContainer record) { return ((Family)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getFamilies(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setFamilies((List<Family>)records); }
+      },
+      OBJE(Media.class) {
+         String getId(ExtensionContainer record) { return ((Media)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getMedia(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setMedia((List<Media>)records); }
+      },
+      NOTE(Note.class) {
+         String getId(ExtensionContainer record) { return ((Note)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getNotes(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setNotes((List<Note>)records); }
+      },
+      SOUR(Source.class) {
+         String getId(ExtensionContainer record) { return ((Source)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getSources(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setSources((List<Source>)records); }
+      },
+      REPO(Repository.class) {
+         String getId(ExtensionContainer record) { return ((Repository)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getRepositories(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setRepositories((List<Repository>)records); }
+      },
+      SUBM(Submitter.class) {
+         String getId(ExtensionContainer record) { return ((Submitter)record).getId(); }
+         List<? extends ExtensionContainer> getRecords(Gedcom gedcom) { return gedcom.getSubmitters(); }
+         @SuppressWarnings("unchecked")
+         void setRecords(Gedcom gedcom, List<?> records) { gedcom.setSubmitters((List<Submitter>)records); }
+      };
+
+      private final Class<? extends ExtensionContainer> recordClass;
+
+      RecordType(Class<? extends ExtensionContainer> recordClass) {
+         this.recordClass = recordClass;
+      }
+
+      abstract String getId(ExtensionContainer record);
+      abstract List<? extends ExtensionContainer> getRecords(Gedcom gedcom);
+      abstract void setRecords(Gedcom gedcom, List<?> records);
+
+      static RecordType of(ExtensionContainer record) {
+         for (RecordType type : values()) {
+            if (type.recordClass.isInstance(record)) {
+               return type;
+            }
+         }
+         return null;
+      }
+   }
+
+   private final Gedcom gedcom;
+   private final File file;
+   private final FileOutputStream stream;
+   private final Writer out;
+   private final GedcomWriter gedcomWriter = new GedcomWriter();
+   private boolean sync = false;
+
+   /**
+    * Open file for appending, creating it if necessary, and start recording changes to gedcom
+    */
+   public ChangeJournal(Gedcom gedcom, File file) throws IOException {
+      this.gedcom = gedcom;
+      this.file = file;
+      truncateIncompleteEntry(file);
+      this.stream = new FileOutputStream(file, true);
+      this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+      gedcom.addListener(this);
+   }
+
+   /**
+    * Drop an entry left incomplete by a crash, so the next entry doesn't start in the middle of its last line
+    */
+   private static void truncateIncompleteEntry(File file) throws IOException {
+      if (file.exists()) {
+         byte[] contents = Files.readAllBytes(file.toPath());
+         String text = new String(contents, StandardCharsets.ISO_8859_1);
+         int end = text.lastIndexOf("\n" + END + "\n");
+         int length = end >= 0 ? end + END.length() + 2 : text.startsWith(END + "\n") ? END.length() + 1 : 0;
+         if (length < contents.length) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+               raf.setLength(length);
+            } finally {
+               raf.close();
+            }
+         }
+      }
+   }
+
+   /**
+    * Force each entry to disk before returning from the edit; slower, but no acknowledged edit is lost
+    * if the machine crashes
+    */
+   public void setSync(boolean sync) {
+      this.sync = sync;
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   public void recordAdded(ExtensionContainer record) {
+      append(ADD, record);
+   }
+
+   public void recordUpdated(ExtensionContainer record) {
+      append(UPDATE, record);
+   }
+
+   public void recordRemoved(ExtensionContainer record) {
+      append(REMOVE, record);
+   }
+
+   private synchronized void append(String operation, ExtensionContainer record) {
+      RecordType type = RecordType.of(record);
+      if (type == null) {
+         return;
+      }
+      String id = type.getId(record);
+      if (id == null) {
+         throw new IllegalArgumentException("Can't journal a " + type + " record without an id");
+      }
+      try {
+         // write the entry in one piece, so a failure part way through writing the record leaves no trace
+         StringWriter entry = new StringWriter();
+         entry.write("#" + operation + " " + type + " " + id + "\n");
+         if (!REMOVE.equals(operation)) {
+            gedcomWriter.writeRecord(record, entry);
+         }
+         entry.write(END + "\n");
+         out.write(entry.toString());
+         out.flush();
+         if (sync) {
+            stream.getFD().sync();
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Write the whole Gedcom to gedcomFile, replacing it atomically, then empty the journal
+    */
+   public synchronized void compact(File gedcomFile) throws IOException {
+      out.flush();
+      writeAtomically(gedcom, gedcomFile);
+      stream.getChannel().truncate(0);
+      if (sync) {
+         stream.getFD().sync();
+      }
+   }
+
+   /**
+    * Stop recording changes and close the file
+    */
+   public synchronized void close() throws IOException {
+      gedcom.removeListener(this);
+      out.close();
+   }
+
+   /**
+    * Apply the complete entries in journalFile to gedcom: records added or updated replace the record with the same
+    * id, or are appended if there is none, and removed records are dropped.  Changes are made to the record lists
+    * directly, so listeners, including any journal, aren't told about them.
+    *
+    * @return the number of entries applied; 0 if journalFile doesn't exist
+    */
+   public static int replay(Gedcom gedcom, File journalFile) throws IOException, SAXParseException {
+      if (!journalFile.exists()) {
+         return 0;
+      }
+      List<String[]> entries = new ArrayList<String[]>();
+      StringBuilder fragments = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n");
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+      try {
+         String[] entry = null;
+         StringBuilder body = new StringBuilder();
+         String line;
+         while ((line = in.readLine()) != null) {
+            if (line.equals(END)) {
+               if (entry != null) {
+                  entries.add(entry);
+                  fragments.append(body);
+               }
+               entry = null;
+            }
+            else if (line.startsWith("#")) {
+               String[] fields = line.substring(1).split(" ", 3);
+               entry = fields.length == 3 ? fields : null;
+               body.setLength(0);
+            }
+            else if (entry != null) {
+               body.append(line).append('\n');
+            }
+         }
+      } finally {
+         in.close();
+      }
+      fragments.append("0 TRLR\n");
+
+      // parse all the records in one pass; they arrive in the order of the ADD and UPDATE entries
+      final List<ExtensionContainer> records = new ArrayList<ExtensionContainer>();
+      ModelParser parser = new ModelParser();
+      parser.setRecordHandler(new RecordHandler() {
+         public void handleRecord(ExtensionContainer record) {
+            if (RecordType.of(record) != null) {
+               records.add(record);
+            }
+         }
+      });
+      parser.parseGedcom(new StringReader(fragments.toString()));
+
+      // the last entry for each record wins; a null value means removed
+      Map<RecordType, Map<String, ExtensionContainer>> changes =
+            new EnumMap<RecordType, Map<String, ExtensionContainer>>(RecordType.class);
+      int next = 0;
+      for (String[] entry : entries) {
+         RecordType type = RecordType.valueOf(entry[1]);
+         ExtensionContainer record = entry[0].equals(REMOVE) ? null : records.get(next++);
+         Map<String, ExtensionContainer> typeChanges = changes.get(type);
+         if (typeChanges == null) {
+            typeChanges = new LinkedHashMap<String, ExtensionContainer>();
+            changes.put(type, typeChanges);
+         }
+         typeChanges.remove(entry[2]);
+         typeChanges.put(entry[2], record);
+      }
+      for (Map.Entry<RecordType, Map<String, ExtensionContainer>> typeChanges : changes.entrySet()) {
+         apply(gedcom, typeChanges.getKey(), typeChanges.getValue());
+      }
+      return entries.size();
+   }
+
+   private static void apply(Gedcom gedcom, RecordType type, Map<String, ExtensionContainer> changes) {
+      List<? extends ExtensionContainer> current = type.getRecords(gedcom);
+      List<ExtensionContainer> result = new ArrayList<ExtensionContainer>(current.size() + changes.size());
+      for (ExtensionContainer record : current) {
+         String id = type.getId(record);
+         if (id != null && changes.containsKey(id)) {
+            ExtensionContainer replacement = changes.remove(id);
+            if (replacement != null) {
+               result.add(replacement);
+            }
+         }
+         else {
+            result.add(record);
+         }
+      }
+      for (ExtensionContainer added : changes.values()) {
+         if (added != null) {
+            result.add(added);
+         }
+      }
+      type.setRecords(gedcom, result);
+   }
+
+   /**
+    * Merge journalFile into gedcomFile without loading them into an editor, then delete the journal
+    */
+   public static void compact(File gedcomFile, File journalFile) throws IOException, SAXParseException {
+      Gedcom gedcom = new ModelParser().parseGedcom(gedcomFile);
+      if (replay(gedcom, journalFile) > 0) {
+         writeAtomically(gedcom, gedcomFile);
+      }
+      Files.deleteIfExists(journalFile.toPath());
+   }
+
+   private static void writeAtomically(Gedcom gedcom, File gedcomFile) throws IOException {
+      File temp = new File(gedcomFile.getPath() + ".tmp");
+      new GedcomWriter().write(gedcom, temp);
+      Files.move(temp.toPath(), gedcomFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+}
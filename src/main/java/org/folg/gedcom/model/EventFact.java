@@ -26,7 +26,8 @@ import java.util.*;
  * add: Rin, Uid
  */
 public class EventFact extends SourceCitationContainer {
-   public static final Set<String> PERSONAL_EVENT_FACT_TAGS = new HashSet<String>(Arrays.asList(
+   // unmodifiable: ModelParser looks tags up in a table built once from these sets
+   public static final Set<String> PERSONAL_EVENT_FACT_TAGS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
            "ADOP", "ADOPTION", "ADULT_CHRISTNG", "AFN", "ARRI", "ARVL", "ARRIVAL", "_ATTR",
            "BAP", "BAPM", "BAPT", "BAPTISM", "BARM", "BAR_MITZVAH", "BASM", "BAS_MITZVAH", "BATM", "BAT_MITZVAH", "BIRT", "BIRTH", "BLES", "BLESS", "BLESSING", "BLSL", "BURI", "BURIAL",
            "CAST", "CASTE", "CAUS", "CENS", "CENSUS", "CHILDREN_COUNT", "CHR", "CHRA", "CHRISTENING", "CIRC", "CITN", "_COLOR",  "CONF", "CONFIRMATION", "CREM", "CREMATION",
@@ -48,8 +49,8 @@ public class EventFact extends SourceCitationContainer {
            "TITL", "TITLE",
            "WEIG", "_WEIG", "_WEIGHT",
            "WILL"
-  ));
-   public static final Set<String> FAMILY_EVENT_FACT_TAGS = new HashSet<String>(Arrays.asList(
+  )));
+   public static final Set<String> FAMILY_EVENT_FACT_TAGS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
       "ANUL",
       "CENS", "CLAW",
       "_DEATH_OF_SPOUSE", "DIV", "DIVF", "DIVORCE", "_DIV",
@@ -59,7 +60,7 @@ public class EventFact extends SourceCitationContainer {
       "NCHI",
       "RESI",
       "SEPA", "_SEPR", "_SEPARATED"
-   ));
+   )));
 
    public static final Map<String,String> DISPLAY_TYPE;
    // note: some of these tags aren't in the personal/family_event_fact_tags sets because they appear only in the type field
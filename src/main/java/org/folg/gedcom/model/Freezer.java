@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Replaces the lists and maps of a model object tree with unmodifiable copies, for {@link Gedcom#freeze}.
+ * <p>
+ * Every non-transient reference field of each model object is visited: lists become unmodifiable lists backed
+ * by an exactly-sized array, maps become unmodifiable maps with the same iteration order, and model objects
+ * (anything Visitable, and Extensions) are frozen in turn.  Fields are looked up once per class.  Long lists,
+ * like the Gedcom's records, are frozen in parallel.
+ */
+final class Freezer {
+   private static final int MIN_PARALLEL_SIZE = 1024;
+
+   private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+      @Override
+      protected Field[] computeValue(Class<?> type) {
+         List<Field> fields = new ArrayList<Field>();
+         for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+               int modifiers = field.getModifiers();
+               if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) &&
+                   !field.getType().isPrimitive() && field.getType() != String.class) {
+                  field.setAccessible(true);
+                  fields.add(field);
+               }
+            }
+         }
+         return fields.toArray(new Field[fields.size()]);
+      }
+   };
+
+   private Freezer() {
+   }
+
+   /**
+    * Freeze the fields of a model object
+    */
+   static void freezeFields(Object object) {
+      try {
+         for (Field field : FIELDS.get(object.getClass())) {
+            Object value = field.get(object);
+            if (value != null) {
+               Object frozen = freeze(value);
+               if (frozen != value) {
+                  field.set(object, frozen);
+               }
+            }
+         }
+      } catch (IllegalAccessException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * @return an unmodifiable copy of a list or map, else value itself, with its fields frozen if it's a model object
+    */
+   static Object freeze(Object value) {
+      if (value instanceof List) {
+         return freezeList((List<?>)value);
+      }
+      else if (value instanceof Map) {
+         Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+         for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+            copy.put(entry.getKey(), entry.getValue() != null ? freeze(entry.getValue()) : null);
+         }
+         return Collections.unmodifiableMap(copy);
+      }
+      else if (value instanceof Visitable || value instanceof Extensions) {
+         freezeFields(value);
+      }
+      return value;
+   }
+
+   private static List<Object> freezeList(List<?> list) {
+      if (list.isEmpty()) {
+         return Collections.emptyList();
+      }
+      final Object[] items = list.toArray();
+      IntStream indexes = IntStream.range(0, items.length);
+      if (items.length >= MIN_PARALLEL_SIZE) {
+         indexes = indexes.parallel();
+      }
+      indexes.forEach(i -> {
+         if (items[i] != null) {
+            items[i] = freeze(items[i]);
+         }
+      });
+      return Collections.unmodifiableList(Arrays.asList(items));
+   }
+}
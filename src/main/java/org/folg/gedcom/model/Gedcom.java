@@ -33,19 +33,22 @@ public class Gedcom extends ExtensionContainer {
    private List<Source> sources = null;
    private List<Repository> repositories = null;
 
-   private transient Map<String,Person> personIndex;
-   private transient Map<String,Family> familyIndex;
-   private transient Map<String,Media> mediaIndex;
-   private transient Map<String,Note> noteIndex;
-   private transient Map<String,Source> sourceIndex;
-   private transient Map<String,Repository> repositoryIndex;
-   private transient Map<String,Submitter> submitterIndex;
+   private final transient RecordIndex<Person> personIndex = new RecordIndex<Person>(this::getPeople, Person::getId);
+   private final transient RecordIndex<Family> familyIndex = new RecordIndex<Family>(this::getFamilies, Family::getId);
+   private final transient RecordIndex<Media> mediaIndex = new RecordIndex<Media>(this::getMedia, Media::getId);
+   private final transient RecordIndex<Note> noteIndex = new RecordIndex<Note>(this::getNotes, Note::getId);
+   private final transient RecordIndex<Source> sourceIndex = new RecordIndex<Source>(this::getSources, Source::getId);
+   private final transient RecordIndex<Repository> repositoryIndex = new RecordIndex<Repository>(this::getRepositories, Repository::getId);
+   private final transient RecordIndex<Submitter> submitterIndex = new RecordIndex<Submitter>(this::getSubmitters, Submitter::getId);
+   private transient volatile List<GedcomListener> listeners = null;
+   private transient volatile boolean frozen = false;
 
    public Header getHeader() {
       return head;
    }
 
    public void setHeader(Header head) {
+      checkNotFrozen();
       this.head = head;
    }
 
@@ -58,17 +61,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setPeople(List<Person> people) {
+      checkNotFrozen();
       this.people = people;
+      personIndex.invalidate();
    }
 
    public void addPerson(Person person) {
+      checkNotFrozen();
       if (people == null) {
          people = new ArrayList<Person>();
       }
       people.add(person);
-      if (personIndex != null) {
-         personIndex.put(person.getId(), person);
+      personIndex.add(person);
+      fireRecordAdded(person);
+   }
+
+   /**
+    * @return whether person was in the list
+    */
+   public boolean removePerson(Person person) {
+      checkNotFrozen();
+      if (people != null && people.remove(person)) {
+         personIndex.remove(person);
+         fireRecordRemoved(person);
+         return true;
       }
+      return false;
    }
 
    public List<Family> getFamilies() {
@@ -80,17 +98,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setFamilies(List<Family> families) {
+      checkNotFrozen();
       this.families = families;
+      familyIndex.invalidate();
    }
 
    public void addFamily(Family family) {
+      checkNotFrozen();
       if (families == null) {
          families = new ArrayList<Family>();
       }
       families.add(family);
-      if (familyIndex != null) {
-         familyIndex.put(family.getId(), family);
+      familyIndex.add(family);
+      fireRecordAdded(family);
+   }
+
+   /**
+    * @return whether family was in the list
+    */
+   public boolean removeFamily(Family family) {
+      checkNotFrozen();
+      if (families != null && families.remove(family)) {
+         familyIndex.remove(family);
+         fireRecordRemoved(family);
+         return true;
       }
+      return false;
    }
 
    public List<Media> getMedia() {
@@ -102,17 +135,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setMedia(List<Media> media) {
+      checkNotFrozen();
       this.media = media;
+      mediaIndex.invalidate();
    }
 
    public void addMedia(Media m) {
+      checkNotFrozen();
       if (media == null) {
          media = new ArrayList<Media>();
       }
       media.add(m);
-      if (mediaIndex != null) {
-         mediaIndex.put(m.getId(), m);
+      mediaIndex.add(m);
+      fireRecordAdded(m);
+   }
+
+   /**
+    * @return whether the media was in the list
+    */
+   public boolean removeMedia(Media m) {
+      checkNotFrozen();
+      if (media != null && media.remove(m)) {
+         mediaIndex.remove(m);
+         fireRecordRemoved(m);
+         return true;
       }
+      return false;
    }
 
    public List<Note> getNotes() {
@@ -124,17 +172,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setNotes(List<Note> notes) {
+      checkNotFrozen();
       this.notes = notes;
+      noteIndex.invalidate();
    }
 
    public void addNote(Note note) {
+      checkNotFrozen();
       if (notes == null) {
          notes = new ArrayList<Note>();
       }
       notes.add(note);
-      if (noteIndex != null) {
-         noteIndex.put(note.getId(), note);
+      noteIndex.add(note);
+      fireRecordAdded(note);
+   }
+
+   /**
+    * @return whether note was in the list
+    */
+   public boolean removeNote(Note note) {
+      checkNotFrozen();
+      if (notes != null && notes.remove(note)) {
+         noteIndex.remove(note);
+         fireRecordRemoved(note);
+         return true;
       }
+      return false;
    }
 
    public List<Source> getSources() {
@@ -146,17 +209,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setSources(List<Source> sources) {
+      checkNotFrozen();
       this.sources = sources;
+      sourceIndex.invalidate();
    }
 
    public void addSource(Source source) {
+      checkNotFrozen();
       if (sources == null) {
          sources = new ArrayList<Source>();
       }
       sources.add(source);
-      if (sourceIndex != null) {
-         sourceIndex.put(source.getId(), source);
+      sourceIndex.add(source);
+      fireRecordAdded(source);
+   }
+
+   /**
+    * @return whether source was in the list
+    */
+   public boolean removeSource(Source source) {
+      checkNotFrozen();
+      if (sources != null && sources.remove(source)) {
+         sourceIndex.remove(source);
+         fireRecordRemoved(source);
+         return true;
       }
+      return false;
    }
 
    public List<Repository> getRepositories() {
@@ -168,17 +246,32 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setRepositories(List<Repository> repositories) {
+      checkNotFrozen();
       this.repositories = repositories;
+      repositoryIndex.invalidate();
    }
 
    public void addRepository(Repository repository) {
+      checkNotFrozen();
       if (repositories == null) {
          repositories = new ArrayList<Repository>();
       }
       repositories.add(repository);
-      if (repositoryIndex != null) {
-         repositoryIndex.put(repository.getId(), repository);
+      repositoryIndex.add(repository);
+      fireRecordAdded(repository);
+   }
+
+   /**
+    * @return whether repository was in the list
+    */
+   public boolean removeRepository(Repository repository) {
+      checkNotFrozen();
+      if (repositories != null && repositories.remove(repository)) {
+         repositoryIndex.remove(repository);
+         fireRecordRemoved(repository);
+         return true;
       }
+      return false;
    }
 
    public Submitter getSubmitter(String id) { return submitterIndex.get(id); }
@@ -188,18 +281,33 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setSubmitters(List<Submitter> submitters) {
+      checkNotFrozen();
       this.subms = submitters;
+      submitterIndex.invalidate();
    }
 
    public void addSubmitter(Submitter submitter) {
+      checkNotFrozen();
       if (subms == null) {
          subms = new ArrayList<Submitter>();
       }
       subms.add(submitter);
 
-      if (submitterIndex != null) {
-         submitterIndex.put(submitter.getId(), submitter);
+      submitterIndex.add(submitter);
+      fireRecordAdded(submitter);
+   }
+
+   /**
+    * @return whether submitter was in the list
+    */
+   public boolean removeSubmitter(Submitter submitter) {
+      checkNotFrozen();
+      if (subms != null && subms.remove(submitter)) {
+         submitterIndex.remove(submitter);
+         fireRecordRemoved(submitter);
+         return true;
       }
+      return false;
    }
 
    /**
@@ -217,38 +325,102 @@ public class Gedcom extends ExtensionContainer {
    }
 
    public void setSubmission(Submission subn) {
+      checkNotFrozen();
       this.subn = subn;
    }
 
-   public void createIndexes() {
-      personIndex = new HashMap<String, Person>();
-      for (Person person : getPeople()) {
-         personIndex.put(person.getId(), person);
-      }
-      familyIndex = new HashMap<String, Family>();
-      for (Family family : getFamilies()) {
-         familyIndex.put(family.getId(), family);
+   /**
+    * Listen for records added through the add methods and removed through the remove methods; changes made to
+    * the lists directly aren't reported
+    */
+   public synchronized void addListener(GedcomListener listener) {
+      List<GedcomListener> copy = listeners != null ? new ArrayList<GedcomListener>(listeners) : new ArrayList<GedcomListener>();
+      copy.add(listener);
+      listeners = copy;
+   }
+
+   public synchronized void removeListener(GedcomListener listener) {
+      if (listeners != null) {
+         List<GedcomListener> copy = new ArrayList<GedcomListener>(listeners);
+         copy.remove(listener);
+         listeners = copy.isEmpty() ? null : copy;
       }
-      mediaIndex = new HashMap<String, Media>();
-      for (Media m : getMedia()) {
-         mediaIndex.put(m.getId(), m);
+   }
+
+   /**
+    * Tell listeners a record was added; for subclasses that keep their records themselves
+    */
+   protected void fireRecordAdded(ExtensionContainer record) {
+      List<GedcomListener> listeners = this.listeners;
+      if (listeners != null) {
+         for (GedcomListener listener : listeners) {
+            listener.recordAdded(record);
+         }
       }
-      noteIndex = new HashMap<String, Note>();
-      for (Note note : getNotes()) {
-         noteIndex.put(note.getId(), note);
+   }
+
+   /**
+    * Tell listeners that a top-level record was changed in place, for example so a change journal can record it
+    */
+   public void notifyRecordUpdated(ExtensionContainer record) {
+      List<GedcomListener> listeners = this.listeners;
+      if (listeners != null) {
+         for (GedcomListener listener : listeners) {
+            listener.recordUpdated(record);
+         }
       }
-      sourceIndex = new HashMap<String, Source>();
-      for (Source source : getSources()) {
-         sourceIndex.put(source.getId(), source);
+   }
+
+   /**
+    * Tell listeners a record was removed; for subclasses that keep their records themselves
+    */
+   protected void fireRecordRemoved(ExtensionContainer record) {
+      List<GedcomListener> listeners = this.listeners;
+      if (listeners != null) {
+         for (GedcomListener listener : listeners) {
+            listener.recordRemoved(record);
+         }
       }
-      repositoryIndex = new HashMap<String, Repository>();
-      for (Repository repository : getRepositories()) {
-         repositoryIndex.put(repository.getId(), repository);
+   }
+
+   /**
+    * Rebuild the id indexes from the record lists, in parallel.  Indexes are otherwise built on first use
+    * and kept up to date by the add and set methods, so this is only needed after changing a record list
+    * or a record's id directly.
+    */
+   public void createIndexes() {
+      List<RecordIndex<?>> indexes = Arrays.<RecordIndex<?>>asList(personIndex, familyIndex, mediaIndex, noteIndex,
+            sourceIndex, repositoryIndex, submitterIndex);
+      indexes.parallelStream().forEach(RecordIndex::build);
+   }
+
+   /**
+    * Make this Gedcom read-only, so any number of threads can read it without locking.  The record lists, and
+    * every list and map in the records, are replaced with compact unmodifiable copies, the id indexes are built,
+    * and from then on the add, remove and set methods throw IllegalStateException.  The records' own setters
+    * aren't blocked; don't call them once the Gedcom is frozen.
+    * <p>
+    * Everything freeze does happens before isFrozen returns true, so a thread that sees isFrozen, or gets the
+    * Gedcom through any other safe hand-off such as an executor or a volatile field, sees the frozen state.
+    *
+    * @return this
+    */
+   public synchronized Gedcom freeze() {
+      if (!frozen) {
+         Freezer.freezeFields(this);
+         createIndexes();
+         frozen = true;
       }
+      return this;
+   }
+
+   public boolean isFrozen() {
+      return frozen;
+   }
 
-      submitterIndex = new HashMap<String, Submitter>();
-      for (Submitter submitter : getSubmitters()){
-         submitterIndex.put(submitter.getId(), submitter);
+   private void checkNotFrozen() {
+      if (frozen) {
+         throw new IllegalStateException("Gedcom is frozen");
       }
    }
 
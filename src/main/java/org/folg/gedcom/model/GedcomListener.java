@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+/**
+ * Told about each record added to a {@link Gedcom} through its add methods, removed through its remove methods,
+ * or reported edited through {@link Gedcom#notifyRecordUpdated}, so that indexes and journals kept alongside
+ * the Gedcom can stay up to date.  Register with {@link Gedcom#addListener}.
+ */
+public interface GedcomListener {
+   /**
+    * @param record the Person, Family, Media, Note, Source, Repository or Submitter just added
+    */
+   public void recordAdded(ExtensionContainer record);
+
+   /**
+    * @param record a top-level record whose contents were changed in place
+    */
+   public default void recordUpdated(ExtensionContainer record) {
+   }
+
+   /**
+    * @param record the top-level record just removed
+    */
+   public default void recordRemoved(ExtensionContainer record) {
+   }
+}
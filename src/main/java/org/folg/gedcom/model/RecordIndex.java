@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Index of one of Gedcom's record lists by id.
+ * <p>
+ * The index is built from the list the first time it is needed, pre-sized from the list's length, and kept up
+ * to date by {@link #add} and {@link #remove}; replacing the list calls {@link #invalidate} so the next lookup rebuilds it.  Lookups
+ * don't lock once the index is built, so many threads can share a Gedcom.  When ids repeat, the last record
+ * in the list wins; records without an id aren't indexed.
+ */
+class RecordIndex<T> {
+   private final Supplier<List<T>> records;
+   private final Function<T, String> idGetter;
+   private volatile ConcurrentHashMap<String, T> index = null;
+
+   RecordIndex(Supplier<List<T>> records, Function<T, String> idGetter) {
+      this.records = records;
+      this.idGetter = idGetter;
+   }
+
+   T get(String id) {
+      return id != null ? map().get(id) : null;
+   }
+
+   void add(T record) {
+      ConcurrentHashMap<String, T> index = this.index;
+      if (index != null) {
+         String id = idGetter.apply(record);
+         if (id != null) {
+            index.put(id, record);
+         }
+      }
+   }
+
+   void remove(T record) {
+      ConcurrentHashMap<String, T> index = this.index;
+      if (index != null) {
+         String id = idGetter.apply(record);
+         if (id != null) {
+            index.remove(id, record);
+         }
+      }
+   }
+
+   void invalidate() {
+      index = null;
+   }
+
+   /**
+    * Rebuild the index from the current list
+    */
+   synchronized void build() {
+      List<T> list = records.get();
+      ConcurrentHashMap<String, T> index = new ConcurrentHashMap<String, T>(list.size());
+      for (T record : list) {
+         String id = idGetter.apply(record);
+         if (id != null) {
+            index.put(id, record);
+         }
+      }
+      this.index = index;
+   }
+
+   private ConcurrentHashMap<String, T> map() {
+      ConcurrentHashMap<String, T> index = this.index;
+      if (index == null) {
+         synchronized (this) {
+            if (this.index == null) {
+               build();
+            }
+            index = this.index;
+         }
+      }
+      return index;
+   }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Registry of the String setter, getter and adder for each model class and field name, used by {@link FieldRef}.
+ * <p>
+ * Accessors are looked up once per class and field name and compiled into lambdas, so setting a field costs an
+ * interface call rather than a reflective lookup and Method.invoke.  When a method can't be compiled (for
+ * example, because its declaring class isn't public) the accessor falls back to Method.invoke.
+ */
+final class FieldAccessors {
+   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+   private static final ClassValue<ConcurrentHashMap<String, Accessor>> REGISTRY =
+         new ClassValue<ConcurrentHashMap<String, Accessor>>() {
+            @Override
+            protected ConcurrentHashMap<String, Accessor> computeValue(Class<?> type) {
+               return new ConcurrentHashMap<String, Accessor>();
+            }
+         };
+
+   /**
+    * The accessors for one field of one class; a missing method is null
+    */
+   static final class Accessor {
+      final BiConsumer<Object, String> setter;
+      final Function<Object, Object> getter;
+      final BiConsumer<Object, String> adder;
+
+      private Accessor(BiConsumer<Object, String> setter, Function<Object, Object> getter, BiConsumer<Object, String> adder) {
+         this.setter = setter;
+         this.getter = getter;
+         this.adder = adder;
+      }
+   }
+
+   private FieldAccessors() {
+   }
+
+   static Accessor get(final Class<?> type, String name) {
+      ConcurrentHashMap<String, Accessor> accessors = REGISTRY.get(type);
+      Accessor accessor = accessors.get(name);
+      if (accessor == null) {
+         accessor = new Accessor(
+               compileSetter(findMethod(type, "set" + name, String.class)),
+               compileGetter(findMethod(type, "get" + name)),
+               compileSetter(findMethod(type, "add" + name, String.class)));
+         Accessor existing = accessors.putIfAbsent(name, accessor);
+         if (existing != null) {
+            accessor = existing;
+         }
+      }
+      return accessor;
+   }
+
+   private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+      try {
+         return type.getMethod(name, parameterTypes);
+      } catch (NoSuchMethodException e) {
+         return null;
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private static BiConsumer<Object, String> compileSetter(final Method method) {
+      if (method == null) {
+         return null;
+      }
+      try {
+         MethodHandle handle = LOOKUP.unreflect(method);
+         CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+               MethodType.methodType(BiConsumer.class),
+               MethodType.methodType(void.class, Object.class, Object.class),
+               handle,
+               MethodType.methodType(void.class, method.getDeclaringClass(), String.class));
+         return (BiConsumer<Object, String>)site.getTarget().invoke();
+      } catch (Throwable e) {
+         return new BiConsumer<Object, String>() {
+            public void accept(Object target, String value) {
+               invoke(method, target, value);
+            }
+         };
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Function<Object, Object> compileGetter(final Method method) {
+      if (method == null) {
+         return null;
+      }
+      try {
+         MethodHandle handle = LOOKUP.unreflect(method);
+         CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+               MethodType.methodType(Function.class),
+               MethodType.methodType(Object.class, Object.class),
+               handle,
+               MethodType.methodType(method.getReturnType().isPrimitive() ? Object.class : method.getReturnType(),
+                     method.getDeclaringClass()));
+         return (Function<Object, Object>)site.getTarget().invoke();
+      } catch (Throwable e) {
+         return new Function<Object, Object>() {
+            public Object apply(Object target) {
+               return invoke(method, target);
+            }
+         };
+      }
+   }
+
+   private static Object invoke(Method method, Object target, Object... args) {
+      try {
+         return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+         e.printStackTrace();
+         throw new RuntimeException(e);
+      } catch (IllegalAccessException e) {
+         e.printStackTrace();
+         throw new RuntimeException(e);
+      }
+   }
+}
@@ -16,9 +16,6 @@
 
 package org.folg.gedcom.parser;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 /**
  * User: Dallan
  * Date: 12/26/11
@@ -26,6 +23,7 @@ import java.lang.reflect.Method;
 public class FieldRef {
    private Object target;
    private String name;
+   private FieldAccessors.Accessor accessor = null;
 
    public FieldRef(Object target, String name) {
       this.target = target;
@@ -44,48 +42,49 @@ public class FieldRef {
       return name;
    }
 
+   private FieldAccessors.Accessor accessor() {
+      if (accessor == null) {
+         accessor = FieldAccessors.get(target.getClass(), name);
+      }
+      return accessor;
+   }
+
+   /**
+    * Can the value be read and replaced, rather than only added to
+    */
+   boolean hasGetterAndSetter() {
+      FieldAccessors.Accessor accessor = accessor();
+      return accessor.getter != null && accessor.setter != null;
+   }
+
    public void setValue(String value) throws NoSuchMethodException {
-      try {
-         Method method = target.getClass().getMethod("set"+name, String.class);
-         method.invoke(target, value);
-      } catch (InvocationTargetException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
+      FieldAccessors.Accessor accessor = accessor();
+      if (accessor.setter == null) {
+         throw new NoSuchMethodException(target.getClass().getName()+".set"+name);
       }
+      accessor.setter.accept(target, value);
    }
 
    public String getValue() throws NoSuchMethodException {
-      try {
-         Method method = target.getClass().getMethod("get"+name);
-         return (String)method.invoke(target);
-      } catch (InvocationTargetException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
+      FieldAccessors.Accessor accessor = accessor();
+      if (accessor.getter == null) {
+         throw new NoSuchMethodException(target.getClass().getName()+".get"+name);
       }
+      return (String)accessor.getter.apply(target);
    }
 
    public void appendValue(String value) throws NoSuchMethodException {
-      try {
-         String currentValue = getValue();
-         setValue((currentValue == null ? "" : currentValue) + value);
-      } catch (NoSuchMethodException e) {
+      FieldAccessors.Accessor accessor = accessor();
+      if (accessor.getter != null && accessor.setter != null) {
+         String currentValue = (String)accessor.getter.apply(target);
+         accessor.setter.accept(target, (currentValue == null ? "" : currentValue) + value);
+      }
+      else if (accessor.adder != null) {
          // try "add"
-         try {
-            Method method = target.getClass().getMethod("add"+name, String.class);
-            method.invoke(target, value);
-         } catch (InvocationTargetException e1) {
-            e1.printStackTrace();
-            throw new RuntimeException(e);
-         } catch (IllegalAccessException e1) {
-            e1.printStackTrace();
-            throw new RuntimeException(e);
-         }
+         accessor.adder.accept(target, value);
+      }
+      else {
+         throw new NoSuchMethodException(target.getClass().getName()+".add"+name);
       }
    }
 }
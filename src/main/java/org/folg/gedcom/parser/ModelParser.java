@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.*;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +42,26 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Stack<Object> objectStack;
    private Gedcom gedcom;
    private ErrorHandler errorHandler = null;
+   private int lineNumberOffset = 0;
+   private RecordHandler recordHandler = null;
+   private List<PendingValue> pendingValues;
+   private StringPool stringPool = null;
+
+   /**
+    * A field value that is still receiving CONC/CONT continuations.  Fragments are collected here
+    * and the field is set once, when the element that owns the value ends.
+    */
+   private static class PendingValue {
+      private final FieldRef fieldRef;
+      private final StringBuilder value;
+      private final int ownerDepth;
+
+      PendingValue(FieldRef fieldRef, String currentValue, int ownerDepth) {
+         this.fieldRef = fieldRef;
+         this.value = new StringBuilder(currentValue);
+         this.ownerDepth = ownerDepth;
+      }
+   }
 
    private String joinTagStack() {
       StringBuilder buf = new StringBuilder();
@@ -63,12 +84,13 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       gedcom = null;
       tagStack = new Stack<String>();
       objectStack = new Stack<Object>();
-      
+      pendingValues = new ArrayList<PendingValue>();
    }
 
    @Override
    public void endDocument() throws SAXException {
-      // ignore
+      // GedcomParser doesn't close the elements still open at the end of the file
+      flushPendingValues(0);
    }
 
    @Override
@@ -111,14 +133,14 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    }
 
    public void startElement(String uri, String tagName, String qName, Attributes atts) throws SAXException {
-      String tagNameUpper = tagName.toUpperCase();
+      TagTable.Entry entry = TagTable.lookup(tagName);
       String id = atts.getValue("ID");
       String ref = atts.getValue("REF");
       Object tos = objectStack.size() > 0 ? objectStack.peek() : null;
       Object obj = null;
       
-      try { 
-         Tag tag = Tag.valueOf(tagNameUpper);
+      if (entry != null && entry.tag != null) {
+         Tag tag = entry.tag;
          switch (tag) {
             case ABBR:
                obj = handleAbbr(tos);
@@ -405,20 +427,18 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
             case WAC:
             case ENDL:
             case SLGC:
-               obj = handleLdsOrdinance(tos, true, tagNameUpper);
+               obj = handleLdsOrdinance(tos, true, entry.name);
                break;
             case SLGS:
-               obj = handleLdsOrdinance(tos, false, tagNameUpper);
+               obj = handleLdsOrdinance(tos, false, entry.name);
                break;
             
             default:
                throw new SAXParseException("handler not found for tag: "+tag.name(), locator);
          }
-      } catch (IllegalArgumentException e) {
-         // handle events/facts below
       }
-      if (obj == null) {
-         obj = handleEventFact(tos, tagName, tagNameUpper);
+      if (obj == null && entry != null) {
+         obj = handleEventFact(tos, tagName, entry);
       }
 
       if (obj == null) {
@@ -647,7 +667,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
       if (insertNewLine) {
          try {
-            fieldRef.appendValue("\n");
+            appendValue(fieldRef, "\n");
          } catch (NoSuchMethodException e) {
             SAXParseException exception = new SAXParseException("value not stored for: "+joinTagStack(), locator);
             error(exception);
@@ -789,9 +809,9 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       return null;
    }
 
-   private Object handleEventFact(Object tos, String tagName, String tagNameUpper) {
-      if ((tos instanceof Person && EventFact.PERSONAL_EVENT_FACT_TAGS.contains(tagNameUpper)) ||
-          (tos instanceof Family && EventFact.FAMILY_EVENT_FACT_TAGS.contains(tagNameUpper))) {
+   private Object handleEventFact(Object tos, String tagName, TagTable.Entry entry) {
+      if ((tos instanceof Person && entry.personalEventFact) ||
+          (tos instanceof Family && entry.familyEventFact)) {
          EventFact eventFact = new EventFact();
          eventFact.setTag(tagName);
          ((PersonFamilyCommonContainer)tos).addEventFact(eventFact);
@@ -880,10 +900,17 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    }
    
    private Object handleGed() {
-      gedcom = new Gedcom();
+      gedcom = newGedcom();
       return gedcom;
    }
 
+   /**
+    * Create the Gedcom that top-level records are added to
+    */
+   Gedcom newGedcom() {
+      return new Gedcom();
+   }
+
    private Object handleGedc(Object tos) {
       if (tos instanceof Header && ((Header)tos).getGedcomVersion() == null) {
          GedcomVersion gedcomVersion = new GedcomVersion();
@@ -1477,26 +1504,136 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void endElement(String uri, String localName, String qName) throws SAXException {
-      objectStack.pop();
+      Object obj = objectStack.pop();
       tagStack.pop();
+      flushPendingValues(objectStack.size());
+      if (recordHandler != null && objectStack.size() == 1 && obj instanceof ExtensionContainer && !(obj instanceof Trailer)) {
+         recordHandler.handleRecord((ExtensionContainer)obj);
+         releaseRecords();
+      }
+   }
+
+   /**
+    * Drop the records delivered to the record handler.  The header and submission are kept, because
+    * they decide how a repeated HEAD or SUBN is handled.
+    */
+   private void releaseRecords() {
+      gedcom.setSubmitters(null);
+      gedcom.setPeople(null);
+      gedcom.setFamilies(null);
+      gedcom.setMedia(null);
+      gedcom.setNotes(null);
+      gedcom.setSources(null);
+      gedcom.setRepositories(null);
+   }
+
+   private PendingValue findPendingValue(FieldRef fieldRef) {
+      for (int i = pendingValues.size() - 1; i >= 0; i--) {
+         PendingValue pending = pendingValues.get(i);
+         if (pending.fieldRef.getTarget() == fieldRef.getTarget() &&
+             pending.fieldRef.getFieldName().equals(fieldRef.getFieldName())) {
+            return pending;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Append to a field.  The first fragment is stored directly; later fragments are collected in a
+    * PendingValue, so a value with many continuations is built in linear time.  Fields that are added to
+    * rather than set (like REFN) are not collected.
+    */
+   private void appendValue(FieldRef fieldRef, String value) throws NoSuchMethodException {
+      PendingValue pending = findPendingValue(fieldRef);
+      if (pending != null) {
+         pending.value.append(value);
+      }
+      else if (!fieldRef.hasGetterAndSetter()) {
+         fieldRef.appendValue(value);
+      }
+      else {
+         String currentValue = fieldRef.getValue();
+         if (currentValue == null) {
+            fieldRef.setValue(value);
+         }
+         else {
+            pending = new PendingValue(fieldRef, currentValue, ownerDepth(fieldRef));
+            pending.value.append(value);
+            pendingValues.add(pending);
+         }
+      }
+   }
+
+   private void setValue(FieldRef fieldRef, String value) throws NoSuchMethodException {
+      PendingValue pending = findPendingValue(fieldRef);
+      if (pending != null) {
+         pending.value.setLength(0);
+         pending.value.append(value);
+      }
+      else {
+         fieldRef.setValue(value);
+      }
+   }
+
+   /**
+    * The depth of the element that owns the field: the first element holding the FieldRef itself, or else
+    * the innermost element holding its target
+    */
+   private int ownerDepth(FieldRef fieldRef) {
+      for (int i = 0; i < objectStack.size(); i++) {
+         if (objectStack.get(i) == fieldRef) {
+            return i + 1;
+         }
+      }
+      for (int i = objectStack.size() - 1; i >= 0; i--) {
+         if (objectStack.get(i) == fieldRef.getTarget()) {
+            return i + 1;
+         }
+      }
+      return objectStack.size();
+   }
+
+   /**
+    * Store the values whose owning element is no longer open
+    */
+   private void flushPendingValues(int depth) throws SAXException {
+      for (int i = pendingValues.size() - 1; i >= 0; i--) {
+         PendingValue pending = pendingValues.get(i);
+         if (pending.ownerDepth > depth) {
+            pendingValues.remove(i);
+            try {
+               pending.fieldRef.setValue(pending.value.toString());
+            }
+            catch (NoSuchMethodException e) {
+               // can't happen: the field was checked when the value was started
+               throw new SAXParseException("set method not found for: "+pending.fieldRef.getClassFieldName(), locator);
+            }
+         }
+      }
    }
 
    @Override
    public void characters(char[] ch, int start, int length) throws SAXException {
-      String value = new String(ch, start, length);
+      String value = stringPool != null ? stringPool.get(ch, start, length) : new String(ch, start, length);
       Object tos = objectStack.size() > 0 ? objectStack.peek() : null;
       FieldRef fieldRef = null;
       try {
          if (tos instanceof GedcomTag) {
-            ((GedcomTag)tos).appendValue(value);
+            GedcomTag gedcomTag = (GedcomTag)tos;
+            if (gedcomTag.getValue() == null) {
+               gedcomTag.appendValue(value);
+            }
+            else {
+               appendValue(new FieldRef(gedcomTag, "Value"), value);
+            }
          }
          else if (tos instanceof FieldRef) {
             fieldRef = (FieldRef)tos;
-            fieldRef.appendValue(value);
+            appendValue(fieldRef, value);
          }
          else {
             fieldRef = new FieldRef(tos, "Value");
-            fieldRef.setValue(value);
+            setValue(fieldRef, value);
          }
       }
       catch (NoSuchMethodException e) {
@@ -1563,9 +1700,51 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       this.errorHandler = errorHandler;
    }
 
+   /**
+    * Share one String instance among equal short values, or null to create a String for each value.
+    * IDs and references aren't pooled: each ID is unique, so it would only push useful values out of the pool.
+    * The pool's statistics show how many values it saved.
+    */
+   public void setStringPool(StringPool stringPool) {
+      this.stringPool = stringPool;
+   }
+
+   public StringPool getStringPool() {
+      return stringPool;
+   }
+
+   /**
+    * Deliver each top-level record to recordHandler as soon as it is complete, instead of keeping it.
+    * The Gedcom returned by parseGedcom then holds only the header, the submission and top-level extension tags.
+    */
+   public void setRecordHandler(RecordHandler recordHandler) {
+      this.recordHandler = recordHandler;
+   }
+
+   /**
+    * Iterate over the top-level records of a file without keeping them in memory; see {@link RecordIterator}
+    */
+   public Stream<ExtensionContainer> streamRecords(File gedcomFile) {
+      return new RecordIterator(this, gedcomFile).stream();
+   }
+
+   /**
+    * Set the number of lines that precede the input, when parsing part of a larger file
+    */
+   void setLineNumberOffset(int lineNumberOffset) {
+      this.lineNumberOffset = lineNumberOffset;
+   }
+
+   /**
+    * The Gedcom built from the events received so far, for callers that send SAX events to this parser themselves
+    */
+   public Gedcom getGedcom() {
+      return gedcom;
+   }
+
    public Gedcom parseGedcom(File gedcomFile) throws SAXParseException, IOException {
       GedcomParser parser = gedcomParser();
-      parser.parse(gedcomFile.toURI().toString());
+      parser.parse(gedcomFile);
       return gedcom;
    }
 
@@ -1585,6 +1764,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       GedcomParser parser = new GedcomParser();
       parser.setContentHandler(this);
       parser.setErrorHandler(this);
+      parser.setLineNumberOffset(lineNumberOffset);
       return parser;
    }
 
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+import org.gedml.GedcomLineReader;
+import org.gedml.GedcomLineTokenizer;
+import org.gedml.GedcomParser;
+import org.gedml.MappedFileInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXParseException;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds the same Gedcom as {@link ModelParser}, parsing a large file on several threads.
+ * <p>
+ * The decoded input is split into chunks of roughly chunkSize characters, always at a level-0 line, and each
+ * chunk is parsed by its own ModelParser on a fork-join pool.  The chunk results are merged in file order, so
+ * each record list keeps the order of the file, and errors are reported in file order with line numbers
+ * counted from the start of the file.  Only a few chunks are in memory at once.
+ */
+public class ParallelModelParser {
+   private static final Logger logger = LoggerFactory.getLogger("org.folg.gedcom.parser");
+   public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+   private final ForkJoinPool pool;
+   private final int chunkSize;
+   private final int maxPendingChunks;
+   private ErrorHandler errorHandler = null;
+
+   // stand-ins for a header or submission in an earlier chunk, so later chunks treat repeats as ModelParser does
+   private final Header placeholderHeader = new Header();
+   private final Submission placeholderSubmission = new Submission();
+
+   public ParallelModelParser() {
+      this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+   }
+
+   /**
+    * @param pool pool to parse chunks on
+    * @param chunkSize approximate number of characters in each chunk
+    */
+   public ParallelModelParser(ForkJoinPool pool, int chunkSize) {
+      this.pool = pool;
+      this.chunkSize = chunkSize;
+      this.maxPendingChunks = 2 * pool.getParallelism();
+   }
+
+   public void setErrorHandler(ErrorHandler errorHandler) {
+      this.errorHandler = errorHandler;
+   }
+
+   public Gedcom parseGedcom(File gedcomFile) throws SAXParseException, IOException {
+      return parseGedcom(new GedcomParser().getReader(new MappedFileInputStream(gedcomFile)));
+   }
+
+   public Gedcom parseGedcom(InputStream is) throws SAXParseException, IOException {
+      return parseGedcom(new GedcomParser().getReader(is));
+   }
+
+   /**
+    * Parse the GEDCOM read from reader.  WARNING: It is assumed that the given Reader has been initialized
+    * with the appropriate character encoding for its underlying input stream.
+    */
+   public Gedcom parseGedcom(Reader in) throws SAXParseException, IOException {
+      GedcomLineReader reader = new GedcomLineReader(in);
+      GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+      Deque<ForkJoinTask<ChunkResult>> pending = new ArrayDeque<ForkJoinTask<ChunkResult>>();
+      Gedcom gedcom = null;
+      int lineNr = 0;
+      boolean recordSeen = false;
+      boolean headerSeen = false;
+      boolean submissionSeen = false;
+      boolean inHeader = false;
+      Chunk chunk = new Chunk(0, false, false);
+
+      try {
+         while (reader.readLine()) {
+            lineNr++;
+
+            // remove control chars in place, as GedcomParser does, so the line tokenizes the same way
+            char[] buf = reader.buffer();
+            int start = reader.lineStart();
+            int end = start;
+            for (int j = start; j < reader.lineEnd(); j++) {
+               char c = buf[j];
+               if (c >= 32 || c == 9) {
+                  buf[end++] = c;
+               }
+            }
+
+            if (end > start && tokenizer.parse(buf, start, end) && tokenizer.getTagEnd() > tokenizer.getTagStart()) {
+               int level = tokenizer.getLevel();
+               if (level == 0) {
+                  if (chunk.length >= chunkSize) {
+                     pending.addLast(pool.submit(chunk));
+                     while (pending.size() >= maxPendingChunks) {
+                        gedcom = merge(gedcom, pending.removeFirst());
+                     }
+                     chunk = new Chunk(lineNr - 1, headerSeen, submissionSeen);
+                  }
+                  recordSeen = true;
+                  boolean isHeader = isTag(tokenizer, "HEAD");
+                  inHeader = isHeader && !headerSeen;
+                  headerSeen |= isHeader;
+                  submissionSeen |= isTag(tokenizer, "SUBN");
+               }
+               else if (inHeader && level == 1 && isTag(tokenizer, "SUBN") && tokenizer.getXRefStart() < 0) {
+                  submissionSeen = true;
+               }
+            }
+            else if (end > start && !recordSeen && lineNr > 20) {
+               // GedcomParser gives up here too
+               chunk.append(buf, start, end);
+               break;
+            }
+            chunk.append(buf, start, end);
+         }
+         pending.addLast(pool.submit(chunk));
+         while (!pending.isEmpty()) {
+            gedcom = merge(gedcom, pending.removeFirst());
+         }
+      }
+      finally {
+         for (ForkJoinTask<ChunkResult> task : pending) {
+            task.cancel(false);
+         }
+         reader.close();
+      }
+      return gedcom;
+   }
+
+   /**
+    * Does the tokenized line have the given upper-case tag, ignoring case
+    */
+   private static boolean isTag(GedcomLineTokenizer tokenizer, String tag) {
+      int start = tokenizer.getTagStart();
+      if (tokenizer.getTagEnd() - start != tag.length()) {
+         return false;
+      }
+      char[] buf = tokenizer.getBuffer();
+      for (int i = 0; i < tag.length(); i++) {
+         if (Character.toUpperCase(buf[start + i]) != tag.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Wait for the next chunk, report its errors, and add its records to gedcom
+    */
+   private Gedcom merge(Gedcom gedcom, ForkJoinTask<ChunkResult> task) throws SAXParseException, IOException {
+      ChunkResult result;
+      try {
+         result = task.get();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("interrupted while parsing", e);
+      }
+      catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException)e.getCause();
+         }
+         if (e.getCause() instanceof Error) {
+            throw (Error)e.getCause();
+         }
+         throw new IOException(e.getCause());
+      }
+
+      for (ChunkError error : result.errors) {
+         report(error);
+      }
+      if (result.exception != null) {
+         throw result.exception;
+      }
+
+      Gedcom chunkGedcom = result.gedcom;
+      if (gedcom == null) {
+         return chunkGedcom;
+      }
+      if (chunkGedcom.getHeader() != null && chunkGedcom.getHeader() != placeholderHeader) {
+         gedcom.setHeader(chunkGedcom.getHeader());
+      }
+      Submission submission = chunkGedcom.getSubmission();
+      if (submission != null && submission != placeholderSubmission &&
+          (chunkGedcom.getHeader() == null || submission != chunkGedcom.getHeader().getSubmission())) {
+         gedcom.setSubmission(submission);
+      }
+      gedcom.setSubmitters(append(gedcom.getSubmitters(), chunkGedcom.getSubmitters()));
+      gedcom.setPeople(append(gedcom.getPeople(), chunkGedcom.getPeople()));
+      gedcom.setFamilies(append(gedcom.getFamilies(), chunkGedcom.getFamilies()));
+      gedcom.setMedia(append(gedcom.getMedia(), chunkGedcom.getMedia()));
+      gedcom.setNotes(append(gedcom.getNotes(), chunkGedcom.getNotes()));
+      gedcom.setSources(append(gedcom.getSources(), chunkGedcom.getSources()));
+      gedcom.setRepositories(append(gedcom.getRepositories(), chunkGedcom.getRepositories()));
+      for (Map.Entry<String, Object> entry : chunkGedcom.getExtensions().entrySet()) {
+         Object extension = gedcom.getExtension(entry.getKey());
+         if (extension instanceof List && entry.getValue() instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>)extension;
+            list.addAll((List<?>)entry.getValue());
+         }
+         else if (extension == null) {
+            gedcom.putExtension(entry.getKey(), entry.getValue());
+         }
+      }
+      return gedcom;
+   }
+
+   /**
+    * Append more to list; list is either empty or a mutable list from an earlier chunk
+    */
+   private static <T> List<T> append(List<T> list, List<T> more) {
+      if (list.isEmpty()) {
+         return more.isEmpty() ? null : more;
+      }
+      list.addAll(more);
+      return list;
+   }
+
+   private void report(ChunkError error) {
+      switch (error.kind) {
+         case WARNING:
+            if (errorHandler != null) {
+               errorHandler.warning(error.message, error.lineNumber);
+            }
+            else {
+               logger.info(error.message + " @ " + error.lineNumber);
+            }
+            break;
+         case ERROR:
+            if (errorHandler != null) {
+               errorHandler.error(error.message, error.lineNumber);
+            }
+            else {
+               logger.warn(error.message + " @ " + error.lineNumber);
+            }
+            break;
+         case FATAL_ERROR:
+            if (errorHandler != null) {
+               errorHandler.fatalError(error.message, error.lineNumber);
+            }
+            else {
+               logger.error(error.message + " @ " + error.lineNumber);
+            }
+            break;
+      }
+   }
+
+   /**
+    * Lines of the file starting at a level-0 line, together with what earlier chunks contained
+    */
+   private class Chunk implements Callable<ChunkResult> {
+      private final int lineNumberOffset;
+      private final boolean headerSeen;
+      private final boolean submissionSeen;
+      private char[] chars = new char[chunkSize + 256];
+      private int length = 0;
+
+      Chunk(int lineNumberOffset, boolean headerSeen, boolean submissionSeen) {
+         this.lineNumberOffset = lineNumberOffset;
+         this.headerSeen = headerSeen;
+         this.submissionSeen = submissionSeen;
+      }
+
+      void append(char[] buf, int start, int end) {
+         int len = end - start;
+         if (length + len + 1 > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + len + 1));
+         }
+         System.arraycopy(buf, start, chars, length, len);
+         length += len;
+         chars[length++] = '\n';
+      }
+
+      public ChunkResult call() throws IOException {
+         ModelParser modelParser = new ModelParser() {
+            @Override
+            Gedcom newGedcom() {
+               Gedcom gedcom = new Gedcom();
+               if (headerSeen) {
+                  gedcom.setHeader(placeholderHeader);
+               }
+               if (submissionSeen) {
+                  gedcom.setSubmission(placeholderSubmission);
+               }
+               return gedcom;
+            }
+         };
+         final List<ChunkError> errors = new ArrayList<ChunkError>();
+         modelParser.setErrorHandler(new ErrorHandler() {
+            public void warning(String message, int lineNumber) {
+               errors.add(new ChunkError(ChunkError.Kind.WARNING, message, lineNumber));
+            }
+
+            public void error(String message, int lineNumber) {
+               errors.add(new ChunkError(ChunkError.Kind.ERROR, message, lineNumber));
+            }
+
+            public void fatalError(String message, int lineNumber) {
+               errors.add(new ChunkError(ChunkError.Kind.FATAL_ERROR, message, lineNumber));
+            }
+         });
+         modelParser.setLineNumberOffset(lineNumberOffset);
+         try {
+            Gedcom gedcom = modelParser.parseGedcom(new CharArrayReader(chars, 0, length));
+            chars = null;
+            return new ChunkResult(gedcom, errors, null);
+         }
+         catch (SAXParseException e) {
+            return new ChunkResult(null, errors, e);
+         }
+      }
+   }
+
+   private static class ChunkResult {
+      private final Gedcom gedcom;
+      private final List<ChunkError> errors;
+      private final SAXParseException exception;
+
+      ChunkResult(Gedcom gedcom, List<ChunkError> errors, SAXParseException exception) {
+         this.gedcom = gedcom;
+         this.errors = errors;
+         this.exception = exception;
+      }
+   }
+
+   private static class ChunkError {
+      enum Kind { WARNING, ERROR, FATAL_ERROR }
+
+      private final Kind kind;
+      private final String message;
+      private final int lineNumber;
+
+      ChunkError(Kind kind, String message, int lineNumber) {
+         this.kind = kind;
+         this.message = message;
+         this.lineNumber = lineNumber;
+      }
+   }
+}
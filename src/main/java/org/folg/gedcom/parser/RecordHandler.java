@@ -0,0 +1,27 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.ExtensionContainer;
+
+/**
+ * Receives each top-level record from {@link ModelParser} as soon as the record is complete:
+ * Header, Submission, Submitter, Person, Family, Media, Note, Source or Repository.
+ */
+public interface RecordHandler {
+   public void handleRecord(ExtensionContainer record);
+}
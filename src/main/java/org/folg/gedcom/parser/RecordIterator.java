@@ -0,0 +1,229 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.xml.sax.SAXParseException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the top-level records of a GEDCOM file in file order, without keeping them in memory.
+ * <p>
+ * The file is parsed by the given ModelParser (with its error handler) on a background thread, which hands
+ * completed records over through a small bounded queue, so only a few records are in memory at once.
+ * Parse failures are rethrown from hasNext/next: IOExceptions as UncheckedIOException, SAXParseExceptions
+ * wrapped in a RuntimeException.  Close the iterator (or the stream) to stop parsing early; an iterator that
+ * is dropped without being closed stops its thread once it has been garbage collected.
+ */
+public class RecordIterator implements Iterator<ExtensionContainer>, Closeable {
+   private static final int QUEUE_SIZE = 256;
+   private static final long OFFER_TIMEOUT_MILLIS = 1000;
+   private static final Object END = new Object();
+
+   private interface Input {
+      void parse(ModelParser modelParser) throws SAXParseException, IOException;
+   }
+
+   private static class Failure {
+      private final Exception exception;
+
+      Failure(Exception exception) {
+         this.exception = exception;
+      }
+   }
+
+   private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+   private final Thread producer;
+   private Object next = null;
+   private boolean done = false;
+
+   public RecordIterator(ModelParser modelParser, final File gedcomFile) {
+      this(modelParser, new Input() {
+         public void parse(ModelParser modelParser) throws SAXParseException, IOException {
+            modelParser.parseGedcom(gedcomFile);
+         }
+      });
+   }
+
+   public RecordIterator(ModelParser modelParser, final InputStream is) {
+      this(modelParser, new Input() {
+         public void parse(ModelParser modelParser) throws SAXParseException, IOException {
+            modelParser.parseGedcom(is);
+         }
+      });
+   }
+
+   public RecordIterator(ModelParser modelParser, final Reader reader) {
+      this(modelParser, new Input() {
+         public void parse(ModelParser modelParser) throws SAXParseException, IOException {
+            modelParser.parseGedcom(reader);
+         }
+      });
+   }
+
+   private RecordIterator(ModelParser modelParser, Input input) {
+      producer = new Thread(new Producer(this, modelParser, input), "gedcom-record-iterator");
+      producer.setDaemon(true);
+      producer.start();
+   }
+
+   /**
+    * Thrown on the producer thread to abandon parsing after close()
+    */
+   private static class ClosedException extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+   }
+
+   /**
+    * Parses on the producer thread.  It holds the iterator only weakly, so an iterator nobody closed can still
+    * be collected, and the producer gives up once it has been.
+    */
+   private static class Producer implements Runnable {
+      private final BlockingQueue<Object> queue;
+      private final WeakReference<RecordIterator> owner;
+      private final ModelParser modelParser;
+      private final Input input;
+
+      Producer(RecordIterator owner, ModelParser modelParser, Input input) {
+         this.queue = owner.queue;
+         this.owner = new WeakReference<RecordIterator>(owner);
+         this.modelParser = modelParser;
+         this.input = input;
+      }
+
+      public void run() {
+         modelParser.setRecordHandler(new RecordHandler() {
+            public void handleRecord(ExtensionContainer record) {
+               put(record);
+            }
+         });
+         try {
+            input.parse(modelParser);
+            put(END);
+         }
+         catch (ClosedException e) {
+            // close() was called, or the iterator was dropped
+         }
+         catch (SAXParseException | IOException | RuntimeException e) {
+            try {
+               put(new Failure(e));
+            }
+            catch (ClosedException closed) {
+               // nobody is left to report the failure to
+            }
+         }
+         finally {
+            modelParser.setRecordHandler(null);
+         }
+      }
+
+      /**
+       * Wait for room in the queue, checking now and then that the iterator is still around
+       */
+      private void put(Object obj) {
+         try {
+            while (!queue.offer(obj, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+               if (owner.get() == null) {
+                  throw new ClosedException();
+               }
+            }
+         }
+         catch (InterruptedException e) {
+            throw new ClosedException();
+         }
+      }
+   }
+
+   @Override
+   public boolean hasNext() {
+      if (next == null && !done) {
+         try {
+            next = queue.take();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("interrupted while waiting for the next record", e);
+         }
+         if (next == END) {
+            next = null;
+            done = true;
+         }
+         else if (next instanceof Failure) {
+            Exception exception = ((Failure)next).exception;
+            next = null;
+            done = true;
+            if (exception instanceof IOException) {
+               throw new UncheckedIOException((IOException)exception);
+            }
+            if (exception instanceof RuntimeException) {
+               throw (RuntimeException)exception;
+            }
+            throw new RuntimeException(exception);
+         }
+      }
+      return next != null;
+   }
+
+   @Override
+   public ExtensionContainer next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      ExtensionContainer record = (ExtensionContainer)next;
+      next = null;
+      return record;
+   }
+
+   /**
+    * Stop parsing and discard any records not yet read
+    */
+   @Override
+   public void close() {
+      if (!done) {
+         done = true;
+         next = null;
+         producer.interrupt();
+         queue.clear();
+      }
+   }
+
+   /**
+    * Get the remaining records as a sequential stream; closing the stream closes this iterator
+    */
+   public Stream<ExtensionContainer> stream() {
+      Spliterator<ExtensionContainer> spliterator =
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+      return StreamSupport.stream(spliterator, false).onClose(this::close);
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+/**
+ * Bounded pool of canonical Strings for short values that repeat throughout a file: dates, places, surnames,
+ * TYPE values, flags like Y.  Pass one to {@link ModelParser#setStringPool} or {@link TreeParser#setStringPool}
+ * and equal values share one String instance instead of each line creating its own.
+ * <p>
+ * The pool is a fixed-size direct-mapped cache: each value hashes to one slot, and a new value replaces
+ * whatever was in its slot, so memory use is bounded however many distinct values the file has.
+ * Values longer than maxLength are never pooled.  A pool is not thread-safe; give each parser its own.
+ */
+public class StringPool {
+   public static final int DEFAULT_CAPACITY = 64 * 1024;
+   public static final int DEFAULT_MAX_LENGTH = 64;
+
+   private final String[] strings;
+   private final int[] hashes;
+   private final int mask;
+   private final int maxLength;
+   private long hits = 0;
+   private long misses = 0;
+
+   public StringPool() {
+      this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+   }
+
+   /**
+    * @param capacity maximum number of Strings kept; rounded up to a power of 2
+    * @param maxLength longest value that is pooled
+    */
+   public StringPool(int capacity, int maxLength) {
+      int size = 1;
+      while (size < capacity) {
+         size <<= 1;
+      }
+      strings = new String[size];
+      hashes = new int[size];
+      mask = size - 1;
+      this.maxLength = maxLength;
+   }
+
+   /**
+    * Get a String with the characters ch[start..start+length), shared with earlier equal values when possible
+    */
+   public String get(char[] ch, int start, int length) {
+      if (length > maxLength) {
+         return new String(ch, start, length);
+      }
+      int hash = 0;
+      for (int i = start; i < start + length; i++) {
+         hash = 31 * hash + ch[i];
+      }
+      // spread the high bits, since short values differ mostly in their last characters
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      String s = strings[slot];
+      if (s != null && hashes[slot] == hash && matches(s, ch, start, length)) {
+         hits++;
+         return s;
+      }
+      misses++;
+      s = new String(ch, start, length);
+      strings[slot] = s;
+      hashes[slot] = hash;
+      return s;
+   }
+
+   /**
+    * Get the canonical instance of s, or s itself if it isn't pooled yet
+    */
+   public String get(String s) {
+      if (s == null || s.length() > maxLength) {
+         return s;
+      }
+      int hash = s.hashCode();
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      String pooled = strings[slot];
+      if (pooled != null && hashes[slot] == hash && pooled.equals(s)) {
+         hits++;
+         return pooled;
+      }
+      misses++;
+      strings[slot] = s;
+      hashes[slot] = hash;
+      return s;
+   }
+
+   private static boolean matches(String s, char[] ch, int start, int length) {
+      if (s.length() != length) {
+         return false;
+      }
+      for (int i = 0; i < length; i++) {
+         if (s.charAt(i) != ch[start + i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Number of lookups that returned a pooled String
+    */
+   public long getHits() {
+      return hits;
+   }
+
+   /**
+    * Number of lookups of poolable values that created a new String
+    */
+   public long getMisses() {
+      return misses;
+   }
+
+   /**
+    * Fraction of lookups of poolable values that returned a pooled String
+    */
+   public double getHitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0.0 : (double)hits / lookups;
+   }
+
+   /**
+    * Empty the pool and reset the statistics
+    */
+   public void clear() {
+      for (int i = 0; i < strings.length; i++) {
+         strings[i] = null;
+      }
+      hits = 0;
+      misses = 0;
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.EventFact;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Case-insensitive lookup of the tag names ModelParser knows: the {@link ModelParser.Tag} values and the
+ * event/fact tags in {@link EventFact#PERSONAL_EVENT_FACT_TAGS} and {@link EventFact#FAMILY_EVENT_FACT_TAGS}.
+ * <p>
+ * The table is built once, when the class is loaded, and is fixed from then on; the event/fact sets are
+ * unmodifiable so they can't drift from it.  ASCII tag names are looked up without creating an upper-case copy;
+ * other names are upper-cased first, as String.toUpperCase can turn some non-ASCII letters into ASCII ones.
+ */
+final class TagTable {
+   static final class Entry {
+      final String name;
+      final ModelParser.Tag tag;
+      final boolean personalEventFact;
+      final boolean familyEventFact;
+
+      private Entry(String name, ModelParser.Tag tag, boolean personalEventFact, boolean familyEventFact) {
+         this.name = name;
+         this.tag = tag;
+         this.personalEventFact = personalEventFact;
+         this.familyEventFact = familyEventFact;
+      }
+   }
+
+   private static final Entry[] table;
+   private static final int mask;
+
+   static {
+      Map<String, ModelParser.Tag> tags = new HashMap<String, ModelParser.Tag>();
+      for (ModelParser.Tag tag : ModelParser.Tag.values()) {
+         tags.put(tag.name(), tag);
+      }
+      Set<String> names = new HashSet<String>(tags.keySet());
+      names.addAll(EventFact.PERSONAL_EVENT_FACT_TAGS);
+      names.addAll(EventFact.FAMILY_EVENT_FACT_TAGS);
+
+      // at most a quarter full, so most lookups find their entry in the first slot
+      int size = 1;
+      while (size < names.size() * 4) {
+         size <<= 1;
+      }
+      table = new Entry[size];
+      mask = size - 1;
+      for (String name : names) {
+         Entry entry = new Entry(name, tags.get(name),
+               EventFact.PERSONAL_EVENT_FACT_TAGS.contains(name), EventFact.FAMILY_EVENT_FACT_TAGS.contains(name));
+         int slot = name.hashCode() & mask;
+         while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+         }
+         table[slot] = entry;
+      }
+   }
+
+   private TagTable() {
+   }
+
+   /**
+    * Find the entry for tagName, ignoring case
+    *
+    * @return null if ModelParser doesn't know the tag
+    */
+   static Entry lookup(String tagName) {
+      int hash = 0;
+      int len = tagName.length();
+      for (int i = 0; i < len; i++) {
+         char c = tagName.charAt(i);
+         if (c >= 128) {
+            return lookupUpperCase(tagName.toUpperCase());
+         }
+         hash = 31 * hash + upper(c);
+      }
+      for (int slot = hash & mask; table[slot] != null; slot = (slot + 1) & mask) {
+         Entry entry = table[slot];
+         if (matches(entry.name, tagName)) {
+            return entry;
+         }
+      }
+      return null;
+   }
+
+   private static Entry lookupUpperCase(String upperName) {
+      for (int slot = upperName.hashCode() & mask; table[slot] != null; slot = (slot + 1) & mask) {
+         if (table[slot].name.equals(upperName)) {
+            return table[slot];
+         }
+      }
+      return null;
+   }
+
+   private static char upper(char c) {
+      return c >= 'a' && c <= 'z' ? (char)(c - ('a' - 'A')) : c;
+   }
+
+   private static boolean matches(String name, String tagName) {
+      int len = name.length();
+      if (tagName.length() != len) {
+         return false;
+      }
+      for (int i = 0; i < len; i++) {
+         if (name.charAt(i) != upper(tagName.charAt(i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
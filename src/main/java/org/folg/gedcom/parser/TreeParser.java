@@ -41,6 +41,10 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private GedcomTag tree;
    private Stack<GedcomTag> nodeStack;
    private ErrorHandler errorHandler = null;
+   private StringPool stringPool = null;
+   // the tag still receiving characters after its first value fragment, and the value collected so far
+   private GedcomTag pendingTag;
+   private StringBuilder pendingValue = new StringBuilder();
 
    @Override
    public void setDocumentLocator(Locator locator) {
@@ -51,11 +55,12 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
    public void startDocument() throws SAXException {
       tree = null;
       nodeStack = new Stack<GedcomTag>();
+      pendingTag = null;
    }
 
    @Override
    public void endDocument() throws SAXException {
-      // ignore
+      flushValue();
    }
 
    @Override
@@ -70,7 +75,10 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-      GedcomTag node = new GedcomTag(atts.getValue("ID"), localName, atts.getValue("REF"));
+      flushValue();
+      String id = atts.getValue("ID");
+      String ref = atts.getValue("REF");
+      GedcomTag node = new GedcomTag(id, localName, ref);
       if (tree == null) {
          tree = node;
       }
@@ -82,14 +90,32 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void endElement(String uri, String localName, String qName) throws SAXException {
+      flushValue();
       nodeStack.pop();      
    }
 
    @Override
    public void characters(char[] ch, int start, int length) throws SAXException {
-      String s = new String(ch, start, length);
       GedcomTag tos = nodeStack.peek();
-      tos.appendValue(s);
+      if (tos != pendingTag) {
+         flushValue();
+         if (tos.getValue() == null) {
+            tos.appendValue(stringPool != null ? stringPool.get(ch, start, length) : new String(ch, start, length));
+            return;
+         }
+         // more characters for the same tag (non-standard lines): collect them and set the value once
+         pendingTag = tos;
+         pendingValue.setLength(0);
+         pendingValue.append(tos.getValue());
+      }
+      pendingValue.append(ch, start, length);
+   }
+
+   private void flushValue() {
+      if (pendingTag != null) {
+         pendingTag.setValue(pendingValue.toString());
+         pendingTag = null;
+      }
    }
 
    @Override
@@ -141,9 +167,21 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
       this.errorHandler = errorHandler;
    }
 
+   /**
+    * Share one String instance among equal short values, or null to create a String for each value.
+    * IDs and references aren't pooled: each ID is unique, so it would only push useful values out of the pool
+    */
+   public void setStringPool(StringPool stringPool) {
+      this.stringPool = stringPool;
+   }
+
+   public StringPool getStringPool() {
+      return stringPool;
+   }
+
    public List<GedcomTag> parseGedcom(File gedcomFile) throws SAXParseException, IOException {
       GedcomParser parser = gedcomParser();
-      parser.parse(gedcomFile.toURI().toString());
+      parser.parse(gedcomFile);
       return tree.getChildren();
    }
 
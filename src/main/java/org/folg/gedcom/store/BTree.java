@@ -0,0 +1,265 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * B+tree in the pages of a {@link PageFile}, mapping byte-string keys to longs.
+ * <p>
+ * Keys compare as unsigned bytes and are at most {@link #MAX_KEY_LENGTH} long.  Each page is one node: a kind
+ * byte, an entry count, for inner nodes the leftmost child, then for each entry the key's length, the key and
+ * the value (leaves) or the child holding keys from this key up (inner nodes).  Lookups scan the entries where
+ * they lie in the page; inserts decode the node, add to it and split it in two when it no longer fits.
+ * Keys can be added and their values replaced, but not removed.
+ */
+final class BTree {
+   static final int MAX_KEY_LENGTH = 255;
+   private static final byte LEAF = 1;
+   private static final byte INNER = 2;
+   private static final int HEADER_SIZE = 3;
+
+   private final PageFile file;
+   private final BufferPool pool;
+   private long root;
+
+   /**
+    * @param root the root page of an existing tree, or -1 to start an empty one
+    */
+   BTree(PageFile file, BufferPool pool, long root) {
+      this.file = file;
+      this.pool = pool;
+      if (root < 0) {
+         Node node = new Node(true);
+         root = file.allocate();
+         pool.create(file, root);
+         write(root, node);
+      }
+      this.root = root;
+   }
+
+   /**
+    * The root page, which moves when the root splits
+    */
+   long getRoot() {
+      return root;
+   }
+
+   /**
+    * @return the value of key, or -1 if it has none
+    */
+   long get(byte[] key) {
+      long page = root;
+      while (true) {
+         ByteBuffer buffer = pool.get(file, page).buffer;
+         int count = buffer.getShort(1);
+         int offset = HEADER_SIZE;
+         if (buffer.get(0) == LEAF) {
+            for (int i = 0; i < count; i++) {
+               int length = buffer.get(offset) & 0xFF;
+               int cmp = compare(buffer, offset + 1, length, key);
+               if (cmp == 0) {
+                  return buffer.getLong(offset + 1 + length);
+               }
+               if (cmp > 0) {
+                  break;
+               }
+               offset += 1 + length + 8;
+            }
+            return -1;
+         }
+         long child = buffer.getLong(offset);
+         offset += 8;
+         for (int i = 0; i < count; i++) {
+            int length = buffer.get(offset) & 0xFF;
+            if (compare(buffer, offset + 1, length, key) > 0) {
+               break;
+            }
+            child = buffer.getLong(offset + 1 + length);
+            offset += 1 + length + 8;
+         }
+         page = child;
+      }
+   }
+
+   /**
+    * Set the value of key, adding it if it's new
+    */
+   void put(byte[] key, long value) {
+      if (key.length > MAX_KEY_LENGTH) {
+         throw new IllegalArgumentException("Key longer than " + MAX_KEY_LENGTH + " bytes");
+      }
+      Split split = insert(root, key, value);
+      if (split != null) {
+         Node node = new Node(false);
+         node.keys.add(split.key);
+         node.pointers.add(root);
+         node.pointers.add(split.page);
+         long page = file.allocate();
+         pool.create(file, page);
+         write(page, node);
+         root = page;
+      }
+   }
+
+   /**
+    * A node's new right sibling, and the smallest key under it
+    */
+   private static final class Split {
+      final byte[] key;
+      final long page;
+
+      Split(byte[] key, long page) {
+         this.key = key;
+         this.page = page;
+      }
+   }
+
+   private Split insert(long page, byte[] key, long value) {
+      Node node = read(page);
+      int index = Collections.binarySearch(node.keys, key, BTree::compare);
+      if (node.leaf) {
+         if (index >= 0) {
+            node.pointers.set(index, value);
+            write(page, node);
+            return null;
+         }
+         node.keys.add(-index - 1, key);
+         node.pointers.add(-index - 1, value);
+      }
+      else {
+         // an equal key's entries are in the child to its right
+         int child = index >= 0 ? index + 1 : -index - 1;
+         Split split = insert(node.pointers.get(child), key, value);
+         if (split == null) {
+            return null;
+         }
+         node.keys.add(child, split.key);
+         node.pointers.add(child + 1, split.page);
+      }
+      if (node.size() <= file.getPageSize()) {
+         write(page, node);
+         return null;
+      }
+      int middle = node.keys.size() / 2;
+      Node right = new Node(node.leaf);
+      byte[] separator = node.keys.get(middle);
+      if (node.leaf) {
+         right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+         right.pointers.addAll(node.pointers.subList(middle, node.pointers.size()));
+      }
+      else {
+         // the separator moves up and its child becomes the right node's leftmost
+         right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+         right.pointers.addAll(node.pointers.subList(middle + 1, node.pointers.size()));
+      }
+      node.keys.subList(middle, node.keys.size()).clear();
+      node.pointers.subList(node.leaf ? middle : middle + 1, node.pointers.size()).clear();
+      long rightPage = file.allocate();
+      pool.create(file, rightPage);
+      write(page, node);
+      write(rightPage, right);
+      return new Split(separator, rightPage);
+   }
+
+   /**
+    * A decoded node; an inner node has one more pointer than keys
+    */
+   private static final class Node {
+      final boolean leaf;
+      final List<byte[]> keys = new ArrayList<byte[]>();
+      final List<Long> pointers = new ArrayList<Long>();
+
+      Node(boolean leaf) {
+         this.leaf = leaf;
+      }
+
+      int size() {
+         int size = HEADER_SIZE + (leaf ? 0 : 8);
+         for (byte[] key : keys) {
+            size += 1 + key.length + 8;
+         }
+         return size;
+      }
+   }
+
+   private Node read(long page) {
+      ByteBuffer buffer = pool.get(file, page).buffer;
+      Node node = new Node(buffer.get(0) == LEAF);
+      int count = buffer.getShort(1);
+      int offset = HEADER_SIZE;
+      if (!node.leaf) {
+         node.pointers.add(buffer.getLong(offset));
+         offset += 8;
+      }
+      for (int i = 0; i < count; i++) {
+         int length = buffer.get(offset) & 0xFF;
+         byte[] key = new byte[length];
+         for (int j = 0; j < length; j++) {
+            key[j] = buffer.get(offset + 1 + j);
+         }
+         node.keys.add(key);
+         node.pointers.add(buffer.getLong(offset + 1 + length));
+         offset += 1 + length + 8;
+      }
+      return node;
+   }
+
+   private void write(long page, Node node) {
+      BufferPool.Page target = pool.get(file, page);
+      ByteBuffer buffer = target.buffer;
+      buffer.put(0, node.leaf ? LEAF : INNER);
+      buffer.putShort(1, (short)node.keys.size());
+      int offset = HEADER_SIZE;
+      int pointer = 0;
+      if (!node.leaf) {
+         buffer.putLong(offset, node.pointers.get(pointer++));
+         offset += 8;
+      }
+      for (byte[] key : node.keys) {
+         buffer.put(offset, (byte)key.length);
+         for (int j = 0; j < key.length; j++) {
+            buffer.put(offset + 1 + j, key[j]);
+         }
+         buffer.putLong(offset + 1 + key.length, node.pointers.get(pointer++));
+         offset += 1 + key.length + 8;
+      }
+      target.markDirty();
+   }
+
+   private static int compare(byte[] a, byte[] b) {
+      return Arrays.compareUnsigned(a, b);
+   }
+
+   /**
+    * Compare the key stored at buffer[offset..offset+length) with key
+    */
+   private static int compare(ByteBuffer buffer, int offset, int length, byte[] key) {
+      int common = Math.min(length, key.length);
+      for (int i = 0; i < common; i++) {
+         int cmp = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+         if (cmp != 0) {
+            return cmp;
+         }
+      }
+      return length - key.length;
+   }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the pages of one or more {@link PageFile}s, holding at most a memory budget's
+ * worth of pages.
+ * <p>
+ * A page is read from its file the first time it is asked for; when the pool is full, asking for another page
+ * evicts the page used longest ago, writing it back first if it was changed.  A page stays usable after it is
+ * evicted, but changes made to it then are lost, so callers change a page right after getting it and mark it
+ * dirty.  The pool is not thread-safe.
+ */
+final class BufferPool {
+   private final int pageSize;
+   private final int capacity;
+   private final LinkedHashMap<Long, Page> pages;
+   private long hits = 0;
+   private long misses = 0;
+
+   /**
+    * A page's contents, and whether they've changed since they were read
+    */
+   static final class Page {
+      final PageFile file;
+      final long number;
+      final ByteBuffer buffer;
+      private boolean dirty = false;
+
+      private Page(PageFile file, long number, ByteBuffer buffer) {
+         this.file = file;
+         this.number = number;
+         this.buffer = buffer;
+      }
+
+      void markDirty() {
+         dirty = true;
+      }
+   }
+
+   /**
+    * @param memoryBudget bytes of pages to hold; at least a few pages are always held
+    */
+   BufferPool(int pageSize, long memoryBudget) {
+      this.pageSize = pageSize;
+      this.capacity = (int)Math.max(8, Math.min(Integer.MAX_VALUE, memoryBudget / pageSize));
+      this.pages = new LinkedHashMap<Long, Page>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+            if (size() > BufferPool.this.capacity) {
+               writeBack(eldest.getValue());
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   private static Long key(PageFile file, long number) {
+      return ((long)file.getId() << 56) | number;
+   }
+
+   /**
+    * Get a page, reading it from its file if it isn't held
+    */
+   Page get(PageFile file, long number) {
+      Long key = key(file, number);
+      Page page = pages.get(key);
+      if (page != null) {
+         hits++;
+         return page;
+      }
+      misses++;
+      page = new Page(file, number, ByteBuffer.allocate(pageSize));
+      try {
+         file.read(number, page.buffer);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      pages.put(key, page);
+      return page;
+   }
+
+   /**
+    * Get a newly allocated page without reading it; it starts out zeroed and dirty
+    */
+   Page create(PageFile file, long number) {
+      Page page = new Page(file, number, ByteBuffer.allocate(pageSize));
+      page.markDirty();
+      pages.put(key(file, number), page);
+      return page;
+   }
+
+   private static void writeBack(Page page) {
+      if (page.dirty) {
+         try {
+            page.file.write(page.number, page.buffer);
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+         page.dirty = false;
+      }
+   }
+
+   /**
+    * Write back every changed page of file
+    */
+   void flush(PageFile file) throws IOException {
+      List<Page> dirty = new ArrayList<Page>();
+      for (Page page : pages.values()) {
+         if (page.dirty && page.file == file) {
+            dirty.add(page);
+         }
+      }
+      // in page order, so the writes run along the file
+      dirty.sort((a, b) -> Long.compare(a.number, b.number));
+      for (Page page : dirty) {
+         file.write(page.number, page.buffer);
+         page.dirty = false;
+      }
+   }
+
+   /**
+    * Drop every page of file without writing it back
+    */
+   void discard(PageFile file) {
+      for (Iterator<Page> i = pages.values().iterator(); i.hasNext(); ) {
+         if (i.next().file == file) {
+            i.remove();
+         }
+      }
+   }
+
+   /**
+    * Most pages held at once
+    */
+   int getCapacity() {
+      return capacity;
+   }
+
+   int size() {
+      return pages.size();
+   }
+
+   /**
+    * Number of page requests served without reading the file
+    */
+   long getHits() {
+      return hits;
+   }
+
+   /**
+    * Number of page requests that read the file
+    */
+   long getMisses() {
+      return misses;
+   }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * A Gedcom that keeps its records encoded in off-heap memory and builds model objects only when they're asked for.
+ * <p>
+ * {@link #parse} streams a file through GedcomParser and encodes each person, family, media, note, source,
+ * repository and submitter record as it goes (see {@link RecordCodec}), so no model objects are built while
+ * loading and the heap holds little more than the header and a tag dictionary however big the file is.  Ids are
+ * kept in an off-heap hash table, so getPerson and the like cost a hash probe and one decode.
+ * <p>
+ * The record lists are read-only views that decode a record each time an element is read, and the objects
+ * returned are the caller's own: reading the same record twice gives two equal objects, and changing one
+ * changes nothing stored until it is passed to {@link #notifyRecordUpdated}, which encodes it again.  Removed
+ * records are tombstoned, and replacing a list tombstones the old records, as described in
+ * {@link RecordStoreGedcom}.  Any number of threads may read at once, as id lookups and reads take no locks;
+ * adds, updates, removes and replacements must not run alongside other calls.
+ * <p>
+ * The off-heap memory is append-only: an update stores the record's new encoding and leaves the old bytes
+ * behind unused, so a record updated many times takes space for each version, and a removed record's bytes
+ * and number stay allocated.  {@link #getOffHeapSize}
+ * includes that space; parse the Gedcom again (or write and re-read it) to reclaim it.
+ */
+public class CompactGedcom extends RecordStoreGedcom {
+   private static final long TOMBSTONE = -1;
+
+   private final transient OffHeapArena arena = new OffHeapArena();
+   private final transient OffHeapIdTable ids = new OffHeapIdTable();
+   private final transient OffHeapLongArray[] addresses = new OffHeapLongArray[RecordType.values().length];
+
+   public CompactGedcom() {
+      for (int i = 0; i < addresses.length; i++) {
+         addresses[i] = new OffHeapLongArray();
+      }
+   }
+
+   public static CompactGedcom parse(File gedcomFile) throws SAXParseException, IOException {
+      CompactGedcom gedcom = new CompactGedcom();
+      gedcom.load(gedcomFile, null, null);
+      return gedcom;
+   }
+
+   public static CompactGedcom parse(InputStream in) throws SAXParseException, IOException {
+      CompactGedcom gedcom = new CompactGedcom();
+      gedcom.load(null, in, null);
+      return gedcom;
+   }
+
+   public static CompactGedcom parse(Reader reader) throws SAXParseException, IOException {
+      CompactGedcom gedcom = new CompactGedcom();
+      gedcom.load(null, null, reader);
+      return gedcom;
+   }
+
+   private int idHash(RecordType type, String id) {
+      return OffHeapIdTable.hash(id.hashCode() * 31 + type.ordinal());
+   }
+
+   private static long entry(RecordType type, int number) {
+      return ((long)type.ordinal() << 32) | number;
+   }
+
+   int store(final RecordType type, byte[] bytes, int length) {
+      long address = arena.append(bytes, length);
+      ByteBuffer slab = arena.slab(address);
+      final String id = codec.decodeId(slab, OffHeapArena.start(slab, address));
+      if (id != null) {
+         int hash = idHash(type, id);
+         long existing = ids.get(hash, stored -> hasId(stored, type, id));
+         if (existing >= 0) {
+            int number = (int)existing;
+            addresses[type.ordinal()].set(number, address);
+            return number;
+         }
+         int number = addresses[type.ordinal()].add(address);
+         ids.put(hash, entry(type, number), stored -> hasId(stored, type, id));
+         return number;
+      }
+      return addresses[type.ordinal()].add(address);
+   }
+
+   private boolean hasId(long stored, RecordType type, String id) {
+      if ((int)(stored >>> 32) != type.ordinal()) {
+         return false;
+      }
+      long address = addresses[type.ordinal()].get((int)stored);
+      ByteBuffer slab = arena.slab(address);
+      return id.equals(codec.decodeId(slab, OffHeapArena.start(slab, address)));
+   }
+
+   void delete(RecordType type, int number) {
+      long address = addresses[type.ordinal()].get(number);
+      ByteBuffer slab = arena.slab(address);
+      String id = codec.decodeId(slab, OffHeapArena.start(slab, address));
+      if (id != null) {
+         final long entry = entry(type, number);
+         ids.remove(idHash(type, id), stored -> stored == entry);
+      }
+      addresses[type.ordinal()].set(number, TOMBSTONE);
+   }
+
+   ExtensionContainer decode(RecordType type, int number) {
+      long address = addresses[type.ordinal()].get(number);
+      ByteBuffer slab = arena.slab(address);
+      return codec.decode(slab, OffHeapArena.start(slab, address), OffHeapArena.end(slab, address));
+   }
+
+   int find(final RecordType type, final String id) {
+      return (int)ids.get(idHash(type, id), candidate -> hasId(candidate, type, id));
+   }
+
+   int count(RecordType type) {
+      return addresses[type.ordinal()].size();
+   }
+
+   /**
+    * Bytes of off-heap memory allocated for records and ids
+    */
+   public long getOffHeapSize() {
+      long size = arena.capacity() + ids.capacity();
+      for (OffHeapLongArray array : addresses) {
+         size += array.size() * 8L;
+      }
+      return size;
+   }
+}
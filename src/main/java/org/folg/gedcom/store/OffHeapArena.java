@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only off-heap memory for encoded records, in direct buffers of SLAB_SIZE bytes.
+ * <p>
+ * Each record is stored as its length as a varint followed by its bytes, never split between slabs; a record
+ * bigger than a slab gets a slab of its own.  A record's address is its slab number in the high 32 bits and
+ * its offset in the slab in the low 32 bits.
+ */
+final class OffHeapArena {
+   static final int SLAB_SIZE = 16 * 1024 * 1024;
+
+   private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+   private int position = 0;
+   private long size = 0;
+
+   /**
+    * @return the address of the stored record
+    */
+   synchronized long append(byte[] bytes, int length) {
+      int needed = 5 + length;
+      ByteBuffer[] slabs = this.slabs;
+      if (slabs.length == 0 || position + needed > slabs[slabs.length - 1].capacity()) {
+         slabs = Arrays.copyOf(slabs, slabs.length + 1);
+         slabs[slabs.length - 1] = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, needed));
+         this.slabs = slabs;
+         position = 0;
+      }
+      int slab = slabs.length - 1;
+      ByteBuffer buffer = slabs[slab];
+      long address = ((long)slab << 32) | position;
+      int value = length;
+      while ((value & ~0x7F) != 0) {
+         buffer.put(position++, (byte)((value & 0x7F) | 0x80));
+         value >>>= 7;
+      }
+      buffer.put(position++, (byte)value);
+      ByteBuffer target = buffer.duplicate();
+      target.position(position);
+      target.put(bytes, 0, length);
+      position += length;
+      size += length;
+      return address;
+   }
+
+   /**
+    * The slab holding the record at address
+    */
+   ByteBuffer slab(long address) {
+      return slabs[(int)(address >>> 32)];
+   }
+
+   /**
+    * Offset of the record's bytes in its slab, after the length
+    */
+   static int start(ByteBuffer slab, long address) {
+      int offset = (int)address;
+      while (slab.get(offset) < 0) {
+         offset++;
+      }
+      return offset + 1;
+   }
+
+   /**
+    * Offset just past the record's bytes in its slab
+    */
+   static int end(ByteBuffer slab, long address) {
+      int offset = (int)address;
+      int length = 0;
+      for (int shift = 0; ; shift += 7) {
+         int b = slab.get(offset++);
+         length |= (b & 0x7F) << shift;
+         if (b >= 0) {
+            return offset + length;
+         }
+      }
+   }
+
+   /**
+    * Total bytes of the records stored
+    */
+   synchronized long size() {
+      return size;
+   }
+
+   /**
+    * Off-heap memory allocated
+    */
+   long capacity() {
+      long capacity = 0;
+      for (ByteBuffer slab : slabs) {
+         capacity += slab.capacity();
+      }
+      return capacity;
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * Off-heap open-addressing hash table from a key's hash to a long value.
+ * <p>
+ * The table doesn't store keys: callers pass a predicate that checks whether a stored value belongs to their
+ * key, which a record store answers by decoding the id from the record.  The full hash is stored with each
+ * value, so the predicate is only asked about values whose hash matches, and growing the table needs no keys.
+ * The table is kept at most half full.  A removed value leaves a marker in its slot, so lookups keep probing past
+ * it; markers are dropped when the table grows.
+ * <p>
+ * Lookups take no lock: the buffers are held in one immutable Table, which grow replaces through a volatile
+ * field, so any number of threads may call get at once.  Puts and removes are synchronized with each other, but
+ * must not run alongside gets.
+ */
+final class OffHeapIdTable {
+   private static final long EMPTY = 0;
+   private static final long REMOVED = -1;
+
+   private static final class Table {
+      final IntBuffer hashes;
+      final LongBuffer values;
+      final int mask;
+
+      Table(int capacity) {
+         hashes = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+         values = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+         mask = capacity - 1;
+      }
+   }
+
+   private volatile Table table = new Table(1024);
+   private int count = 0;
+   private int removed = 0;
+
+   static int hash(int h) {
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * @return the value for the key, or -1 if there is none
+    */
+   long get(int hash, LongPredicate matches) {
+      Table table = this.table;
+      for (int slot = hash & table.mask; ; slot = (slot + 1) & table.mask) {
+         long stored = table.values.get(slot);
+         if (stored == EMPTY) {
+            return -1;
+         }
+         if (stored != REMOVED && table.hashes.get(slot) == hash && matches.test(stored - 1)) {
+            return stored - 1;
+         }
+      }
+   }
+
+   /**
+    * Set the value for the key, replacing the value that matches, if any
+    *
+    * @param value a value &gt;= 0
+    */
+   synchronized void put(int hash, long value, LongPredicate matches) {
+      Table table = this.table;
+      int slot = hash & table.mask;
+      for (long stored; (stored = table.values.get(slot)) != EMPTY; slot = (slot + 1) & table.mask) {
+         if (stored != REMOVED && table.hashes.get(slot) == hash && matches.test(stored - 1)) {
+            table.values.put(slot, value + 1);
+            return;
+         }
+      }
+      table.hashes.put(slot, hash);
+      table.values.put(slot, value + 1);
+      if (++count * 2 > table.mask + 1) {
+         grow(table);
+      }
+   }
+
+   /**
+    * Remove the value that matches, if any
+    *
+    * @return whether there was one
+    */
+   synchronized boolean remove(int hash, LongPredicate matches) {
+      Table table = this.table;
+      for (int slot = hash & table.mask; ; slot = (slot + 1) & table.mask) {
+         long stored = table.values.get(slot);
+         if (stored == EMPTY) {
+            return false;
+         }
+         if (stored != REMOVED && table.hashes.get(slot) == hash && matches.test(stored - 1)) {
+            table.values.put(slot, REMOVED);
+            removed++;
+            return true;
+         }
+      }
+   }
+
+   private void grow(Table old) {
+      Table grown = new Table((old.mask + 1) * 2);
+      for (int i = 0; i <= old.mask; i++) {
+         long stored = old.values.get(i);
+         if (stored != EMPTY && stored != REMOVED) {
+            int slot = old.hashes.get(i) & grown.mask;
+            while (grown.values.get(slot) != EMPTY) {
+               slot = (slot + 1) & grown.mask;
+            }
+            grown.hashes.put(slot, old.hashes.get(i));
+            grown.values.put(slot, stored);
+         }
+      }
+      count -= removed;
+      removed = 0;
+      // publish the filled table in one volatile write
+      table = grown;
+   }
+
+   synchronized int size() {
+      return count - removed;
+   }
+
+   /**
+    * Off-heap memory allocated
+    */
+   long capacity() {
+      return (table.mask + 1) * 12L;
+   }
+}
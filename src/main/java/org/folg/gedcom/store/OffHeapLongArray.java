@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Growable array of longs in off-heap memory
+ */
+final class OffHeapLongArray {
+   private volatile LongBuffer values = allocate(1024);
+   private volatile int size = 0;
+
+   private static LongBuffer allocate(int capacity) {
+      return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+   }
+
+   int size() {
+      return size;
+   }
+
+   long get(int index) {
+      if (index >= size) {
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return values.get(index);
+   }
+
+   void set(int index, long value) {
+      values.put(index, value);
+   }
+
+   /**
+    * @return the index of value
+    */
+   synchronized int add(long value) {
+      LongBuffer values = this.values;
+      if (size == values.capacity()) {
+         LongBuffer grown = allocate(values.capacity() * 2);
+         values.position(0);
+         values.limit(size);
+         grown.put(values);
+         values.clear();
+         this.values = values = grown;
+      }
+      values.put(size, value);
+      return size++;
+   }
+}
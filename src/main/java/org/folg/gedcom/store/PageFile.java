@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file read and written in fixed-size pages, through a {@link BufferPool}.
+ * <p>
+ * Pages are numbered from 0.  Allocating a page only counts it; it reaches the file when the pool writes it
+ * back, and pages past the end of the file read as zeros.
+ */
+final class PageFile implements Closeable {
+   private final FileChannel channel;
+   private final int id;
+   private final int pageSize;
+   private long pageCount;
+
+   /**
+    * @param id distinguishes this file's pages from other files' in a shared BufferPool; 0 to 255
+    * @param create start an empty file, replacing any existing one
+    */
+   PageFile(File file, int id, int pageSize, boolean create) throws IOException {
+      if (create) {
+         channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+               StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      else {
+         channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      this.id = id;
+      this.pageSize = pageSize;
+      this.pageCount = (channel.size() + pageSize - 1) / pageSize;
+   }
+
+   int getId() {
+      return id;
+   }
+
+   int getPageSize() {
+      return pageSize;
+   }
+
+   long getPageCount() {
+      return pageCount;
+   }
+
+   /**
+    * @return the number of a new page at the end of the file
+    */
+   long allocate() {
+      return pageCount++;
+   }
+
+   void read(long page, ByteBuffer buffer) throws IOException {
+      buffer.clear();
+      long position = page * pageSize;
+      while (buffer.hasRemaining()) {
+         int count = channel.read(buffer, position);
+         if (count < 0) {
+            break;
+         }
+         position += count;
+      }
+      while (buffer.hasRemaining()) {
+         buffer.put((byte)0);
+      }
+      buffer.clear();
+   }
+
+   void write(long page, ByteBuffer buffer) throws IOException {
+      ByteBuffer source = buffer.duplicate();
+      source.clear();
+      long position = page * pageSize;
+      while (source.hasRemaining()) {
+         position += channel.write(source, position);
+      }
+   }
+
+   /**
+    * Force written pages to the disk
+    */
+   void sync() throws IOException {
+      channel.force(false);
+   }
+
+   public void close() throws IOException {
+      channel.close();
+   }
+}
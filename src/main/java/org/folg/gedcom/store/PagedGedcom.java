@@ -0,0 +1,513 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A Gedcom kept in a pair of local page files, with only the pages in use held in memory.
+ * <p>
+ * Records are encoded by {@link RecordCodec} and appended to <code>store.records</code>; a B+tree in
+ * <code>store.index</code> maps each record's type and id to its number, and its type and number to where it
+ * lies in the records file.  Both files are read in {@link #PAGE_SIZE} pages through an LRU buffer pool holding
+ * at most the memory budget's worth of pages, so getPerson, getFamily and getPeople().get(i) fault in the
+ * pages they need and a file much bigger than the heap can be read like any other Gedcom.  The header,
+ * submission and top-level extensions are kept on the heap.
+ * <p>
+ * Records behave as in {@link CompactGedcom}: each read decodes a new object, {@link #notifyRecordUpdated}
+ * stores a changed record again, and a removed record's id key is set to -1 and its number key to a tombstone.
+ * The tombstoned numbers are saved alongside the tag dictionary.  Changes reach the files on
+ * {@link #flush} and {@link #close}.  The first change after a flush marks the store dirty on disk before any
+ * page is written back, and {@link #open} refuses a dirty store, so a store whose process died between a change
+ * and the next flush is reported rather than read half-written.
+ * Methods are synchronized, so threads may share a PagedGedcom but read one at a time.
+ */
+public class PagedGedcom extends RecordStoreGedcom implements Closeable {
+   public static final int PAGE_SIZE = 8192;
+   public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+   private static final long MAGIC = 0x4745445041474531L; // "GEDPAGE1"
+   private static final int VERSION = 2;
+   private static final int ID_KEY = 0;
+   private static final int NUMBER_KEY = 1;
+   private static final long TOMBSTONE = -1;
+
+   // header fields, at the start of the index file
+   private static final int ROOT_OFFSET = 16;
+   private static final int RECORDS_END_OFFSET = 24;
+   private static final int TAGS_OFFSET = 32;
+   private static final int SKELETON_OFFSET = 40;
+   private static final int TAG_COUNT_OFFSET = 48;
+   private static final int COUNTS_OFFSET = 52;
+   private static final int STATE_OFFSET = 80;
+   private static final int REMOVED_OFFSET = 88;
+   private static final int CLEAN = 0;
+   private static final int DIRTY = 1;
+
+   private final transient BufferPool pool;
+   private final transient PageFile index;
+   private final transient PageFile records;
+   private final transient BTree tree;
+   private final int[] counts = new int[RecordType.values().length];
+   private long recordsEnd = 0;
+   private int savedTagCount = 0;
+   private byte[] savedSkeleton = null;
+   private boolean removedChanged = false;
+   private boolean dirty = false;
+   private boolean closed = false;
+
+   private PagedGedcom(File store, long memoryBudget, boolean create) throws IOException {
+      pool = new BufferPool(PAGE_SIZE, memoryBudget);
+      index = new PageFile(indexFile(store), 0, PAGE_SIZE, create);
+      try {
+         records = new PageFile(recordsFile(store), 1, PAGE_SIZE, create);
+      } catch (IOException e) {
+         index.close();
+         throw e;
+      }
+      if (create) {
+         pool.create(index, index.allocate());
+         tree = new BTree(index, pool, -1);
+         removedChanged = true;
+         return;
+      }
+      ByteBuffer header = pool.get(index, 0).buffer;
+      if (index.getPageCount() == 0 || header.getLong(0) != MAGIC || header.getInt(8) != VERSION
+            || header.getInt(12) != PAGE_SIZE) {
+         closeFiles();
+         throw new IOException("Not a paged GEDCOM store: " + indexFile(store));
+      }
+      if (header.getInt(STATE_OFFSET) != CLEAN) {
+         closeFiles();
+         throw new IOException("Paged GEDCOM store was changed and not flushed: " + indexFile(store));
+      }
+      tree = new BTree(index, pool, header.getLong(ROOT_OFFSET));
+      recordsEnd = header.getLong(RECORDS_END_OFFSET);
+      long tagsAddress = header.getLong(TAGS_OFFSET);
+      long skeletonAddress = header.getLong(SKELETON_OFFSET);
+      savedTagCount = header.getInt(TAG_COUNT_OFFSET);
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] = header.getInt(COUNTS_OFFSET + i * 4);
+      }
+      String tags = new String(read(tagsAddress), StandardCharsets.UTF_8);
+      codec.setTags(tags.isEmpty() ? new String[0] : tags.split("\n", -1));
+      savedSkeleton = read(skeletonAddress);
+      readRemoved(read(header.getLong(REMOVED_OFFSET)));
+      try {
+         Gedcom skeleton = new ModelParser().parseGedcom(new ByteArrayInputStream(savedSkeleton));
+         copySkeleton(skeleton, this);
+      } catch (SAXParseException e) {
+         closeFiles();
+         throw new IOException("Can't read the header of " + store, e);
+      }
+   }
+
+   private static File indexFile(File store) {
+      return new File(store.getPath() + ".index");
+   }
+
+   private static File recordsFile(File store) {
+      return new File(store.getPath() + ".records");
+   }
+
+   /**
+    * Start an empty store, replacing any store already there
+    *
+    * @param store path of the store; its files are this path with .index and .records appended
+    * @param memoryBudget bytes of pages to keep in memory
+    */
+   public static PagedGedcom create(File store, long memoryBudget) throws IOException {
+      PagedGedcom gedcom = new PagedGedcom(store, memoryBudget, true);
+      gedcom.flush();
+      return gedcom;
+   }
+
+   /**
+    * Open a store made by {@link #create} or {@link #importGedcom}
+    */
+   public static PagedGedcom open(File store, long memoryBudget) throws IOException {
+      return new PagedGedcom(store, memoryBudget, false);
+   }
+
+   public static PagedGedcom open(File store) throws IOException {
+      return open(store, DEFAULT_MEMORY_BUDGET);
+   }
+
+   /**
+    * Read a GEDCOM file into a new store, replacing any store already there
+    */
+   public static PagedGedcom importGedcom(File gedcomFile, File store, long memoryBudget)
+         throws SAXParseException, IOException {
+      PagedGedcom gedcom = new PagedGedcom(store, memoryBudget, true);
+      try {
+         gedcom.load(gedcomFile, null, null);
+         gedcom.flush();
+      } catch (SAXParseException | IOException | RuntimeException e) {
+         gedcom.close();
+         throw e;
+      }
+      return gedcom;
+   }
+
+   private static byte[] idKey(RecordType type, String id) {
+      byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length + 2 > BTree.MAX_KEY_LENGTH) {
+         throw new IllegalArgumentException("Id too long to store: " + id);
+      }
+      byte[] key = new byte[bytes.length + 2];
+      key[0] = ID_KEY;
+      key[1] = (byte)type.ordinal();
+      System.arraycopy(bytes, 0, key, 2, bytes.length);
+      return key;
+   }
+
+   private static byte[] numberKey(RecordType type, int number) {
+      // big-endian, so keys sort by number
+      return new byte[] {NUMBER_KEY, (byte)type.ordinal(),
+            (byte)(number >>> 24), (byte)(number >>> 16), (byte)(number >>> 8), (byte)number};
+   }
+
+   synchronized int store(RecordType type, byte[] bytes, int length) {
+      checkOpen();
+      markDirty();
+      long address = append(bytes, length);
+      String id = codec.decodeId(ByteBuffer.wrap(bytes, 0, length), 0);
+      if (id != null) {
+         byte[] idKey = idKey(type, id);
+         long existing = tree.get(idKey);
+         if (existing >= 0) {
+            tree.put(numberKey(type, (int)existing), address);
+            return (int)existing;
+         }
+         int number = counts[type.ordinal()]++;
+         tree.put(numberKey(type, number), address);
+         tree.put(idKey, number);
+         return number;
+      }
+      int number = counts[type.ordinal()]++;
+      tree.put(numberKey(type, number), address);
+      return number;
+   }
+
+   synchronized int find(RecordType type, String id) {
+      checkOpen();
+      return (int)tree.get(idKey(type, id));
+   }
+
+   ExtensionContainer decode(RecordType type, int number) {
+      byte[] bytes;
+      synchronized (this) {
+         checkOpen();
+         bytes = read(tree.get(numberKey(type, number)));
+      }
+      return codec.decode(ByteBuffer.wrap(bytes), 0, bytes.length);
+   }
+
+   synchronized int count(RecordType type) {
+      return counts[type.ordinal()];
+   }
+
+   synchronized void delete(RecordType type, int number) {
+      checkOpen();
+      markDirty();
+      byte[] numberKey = numberKey(type, number);
+      byte[] bytes = read(tree.get(numberKey));
+      String id = codec.decodeId(ByteBuffer.wrap(bytes), 0);
+      if (id != null) {
+         tree.put(idKey(type, id), -1);
+      }
+      tree.put(numberKey, TOMBSTONE);
+   }
+
+   @Override
+   synchronized void tombstone(RecordType type, int number) {
+      super.tombstone(type, number);
+      removedChanged = true;
+   }
+
+   @Override
+   synchronized int size(RecordType type) {
+      return super.size(type);
+   }
+
+   @Override
+   synchronized int number(RecordType type, int index) {
+      return super.number(type, index);
+   }
+
+   /**
+    * For each type, the number of tombstones and then the gaps between them, as varints
+    */
+   private byte[] writeRemoved() {
+      RecordCodec.Output out = new RecordCodec.Output();
+      for (RecordType type : RecordType.values()) {
+         BitSet tombstones = removed(type);
+         out.writeVarint(tombstones.cardinality());
+         int previous = 0;
+         for (int number = tombstones.nextSetBit(0); number >= 0; number = tombstones.nextSetBit(number + 1)) {
+            out.writeVarint(number - previous);
+            previous = number;
+         }
+      }
+      return Arrays.copyOf(out.bytes(), out.length());
+   }
+
+   private void readRemoved(byte[] bytes) {
+      int[] position = {0};
+      for (RecordType type : RecordType.values()) {
+         BitSet tombstones = removed(type);
+         int number = 0;
+         for (int count = readVarint(bytes, position); count > 0; count--) {
+            number += readVarint(bytes, position);
+            tombstones.set(number);
+         }
+      }
+   }
+
+   private static int readVarint(byte[] bytes, int[] position) {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+         int b = bytes[position[0]++];
+         value |= (b & 0x7F) << shift;
+         if (b >= 0) {
+            return value;
+         }
+      }
+   }
+
+   /**
+    * Append length as a varint and then the bytes to the records file
+    *
+    * @return the offset they were written at
+    */
+   private long append(byte[] bytes, int length) {
+      long address = recordsEnd;
+      byte[] prefix = new byte[5];
+      int prefixLength = 0;
+      int value = length;
+      while ((value & ~0x7F) != 0) {
+         prefix[prefixLength++] = (byte)((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      prefix[prefixLength++] = (byte)value;
+      write(prefix, prefixLength);
+      write(bytes, length);
+      return address;
+   }
+
+   private void write(byte[] bytes, int length) {
+      int written = 0;
+      while (written < length) {
+         long number = recordsEnd / PAGE_SIZE;
+         int offset = (int)(recordsEnd % PAGE_SIZE);
+         BufferPool.Page page = number < records.getPageCount() ? pool.get(records, number)
+               : pool.create(records, records.allocate());
+         int count = Math.min(length - written, PAGE_SIZE - offset);
+         ByteBuffer target = page.buffer.duplicate();
+         target.position(offset);
+         target.put(bytes, written, count);
+         page.markDirty();
+         written += count;
+         recordsEnd += count;
+      }
+   }
+
+   /**
+    * Read the bytes appended at address
+    */
+   private byte[] read(long address) {
+      int length = 0;
+      for (int shift = 0; ; shift += 7) {
+         int b = pool.get(records, address / PAGE_SIZE).buffer.get((int)(address % PAGE_SIZE));
+         address++;
+         length |= (b & 0x7F) << shift;
+         if (b >= 0) {
+            break;
+         }
+      }
+      byte[] bytes = new byte[length];
+      int copied = 0;
+      while (copied < length) {
+         ByteBuffer source = pool.get(records, address / PAGE_SIZE).buffer.duplicate();
+         source.position((int)(address % PAGE_SIZE));
+         int count = Math.min(length - copied, source.remaining());
+         source.get(bytes, copied, count);
+         copied += count;
+         address += count;
+      }
+      return bytes;
+   }
+
+   /**
+    * Before the first change since the last flush, record on disk that the store is being changed; the pool may
+    * write changed pages back at any time after this
+    */
+   private void markDirty() {
+      if (!dirty) {
+         BufferPool.Page page = pool.get(index, 0);
+         page.buffer.putInt(STATE_OFFSET, DIRTY);
+         page.markDirty();
+         try {
+            index.write(0, page.buffer);
+            index.sync();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+         dirty = true;
+      }
+   }
+
+   private void checkOpen() {
+      if (closed) {
+         throw new IllegalStateException("PagedGedcom is closed");
+      }
+   }
+
+   /**
+    * Write the header, new tags and changed pages to the files and force them to the disk
+    */
+   public synchronized void flush() throws IOException {
+      checkOpen();
+      String[] tags = codec.getTags();
+      long tagsAddress = -1;
+      if (tags.length != savedTagCount || recordsEnd == 0) {
+         markDirty();
+         byte[] bytes = String.join("\n", tags).getBytes(StandardCharsets.UTF_8);
+         tagsAddress = append(bytes, bytes.length);
+      }
+      Gedcom skeleton = new Gedcom();
+      copySkeleton(this, skeleton);
+      ByteArrayOutputStream text = new ByteArrayOutputStream();
+      new GedcomWriter().write(skeleton, text);
+      byte[] skeletonBytes = text.toByteArray();
+      long skeletonAddress = -1;
+      // rewrite the skeleton only when it has changed, so flushing an unchanged store doesn't grow it
+      if (savedSkeleton == null || !Arrays.equals(skeletonBytes, savedSkeleton)) {
+         markDirty();
+         skeletonAddress = append(skeletonBytes, skeletonBytes.length);
+      }
+      long removedAddress = -1;
+      if (removedChanged) {
+         markDirty();
+         byte[] bytes = writeRemoved();
+         removedAddress = append(bytes, bytes.length);
+      }
+      if (!dirty) {
+         return;
+      }
+      // records first, so the header never points past what's on disk
+      pool.flush(records);
+      records.sync();
+      BufferPool.Page page = pool.get(index, 0);
+      ByteBuffer header = page.buffer;
+      header.putLong(0, MAGIC);
+      header.putInt(8, VERSION);
+      header.putInt(12, PAGE_SIZE);
+      header.putLong(ROOT_OFFSET, tree.getRoot());
+      header.putLong(RECORDS_END_OFFSET, recordsEnd);
+      if (tagsAddress >= 0) {
+         header.putLong(TAGS_OFFSET, tagsAddress);
+         header.putInt(TAG_COUNT_OFFSET, tags.length);
+         savedTagCount = tags.length;
+      }
+      if (skeletonAddress >= 0) {
+         header.putLong(SKELETON_OFFSET, skeletonAddress);
+         savedSkeleton = skeletonBytes;
+      }
+      if (removedAddress >= 0) {
+         header.putLong(REMOVED_OFFSET, removedAddress);
+         removedChanged = false;
+      }
+      for (int i = 0; i < counts.length; i++) {
+         header.putInt(COUNTS_OFFSET + i * 4, counts[i]);
+      }
+      page.markDirty();
+      // every other page first, so the header is marked clean only once the tree is on disk
+      pool.flush(index);
+      index.sync();
+      header.putInt(STATE_OFFSET, CLEAN);
+      index.write(0, header);
+      index.sync();
+      dirty = false;
+   }
+
+   /**
+    * Flush and close the files; the Gedcom can't be used afterwards
+    */
+   public synchronized void close() throws IOException {
+      if (closed) {
+         return;
+      }
+      try {
+         if (tree != null) {
+            flush();
+         }
+      } finally {
+         closeFiles();
+      }
+   }
+
+   /**
+    * Close the files without writing anything
+    */
+   private void closeFiles() throws IOException {
+      closed = true;
+      pool.discard(index);
+      pool.discard(records);
+      try {
+         index.close();
+      } finally {
+         records.close();
+      }
+   }
+
+   /**
+    * Most pages held in memory at once
+    */
+   public int getCachedPageLimit() {
+      return pool.getCapacity();
+   }
+
+   /**
+    * Number of page reads served from memory
+    */
+   public synchronized long getPageHits() {
+      return pool.getHits();
+   }
+
+   /**
+    * Number of page reads that went to the files
+    */
+   public synchronized long getPageFaults() {
+      return pool.getMisses();
+   }
+}
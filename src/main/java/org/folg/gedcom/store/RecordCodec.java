@@ -0,0 +1,300 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.parser.RecordHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary encoding of a top-level record's GEDCOM lines, and decoding back into a model object.
+ * <p>
+ * A record is the sequence of its lines in file order.  Each line is its level within the record as a byte, its
+ * tag as a varint code from this codec's tag dictionary, a byte of flags saying which of id, cross-reference
+ * and value follow, and each of those as a varint length and that many chars, one to three bytes each as in
+ * modified UTF-8.  Decoding replays the lines as SAX events into a ModelParser, so a decoded record is exactly
+ * the object ModelParser would have built from the same lines.
+ * <p>
+ * Encoding isn't thread-safe; decoding is, and may run alongside encoding.
+ */
+final class RecordCodec {
+   private static final int ID = 1;
+   private static final int REF = 2;
+   private static final int VALUE = 4;
+   private static final String ROOT = "GED";
+
+   private final ConcurrentHashMap<String, Integer> tagCodes = new ConcurrentHashMap<String, Integer>();
+   private volatile String[] tags = new String[0];
+
+   private int tagCode(String tag) {
+      Integer code = tagCodes.get(tag);
+      if (code == null) {
+         synchronized (this) {
+            code = tagCodes.get(tag);
+            if (code == null) {
+               code = tags.length;
+               String[] newTags = Arrays.copyOf(tags, code + 1);
+               newTags[code] = tag;
+               // publish the tag before its code, so a reader that finds the code finds the tag
+               tags = newTags;
+               tagCodes.put(tag, code);
+            }
+         }
+      }
+      return code;
+   }
+
+   /**
+    * The tag dictionary, indexed by code; save it alongside the encoded records to decode them later
+    */
+   String[] getTags() {
+      return tags;
+   }
+
+   /**
+    * Replace the tag dictionary with one from {@link #getTags}, before anything is encoded or decoded
+    */
+   synchronized void setTags(String[] newTags) {
+      tagCodes.clear();
+      for (int code = 0; code < newTags.length; code++) {
+         tagCodes.put(newTags[code], code);
+      }
+      tags = newTags.clone();
+   }
+
+   /**
+    * Growable byte array that a record is encoded into
+    */
+   static final class Output {
+      private byte[] bytes = new byte[256];
+      private int length = 0;
+
+      byte[] bytes() {
+         return bytes;
+      }
+
+      int length() {
+         return length;
+      }
+
+      void reset() {
+         length = 0;
+      }
+
+      private void ensure(int extra) {
+         if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+         }
+      }
+
+      void writeByte(int b) {
+         ensure(1);
+         bytes[length++] = (byte)b;
+      }
+
+      void writeVarint(int value) {
+         ensure(5);
+         while ((value & ~0x7F) != 0) {
+            bytes[length++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+         }
+         bytes[length++] = (byte)value;
+      }
+
+      void writeChars(char[] ch, int start, int count) {
+         int size = 0;
+         for (int i = start; i < start + count; i++) {
+            char c = ch[i];
+            size += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+         }
+         writeVarint(size);
+         ensure(size);
+         for (int i = start; i < start + count; i++) {
+            char c = ch[i];
+            if (c != 0 && c < 0x80) {
+               bytes[length++] = (byte)c;
+            }
+            else if (c < 0x800) {
+               bytes[length++] = (byte)(0xC0 | (c >> 6));
+               bytes[length++] = (byte)(0x80 | (c & 0x3F));
+            }
+            else {
+               bytes[length++] = (byte)(0xE0 | (c >> 12));
+               bytes[length++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+               bytes[length++] = (byte)(0x80 | (c & 0x3F));
+            }
+         }
+      }
+
+      void writeString(String s) {
+         writeChars(s.toCharArray(), 0, s.length());
+      }
+   }
+
+   /**
+    * Append one line to out
+    *
+    * @param level level of the line within its record, 0 for the record's own line
+    */
+   void encodeLine(Output out, int level, String tag, String id, String ref, char[] value, int start, int count) {
+      out.writeByte(level);
+      out.writeVarint(tagCode(tag));
+      out.writeByte((id != null ? ID : 0) | (ref != null ? REF : 0) | (count > 0 ? VALUE : 0));
+      if (id != null) {
+         out.writeString(id);
+      }
+      if (ref != null) {
+         out.writeString(ref);
+      }
+      if (count > 0) {
+         out.writeChars(value, start, count);
+      }
+   }
+
+   /**
+    * Reads an encoded record from a buffer without moving the buffer's position
+    */
+   private static final class Input {
+      private final ByteBuffer buffer;
+      private int position;
+      private char[] chars = new char[64];
+      private int charCount;
+
+      Input(ByteBuffer buffer, int position) {
+         this.buffer = buffer;
+         this.position = position;
+      }
+
+      int readByte() {
+         return buffer.get(position++) & 0xFF;
+      }
+
+      int readVarint() {
+         int value = 0;
+         for (int shift = 0; ; shift += 7) {
+            int b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+               return value;
+            }
+         }
+      }
+
+      /**
+       * Read a string into chars[0..charCount)
+       */
+      void readChars() {
+         int size = readVarint();
+         if (chars.length < size) {
+            chars = new char[Math.max(size, chars.length * 2)];
+         }
+         int end = position + size;
+         charCount = 0;
+         while (position < end) {
+            int b = buffer.get(position++) & 0xFF;
+            if (b < 0x80) {
+               chars[charCount++] = (char)b;
+            }
+            else if (b < 0xE0) {
+               chars[charCount++] = (char)(((b & 0x1F) << 6) | (buffer.get(position++) & 0x3F));
+            }
+            else {
+               int b2 = buffer.get(position++) & 0x3F;
+               chars[charCount++] = (char)(((b & 0x0F) << 12) | (b2 << 6) | (buffer.get(position++) & 0x3F));
+            }
+         }
+      }
+
+      String readString() {
+         readChars();
+         return new String(chars, 0, charCount);
+      }
+   }
+
+   /**
+    * The id on the record's own line, or null
+    *
+    * @param offset where the record starts in buffer
+    */
+   String decodeId(ByteBuffer buffer, int offset) {
+      Input in = new Input(buffer, offset);
+      in.readByte();
+      in.readVarint();
+      return (in.readByte() & ID) != 0 ? in.readString() : null;
+   }
+
+   /**
+    * Build the model object for the record in buffer[offset..end)
+    */
+   ExtensionContainer decode(ByteBuffer buffer, int offset, int end) {
+      final ExtensionContainer[] result = new ExtensionContainer[1];
+      ModelParser parser = new ModelParser();
+      parser.setRecordHandler(new RecordHandler() {
+         public void handleRecord(ExtensionContainer record) {
+            result[0] = record;
+         }
+      });
+      String[] tags = this.tags;
+      ArrayList<String> open = new ArrayList<String>();
+      AttributesImpl attributes = new AttributesImpl();
+      Input in = new Input(buffer, offset);
+      try {
+         parser.setDocumentLocator(new LocatorImpl());
+         parser.startDocument();
+         parser.startElement("", ROOT, ROOT, attributes);
+         while (in.position < end) {
+            int level = in.readByte();
+            String tag = tags[in.readVarint()];
+            int flags = in.readByte();
+            while (open.size() > level) {
+               String openTag = open.remove(open.size() - 1);
+               parser.endElement("", openTag, openTag);
+            }
+            attributes.clear();
+            if ((flags & ID) != 0) {
+               attributes.addAttribute("", "ID", "ID", "ID", in.readString());
+            }
+            if ((flags & REF) != 0) {
+               attributes.addAttribute("", "REF", "REF", "IDREF", in.readString());
+            }
+            parser.startElement("", tag, tag, attributes);
+            open.add(tag);
+            if ((flags & VALUE) != 0) {
+               in.readChars();
+               parser.characters(in.chars, 0, in.charCount);
+            }
+         }
+         while (!open.isEmpty()) {
+            String openTag = open.remove(open.size() - 1);
+            parser.endElement("", openTag, openTag);
+         }
+         parser.endElement("", ROOT, ROOT);
+         parser.endDocument();
+      } catch (SAXException e) {
+         throw new IllegalStateException("Can't decode stored record", e);
+      }
+      return result[0];
+   }
+}
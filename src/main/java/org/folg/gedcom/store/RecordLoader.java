@@ -0,0 +1,158 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.util.Arrays;
+
+/**
+ * SAX handler that encodes each stored top-level record as it streams past and hands it to a Sink, and passes
+ * the header, submission and any other level-0 lines on to another handler, normally a ModelParser.
+ */
+final class RecordLoader implements ContentHandler {
+   /**
+    * Receives each encoded record; bytes is reused after the call returns
+    */
+   interface Sink {
+      void record(RecordType type, byte[] bytes, int length);
+   }
+
+   private final RecordCodec codec;
+   private final ContentHandler other;
+   private final Sink sink;
+   private final RecordCodec.Output out = new RecordCodec.Output();
+   private int depth = 0;
+   private RecordType recordType = null;
+
+   // the line last started, written once its value is complete
+   private boolean pending = false;
+   private int pendingLevel;
+   private String pendingTag;
+   private String pendingId;
+   private String pendingRef;
+   private char[] pendingValue = new char[256];
+   private int pendingValueLength;
+
+   RecordLoader(RecordCodec codec, ContentHandler other, Sink sink) {
+      this.codec = codec;
+      this.other = other;
+      this.sink = sink;
+   }
+
+   private void flushPending() {
+      if (pending) {
+         codec.encodeLine(out, pendingLevel, pendingTag, pendingId, pendingRef, pendingValue, 0, pendingValueLength);
+         pending = false;
+      }
+   }
+
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      if (recordType == null && depth == 1) {
+         recordType = RecordType.of(qName);
+         if (recordType != null) {
+            out.reset();
+         }
+      }
+      if (recordType != null) {
+         flushPending();
+         pending = true;
+         pendingLevel = depth - 1;
+         pendingTag = qName;
+         pendingId = atts.getValue("ID");
+         pendingRef = atts.getValue("REF");
+         pendingValueLength = 0;
+      }
+      else {
+         other.startElement(uri, localName, qName, atts);
+      }
+      depth++;
+   }
+
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      if (recordType != null) {
+         if (pending) {
+            if (pendingValueLength + length > pendingValue.length) {
+               pendingValue = Arrays.copyOf(pendingValue, Math.max(pendingValue.length * 2, pendingValueLength + length));
+            }
+            System.arraycopy(ch, start, pendingValue, pendingValueLength, length);
+            pendingValueLength += length;
+         }
+      }
+      else {
+         other.characters(ch, start, length);
+      }
+   }
+
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      depth--;
+      if (recordType != null) {
+         flushPending();
+         if (depth == 1) {
+            sink.record(recordType, out.bytes(), out.length());
+            recordType = null;
+         }
+      }
+      else {
+         other.endElement(uri, localName, qName);
+      }
+   }
+
+   public void setDocumentLocator(Locator locator) {
+      other.setDocumentLocator(locator);
+   }
+
+   public void startDocument() throws SAXException {
+      depth = 0;
+      recordType = null;
+      pending = false;
+      other.startDocument();
+   }
+
+   public void endDocument() throws SAXException {
+      // GedcomParser leaves the elements open at the end of the file unclosed
+      if (recordType != null) {
+         flushPending();
+         sink.record(recordType, out.bytes(), out.length());
+         recordType = null;
+      }
+      other.endDocument();
+   }
+
+   public void startPrefixMapping(String prefix, String uri) throws SAXException {
+      other.startPrefixMapping(prefix, uri);
+   }
+
+   public void endPrefixMapping(String prefix) throws SAXException {
+      other.endPrefixMapping(prefix);
+   }
+
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      other.ignorableWhitespace(ch, start, length);
+   }
+
+   public void processingInstruction(String target, String data) throws SAXException {
+      other.processingInstruction(target, data);
+   }
+
+   public void skippedEntity(String name) throws SAXException {
+      other.skippedEntity(name);
+   }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Media;
+import org.folg.gedcom.model.Note;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.Repository;
+import org.folg.gedcom.model.Source;
+import org.folg.gedcom.model.Submitter;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.gedml.GedcomParser;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A Gedcom whose records are kept encoded by {@link RecordCodec} in some store, and decoded when they're read.
+ * Subclasses provide the store; this class maps the Gedcom methods onto it.
+ * <p>
+ * The record lists are read-only views that decode a record each time an element is read, and the objects
+ * returned are the caller's own: reading the same record twice gives two equal objects, and changing one
+ * changes nothing stored until it is passed to {@link #notifyRecordUpdated}, which encodes it again.
+ * <p>
+ * Each stored record has a number within its type, given out in the order records are first stored.  Removing a
+ * record drops its id and leaves a tombstone on its number, which is never given out again; the lists skip
+ * tombstones, so once records have been removed reading by index costs a step per removed record before it.
+ * As the records returned are copies, remove methods find the stored record by the id of the one passed in:
+ * they return false for a record without an id, which can only be dropped by replacing the whole list.
+ * Replacing a list tombstones every record in it and stores the new ones, so setPeople and the like, and
+ * {@link org.folg.gedcom.journal.ChangeJournal#replay} which calls them, work but cost a store of every record.
+ * {@link #freeze} blocks all of these changes, as for any Gedcom.
+ */
+abstract class RecordStoreGedcom extends Gedcom {
+   final transient RecordCodec codec = new RecordCodec();
+   private final transient BitSet[] removed = new BitSet[RecordType.values().length];
+
+   RecordStoreGedcom() {
+      for (int i = 0; i < removed.length; i++) {
+         removed[i] = new BitSet();
+      }
+   }
+
+   /**
+    * Store an encoded record, replacing the record of the same type and id if there is one
+    *
+    * @return the record's number within its type
+    */
+   abstract int store(RecordType type, byte[] bytes, int length);
+
+   /**
+    * @return the number of the record with the given type and id, or -1
+    */
+   abstract int find(RecordType type, String id);
+
+   abstract ExtensionContainer decode(RecordType type, int number);
+
+   /**
+    * Number of record numbers given out for a type, including tombstoned ones
+    */
+   abstract int count(RecordType type);
+
+   /**
+    * Drop the id of a stored record, if it has one, and leave a tombstone on its number in the store
+    */
+   abstract void delete(RecordType type, int number);
+
+   /**
+    * The tombstoned numbers of a type; subclasses that keep their records across runs save and restore these
+    */
+   BitSet removed(RecordType type) {
+      return removed[type.ordinal()];
+   }
+
+   /**
+    * Tombstone a stored record, so it can't be found by id and the lists skip it
+    */
+   void tombstone(RecordType type, int number) {
+      delete(type, number);
+      removed[type.ordinal()].set(number);
+   }
+
+   /**
+    * Number of records of a type that haven't been removed
+    */
+   int size(RecordType type) {
+      return count(type) - removed[type.ordinal()].cardinality();
+   }
+
+   /**
+    * The number of the record at index in the list of records of a type, skipping tombstones
+    */
+   int number(RecordType type, int index) {
+      BitSet tombstones = removed[type.ordinal()];
+      int number = index;
+      // each tombstone at or before the number found so far moves it one further on
+      for (int tombstone = tombstones.nextSetBit(0); tombstone >= 0 && tombstone <= number;
+           tombstone = tombstones.nextSetBit(tombstone + 1)) {
+         number++;
+      }
+      return number;
+   }
+
+   /**
+    * Read a GEDCOM file, or failing that a stream or reader, storing each record; the header, submission and
+    * top-level extensions are built by a ModelParser as usual and kept on the heap
+    */
+   void load(File file, InputStream in, Reader reader) throws SAXParseException, IOException {
+      ModelParser modelParser = new ModelParser();
+      GedcomParser parser = new GedcomParser();
+      parser.setContentHandler(new RecordLoader(codec, modelParser, new RecordLoader.Sink() {
+         public void record(RecordType type, byte[] bytes, int length) {
+            store(type, bytes, length);
+         }
+      }));
+      parser.setErrorHandler(modelParser);
+      if (file != null) {
+         parser.parse(file);
+      }
+      else if (in != null) {
+         parser.parse(in);
+      }
+      else {
+         parser.parse(reader);
+      }
+      Gedcom skeleton = modelParser.getGedcom();
+      if (skeleton != null) {
+         copySkeleton(skeleton, this);
+      }
+   }
+
+   /**
+    * Copy the header, submission and top-level extensions, which aren't stored as records
+    */
+   static void copySkeleton(Gedcom from, Gedcom to) {
+      to.setHeader(from.getHeader());
+      // getSubmission falls back to the header's submission; only copy a top-level one
+      if (from.getHeader() == null || from.getSubmission() != from.getHeader().getSubmission()) {
+         to.setSubmission(from.getSubmission());
+      }
+      to.setExtensions(from.getExtensions());
+   }
+
+   @SuppressWarnings("unchecked")
+   private <T extends ExtensionContainer> T get(RecordType type, String id) {
+      int number = id != null ? find(type, id) : -1;
+      return number >= 0 ? (T)decode(type, number) : null;
+   }
+
+   /**
+    * Read-only view of the records of one type, decoding each element as it is read
+    */
+   private final class RecordList<T extends ExtensionContainer> extends AbstractList<T> implements RandomAccess {
+      private final RecordType type;
+
+      RecordList(RecordType type) {
+         this.type = type;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public T get(int index) {
+         if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+         }
+         return (T)decode(type, number(type, index));
+      }
+
+      @Override
+      public int size() {
+         return RecordStoreGedcom.this.size(type);
+      }
+   }
+
+   /**
+    * Encode a record from the model and store it
+    */
+   private void encode(ExtensionContainer record) {
+      RecordType type = RecordType.of(record);
+      try {
+         StringWriter text = new StringWriter();
+         new GedcomWriter().writeRecord(record, text);
+         final boolean[] stored = {false};
+         GedcomParser parser = new GedcomParser();
+         ModelParser modelParser = new ModelParser();
+         parser.setContentHandler(new RecordLoader(codec, modelParser, new RecordLoader.Sink() {
+            public void record(RecordType recordType, byte[] bytes, int length) {
+               store(recordType, bytes, length);
+               stored[0] = true;
+            }
+         }));
+         parser.setErrorHandler(modelParser);
+         parser.parse(new StringReader(text.toString()));
+         if (!stored[0]) {
+            throw new IllegalArgumentException("Can't encode " + type + " record");
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException(e);
+      } catch (SAXParseException e) {
+         throw new IllegalArgumentException("Can't encode " + type + " record", e);
+      }
+   }
+
+   private void checkNotFrozen() {
+      if (isFrozen()) {
+         throw new IllegalStateException("Gedcom is frozen");
+      }
+   }
+
+   private void add(ExtensionContainer record) {
+      checkNotFrozen();
+      encode(record);
+      fireRecordAdded(record);
+   }
+
+   /**
+    * Tombstone the stored record with the type and id of record, and tell listeners
+    *
+    * @return whether there was one
+    */
+   private boolean remove(ExtensionContainer record) {
+      checkNotFrozen();
+      RecordType type = RecordType.of(record);
+      String id = type != null ? type.getId(record) : null;
+      int number = id != null ? find(type, id) : -1;
+      if (number < 0) {
+         return false;
+      }
+      tombstone(type, number);
+      fireRecordRemoved(record);
+      return true;
+   }
+
+   /**
+    * Tombstone every record of a type and store records in their place
+    */
+   private void replace(RecordType type, List<? extends ExtensionContainer> records) {
+      checkNotFrozen();
+      // copy first, as records may be a view of the records about to be tombstoned
+      List<ExtensionContainer> copy = records != null ? new ArrayList<ExtensionContainer>(records)
+            : Collections.<ExtensionContainer>emptyList();
+      BitSet tombstones = removed[type.ordinal()];
+      for (int number = tombstones.nextClearBit(0); number < count(type); number = tombstones.nextClearBit(number + 1)) {
+         tombstone(type, number);
+      }
+      for (ExtensionContainer record : copy) {
+         encode(record);
+      }
+   }
+
+   /**
+    * Encode record again, replacing the stored record of the same type and id, and tell listeners
+    */
+   @Override
+   public void notifyRecordUpdated(ExtensionContainer record) {
+      checkNotFrozen();
+      RecordType type = RecordType.of(record);
+      if (type == null || type.getId(record) == null || find(type, type.getId(record)) < 0) {
+         throw new IllegalArgumentException("No stored record with the id of " + record);
+      }
+      encode(record);
+      super.notifyRecordUpdated(record);
+   }
+
+   @Override
+   public List<Person> getPeople() {
+      return new RecordList<Person>(RecordType.INDI);
+   }
+
+   @Override
+   public Person getPerson(String id) {
+      return get(RecordType.INDI, id);
+   }
+
+   @Override
+   public void addPerson(Person person) {
+      add(person);
+   }
+
+   @Override
+   public List<Family> getFamilies() {
+      return new RecordList<Family>(RecordType.FAM);
+   }
+
+   @Override
+   public Family getFamily(String id) {
+      return get(RecordType.FAM, id);
+   }
+
+   @Override
+   public void addFamily(Family family) {
+      add(family);
+   }
+
+   @Override
+   public List<Media> getMedia() {
+      return new RecordList<Media>(RecordType.OBJE);
+   }
+
+   @Override
+   public Media getMedia(String id) {
+      return get(RecordType.OBJE, id);
+   }
+
+   @Override
+   public void addMedia(Media m) {
+      add(m);
+   }
+
+   @Override
+   public List<Note> getNotes() {
+      return new RecordList<Note>(RecordType.NOTE);
+   }
+
+   @Override
+   public Note getNote(String id) {
+      return get(RecordType.NOTE, id);
+   }
+
+   @Override
+   public void addNote(Note note) {
+      add(note);
+   }
+
+   @Override
+   public List<Source> getSources() {
+      return new RecordList<Source>(RecordType.SOUR);
+   }
+
+   @Override
+   public Source getSource(String id) {
+      return get(RecordType.SOUR, id);
+   }
+
+   @Override
+   public void addSource(Source source) {
+      add(source);
+   }
+
+   @Override
+   public List<Repository> getRepositories() {
+      return new RecordList<Repository>(RecordType.REPO);
+   }
+
+   @Override
+   public Repository getRepository(String id) {
+      return get(RecordType.REPO, id);
+   }
+
+   @Override
+   public void addRepository(Repository repository) {
+      add(repository);
+   }
+
+   @Override
+   public List<Submitter> getSubmitters() {
+      return new RecordList<Submitter>(RecordType.SUBM);
+   }
+
+   @Override
+   public Submitter getSubmitter(String id) {
+      return get(RecordType.SUBM, id);
+   }
+
+   @Override
+   public void addSubmitter(Submitter submitter) {
+      add(submitter);
+   }
+
+   @Override
+   public void setPeople(List<Person> people) {
+      replace(RecordType.INDI, people);
+   }
+
+   @Override
+   public void setFamilies(List<Family> families) {
+      replace(RecordType.FAM, families);
+   }
+
+   @Override
+   public void setMedia(List<Media> media) {
+      replace(RecordType.OBJE, media);
+   }
+
+   @Override
+   public void setNotes(List<Note> notes) {
+      replace(RecordType.NOTE, notes);
+   }
+
+   @Override
+   public void setSources(List<Source> sources) {
+      replace(RecordType.SOUR, sources);
+   }
+
+   @Override
+   public void setRepositories(List<Repository> repositories) {
+      replace(RecordType.REPO, repositories);
+   }
+
+   @Override
+   public void setSubmitters(List<Submitter> submitters) {
+      replace(RecordType.SUBM, submitters);
+   }
+
+   @Override
+   public boolean removePerson(Person person) {
+      return remove(person);
+   }
+
+   @Override
+   public boolean removeFamily(Family family) {
+      return remove(family);
+   }
+
+   @Override
+   public boolean removeMedia(Media m) {
+      return remove(m);
+   }
+
+   @Override
+   public boolean removeNote(Note note) {
+      return remove(note);
+   }
+
+   @Override
+   public boolean removeSource(Source source) {
+      return remove(source);
+   }
+
+   @Override
+   public boolean removeRepository(Repository repository) {
+      return remove(repository);
+   }
+
+   @Override
+   public boolean removeSubmitter(Submitter submitter) {
+      return remove(submitter);
+   }
+
+   /**
+    * Ids are indexed as records are stored, so there is nothing to build
+    */
+   @Override
+   public void createIndexes() {
+   }
+
+   /**
+    * Block further adds, updates, removes and list replacements.  The records are decoded afresh on each read,
+    * so only the header, submission and extensions kept on the heap have anything to freeze.
+    *
+    * @return this
+    */
+   @Override
+   public Gedcom freeze() {
+      return super.freeze();
+   }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Media;
+import org.folg.gedcom.model.Note;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.Repository;
+import org.folg.gedcom.model.Source;
+import org.folg.gedcom.model.Submitter;
+
+import java.util.Locale;
+
+/**
+ * The kinds of top-level record a store keeps encoded; everything else at level 0 stays on the heap
+ */
+enum RecordType {
+   INDI(Person.class) {
+      String getId(ExtensionContainer record) {
+         return ((Person)record).getId();
+      }
+   },
+   FAM(Family.class) {
+      String getId(ExtensionContainer record) {
+         return ((Family)record).getId();
+      }
+   },
+   OBJE(Media.class) {
+      String getId(ExtensionContainer record) {
+         return ((Media)record).getId();
+      }
+   },
+   NOTE(Note.class) {
+      String getId(ExtensionContainer record) {
+         return ((Note)record).getId();
+      }
+   },
+   SOUR(Source.class) {
+      String getId(ExtensionContainer record) {
+         return ((Source)record).getId();
+      }
+   },
+   REPO(Repository.class) {
+      String getId(ExtensionContainer record) {
+         return ((Repository)record).getId();
+      }
+   },
+   SUBM(Submitter.class) {
+      String getId(ExtensionContainer record) {
+         return ((Submitter)record).getId();
+      }
+   };
+
+   private final Class<? extends ExtensionContainer> recordClass;
+
+   RecordType(Class<? extends ExtensionContainer> recordClass) {
+      this.recordClass = recordClass;
+   }
+
+   abstract String getId(ExtensionContainer record);
+
+   /**
+    * @return the type of a level-0 tag, ignoring case, or null if it isn't a stored record
+    */
+   static RecordType of(String tag) {
+      switch (tag.toUpperCase(Locale.ROOT)) {
+         case "INDI":
+            return INDI;
+         case "FAM":
+            return FAM;
+         case "OBJE":
+            return OBJE;
+         case "NOTE":
+            return NOTE;
+         case "SOUR":
+            return SOUR;
+         case "REPO":
+            return REPO;
+         case "SUBM":
+            return SUBM;
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * @return the type of a record, or null if it isn't a stored record
+    */
+   static RecordType of(ExtensionContainer record) {
+      for (RecordType type : values()) {
+         if (type.recordClass.isInstance(record)) {
+            return type;
+         }
+      }
+      return null;
+   }
+}
@@ -1,7 +1,9 @@
 package org.folg.gedcom.tools;
 
+import org.folg.gedcom.index.PlaceDictionary;
 import org.folg.gedcom.model.*;
 import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.parser.RecordHandler;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -24,29 +26,46 @@ public class PlaceWriter extends Visitor {
    @Option(name="-o", required=true, usage="target file for places")
    private File placesOut;
 
+   @Option(name="-t", required=false, usage="write each distinct place in the jurisdiction hierarchy with event counts")
+   private boolean hierarchy = false;
+
    private ModelParser parser;
    private PrintWriter out;
+   private PlaceDictionary.Builder places;
 
    public PlaceWriter() {
       parser = new ModelParser();
+      // visit each record as soon as it is parsed, so files larger than the heap can be processed
+      parser.setRecordHandler(new RecordHandler() {
+         public void handleRecord(ExtensionContainer record) {
+            record.accept(PlaceWriter.this);
+         }
+      });
    }
 
    @Override
    public boolean visit(EventFact eventFact) {
       String place = eventFact.getPlace();
       if (place != null && place.length() > 0) {
-         out.println(place);
+         if (places != null) {
+            places.addPlace(place);
+         }
+         else {
+            out.println(place);
+         }
       }
       return true;
    }
 
    public void processGedcom(File file) throws SAXParseException, IOException {
-      Gedcom gedcom = parser.parseGedcom(file);
-      gedcom.accept(this);
+      parser.parseGedcom(file);
    }
 
    private void doMain() throws IOException, SAXParseException {
       out = new PrintWriter(new FileWriter(placesOut));
+      if (hierarchy) {
+         places = new PlaceDictionary.Builder();
+      }
       if (gedcomIn.isDirectory()) {
          for (File file : gedcomIn.listFiles()) {
             processGedcom(file);
@@ -55,9 +74,21 @@ public class PlaceWriter extends Visitor {
       else if (gedcomIn.isFile()) {
          processGedcom(gedcomIn);
       }
+      if (places != null) {
+         writeHierarchy(places.build());
+      }
       out.close();
    }
 
+   /**
+    * Write place, events at the place, and events within it, one line per place, broader places first
+    */
+   private void writeHierarchy(PlaceDictionary dictionary) {
+      for (int id = PlaceDictionary.ROOT + 1; id < dictionary.size(); id++) {
+         out.println(dictionary.getFullName(id) + "\t" + dictionary.getCount(id) + "\t" + dictionary.getSubtreeCount(id));
+      }
+   }
+
    public static void main(String[] args) throws IOException, SAXParseException {
       PlaceWriter self = new PlaceWriter();
       CmdLineParser parser = new CmdLineParser(self);
@@ -66,6 +66,22 @@ public class GedcomWriter extends Visitor {
       }
    }
 
+   /**
+    * Write one top-level record (Person, Family, Media, Note, Source, Repository or Submitter) at level 0,
+    * without a header or trailer
+    */
+   public void writeRecord(ExtensionContainer record, Writer out) throws IOException {
+      stack = new Stack<Object>();
+      nestedException = null;
+      eol = "\n";
+      this.out = out;
+      record.accept(this);
+      this.out.flush();
+      if (nestedException != null) {
+         throw nestedException;
+      }
+   }
+
    private String getCharsetName(Gedcom gedcom) {
       Header header = gedcom.getHeader();
       String generator = (header != null && header.getGenerator() != null ? header.getGenerator().getValue() : null);
@@ -0,0 +1,184 @@
+package org.gedml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Works out the character encoding of a GEDCOM file from a fixed-size window at the start of the file.
+ * <p>
+ * The byte order mark and the pattern of zero bytes decide between UTF-16 and 8-bit encodings; the HEAD
+ * record's CHAR, VERS and SOUR lines, read from the same window, decide which 8-bit encoding
+ * (see {@link GedcomParser#getCorrectedCharsetName}).  A file with a UTF-8 byte order mark and no CHAR line is
+ * read as UTF-8 rather than {@link #DEFAULT_ENCODING}, as the mark says more than the missing line; files
+ * without a mark or a CHAR line still get the default.  Detection also finds the number of junk bytes before
+ * the first '0', so the caller can skip them and create its decoder once, without rewinding past the window.
+ */
+public class GedcomEncodingDetector {
+    /**
+     * Number of bytes examined at the start of the file
+     */
+    public static final int WINDOW_SIZE = 64 * 1024;
+
+    /**
+     * Encoding name returned when the file doesn't say and nothing else can be inferred
+     */
+    public static final String DEFAULT_ENCODING = "ANSEL";
+
+    private static final int MAX_HEADER_LINES = 100;
+    private static final int PATTERN_BYTES = 512;
+
+    private String encoding;
+    private int skip;
+
+    /**
+     * Examine the first length bytes of window
+     */
+    public GedcomEncodingDetector(byte[] window, int length) {
+        detect(window, length);
+    }
+
+    /**
+     * Get the encoding name to pass to a Reader, or {@link #DEFAULT_ENCODING}
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Get the number of bytes to skip before decoding: a byte order mark and any junk in front of the first line
+     */
+    public int getSkip() {
+        return skip;
+    }
+
+    private void detect(byte[] window, int length) {
+        int bom = 0;
+        Charset utf16 = null;
+        if (length >= 3 && (window[0] & 0xff) == 0xEF && (window[1] & 0xff) == 0xBB && (window[2] & 0xff) == 0xBF) {
+            bom = 3;
+        } else if (length >= 2 && (window[0] & 0xff) == 0xFF && (window[1] & 0xff) == 0xFE) {
+            bom = 2;
+            utf16 = StandardCharsets.UTF_16LE;
+        } else if (length >= 2 && (window[0] & 0xff) == 0xFE && (window[1] & 0xff) == 0xFF) {
+            bom = 2;
+            utf16 = StandardCharsets.UTF_16BE;
+        } else {
+            utf16 = sniffUtf16(window, length);
+        }
+
+        if (utf16 != null) {
+            // the bytes decide; whatever the header claims, the file can only be read as UTF-16
+            encoding = utf16.name();
+            skip = findUtf16Zero(window, bom, length, utf16 == StandardCharsets.UTF_16LE);
+            return;
+        }
+
+        String declared = readCorrectedCharsetName(new String(window, 0, length, StandardCharsets.ISO_8859_1));
+        if (declared.length() == 0) {
+            encoding = bom > 0 ? "UTF-8" : DEFAULT_ENCODING;
+        } else if (declared.equals("UTF-16") || declared.equals("UnicodeBigUnmarked")) {
+            // the header was readable as 8-bit text, so it isn't really UTF-16; UTF-8 is the closest match
+            encoding = "UTF-8";
+        } else {
+            encoding = declared;
+        }
+        skip = findZero(window, bom, length);
+    }
+
+    /**
+     * Recognize UTF-16 without a byte order mark from the zero high bytes of ASCII characters
+     */
+    private static Charset sniffUtf16(byte[] window, int length) {
+        int n = Math.min(length, PATTERN_BYTES) & ~1;
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < n; i += 2) {
+            if (window[i] == 0) {
+                evenZeros++;
+            }
+            if (window[i + 1] == 0) {
+                oddZeros++;
+            }
+        }
+        int pairs = n / 2;
+        if (pairs == 0) {
+            return null;
+        }
+        if (oddZeros * 2 > pairs && evenZeros * 8 < oddZeros) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenZeros * 2 > pairs && oddZeros * 8 < evenZeros) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return null;
+    }
+
+    private static int findZero(byte[] window, int start, int length) {
+        for (int i = start; i < length; i++) {
+            if (window[i] == '0') {
+                return i;
+            }
+        }
+        return start;
+    }
+
+    private static int findUtf16Zero(byte[] window, int start, int length, boolean littleEndian) {
+        for (int i = start; i + 1 < length; i += 2) {
+            if (littleEndian ? (window[i] == '0' && window[i + 1] == 0) : (window[i] == 0 && window[i + 1] == '0')) {
+                return i;
+            }
+        }
+        return start;
+    }
+
+    private static String readCorrectedCharsetName(String header) {
+        try {
+            return readCorrectedCharsetName(new BufferedReader(new StringReader(header)));
+        } catch (IOException e) {
+            // can't happen reading from a String
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String readCorrectedCharsetName(BufferedReader in) throws IOException {
+        // We will only try to read the first 100 lines of
+        // the file attempting to get the char encoding.
+        String line;
+        String generatorName = null;
+        String encoding = null;
+        String version = null;
+        for (int i = 0; i < MAX_HEADER_LINES; i++) {
+            line = in.readLine();
+            if (line != null) {
+                String[] split = line.trim().split("\\s+", 3);
+                if (split.length == 3) {
+                    if (generatorName == null &&
+                            split[0].equals("1") &&
+                            split[1].equals("SOUR")) {
+                        generatorName = split[2];
+                    } else if (split[0].equals("1") &&
+                            (split[1].equals("CHAR") || split[1].equals("CHARACTER"))) {
+                        // get encoding
+                        encoding = split[2].toUpperCase();
+                        // look for version
+                        line = in.readLine();
+                        if (line != null) {
+                            split = line.trim().split("\\s+", 3);
+                            if (split.length == 3 && split[0].equals("2") && split[1].equals("VERS")) {
+                                version = split[2];
+                            }
+                        }
+                    }
+                }
+            }
+            if (generatorName != null && encoding != null) {
+                break; // got what we need
+            }
+        }
+
+        return GedcomParser.getCorrectedCharsetName(generatorName, encoding, version);
+    }
+}
@@ -0,0 +1,115 @@
+package org.gedml;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits the characters from a Reader into lines without creating a String per line.
+ * <p>
+ * Lines end with \n, \r or \r\n, as in BufferedReader.readLine.  After {@link #readLine()} returns true the
+ * current line is buffer()[lineStart()..lineEnd()); the buffer is reused, so the line is only valid until
+ * the next call.  Callers may modify the characters of the current line in place.
+ */
+public class GedcomLineReader {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private int lineStart = 0;
+    private int lineEnd = 0;
+    private boolean skipLF = false;
+    private boolean eof = false;
+
+    public GedcomLineReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public GedcomLineReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buf = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Advance to the next line
+     *
+     * @return false at end of input
+     */
+    public boolean readLine() throws IOException {
+        if (skipLF) {
+            // the previous line ended with \r; swallow the \n of a \r\n pair
+            while (pos == limit && !eof) {
+                fill();
+            }
+            if (pos < limit && buf[pos] == '\n') {
+                pos++;
+            }
+            skipLF = false;
+        }
+
+        int scan = pos;
+        while (true) {
+            for (; scan < limit; scan++) {
+                char c = buf[scan];
+                if (c == '\n' || c == '\r') {
+                    lineStart = pos;
+                    lineEnd = scan;
+                    pos = scan + 1;
+                    skipLF = (c == '\r');
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            int scanned = scan - pos;
+            fill();
+            scan = pos + scanned;
+        }
+    }
+
+    /**
+     * Read more characters, moving unread characters to the front of the buffer and growing it for long lines
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            char[] newBuf = new char[buf.length * 2];
+            System.arraycopy(buf, 0, newBuf, 0, limit);
+            buf = newBuf;
+        }
+        int n = reader.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    public char[] buffer() {
+        return buf;
+    }
+
+    public int lineStart() {
+        return lineStart;
+    }
+
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
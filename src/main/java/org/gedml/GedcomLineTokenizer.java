@@ -0,0 +1,231 @@
+package org.gedml;
+
+/**
+ * Single-pass replacement for the regular expression in {@link GedcomLineParser}.
+ * <p>
+ * The tokenizer scans a line once and records the level and the start/end offsets of the
+ * ID, tag, xref and value fields in the caller's buffer; nothing is copied unless one of the
+ * String getters is called.  It accepts exactly the lines the regular expression accepts and
+ * splits them into the same fields:
+ * <pre>
+ *   ^\s*(\d)\s+(@([^@ ]+)@\s+)?([a-zA-Z_0-9.]+)(\s+@([^@ ]+)@)?(\s(.*))?$
+ * </pre>
+ * Offsets of fields that are not present are -1.
+ */
+public class GedcomLineTokenizer {
+    private char[] buf;
+    private int level;
+    private int idStart;
+    private int idEnd;
+    private int tagStart;
+    private int tagEnd;
+    private int xrefStart;
+    private int xrefEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * Tokenize a whole String
+     */
+    public boolean parse(String line) {
+        char[] chars = line.toCharArray();
+        return parse(chars, 0, chars.length);
+    }
+
+    /**
+     * Tokenize the characters buf[start..end).  The buffer is referenced, not copied, so it must not
+     * be modified while the offsets are in use.
+     *
+     * @return true if the line is a well-formed GEDCOM line
+     */
+    public boolean parse(char[] buf, int start, int end) {
+        this.buf = buf;
+        level = -1;
+        idStart = idEnd = tagStart = tagEnd = xrefStart = xrefEnd = valueStart = valueEnd = -1;
+
+        int pos = skipSpaces(buf, start, end);
+        if (pos == end || !isDigit(buf[pos])) {
+            return false;
+        }
+        int levelPos = pos++;
+        if (pos == end || !isSpace(buf[pos])) {
+            return false;
+        }
+        pos = skipSpaces(buf, pos, end);
+
+        // optional @ID@ followed by at least one space
+        int id = -1;
+        int idClose = -1;
+        if (pos < end && buf[pos] == '@') {
+            idClose = findPointerEnd(buf, pos, end);
+            if (idClose < 0 || idClose + 1 == end || !isSpace(buf[idClose + 1])) {
+                return false;
+            }
+            id = pos + 1;
+            pos = skipSpaces(buf, idClose + 1, end);
+        }
+
+        int tag = pos;
+        while (pos < end && isTagChar(buf[pos])) {
+            pos++;
+        }
+        if (pos == tag) {
+            return false;
+        }
+        int tagClose = pos;
+
+        if (pos < end && isSpace(buf[pos])) {
+            // try the @XREF@; the regex backtracks to treat it as part of the value if it isn't followed by
+            // a space or the end of the line
+            int p = skipSpaces(buf, pos, end);
+            if (p < end && buf[p] == '@') {
+                int xrefClose = findPointerEnd(buf, p, end);
+                if (xrefClose >= 0) {
+                    int after = xrefClose + 1;
+                    if (after < end && isSpace(buf[after])) {
+                        setFields(levelPos, id, idClose, tag, tagClose);
+                        xrefStart = p + 1;
+                        xrefEnd = xrefClose;
+                        valueStart = after + 1;
+                        valueEnd = end;
+                        return true;
+                    }
+                    else if (isEndOfInput(buf, after, end)) {
+                        setFields(levelPos, id, idClose, tag, tagClose);
+                        xrefStart = p + 1;
+                        xrefEnd = xrefClose;
+                        return true;
+                    }
+                }
+            }
+            // the value is everything after the first space
+            setFields(levelPos, id, idClose, tag, tagClose);
+            valueStart = pos + 1;
+            valueEnd = end;
+            return true;
+        }
+        else if (isEndOfInput(buf, pos, end)) {
+            setFields(levelPos, id, idClose, tag, tagClose);
+            return true;
+        }
+        return false;
+    }
+
+    private void setFields(int levelPos, int id, int idClose, int tag, int tagClose) {
+        level = buf[levelPos] - '0';
+        if (id >= 0) {
+            idStart = id;
+            idEnd = idClose;
+        }
+        tagStart = tag;
+        tagEnd = tagClose;
+    }
+
+    private static int skipSpaces(char[] buf, int pos, int end) {
+        while (pos < end && isSpace(buf[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Return the position of the @ closing the pointer that opens at pos, or -1 if there is none.
+     * Pointer characters are anything except @ and space.
+     */
+    private static int findPointerEnd(char[] buf, int pos, int end) {
+        int p = pos + 1;
+        while (p < end && buf[p] != '@' && buf[p] != ' ') {
+            p++;
+        }
+        return (p > pos + 1 && p < end && buf[p] == '@') ? p : -1;
+    }
+
+    /**
+     * Mirrors the regex $ without MULTILINE: the end of input, or just before a line terminator that ends the input
+     */
+    private static boolean isEndOfInput(char[] buf, int pos, int end) {
+        if (pos == end) {
+            return true;
+        }
+        if (pos == end - 1) {
+            char c = buf[pos];
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+        return pos == end - 2 && buf[pos] == '\r' && buf[pos + 1] == '\n';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isTagChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '.';
+    }
+
+    /**
+     * Get the level; it is always a single digit
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public char[] getBuffer() {
+        return buf;
+    }
+
+    public int getIdStart() {
+        return idStart;
+    }
+
+    public int getIdEnd() {
+        return idEnd;
+    }
+
+    public int getTagStart() {
+        return tagStart;
+    }
+
+    public int getTagEnd() {
+        return tagEnd;
+    }
+
+    public int getXRefStart() {
+        return xrefStart;
+    }
+
+    public int getXRefEnd() {
+        return xrefEnd;
+    }
+
+    public int getValueStart() {
+        return valueStart;
+    }
+
+    public int getValueEnd() {
+        return valueEnd;
+    }
+
+    public String getID() {
+        return substring(idStart, idEnd);
+    }
+
+    public String getTag() {
+        return substring(tagStart, tagEnd);
+    }
+
+    public String getXRef() {
+        return substring(xrefStart, xrefEnd);
+    }
+
+    public String getValue() {
+        return substring(valueStart, valueEnd);
+    }
+
+    private String substring(int start, int end) {
+        return start < 0 ? null : new String(buf, start, end - start);
+    }
+}
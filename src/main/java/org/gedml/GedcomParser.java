@@ -4,11 +4,11 @@ import org.xml.sax.*;
 import org.xml.sax.helpers.AttributesImpl;
 
 import java.io.*;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.EmptyStackException;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * This class is designed to look like a SAX2-compliant XML parser; however,
@@ -38,6 +38,8 @@ public class GedcomParser implements XMLReader, Locator {
     private EntityResolver entityResolver = null;
     private String systemId;
     private int lineNr;
+    private int lineNumberOffset = 0;
+    private final SymbolTable symbols = new SymbolTable();
 
     /**
      * Set the ContentHandler
@@ -100,50 +102,6 @@ public class GedcomParser implements XMLReader, Locator {
         return errorHandler;
     }
 
-    private static String readCorrectedCharsetName(InputStream is) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(is));
-        return readCorrectedCharsetName(in);
-    }
-
-    private static String readCorrectedCharsetName(BufferedReader in) throws IOException {
-        // We will only try to read the first 100 lines of
-        // the file attempting to get the char encoding.
-        String line;
-        String generatorName = null;
-        String encoding = null;
-        String version = null;
-        for (int i = 0; i < 100; i++) {
-            line = in.readLine();
-            if (line != null) {
-                String[] split = line.trim().split("\\s+", 3);
-                if (split.length == 3) {
-                    if (generatorName == null &&
-                            split[0].equals("1") &&
-                            split[1].equals("SOUR")) {
-                        generatorName = split[2];
-                    } else if (split[0].equals("1") &&
-                            (split[1].equals("CHAR") || split[1].equals("CHARACTER"))) {
-                        // get encoding
-                        encoding = split[2].toUpperCase();
-                        // look for version
-                        line = in.readLine();
-                        if (line != null) {
-                            split = line.trim().split("\\s+", 3);
-                            if (split.length == 3 && split[0].equals("2") && split[1].equals("VERS")) {
-                                version = split[2];
-                            }
-                        }
-                    }
-                }
-            }
-            if (generatorName != null && encoding != null) {
-                break; // got what we need
-            }
-        }
-
-        return getCorrectedCharsetName(generatorName, encoding, version);
-    }
-
     public static String getCorrectedCharsetName(String generatorName, String encoding, String version) {
         // correct incorrectly-assigned encoding values
         if ("GeneWeb".equals(generatorName) && "ASCII".equals(encoding)) {
@@ -190,64 +148,56 @@ public class GedcomParser implements XMLReader, Locator {
         return encoding;
     }
 
-    private BufferedReader getBufferedReader(InputStream in) throws IOException {
+    /**
+     * Create a Reader for the input stream, detecting the character encoding from the start of the stream
+     */
+    public Reader getReader(InputStream in) throws IOException {
+        int windowSize = GedcomEncodingDetector.WINDOW_SIZE;
         if (!in.markSupported()) {
-            in = new BufferedInputStream(in);
+            in = new BufferedInputStream(in, windowSize);
         }
-        in.mark(Integer.MAX_VALUE);
 
-        String charEncoding = readCorrectedCharsetName(in);
-        in.reset();
-
-        if (charEncoding.length() == 0) {
-            // Let's try again with a UTF-16 reader.
-            BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-16"));
-            charEncoding = readCorrectedCharsetName(br);
-            in.reset();
-
-            if (charEncoding.equals("UTF-16")) {
-                // skip over junk at the beginning of the file
-                InputStreamReader reader = new InputStreamReader(in, "UTF-16");
-                int cnt = 0;
-                int c;
-                while ((c = reader.read()) != '0' && c != -1) {
-                    cnt++;
-                }
-
-                in.reset();
-                reader = new InputStreamReader(in, "UTF-16");
-                for (int i = 0; i < cnt; i++) {
-                    reader.read();
-                }
-                return new BufferedReader(reader);
-            }
+        // look at a bounded window at the start of the file, then rewind once
+        in.mark(windowSize);
+        byte[] window = new byte[windowSize];
+        int length = 0;
+        int n;
+        while (length < windowSize && (n = in.read(window, length, windowSize - length)) > 0) {
+            length += n;
         }
-
-        if (charEncoding.length() == 0) {
-            charEncoding = "ANSEL"; // default
-        }
-
-        // skip over junk at the beginning of the file
         in.reset();
-        int cnt = 0;
-        int c;
-        while ((c = in.read()) != '0' && c != -1) {
-            cnt++;
-        }
+        GedcomEncodingDetector detector = new GedcomEncodingDetector(window, length);
 
-        in.reset();
-        for (int i = 0; i < cnt; i++) {
+        // skip over the byte order mark and any junk at the beginning of the file
+        for (int i = 0; i < detector.getSkip(); i++) {
             in.read();
         }
 
-        InputStreamReader reader;
+        String charEncoding = detector.getEncoding();
+        Reader reader;
         if (charEncoding.equals("ANSEL")) {
             reader = new AnselInputStreamReader(in);
         } else {
-            reader = new InputStreamReader(in, charEncoding);
+            reader = newReader(in, charEncoding);
         }
 
-        return new BufferedReader(reader);
+        return reader;
+    }
+
+    /**
+     * Create a reader for the given encoding; memory-mapped files are decoded directly from the mapped bytes
+     */
+    private static Reader newReader(InputStream in, String charEncoding) throws UnsupportedEncodingException {
+        if (in instanceof MappedFileInputStream) {
+            Charset charset;
+            try {
+                charset = Charset.forName(charEncoding);
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedEncodingException(charEncoding);
+            }
+            return ((MappedFileInputStream) in).newReader(charset);
+        }
+        return new InputStreamReader(in, charEncoding);
     }
 
     /**
@@ -267,20 +217,41 @@ public class GedcomParser implements XMLReader, Locator {
     }
 
     /**
-     * Parse input from the supplied systemId
+     * Parse input from the supplied systemId.  file: URLs are read through {@link #parse(File)}.
      */
     public void parse(String systemId) throws IOException, SAXParseException {
         this.systemId = systemId;
-        InputStream is = (new URL(systemId)).openStream();
+        URL url = new URL(systemId);
+        if ("file".equals(url.getProtocol())) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                file = null;
+            }
+            if (file != null && file.isFile()) {
+                parse(new MappedFileInputStream(file));
+                return;
+            }
+        }
+        InputStream is = url.openStream();
         parse(is);
     }
 
+    /**
+     * Parse input from the supplied file.  The file is memory-mapped rather than read through a stream,
+     * and the system ID is set to the file's URI.
+     */
+    public void parse(File file) throws IOException, SAXParseException {
+        this.systemId = file.toURI().toString();
+        parse(new MappedFileInputStream(file));
+    }
+
     /**
      * Parse input from the supplied InputStream
      */
     public void parse(InputStream is) throws IOException, SAXParseException {
-        BufferedReader reader = getBufferedReader(is);
-        parse(reader);
+        parseLines(getReader(is));
     }
 
     /**
@@ -288,82 +259,87 @@ public class GedcomParser implements XMLReader, Locator {
      * with the appropriate character encoding for its underlying input stream.
      */
     public void parse(Reader reader) throws IOException, SAXParseException {
-        BufferedReader br = new BufferedReader(reader);
-        parse(br);
+        parseLines(reader);
     }
 
-    private void parse(BufferedReader reader) throws IOException, SAXParseException {
-        String line;
+    /**
+     * Parse the lines read from reader.  Each line is read into one reused buffer and delivered to the
+     * content handler as slices of that buffer; tag names come from a symbol table, so lines without
+     * IDs or cross-references are parsed without creating any objects.
+     */
+    private void parseLines(Reader in) throws IOException, SAXParseException {
+        GedcomLineReader reader = new GedcomLineReader(in);
         int thisLevel;
         int prevLevel = -1;
-        String iden, tag, xref, valu;
-        lineNr = 0;
-        Stack<String> stack = new Stack<String>();
-        stack.push("GED");
-        StringBuilder buf = new StringBuilder();
+        String iden, tag, xref;
+        lineNr = lineNumberOffset;
+        // levels are single digits, so the stack holds at most GED plus levels 0-9
+        String[] stack = new String[11];
+        stack[0] = "GED";
 
         try {
             contentHandler.setDocumentLocator(this);
             contentHandler.startDocument();
             contentHandler.startElement("", "GED", "GED", emptyAttList);
             boolean goodLine = false; // Indicates whether we have found a good line so far in the file.
-            GedcomLineParser lineParser = new GedcomLineParser();
-            while ((line = reader.readLine()) != null) {
+            GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+            while (reader.readLine()) {
                 lineNr++;
 
-                // remove control chars
-                buf.setLength(0);
-                for (int j = 0; j < line.length(); j++) {
-                    char c = line.charAt(j);
+                // remove control chars in place
+                char[] buf = reader.buffer();
+                int start = reader.lineStart();
+                int end = start;
+                for (int j = start; j < reader.lineEnd(); j++) {
+                    char c = buf[j];
                     if (c >= 32 || c == 9) {
-                        buf.append(c);
+                        buf[end++] = c;
                     }
                 }
-                line = buf.toString();
 
-                if (line.length() > 0) {
+                if (end > start) {
                     // parse the GEDCOM line into five fields: level, iden, tag, xref, value
-                    if (!lineParser.parse(line)) {
+                    if (!tokenizer.parse(buf, start, end)) {
                         if (goodLine) {
                             errorHandler.error(new SAXParseException("Line does not appear to be standard @ " +
-                                    this.getLineNumber() + " appending content to the last tag started." + line, this));
-                            contentHandler.characters(line.toCharArray(), 0, line.length());
+                                    this.getLineNumber() + " appending content to the last tag started." +
+                                    new String(buf, start, end - start), this));
+                            contentHandler.characters(buf, start, end - start);
                         } // if we haven't found a good line yet, just skip it
-                        if (lineNr > 20 && !goodLine) {
+                        if (lineNr - lineNumberOffset > 20 && !goodLine) {
                             break;
                         }
                     } else {
-                        thisLevel = Integer.parseInt(lineParser.getLevel());
-                        tag = lineParser.getTag();
+                        thisLevel = tokenizer.getLevel();
 
                         // if level is > prevlevel+1, ignore it until it comes back down
                         if (thisLevel > prevLevel + 1) {
                             errorHandler.error(new SAXParseException("Level > prevLevel+1 @ " + this.getLineNumber(), this));
                         } else if (thisLevel < 0) {
                             errorHandler.error(new SAXParseException("Level < 0 @ " + this.getLineNumber(), this));
-                        } else if (tag == null || tag.length() == 0) {
+                        } else if (tokenizer.getTagEnd() <= tokenizer.getTagStart()) {
                             errorHandler.error(new SAXParseException("Tag not found @ " + this.getLineNumber(), this));
                         } else {
-                            iden = lineParser.getID();
-                            xref = lineParser.getXRef();
-                            valu = lineParser.getValue();
+                            tag = symbols.get(buf, tokenizer.getTagStart(), tokenizer.getTagEnd());
+                            iden = tokenizer.getIdEnd() > tokenizer.getIdStart() ? tokenizer.getID() : null;
+                            xref = tokenizer.getXRefEnd() > tokenizer.getXRefStart() ? tokenizer.getXRef() : null;
 
                             // insert any necessary closing tags
                             while (thisLevel <= prevLevel) {
-                                String endtag = stack.pop();
+                                String endtag = stack[prevLevel + 1];
                                 contentHandler.endElement("", endtag, endtag);
                                 prevLevel--;
                             }
                             attList.clear();
-                            if (iden != null && iden.length() > 0) attList.addAttribute("", "ID", "ID", "ID", iden);
-                            if (xref != null && xref.length() > 0)
-                                attList.addAttribute("", "REF", "REF", "IDREF", xref);
+                            if (iden != null) attList.addAttribute("", "ID", "ID", "ID", iden);
+                            if (xref != null) attList.addAttribute("", "REF", "REF", "IDREF", xref);
                             contentHandler.startElement("", tag, tag, attList);
                             goodLine = true;
-                            stack.push(tag);
+                            stack[thisLevel + 1] = tag;
                             prevLevel = thisLevel;
-                            if (valu != null && valu.length() > 0) {
-                                contentHandler.characters(valu.toCharArray(), 0, valu.length());
+                            int valueStart = tokenizer.getValueStart();
+                            if (valueStart >= 0 && tokenizer.getValueEnd() > valueStart) {
+                                contentHandler.characters(buf, valueStart, tokenizer.getValueEnd() - valueStart);
                             }
                         }
                     }
@@ -383,18 +359,8 @@ public class GedcomParser implements XMLReader, Locator {
                 // ignore
             }
             throw err;
-        } catch (EmptyStackException e) {
-            SAXParseException err = new SAXParseException("EmptyStack: " + e.getMessage(), this);
-            try {
-                errorHandler.fatalError(err);
-            } catch (SAXException e1) {
-                // ignore
-            }
-            throw err;
         } finally {
-            if (reader != null) {
-                reader.close();
-            }
+            reader.close();
         }
     }
 
@@ -429,6 +395,14 @@ public class GedcomParser implements XMLReader, Locator {
         throw new SAXNotRecognizedException("Gedcom Parser does not recognize any properties");
     }
 
+    /**
+     * Set the number of lines that precede the input, when parsing part of a larger file.
+     * Reported line numbers are counted from the start of the larger file.
+     */
+    public void setLineNumberOffset(int lineNumberOffset) {
+        this.lineNumberOffset = lineNumberOffset;
+    }
+
     /**
      * Get the publicId: always null
      */
@@ -0,0 +1,235 @@
+package org.gedml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * InputStream over a memory-mapped file.
+ * <p>
+ * The file is mapped one window at a time, so files larger than 2 GB (the limit of a single
+ * MappedByteBuffer) are read by remapping as the position moves.  mark/reset are supported
+ * for the whole file without buffering anything, and {@link #newReader(Charset)} decodes
+ * characters straight out of the mapped window instead of copying the bytes into an
+ * intermediate buffer the way InputStreamReader does.
+ */
+public class MappedFileInputStream extends InputStream {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 28; // 256 MB
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private long mark = 0;
+
+    public MappedFileInputStream(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize number of bytes mapped at a time
+     */
+    public MappedFileInputStream(File file, int windowSize) throws IOException {
+        if (windowSize < 16) {
+            throw new IllegalArgumentException("window size must be at least 16 bytes");
+        }
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    /**
+     * Map the window starting at the given absolute position
+     */
+    private void map(long position) throws IOException {
+        long length = Math.min(windowSize, size - position);
+        if (length <= 0) {
+            buffer = ByteBuffer.allocate(0);
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+        bufferStart = position;
+    }
+
+    /**
+     * Make sure there is at least one byte to read in the current window
+     *
+     * @return false at end of file
+     */
+    private boolean fill() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        long position = position();
+        if (position >= size) {
+            return false;
+        }
+        map(position);
+        return true;
+    }
+
+    /**
+     * Get the absolute position in the file
+     */
+    public long position() {
+        return bufferStart + buffer.position();
+    }
+
+    /**
+     * Get the size of the file
+     */
+    public long size() {
+        return size;
+    }
+
+    private void seek(long position) throws IOException {
+        if (position >= bufferStart && position <= bufferStart + buffer.limit()) {
+            buffer.position((int) (position - bufferStart));
+        } else {
+            map(position);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long position = position();
+        long skipped = Math.min(n, size - position);
+        seek(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Mark the current position.  The read limit is ignored: the whole file can be re-read without buffering.
+     */
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = position();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        seek(mark);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = ByteBuffer.allocate(0);
+        file.close();
+    }
+
+    /**
+     * Return a Reader that decodes from the current position of this stream directly out of the mapped window.
+     * Malformed and unmappable input is replaced, as InputStreamReader does.
+     * Reading from the Reader advances this stream; closing it closes this stream.
+     */
+    public Reader newReader(Charset charset) {
+        return new MappedReader(charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    private class MappedReader extends Reader {
+        private final CharsetDecoder decoder;
+        private final CharBuffer pending = CharBuffer.allocate(2);
+        private boolean eof = false;
+
+        private MappedReader(CharsetDecoder decoder) {
+            this.decoder = decoder;
+            pending.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pending.hasRemaining()) {
+                int n = Math.min(len, pending.remaining());
+                pending.get(cbuf, off, n);
+                return n;
+            }
+            if (eof) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (out.position() == off) {
+                boolean endOfInput = bufferStart + buffer.limit() >= size;
+                CoderResult result = decoder.decode(buffer, out, endOfInput);
+                if (result.isOverflow()) {
+                    if (out.position() == off) {
+                        // a surrogate pair doesn't fit in the caller's buffer
+                        pending.clear();
+                        decoder.decode(buffer, pending, endOfInput);
+                        pending.flip();
+                        return read(cbuf, off, len);
+                    }
+                    break;
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (endOfInput) {
+                    decoder.flush(out);
+                    eof = true;
+                    break;
+                }
+                // continue with the next window, starting at the first byte the decoder didn't consume
+                map(position());
+            }
+            int n = out.position() - off;
+            return n == 0 ? -1 : n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            MappedFileInputStream.this.close();
+        }
+    }
+}
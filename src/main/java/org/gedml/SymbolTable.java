@@ -0,0 +1,77 @@
+package org.gedml;
+
+/**
+ * Maps character slices to interned Strings, so repeated tag names are looked up instead of allocated.
+ * <p>
+ * Strings are compared by content before being returned, and the hash is the same as String.hashCode.
+ * The table stops growing at {@link #MAX_SYMBOLS} entries; after that, new names are still returned
+ * (interned) but not remembered.
+ */
+class SymbolTable {
+    static final int MAX_SYMBOLS = 4096;
+
+    private String[] symbols = new String[256];
+    private int[] hashes = new int[256];
+    private int size = 0;
+
+    /**
+     * Get the interned String with the characters buf[start..end)
+     */
+    String get(char[] buf, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int mask = symbols.length - 1;
+        int slot = hash & mask;
+        String symbol;
+        while ((symbol = symbols[slot]) != null) {
+            if (hashes[slot] == hash && matches(symbol, buf, start, end)) {
+                return symbol;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        symbol = new String(buf, start, end - start).intern();
+        if (size < MAX_SYMBOLS) {
+            symbols[slot] = symbol;
+            hashes[slot] = hash;
+            size++;
+            if (size * 2 > symbols.length) {
+                rehash();
+            }
+        }
+        return symbol;
+    }
+
+    private static boolean matches(String symbol, char[] buf, int start, int end) {
+        int len = end - start;
+        if (symbol.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (symbol.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] oldSymbols = symbols;
+        int[] oldHashes = hashes;
+        symbols = new String[oldSymbols.length * 2];
+        hashes = new int[oldSymbols.length * 2];
+        int mask = symbols.length - 1;
+        for (int i = 0; i < oldSymbols.length; i++) {
+            if (oldSymbols[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (symbols[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                symbols[slot] = oldSymbols[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.folg.gedcom.date;
+
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class DateParserTest {
+  private final DateParser parser = new DateParser();
+
+  private void assertRange(String date, String earliest, String latest) {
+    GedcomDate parsed = parser.parse(date);
+    assertNotNull(parsed, date);
+    assertEquals(parsed.getEarliestDate(), earliest == null ? null : LocalDate.parse(earliest), date);
+    assertEquals(parsed.getLatestDate(), latest == null ? null : LocalDate.parse(latest), date);
+  }
+
+  @Test
+  public void testSimpleDates() {
+    assertRange("1850", "1850-01-01", "1850-12-31");
+    assertRange("MAR 1850", "1850-03-01", "1850-03-31");
+    assertRange("3 mar 1901", "1901-03-03", "1901-03-03");
+    assertRange("FEB 1900", "1900-02-01", "1900-02-28");
+    assertRange("FEB 2000", "2000-02-01", "2000-02-29");
+    assertRange("29 February 1904", "1904-02-29", "1904-02-29");
+    assertRange("@#DGREGORIAN@ 1 JAN 1900", "1900-01-01", "1900-01-01");
+    assertRange("11 FEB 1731/32", "1732-02-11", "1732-02-11");
+    assertRange("1699/00", "1700-01-01", "1700-12-31");
+    assertRange("10 FEB 1699/00", "1700-02-10", "1700-02-10");
+    assertRange("1699/1700", "1700-01-01", "1700-12-31");
+    assertTrue(parser.parse("3 MAR 1901").isExact());
+    assertTrue(parser.parse("MAR 1901").hasFlag(GedcomDate.PARTIAL));
+  }
+
+  @Test
+  public void testJulianAndBC() {
+    // the Julian calendar was 10 days behind the Gregorian in 1582
+    assertEquals(parser.parse("@#DJULIAN@ 5 OCT 1582").getEarliest(), parser.parse("15 OCT 1582").getEarliest());
+    assertTrue(parser.parse("@#DJULIAN@ 5 OCT 1582").hasFlag(GedcomDate.JULIAN));
+    assertEquals(parser.parse("@#DJULIAN@ 29 FEB 1700").getEarliestDate(), LocalDate.parse("1700-03-11"));
+    assertNull(parser.parse("29 FEB 1700"));
+    assertEquals(parser.parse("44 B.C.").getEarliestDate().getYear(), -43);
+    assertNull(parser.parse("@#DHEBREW@ 5600"));
+  }
+
+  @Test
+  public void testQualifiers() {
+    GedcomDate about = parser.parse("ABT 1850");
+    assertRange("ABT 1850", "1850-01-01", "1850-12-31");
+    assertTrue(about.isApproximate());
+    assertTrue(about.hasFlag(GedcomDate.ABOUT));
+    assertTrue(parser.parse("est 1850").hasFlag(GedcomDate.ESTIMATED));
+    assertRange("BEF 1850", null, "1849-12-31");
+    assertRange("AFT 10 JUN 1850", "1850-06-11", null);
+    assertRange("BET 1800 AND 1810", "1800-01-01", "1810-12-31");
+    assertRange("FROM 3 MAR 1901 TO 1902", "1901-03-03", "1902-12-31");
+    assertRange("FROM 1901", "1901-01-01", null);
+    assertRange("TO 1902", null, "1902-12-31");
+    assertRange("INT 12 JAN 1890 (about two weeks after Christmas)", "1890-01-12", "1890-01-12");
+    assertTrue(parser.parse("FROM 1901 TO 1902").hasFlag(GedcomDate.FROM | GedcomDate.TO));
+    assertRange("BET @#DJULIAN@ 1 JAN 1700 AND @#DJULIAN@ 2 JAN 1700", "1700-01-11", "1700-01-12");
+  }
+
+  @Test
+  public void testUnparseable() {
+    assertNull(parser.parse(null));
+    assertNull(parser.parse(""));
+    assertNull(parser.parse("(unknown)"));
+    assertNull(parser.parse("sometime in spring"));
+    assertNull(parser.parse("32 JAN 1900"));
+    assertNull(parser.parse("BET 1800"));
+    assertNull(parser.parse("1850 extra"));
+  }
+
+  @Test
+  public void testCacheAndOrdering() {
+    DateParser small = new DateParser(2);
+    assertSame(small.parse("1850"), small.parse("1850"));
+    small.parse("1851");
+    small.parse("1852");
+    assertEquals(small.getCacheSize(), 2);
+    assertEquals(small.parse("1852"), new DateParser().parse("1852"));
+
+    List<GedcomDate> dates = new ArrayList<GedcomDate>();
+    for (String date : new String[] {"1900", "BEF 1800", "3 MAR 1850", "MAR 1850", "AFT 1950"}) {
+      dates.add(parser.parse(date));
+    }
+    Collections.sort(dates);
+    assertEquals(dates.get(0), parser.parse("BEF 1800"));
+    assertEquals(dates.get(1), parser.parse("MAR 1850"));
+    assertEquals(dates.get(2), parser.parse("3 MAR 1850"));
+    assertEquals(dates.get(4), parser.parse("AFT 1950"));
+    assertTrue(parser.parse("1850").overlaps(parser.parse("BET 1849 AND 1851")));
+    assertFalse(parser.parse("1850").overlaps(parser.parse("BEF 1850")));
+
+    GedcomDate birth = parser.parse("15 JUN 1850");
+    GedcomDate death = parser.parse("14 JUN 1900");
+    assertEquals(GedcomDate.yearsBetween(birth.getEarliest(), death.getEarliest()), 49);
+  }
+}
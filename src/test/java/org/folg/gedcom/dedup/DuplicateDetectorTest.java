@@ -0,0 +1,108 @@
+package org.folg.gedcom.dedup;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class DuplicateDetectorTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 NAME John /Smith/\n1 SEX M\n1 BIRT\n2 DATE 12 MAR 1850\n2 PLAC Salem, Essex, Massachusetts\n" +
+        "0 @I2@ INDI\n1 NAME Jon /Smyth/\n1 SEX M\n1 BIRT\n2 DATE ABT 1850\n2 PLAC Salem, Massachusetts\n" +
+        "0 @I3@ INDI\n1 NAME John /Smith/\n1 SEX M\n1 BIRT\n2 DATE 1850\n2 PLAC London, England\n" +
+        "0 @I4@ INDI\n1 NAME Mary /Smith/\n1 SEX F\n1 BIRT\n2 DATE 12 MAR 1850\n2 PLAC Salem, Essex, Massachusetts\n" +
+        "0 @I5@ INDI\n1 NAME Johann /Schmidt/\n1 BIRT\n2 DATE 1920\n2 PLAC Berlin, Germany\n" +
+        "0 @I6@ INDI\n1 NAME William /Jones/\n" +
+        "0 @I7@ INDI\n1 NAME William Henry /Jones/\n" +
+        "0 @I8@ INDI\n1 NAME John /Smith/\n1 SEX M\n1 CHR\n2 DATE 12 MAR 1850\n2 PLAC Salem, Essex, Massachusetts\n" +
+        "0 TRLR\n";
+
+  private static Gedcom parse(String gedcom) throws Exception {
+    Gedcom result = new ModelParser().parseGedcom(new StringReader(gedcom));
+    result.createIndexes();
+    return result;
+  }
+
+  @Test
+  public void testFindDuplicates() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    List<DuplicateCluster> clusters = new DuplicateDetector().findDuplicates(gedcom);
+    assertEquals(clusters.size(), 1);
+    DuplicateCluster cluster = clusters.get(0);
+    assertEquals(cluster.toString(), "[I1, I2, I8]:1.0");
+    assertEquals(cluster.getMatches().size(), 3);
+    assertEquals(cluster.getMatches().get(0).getPerson1().getId(), "I1");
+    assertEquals(cluster.getMatches().get(0).getPerson2().getId(), "I8");
+    assertTrue(cluster.getMatches().get(2).getScore() < 1.0);
+  }
+
+  @Test
+  public void testThreshold() throws Exception {
+    DuplicateDetector detector = new DuplicateDetector();
+    detector.setThreshold(0.7);
+    List<DuplicateCluster> clusters = detector.findDuplicates(parse(GEDCOM));
+    assertEquals(clusters.toString().replaceAll(":[0-9.]+", ""), "[[I1, I2, I3, I8], [I6, I7]]");
+  }
+
+  @Test
+  public void testBlocking() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    DuplicateDetector detector = new DuplicateDetector();
+    detector.setMaxBlockSize(1);
+    assertTrue(detector.findDuplicates(gedcom).isEmpty());
+
+    // different sex never matches, even when everyone is compared
+    detector = new DuplicateDetector();
+    detector.setThreshold(0.01);
+    detector.setBlockingKeys(person -> Collections.singletonList("all"));
+    List<DuplicateCluster> clusters = detector.findDuplicates(gedcom);
+    assertEquals(clusters.size(), 1);
+    for (DuplicateCluster.Match match : clusters.get(0).getMatches()) {
+      if (match.getPerson1().getId().equals("I4") || match.getPerson2().getId().equals("I4")) {
+        String other = match.getPerson1().getId().equals("I4") ? match.getPerson2().getId() : match.getPerson1().getId();
+        assertTrue(other.equals("I5") || other.equals("I6") || other.equals("I7"), other);
+      }
+    }
+  }
+
+  @Test
+  public void testOversizedBlocksAreSplit() throws Exception {
+    // 200 John Smiths born in the 1850s put every default key over the block size; only I0 and I1 are twins
+    StringBuilder buf = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n");
+    for (int i = 0; i < 200; i++) {
+      int year = 1850 + (i < 2 ? 0 : i % 10);
+      buf.append("0 @I").append(i).append("@ INDI\n1 NAME John /Smith/\n1 SEX M\n1 BIRT\n2 DATE ")
+         .append(i < 2 ? "3 JUN " : "").append(year).append("\n2 PLAC Town").append(i < 2 ? 0 : i).append("\n");
+    }
+    buf.append("0 TRLR\n");
+    DuplicateDetector detector = new DuplicateDetector();
+    detector.setMaxBlockSize(30);
+    List<DuplicateCluster> clusters = detector.findDuplicates(parse(buf.toString()));
+    assertEquals(clusters.size(), 1);
+    assertEquals(clusters.get(0).toString(), "[I0, I1]:1.0");
+    assertEquals(features(parse(buf.toString()), "I5").getBirthYear(), Integer.valueOf(1855));
+  }
+
+  private static PersonFeatures features(Gedcom gedcom, String id) {
+    return new PersonFeatures(gedcom.getPerson(id), 0, new DateParser(), new DoubleMetaphone());
+  }
+
+  @Test
+  public void testFeatures() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    PersonFeatures features = new PersonFeatures(gedcom.getPerson("I8"), 7, new DateParser(), new DoubleMetaphone());
+    assertEquals(features.getSurnames().toString(), "[smith]");
+    assertEquals(features.getSex(), "M");
+    assertEquals(features.getBirthDecade(), Integer.valueOf(185));
+    assertEquals(features.getBirthPlaceParts(), new String[] {"salem", "essex", "massachusetts"});
+    assertEquals(DuplicateDetector.defaultBlockingKeys(features).size(), 4);
+  }
+}
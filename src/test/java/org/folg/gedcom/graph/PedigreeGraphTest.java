@@ -0,0 +1,134 @@
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class PedigreeGraphTest {
+  static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @GF@ INDI\n1 FAMS @F1@\n" +
+        "0 @GM@ INDI\n1 FAMS @F1@\n" +
+        "0 @FA@ INDI\n1 FAMC @F1@\n1 FAMS @F2@\n" +
+        "0 @AU@ INDI\n1 FAMC @F1@\n1 FAMS @F3@\n" +
+        "0 @MO@ INDI\n1 FAMS @F2@\n" +
+        "0 @ME@ INDI\n1 FAMC @F2@\n1 FAMC @MISSING@\n" +
+        "0 @SI@ INDI\n1 FAMC @F2@\n" +
+        "0 @CO@ INDI\n1 FAMC @F3@\n" +
+        "0 @AF@ INDI\n1 FAMC @F2@\n" +
+        "0 @F1@ FAM\n1 HUSB @GF@\n1 WIFE @GM@\n1 CHIL @FA@\n1 CHIL @AU@\n" +
+        "0 @F2@ FAM\n1 HUSB @FA@\n1 WIFE @MO@\n1 CHIL @ME@\n1 CHIL @SI@\n1 CHIL @NOBODY@\n" +
+        "0 @F3@ FAM\n1 HUSB @XX@\n1 HUSB @AU@\n2 _PREF Y\n1 CHIL @CO@\n" +
+        "0 TRLR\n";
+
+  static Gedcom parse(String gedcom) throws Exception {
+    Gedcom result = new ModelParser().parseGedcom(new StringReader(gedcom));
+    result.createIndexes();
+    return result;
+  }
+
+  private List<Person> people(PedigreeGraph graph, Adjacency adjacency, int node) {
+    List<Person> result = new ArrayList<Person>();
+    for (int i = adjacency.start(node); i < adjacency.end(node); i++) {
+      result.add(graph.getPerson(adjacency.target(i)));
+    }
+    return result;
+  }
+
+  private List<Family> families(PedigreeGraph graph, Adjacency adjacency, int node) {
+    List<Family> result = new ArrayList<Family>();
+    for (int i = 0; i < adjacency.degree(node); i++) {
+      result.add(graph.getFamily(adjacency.get(node, i)));
+    }
+    return result;
+  }
+
+  private void assertMatchesModel(Gedcom gedcom, PedigreeGraph graph) {
+    assertEquals(graph.getPersonCount(), gedcom.getPeople().size());
+    assertEquals(graph.getFamilyCount(), gedcom.getFamilies().size());
+    for (int p = 0; p < graph.getPersonCount(); p++) {
+      Person person = graph.getPerson(p);
+      assertSame(person, gedcom.getPeople().get(p));
+      assertEquals(graph.indexOfPerson(person.getId()), p);
+      assertEquals(families(graph, graph.getParentFamilies(), p), person.getParentFamilies(gedcom));
+      assertEquals(families(graph, graph.getSpouseFamilies(), p), person.getSpouseFamilies(gedcom));
+
+      Set<Person> parents = new LinkedHashSet<Person>();
+      for (Family family : person.getParentFamilies(gedcom)) {
+        parents.addAll(family.getHusbands(gedcom));
+        parents.addAll(family.getWives(gedcom));
+      }
+      assertEquals(people(graph, graph.getParents(), p), new ArrayList<Person>(parents));
+      Set<Person> children = new LinkedHashSet<Person>();
+      Set<Person> spouses = new LinkedHashSet<Person>();
+      for (Family family : person.getSpouseFamilies(gedcom)) {
+        children.addAll(family.getChildren(gedcom));
+        spouses.addAll(family.getHusbands(gedcom));
+        spouses.addAll(family.getWives(gedcom));
+      }
+      spouses.remove(person);
+      assertEquals(people(graph, graph.getChildren(), p), new ArrayList<Person>(children));
+      assertEquals(people(graph, graph.getSpouses(), p), new ArrayList<Person>(spouses));
+    }
+    for (int f = 0; f < graph.getFamilyCount(); f++) {
+      Family family = graph.getFamily(f);
+      assertEquals(graph.indexOfFamily(family.getId()), f);
+      assertEquals(people(graph, graph.getHusbands(), f), family.getHusbands(gedcom));
+      assertEquals(people(graph, graph.getWives(), f), family.getWives(gedcom));
+      assertEquals(people(graph, graph.getFamilyChildren(), f), family.getChildren(gedcom));
+    }
+  }
+
+  @Test
+  public void testMatchesModel() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    PedigreeGraph graph = new PedigreeGraph(gedcom);
+    assertMatchesModel(gedcom, graph);
+
+    int me = graph.indexOfPerson("ME");
+    assertEquals(graph.getParentFamilies().degree(me), 1);
+    assertEquals(graph.getParents().toArray(me), new int[] {graph.indexOfPerson("FA"), graph.indexOfPerson("MO")});
+    assertTrue(graph.getParents().contains(graph.indexOfPerson("SI"), graph.indexOfPerson("FA")));
+    // AF claims F2 as parent family but F2 doesn't list AF as a child
+    assertFalse(graph.getFamilyChildren().contains(graph.indexOfFamily("F2"), graph.indexOfPerson("AF")));
+    assertEquals(graph.getHusbands().degree(graph.indexOfFamily("F3")), 1);
+    assertEquals(graph.indexOfPerson("NOBODY"), -1);
+    assertEquals(graph.indexOfPerson(null), -1);
+  }
+
+  @Test
+  public void testLargerTree() throws Exception {
+    StringBuilder buf = new StringBuilder("0 HEAD\n");
+    int people = 2000;
+    for (int i = 0; i < people; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n");
+      if (i >= 2) {
+        buf.append("1 FAMC @F").append((i * 7) % (i / 2)).append("@\n");
+      }
+      buf.append("1 FAMS @F").append(i / 2).append("@\n");
+    }
+    for (int f = 0; f < people / 2; f++) {
+      buf.append("0 @F").append(f).append("@ FAM\n1 HUSB @I").append(2 * f).append("@\n1 WIFE @I").append(2 * f + 1).append("@\n");
+      for (int i = 2; i < people; i++) {
+        if ((i * 7) % (i / 2) == f) {
+          buf.append("1 CHIL @I").append(i).append("@\n");
+        }
+      }
+    }
+    buf.append("0 TRLR\n");
+    Gedcom gedcom = parse(buf.toString());
+    PedigreeGraph graph = new PedigreeGraph(gedcom);
+    assertMatchesModel(gedcom, graph);
+    assertEquals(graph.getParents().getEdgeCount(), 2 * (people - 2));
+  }
+}
@@ -0,0 +1,98 @@
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Gedcom;
+import org.testng.annotations.Test;
+
+import java.util.BitSet;
+
+import static org.testng.Assert.*;
+
+public class PedigreeTraversalTest {
+  private BitSet people(PedigreeGraph graph, String... ids) {
+    BitSet result = new BitSet();
+    for (String id : ids) {
+      result.set(graph.indexOfPerson(id));
+    }
+    return result;
+  }
+
+  @Test
+  public void testSmallTree() throws Exception {
+    PedigreeGraph graph = new PedigreeGraph(PedigreeGraphTest.parse(PedigreeGraphTest.GEDCOM));
+    PedigreeTraversal traversal = new PedigreeTraversal(graph);
+    int me = graph.indexOfPerson("ME");
+
+    assertEquals(traversal.getAncestors(me, 1), people(graph, "FA", "MO"));
+    assertEquals(traversal.getAncestors(me, PedigreeTraversal.ALL_GENERATIONS), people(graph, "FA", "MO", "GF", "GM"));
+    assertTrue(traversal.getAncestors(me, 0).isEmpty());
+    assertEquals(traversal.getDescendants(graph.indexOfPerson("GF"), PedigreeTraversal.ALL_GENERATIONS),
+          people(graph, "FA", "AU", "ME", "SI", "CO"));
+    assertEquals(traversal.getDescendants(graph.indexOfPerson("GM"), 1), people(graph, "FA", "AU"));
+
+    // a seed that is an ancestor of another seed is included
+    int[] seeds = {me, graph.indexOfPerson("FA"), graph.indexOfPerson("CO")};
+    assertEquals(traversal.getAncestors(seeds, PedigreeTraversal.ALL_GENERATIONS),
+          people(graph, "FA", "MO", "GF", "GM", "AU"));
+
+    BitSet[] each = traversal.getAncestorsOfEach(seeds, 1);
+    assertEquals(each[0], people(graph, "FA", "MO"));
+    assertEquals(each[1], people(graph, "GF", "GM"));
+    assertEquals(each[2], people(graph, "AU"));
+    assertEquals(traversal.toPeople(each[2]).get(0).getId(), "AU");
+  }
+
+  @Test
+  public void testBadSeedLeavesNoVisitedPeople() throws Exception {
+    PedigreeGraph graph = new PedigreeGraph(PedigreeGraphTest.parse(PedigreeGraphTest.GEDCOM));
+    PedigreeTraversal traversal = new PedigreeTraversal(graph);
+    int me = graph.indexOfPerson("ME");
+    try {
+      traversal.getAncestors(new int[] {me, graph.getPersonCount()}, PedigreeTraversal.ALL_GENERATIONS);
+      fail("expected IndexOutOfBoundsException");
+    }
+    catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    // the same thread's next walk still finds everyone
+    assertEquals(traversal.getAncestors(me, 1), people(graph, "FA", "MO"));
+  }
+
+  @Test
+  public void testLongLine() throws Exception {
+    // one line of 5,000 generations, far deeper than a recursive walk could go
+    int generations = 5000;
+    StringBuilder buf = new StringBuilder("0 HEAD\n");
+    for (int i = 0; i < generations; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n");
+      if (i > 0) {
+        buf.append("1 FAMC @F").append(i - 1).append("@\n");
+      }
+      buf.append("1 FAMS @F").append(i).append("@\n");
+      buf.append("0 @F").append(i).append("@ FAM\n1 HUSB @I").append(i).append("@\n");
+      if (i + 1 < generations) {
+        buf.append("1 CHIL @I").append(i + 1).append("@\n");
+      }
+    }
+    buf.append("0 TRLR\n");
+    Gedcom gedcom = PedigreeGraphTest.parse(buf.toString());
+    PedigreeGraph graph = new PedigreeGraph(gedcom);
+    PedigreeTraversal traversal = new PedigreeTraversal(graph);
+
+    int last = graph.indexOfPerson("I" + (generations - 1));
+    assertEquals(traversal.getAncestors(last, PedigreeTraversal.ALL_GENERATIONS).cardinality(), generations - 1);
+    assertEquals(traversal.getAncestors(last, 12).cardinality(), 12);
+    assertEquals(traversal.getDescendants(graph.indexOfPerson("I0"), PedigreeTraversal.ALL_GENERATIONS).cardinality(),
+          generations - 1);
+
+    int[] seeds = new int[generations];
+    for (int i = 0; i < generations; i++) {
+      seeds[i] = graph.indexOfPerson("I" + i);
+    }
+    BitSet[] each = traversal.getDescendantsOfEach(seeds, 10);
+    for (int i = 0; i < generations; i++) {
+      assertEquals(each[i].cardinality(), Math.min(10, generations - 1 - i));
+    }
+    BitSet union = traversal.getDescendants(seeds, 1);
+    assertEquals(union.cardinality(), generations - 1);
+  }
+}
@@ -0,0 +1,104 @@
+package org.folg.gedcom.graph;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class RelationshipCalculatorTest {
+  private String label(RelationshipCalculator calculator, Gedcom gedcom, String id1, String id2) {
+    Relationship relationship = calculator.getRelationship(gedcom.getPerson(id1), gedcom.getPerson(id2));
+    return relationship == null ? null : relationship.getLabel();
+  }
+
+  private List<String> ids(Relationship relationship) {
+    List<String> ids = new ArrayList<String>();
+    for (Person person : relationship.getCommonAncestors()) {
+      ids.add(person.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testSmallTree() throws Exception {
+    Gedcom gedcom = PedigreeGraphTest.parse(PedigreeGraphTest.GEDCOM);
+    RelationshipCalculator calculator = new RelationshipCalculator(gedcom);
+    assertEquals(label(calculator, gedcom, "ME", "ME"), "self");
+    assertEquals(label(calculator, gedcom, "ME", "FA"), "parent");
+    assertEquals(label(calculator, gedcom, "FA", "ME"), "child");
+    assertEquals(label(calculator, gedcom, "ME", "GM"), "grandparent");
+    assertEquals(label(calculator, gedcom, "ME", "SI"), "sibling");
+    assertEquals(label(calculator, gedcom, "ME", "AU"), "aunt/uncle");
+    assertEquals(label(calculator, gedcom, "AU", "ME"), "niece/nephew");
+    assertEquals(label(calculator, gedcom, "ME", "CO"), "first cousin");
+    assertNull(label(calculator, gedcom, "FA", "MO"));
+
+    Relationship relationship = calculator.getRelationship(gedcom.getPerson("ME"), gedcom.getPerson("CO"));
+    assertEquals(ids(relationship), Arrays.asList("GF", "GM"));
+    assertEquals(relationship.getGenerations1(), 2);
+    assertEquals(relationship.getGenerations2(), 2);
+    assertSame(relationship.getPerson2(), gedcom.getPerson("CO"));
+  }
+
+  @Test
+  public void testLabels() {
+    assertEquals(Relationship.getLabel(3, 0), "great-grandparent");
+    assertEquals(Relationship.getLabel(4, 0), "2nd great-grandparent");
+    assertEquals(Relationship.getLabel(0, 6), "4th great-grandchild");
+    assertEquals(Relationship.getLabel(3, 1), "great-aunt/uncle");
+    assertEquals(Relationship.getLabel(1, 3), "grandniece/nephew");
+    assertEquals(Relationship.getLabel(1, 4), "great-grandniece/nephew");
+    assertEquals(Relationship.getLabel(3, 3), "second cousin");
+    assertEquals(Relationship.getLabel(3, 4), "second cousin once removed");
+    assertEquals(Relationship.getLabel(2, 4), "first cousin twice removed");
+    assertEquals(Relationship.getLabel(2, 7), "first cousin 5 times removed");
+    assertEquals(Relationship.getLabel(13, 13), "12th cousin");
+  }
+
+  /**
+   * In each generation g, Hg and Wg marry and have two children Xg+1 and Yg+1, whose children Hg+1 and Wg+1
+   * are first cousins who marry in turn.  The number of ancestor paths doubles every two generations, but the
+   * number of distinct ancestors only grows linearly.
+   */
+  @Test
+  public void testPedigreeCollapse() throws Exception {
+    int generations = 200;
+    StringBuilder buf = new StringBuilder("0 HEAD\n");
+    for (int g = 0; g < generations; g++) {
+      for (String sibling : new String[] {"X", "Y"}) {
+        buf.append("0 @").append(sibling).append(g).append("@ INDI\n");
+        if (g > 0) {
+          buf.append("1 FAMC @F").append(g - 1).append("@\n");
+        }
+        buf.append("1 FAMS @F").append(sibling).append(g).append("@\n");
+      }
+      buf.append("0 @H").append(g).append("@ INDI\n1 FAMC @FX").append(g).append("@\n1 FAMS @F").append(g).append("@\n");
+      buf.append("0 @W").append(g).append("@ INDI\n1 FAMC @FY").append(g).append("@\n1 FAMS @F").append(g).append("@\n");
+      buf.append("0 @FX").append(g).append("@ FAM\n1 HUSB @X").append(g).append("@\n1 CHIL @H").append(g).append("@\n");
+      buf.append("0 @FY").append(g).append("@ FAM\n1 WIFE @Y").append(g).append("@\n1 CHIL @W").append(g).append("@\n");
+      buf.append("0 @F").append(g).append("@ FAM\n1 HUSB @H").append(g).append("@\n1 WIFE @W").append(g).append("@\n");
+      buf.append("1 CHIL @X").append(g + 1).append("@\n1 CHIL @Y").append(g + 1).append("@\n");
+    }
+    buf.append("0 TRLR\n");
+    Gedcom gedcom = PedigreeGraphTest.parse(buf.toString());
+    RelationshipCalculator calculator = new RelationshipCalculator(new PedigreeGraph(gedcom), 500, 100);
+
+    int last = generations - 1;
+    Relationship relationship = calculator.getRelationship(gedcom.getPerson("H" + last), gedcom.getPerson("W" + last));
+    assertEquals(relationship.getLabel(), "first cousin");
+    assertEquals(ids(relationship), Arrays.asList("H" + (last - 1), "W" + (last - 1)));
+    assertEquals(label(calculator, gedcom, "X" + last, "Y" + last), "sibling");
+    relationship = calculator.getRelationship(gedcom.getPerson("H" + last), gedcom.getPerson("H0"));
+    assertEquals(relationship.getGenerations1(), 2 * last);
+    assertEquals(relationship.getGenerations2(), 0);
+
+    RelationshipCalculator limited = new RelationshipCalculator(new PedigreeGraph(gedcom), 10, 100);
+    assertNull(label(limited, gedcom, "H" + last, "H0"));
+    assertEquals(label(limited, gedcom, "H" + last, "H" + (last - 3)), "4th great-grandparent");
+  }
+}
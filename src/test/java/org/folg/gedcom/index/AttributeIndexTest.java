@@ -0,0 +1,141 @@
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.index.AttributeIndex.Field;
+import org.folg.gedcom.index.AttributeIndex.Term;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.*;
+
+public class AttributeIndexTest {
+  static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 NAME John Henry /Smith/\n1 BIRT\n2 DATE 1845\n2 PLAC Boston, Massachusetts\n" +
+        "0 @I2@ INDI\n1 NAME Mary /Smith/\n1 BIRT\n2 PLAC boston,  massachusetts\n1 DEAT\n2 PLAC Salem\n" +
+        "0 @I3@ INDI\n1 NAME John /Jones/\n1 DEAT\n2 PLAC Boston, Massachusetts\n" +
+        "0 @I4@ INDI\n1 NAME Zoë\n2 GIVN Zoë\n2 SURN Müller\n1 BURI\n2 PLAC Salem\n" +
+        "0 TRLR\n";
+
+  static Gedcom parse(String gedcom) throws Exception {
+    return new ModelParser().parseGedcom(new StringReader(gedcom));
+  }
+
+  private List<String> ids(AttributeIndex index, int[] numbers) {
+    List<String> ids = new ArrayList<String>();
+    for (Person person : index.getPeople(numbers)) {
+      ids.add(person.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testQueries() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    AttributeIndex index = new AttributeIndex(gedcom);
+    assertEquals(index.size(), 4);
+    assertEquals(ids(index, index.get(Field.SURNAME, "SMITH")).toString(), "[I1, I2]");
+    assertEquals(ids(index, index.get(Field.GIVEN_NAME, "john")).toString(), "[I1, I3]");
+    assertEquals(ids(index, index.get(Field.GIVEN_NAME, "Henry John")).toString(), "[I1]");
+    assertEquals(ids(index, index.get(Field.PLACE, "Boston, Massachusetts")).toString(), "[I1, I2, I3]");
+    assertEquals(ids(index, index.get(Field.EVENT, "deat")).toString(), "[I2, I3]");
+    assertEquals(ids(index, index.get(Field.SURNAME, "muller")).toString(), "[I4]");
+    assertEquals(ids(index, index.get(Field.GIVEN_NAME, "zoe")).toString(), "[I4]");
+    assertEquals(index.get(Field.SURNAME, "Brown").length, 0);
+
+    assertEquals(ids(index, index.matchAll(new Term(Field.SURNAME, "smith"), new Term(Field.EVENT, "DEAT"))).toString(), "[I2]");
+    assertEquals(ids(index, index.matchAny(new Term(Field.SURNAME, "jones"), new Term(Field.PLACE, "salem"))).toString(),
+          "[I2, I3, I4]");
+    int[] smithsOrJohns = AttributeIndex.or(index.get(Field.SURNAME, "smith"), index.get(Field.GIVEN_NAME, "john"));
+    assertEquals(ids(index, AttributeIndex.and(smithsOrJohns, index.get(Field.EVENT, "DEAT"))).toString(), "[I2, I3]");
+  }
+
+  @Test
+  public void testAddedPeople() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    AttributeIndex index = new AttributeIndex(gedcom);
+    Person person = new Person();
+    person.setId("I5");
+    Name name = new Name();
+    name.setValue("Anna /Smith/");
+    person.addName(name);
+    EventFact birth = new EventFact();
+    birth.setTag("BIRT");
+    birth.setPlace("Salem");
+    person.addEventFact(birth);
+    gedcom.addPerson(person);
+
+    assertEquals(ids(index, index.get(Field.SURNAME, "smith")).toString(), "[I1, I2, I5]");
+    assertEquals(ids(index, index.matchAll(new Term(Field.PLACE, "salem"), new Term(Field.EVENT, "BIRT"))).toString(), "[I2, I5]");
+
+    index.close();
+    Person another = new Person();
+    another.addName(name);
+    gedcom.addPerson(another);
+    assertEquals(index.get(Field.SURNAME, "smith").length, 3);
+  }
+
+  @Test
+  public void testRemovedPeople() throws Exception {
+    Gedcom gedcom = parse(GEDCOM);
+    AttributeIndex index = new AttributeIndex(gedcom);
+    assertTrue(gedcom.removePerson(gedcom.getPerson("I1")));
+    assertEquals(ids(index, index.get(Field.SURNAME, "smith")).toString(), "[I2]");
+    assertEquals(ids(index, index.get(Field.PLACE, "Boston, Massachusetts")).toString(), "[I2, I3]");
+    assertTrue(index.isRemoved(0));
+    assertEquals(index.size(), 4);
+    index.close();
+  }
+
+  @Test
+  public void testParallelBuildMatchesScan() throws Exception {
+    StringBuilder buf = new StringBuilder("0 HEAD\n");
+    int count = 30000;
+    for (int i = 0; i < count; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n1 NAME Given").append(i % 13).append(" /Surname").append(i % 17).append("/\n");
+      buf.append("1 BIRT\n2 PLAC Place ").append(i % 11).append("\n");
+    }
+    buf.append("0 TRLR\n");
+    Gedcom gedcom = parse(buf.toString());
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try (AttributeIndex index = new AttributeIndex(gedcom, pool)) {
+      int[] result = index.matchAll(new Term(Field.SURNAME, "surname3"), new Term(Field.GIVEN_NAME, "given5"),
+            new Term(Field.PLACE, "place 7"));
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int i = 0; i < count; i++) {
+        if (i % 17 == 3 && i % 13 == 5 && i % 11 == 7) {
+          expected.add(i);
+        }
+      }
+      assertEquals(result.length, expected.size());
+      for (int i = 0; i < result.length; i++) {
+        assertEquals(result[i], expected.get(i).intValue());
+      }
+      assertEquals(index.get(Field.SURNAME, "surname3").length, (count - 3 + 16) / 17);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testIntersectAndUnion() {
+    int[] small = {3, 500, 999, 1500};
+    int[] large = new int[1000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = i * 2 + 1;
+    }
+    assertEquals(AttributeIndex.and(small, large), new int[] {3, 999});
+    assertEquals(AttributeIndex.and(large, small), new int[] {3, 999});
+    assertEquals(AttributeIndex.or(new int[] {1, 4, 6}, new int[] {2, 4, 7}), new int[] {1, 2, 4, 6, 7});
+    assertEquals(AttributeIndex.and(new int[] {1, 4, 6}, new int[] {2, 4, 6}), new int[] {4, 6});
+  }
+}
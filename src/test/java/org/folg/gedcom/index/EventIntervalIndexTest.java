@@ -0,0 +1,86 @@
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.date.DateParser;
+import org.folg.gedcom.date.GedcomDate;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+public class EventIntervalIndexTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 BIRT\n2 DATE 1845\n2 PLAC Boston\n1 DEAT\n2 DATE 1901\n" +
+        "0 @I2@ INDI\n1 BIRT\n2 DATE BEF 1841\n2 PLAC Salem\n" +
+        "0 @I3@ INDI\n1 BIRT\n2 DATE BET 1849 AND 1855\n2 PLAC boston\n" +
+        "0 @I4@ INDI\n1 BIRT\n2 DATE AFT 1850\n" +
+        "0 @I5@ INDI\n1 BIRT\n2 DATE 3 MAR 1839\n1 BIRT\n2 DATE sometime\n" +
+        "0 @F1@ FAM\n1 MARR\n2 DATE ABT 1848\n2 PLAC Boston\n" +
+        "0 TRLR\n";
+
+  private List<String> owners(List<EventIntervalIndex.Entry> entries) {
+    List<String> ids = new ArrayList<String>();
+    for (EventIntervalIndex.Entry entry : entries) {
+      ids.add(entry.getOwner() instanceof Person ? ((Person)entry.getOwner()).getId() :
+            ((Family)entry.getOwner()).getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testQueries() throws Exception {
+    EventIntervalIndex index = new EventIntervalIndex(AttributeIndexTest.parse(GEDCOM));
+    assertEquals(index.size("BIRT"), 5);
+    assertEquals(index.size(null), 7);
+    assertEquals(owners(index.findYears("BIRT", 1840, 1850, null)).toString(), "[I2, I1, I3]");
+    assertEquals(owners(index.findYears("birt", 1840, 1850, "BOSTON")).toString(), "[I1, I3]");
+    assertEquals(owners(index.findYears("BIRT", 1851, 1860, null)).toString(), "[I3, I4]");
+    assertEquals(owners(index.findYears("BIRT", 1830, 1839, null)).toString(), "[I2, I5]");
+    assertEquals(owners(index.findYears(null, 1848, 1850, "Boston")).toString(), "[F1, I3]");
+    assertEquals(owners(index.find("MARR", new DateParser().parse("1848"), null)).toString(), "[F1]");
+    assertEquals(index.findYears("CHR", 1800, 1900, null).size(), 0);
+  }
+
+  @Test
+  public void testMatchesScan() {
+    Random random = new Random(42);
+    Gedcom gedcom = new Gedcom();
+    String[] qualifiers = {"", "ABT ", "BEF ", "AFT ", "EST "};
+    for (int i = 0; i < 5000; i++) {
+      Person person = new Person();
+      person.setId("I" + i);
+      EventFact birth = new EventFact();
+      birth.setTag("BIRT");
+      int year = 1500 + random.nextInt(400);
+      birth.setDate(random.nextInt(10) == 0 ? "BET " + year + " AND " + (year + random.nextInt(30)) :
+            qualifiers[random.nextInt(qualifiers.length)] + year);
+      person.addEventFact(birth);
+      gedcom.addPerson(person);
+    }
+    DateParser parser = new DateParser();
+    EventIntervalIndex index = new EventIntervalIndex(gedcom, parser);
+    for (int q = 0; q < 200; q++) {
+      int from = 1450 + random.nextInt(500);
+      int to = from + random.nextInt(20);
+      GedcomDate range = parser.parse("BET " + from + " AND " + to);
+      int expected = 0;
+      for (Person person : gedcom.getPeople()) {
+        if (parser.parse(person.getEventsFacts().get(0).getDate()).overlaps(range)) {
+          expected++;
+        }
+      }
+      List<EventIntervalIndex.Entry> found = index.findYears("BIRT", from, to, null);
+      assertEquals(found.size(), expected);
+      for (int i = 1; i < found.size(); i++) {
+        assertTrue(found.get(i - 1).getDate().getEarliest() <= found.get(i).getDate().getEarliest());
+      }
+    }
+  }
+}
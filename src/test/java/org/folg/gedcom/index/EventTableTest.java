@@ -0,0 +1,70 @@
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.date.GedcomDate;
+import org.folg.gedcom.index.EventTable.Column;
+import org.testng.annotations.Test;
+
+import java.util.BitSet;
+
+import static org.testng.Assert.*;
+
+public class EventTableTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 BIRT\n2 DATE 3 MAR 1851\n2 PLAC Springfield, Sangamon, Illinois, USA\n" +
+        "1 DEAT\n2 DATE 1901\n2 PLAC Chicago, Cook, Illinois, USA\n2 CAUS Influenza\n" +
+        "0 @I2@ INDI\n1 BIRT\n2 DATE ABT 1858\n2 PLAC Boston, Massachusetts, USA\n" +
+        "1 EVEN\n2 TYPE Military\n2 DATE BEF 1900\n" +
+        "0 @I3@ INDI\n1 BIRT\n2 DATE 1862\n2 PLAC Chicago, Cook, Illinois, USA\n1 DEAT\n2 CAUS influenza\n" +
+        "0 @I4@ INDI\n1 BIRT\n2 DATE sometime\n1 OCCU Farmer\n" +
+        "0 @F1@ FAM\n1 MARR\n2 DATE 1880\n2 PLAC Illinois, USA\n" +
+        "0 TRLR\n";
+
+  @Test
+  public void testColumns() throws Exception {
+    EventTable table = new EventTable(AttributeIndexTest.parse(GEDCOM));
+    assertEquals(table.size(), 9);
+    assertEquals(table.getTag(table.get(Column.TAG, 0)), "BIRT");
+    assertEquals(table.getOwner(table.get(Column.OWNER, 3)), "I2");
+    assertTrue(table.isPersonOwner(table.get(Column.OWNER, 3)));
+    assertFalse(table.isPersonOwner(table.get(Column.OWNER, 8)));
+    assertEquals(table.get(Column.EARLIEST, 0), GedcomDate.gregorianDay(1851, 3, 3));
+    assertEquals(table.get(Column.DATE_FLAGS, 7), EventTable.NONE);
+    assertEquals(table.get(Column.PLACE, 7), EventTable.NONE);
+    assertEquals(table.getPlaces().getFullName(table.get(Column.PLACE, 1)), "Chicago, Cook, Illinois, USA");
+    assertEquals(table.getType(table.get(Column.TYPE, 3)), "military");
+    assertEquals(table.get(Column.CAUSE, 1), table.getCauseCode("INFLUENZA"));
+    assertEquals(table.getColumn(Column.TAG).capacity(), 9);
+  }
+
+  @Test
+  public void testQueries() throws Exception {
+    EventTable table = new EventTable(AttributeIndexTest.parse(GEDCOM));
+    BitSet births = table.selectTag("birt");
+    assertEquals(births.cardinality(), 4);
+    assertEquals(table.countByYears(births, 10).toString(), "{1850=2, 1860=1}");
+    assertEquals(table.countByYears(null, 50).toString(), "{1850=4, 1900=1}");
+
+    PlaceDictionary places = table.getPlaces();
+    int illinois = places.lookup("Illinois, USA");
+    BitSet inIllinois = table.selectRange(Column.PLACE, illinois, places.getSubtreeEnd(illinois) - 1);
+    assertEquals(inIllinois.cardinality(), 4);
+    inIllinois.and(births);
+    assertEquals(inIllinois.toString(), "{0, 4}");
+
+    long[] byTag = table.count(Column.TAG, null);
+    assertEquals(byTag[table.getTagCode("DEAT")], 2);
+    assertEquals(byTag[table.getTagCode("OCCU")], 1);
+    assertEquals(table.count(Column.CAUSE, null)[table.getCauseCode("influenza")], 2);
+    long[] byOwner = table.count(Column.OWNER, births);
+    assertEquals(byOwner.length, 5);
+    assertEquals(byOwner[4], 0);
+
+    BitSet in1900 = table.selectDates(GedcomDate.gregorianDay(1900, 1, 1), GedcomDate.gregorianDay(1900, 12, 31));
+    assertEquals(in1900.toString(), "{}");
+    BitSet before1870 = table.selectDates(GedcomDate.UNBOUNDED_START, GedcomDate.gregorianDay(1869, 12, 31));
+    assertEquals(before1870.toString(), "{0, 2, 3, 4}");
+    assertEquals(table.select(Column.TAG, table.getTagCode("MARR")).toString(), "{8}");
+    assertTrue(table.selectRange(Column.PLACE, 5, 4).isEmpty());
+  }
+}
@@ -0,0 +1,71 @@
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.index.PhoneticIndex.Encoding;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class PhoneticIndexTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 NAME John /Smith/\n" +
+        "0 @I2@ INDI\n1 NAME Mary /Smyth/\n" +
+        "0 @I3@ INDI\n1 NAME Karl /Schmidt/\n" +
+        "0 @I4@ INDI\n1 NAME Anna\n2 SURN Müller\n" +
+        "0 @I5@ INDI\n1 NAME Jan /Mueller/\n" +
+        "0 @I6@ INDI\n1 NAME Ivan /Moskowitz/\n" +
+        "0 @I7@ INDI\n1 NAME Ida /Moskovitz/\n" +
+        "0 @I8@ INDI\n1 NAME Nobody\n" +
+        "0 @I9@ INDI\n1 NAME Chee Lin /陳/\n" +
+        "0 TRLR\n";
+
+  private List<String> ids(PhoneticIndex index, String surname) {
+    List<String> ids = new ArrayList<String>();
+    for (Person person : index.findPeople(surname)) {
+      ids.add(person.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testSoundex() throws Exception {
+    PhoneticIndex index = new PhoneticIndex(AttributeIndexTest.parse(GEDCOM), Encoding.SOUNDEX);
+    assertEquals(index.encode("Smith"), new String[] {"S530"});
+    assertEquals(ids(index, "Smithe").toString(), "[I1, I2, I3]");
+    assertEquals(ids(index, "Miller").toString(), "[I4, I5]");
+    assertEquals(ids(index, "陳").toString(), "[]");
+    assertEquals(index.encode(null).length, 0);
+  }
+
+  @Test
+  public void testDoubleMetaphone() throws Exception {
+    Gedcom gedcom = AttributeIndexTest.parse(GEDCOM);
+    PhoneticIndex index = new PhoneticIndex(gedcom, Encoding.DOUBLE_METAPHONE);
+    // Schmidt's alternate code matches Smith's primary code
+    assertEquals(ids(index, "Smith").toString(), "[I1, I2, I3]");
+    gedcom.removePerson(gedcom.getPerson("I2"));
+    assertEquals(ids(index, "Smith").toString(), "[I1, I3]");
+  }
+
+  @Test
+  public void testDaitchMokotoff() throws Exception {
+    Gedcom gedcom = AttributeIndexTest.parse(GEDCOM);
+    PhoneticIndex index = new PhoneticIndex(gedcom, Encoding.DAITCH_MOKOTOFF);
+    assertEquals(ids(index, "Moskowitz").toString(), "[I6, I7]");
+
+    Person person = new Person();
+    person.setId("I10");
+    Name name = new Name();
+    name.setValue("Sam /Moskovits/");
+    person.addName(name);
+    gedcom.addPerson(person);
+    assertEquals(ids(index, "Moskowitz").toString(), "[I6, I7, I10]");
+    assertEquals(index.size(), 10);
+  }
+}
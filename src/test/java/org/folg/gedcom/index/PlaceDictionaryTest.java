@@ -0,0 +1,96 @@
+package org.folg.gedcom.index;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class PlaceDictionaryTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 BIRT\n2 PLAC Springfield, Sangamon, Illinois, USA\n1 DEAT\n2 PLAC Chicago, Cook, Illinois, USA\n" +
+        "0 @I2@ INDI\n1 BIRT\n2 PLAC springfield,sangamon,illinois,usa\n1 RESI\n2 PLAC Illinois, USA\n" +
+        "0 @I3@ INDI\n1 BIRT\n2 PLAC Boston, Suffolk, Massachusetts, USA\n1 DEAT\n2 PLAC London, , England\n" +
+        "0 @F1@ FAM\n1 MARR\n2 PLAC Cook, Illinois, USA\n1 DIV\n" +
+        "0 TRLR\n";
+
+  private List<String> places(List<EventFact> events, int[] eventNumbers) {
+    List<String> places = new ArrayList<String>();
+    for (int event : eventNumbers) {
+      places.add(events.get(event).getPlace());
+    }
+    return places;
+  }
+
+  @Test
+  public void testHierarchy() throws Exception {
+    Gedcom gedcom = AttributeIndexTest.parse(GEDCOM);
+    PlaceDictionary dictionary = new PlaceDictionary(gedcom);
+    // events are numbered people first, then families, as the dictionary added them
+    List<EventFact> events = new ArrayList<EventFact>();
+    for (Person person : gedcom.getPeople()) {
+      events.addAll(person.getEventsFacts());
+    }
+    for (Family family : gedcom.getFamilies()) {
+      events.addAll(family.getEventsFacts());
+    }
+    // root, USA, Illinois, Sangamon, Springfield, Cook, Chicago, Massachusetts, Suffolk, Boston, England, London
+    assertEquals(dictionary.size(), 12);
+
+    int usa = dictionary.lookup("USA");
+    int illinois = dictionary.lookup("Illinois, USA");
+    int springfield = dictionary.lookup("Springfield, Sangamon, Illinois, USA");
+    assertEquals(dictionary.lookup("SPRINGFIELD,  Sangamon , illinois, usa"), springfield);
+    assertEquals(dictionary.lookup("Springfield, Illinois, USA"), -1);
+    assertEquals(dictionary.getName(springfield), "Springfield");
+    assertEquals(dictionary.getFullName(springfield), "Springfield, Sangamon, Illinois, USA");
+    assertEquals(dictionary.getParent(illinois), usa);
+    assertEquals(dictionary.getDepth(springfield), 4);
+    assertEquals(dictionary.getFullName(dictionary.lookup("London, England")), "London, England");
+
+    assertTrue(dictionary.isWithin(springfield, illinois));
+    assertTrue(dictionary.isWithin(illinois, illinois));
+    assertFalse(dictionary.isWithin(dictionary.lookup("Boston, Suffolk, Massachusetts, USA"), illinois));
+    assertFalse(dictionary.isWithin(usa, illinois));
+    assertEquals(dictionary.getChildren(illinois).length, 2);
+
+    assertEquals(dictionary.getCount(springfield), 2);
+    assertEquals(dictionary.getCount(illinois), 1);
+    assertEquals(dictionary.getSubtreeCount(illinois), 5);
+    assertEquals(dictionary.getSubtreeCount(usa), 6);
+    assertEquals(dictionary.getSubtreeCount(PlaceDictionary.ROOT), 7);
+
+    assertEquals(dictionary.getEventCountWithin(illinois), 5);
+    List<String> illinoisPlaces = places(events, dictionary.getEventsWithin(illinois));
+    assertEquals(illinoisPlaces.size(), 5);
+    assertTrue(illinoisPlaces.contains("Cook, Illinois, USA"));
+    assertFalse(illinoisPlaces.contains("Boston, Suffolk, Massachusetts, USA"));
+
+    assertEquals(dictionary.getEventCount(), 8);
+    for (int i = 0; i < dictionary.getEventCount(); i++) {
+      assertEquals(dictionary.getEventPlace(i), dictionary.lookup(events.get(i).getPlace()));
+    }
+    // the DIV without a place
+    assertEquals(dictionary.getEventPlace(7), PlaceDictionary.ROOT);
+    assertEquals(dictionary.getEventsWithin(PlaceDictionary.ROOT).length, 7);
+  }
+
+  @Test
+  public void testBuilder() {
+    PlaceDictionary.Builder builder = new PlaceDictionary.Builder();
+    assertTrue(builder.addPlace("Paris, France"));
+    assertTrue(builder.addPlace("Lyon, France"));
+    assertTrue(builder.addPlace("paris, FRANCE"));
+    assertFalse(builder.addPlace(" , "));
+    PlaceDictionary dictionary = builder.build();
+    assertEquals(dictionary.getSubtreeCount(dictionary.lookup("France")), 3);
+    assertEquals(dictionary.getCount(dictionary.lookup("Paris, France")), 2);
+    assertEquals(dictionary.getEventCount(), 0);
+  }
+}
@@ -0,0 +1,153 @@
+package org.folg.gedcom.journal;
+
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.testng.Assert.*;
+
+public class ChangeJournalTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 NAME John /Smith/\n1 FAMS @F1@\n" +
+        "0 @I2@ INDI\n1 NAME Mary /Jones/\n1 FAMS @F1@\n" +
+        "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n" +
+        "0 TRLR\n";
+
+  private File dir;
+  private File gedcomFile;
+  private File journalFile;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("journal").toFile();
+    gedcomFile = new File(dir, "tree.ged");
+    journalFile = new File(dir, "tree.journal");
+    Files.write(gedcomFile.toPath(), GEDCOM.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  private String write(Gedcom gedcom) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GedcomWriter().write(gedcom, out);
+    return out.toString("UTF-8");
+  }
+
+  private Gedcom load() throws Exception {
+    Gedcom gedcom = new ModelParser().parseGedcom(gedcomFile);
+    ChangeJournal.replay(gedcom, journalFile);
+    return gedcom;
+  }
+
+  private Gedcom edit() throws Exception {
+    Gedcom gedcom = load();
+    ChangeJournal journal = new ChangeJournal(gedcom, journalFile);
+    Person person = new Person();
+    person.setId("I3");
+    Name name = new Name();
+    name.setValue("Ann /Smith/");
+    person.addName(name);
+    gedcom.addPerson(person);
+
+    Person john = gedcom.getPerson("I1");
+    john.getNames().get(0).setValue("Johann /Schmidt/");
+    gedcom.notifyRecordUpdated(john);
+
+    assertTrue(gedcom.removeFamily(gedcom.getFamily("F1")));
+    journal.close();
+
+    // not journaled after close
+    Person unsaved = new Person();
+    unsaved.setId("I4");
+    gedcom.addPerson(unsaved);
+    gedcom.removePerson(unsaved);
+    return gedcom;
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    Gedcom edited = edit();
+    assertEquals(ChangeJournal.replay(new Gedcom(), journalFile), 3);
+    Gedcom replayed = load();
+    assertEquals(write(replayed), write(edited));
+    assertEquals(replayed.getPeople().size(), 3);
+    assertEquals(replayed.getPerson("I1").getNames().get(0).getValue(), "Johann /Schmidt/");
+    assertNull(replayed.getFamily("F1"));
+    assertEquals(Files.readString(gedcomFile.toPath()), GEDCOM);
+  }
+
+  @Test
+  public void testIncompleteEntry() throws Exception {
+    edit();
+    OutputStream out = new FileOutputStream(journalFile, true);
+    out.write("#ADD INDI I9\n0 @I9@ INDI\n1 NA".getBytes(StandardCharsets.UTF_8));
+    out.close();
+    assertNull(load().getPerson("I9"));
+
+    Gedcom gedcom = load();
+    ChangeJournal journal = new ChangeJournal(gedcom, journalFile);
+    Person person = new Person();
+    person.setId("I5");
+    gedcom.addPerson(person);
+    journal.close();
+    Gedcom replayed = load();
+    assertNull(replayed.getPerson("I9"));
+    assertNotNull(replayed.getPerson("I5"));
+    assertNotNull(replayed.getPerson("I3"));
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    Gedcom gedcom = load();
+    ChangeJournal journal = new ChangeJournal(gedcom, journalFile);
+    gedcom.removePerson(gedcom.getPerson("I2"));
+    assertTrue(journalFile.length() > 0);
+    journal.compact(gedcomFile);
+    assertEquals(journalFile.length(), 0);
+    Person person = new Person();
+    person.setId("I6");
+    gedcom.addPerson(person);
+    journal.close();
+
+    Gedcom reloaded = load();
+    assertNull(reloaded.getPerson("I2"));
+    assertNotNull(reloaded.getPerson("I6"));
+    assertEquals(write(reloaded), write(gedcom));
+
+    ChangeJournal.compact(gedcomFile, journalFile);
+    assertFalse(journalFile.exists());
+    assertEquals(write(new ModelParser().parseGedcom(gedcomFile)), write(gedcom));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRecordWithoutId() throws Exception {
+    Gedcom gedcom = load();
+    ChangeJournal journal = new ChangeJournal(gedcom, journalFile);
+    try {
+      gedcom.addFamily(new Family());
+    }
+    finally {
+      journal.close();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.folg.gedcom.model;
+
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+public class GedcomFreezeTest {
+  private Gedcom parse() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+    return new ModelParser().parseGedcom(gedcomUrl.openStream());
+  }
+
+  private String write(Gedcom gedcom) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GedcomWriter().write(gedcom, out);
+    return out.toString("UTF-8");
+  }
+
+  @Test
+  public void testFreezeKeepsContent() throws Exception {
+    Gedcom gedcom = parse();
+    String before = write(gedcom);
+    assertFalse(gedcom.isFrozen());
+    assertSame(gedcom.freeze(), gedcom);
+    assertTrue(gedcom.isFrozen());
+    assertEquals(write(gedcom), before);
+    gedcom.freeze();
+    assertEquals(write(gedcom), before);
+  }
+
+  @Test
+  public void testFrozenIsUnmodifiable() throws Exception {
+    Gedcom gedcom = new Gedcom();
+    Person person = new Person();
+    person.setId("I1");
+    Name name = new Name();
+    name.setValue("John /Smith/");
+    person.addName(name);
+    EventFact birth = new EventFact();
+    birth.setTag("BIRT");
+    person.addEventFact(birth);
+    person.putExtension("_X", "y");
+    gedcom.addPerson(person);
+    gedcom.freeze();
+
+    assertSame(gedcom.getPerson("I1"), person);
+    try {
+      gedcom.addPerson(new Person());
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      gedcom.setFamilies(new ArrayList<Family>());
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      gedcom.getPeople().add(new Person());
+      fail("expected UnsupportedOperationException");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      person.addName(new Name());
+      fail("expected UnsupportedOperationException");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      person.getEventsFacts().clear();
+      fail("expected UnsupportedOperationException");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      person.putExtension("_Z", "z");
+      fail("expected UnsupportedOperationException");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(person.getNames().size(), 1);
+    assertEquals(person.getExtension("_X"), "y");
+  }
+
+  @Test
+  public void testConcurrentReads() throws Exception {
+    Gedcom gedcom = new Gedcom();
+    for (int i = 0; i < 5000; i++) {
+      Person person = new Person();
+      person.setId("I" + i);
+      gedcom.addPerson(person);
+    }
+    final Gedcom frozen = gedcom.freeze();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < 4; t++) {
+        results.add(executor.submit(() -> {
+          int found = 0;
+          for (Person person : frozen.getPeople()) {
+            if (frozen.getPerson(person.getId()) == person) {
+              found++;
+            }
+          }
+          return found;
+        }));
+      }
+      for (Future<Integer> result : results) {
+        assertEquals(result.get().intValue(), 5000);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package org.folg.gedcom.model;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+public class GedcomIndexTest {
+  private Person person(String id) {
+    Person person = new Person();
+    person.setId(id);
+    return person;
+  }
+
+  @Test
+  public void testLookupWithoutCreateIndexes() {
+    Gedcom gedcom = new Gedcom();
+    Person p1 = person("I1");
+    gedcom.addPerson(p1);
+    assertSame(gedcom.getPerson("I1"), p1);
+    assertNull(gedcom.getPerson("I2"));
+    assertNull(gedcom.getPerson(null));
+    assertNull(gedcom.getFamily("F1"));
+    assertNull(gedcom.getSubmitter("U1"));
+  }
+
+  @Test
+  public void testAddAndSetKeepIndexCurrent() {
+    Gedcom gedcom = new Gedcom();
+    gedcom.addPerson(person("I1"));
+    assertNotNull(gedcom.getPerson("I1"));
+
+    Person p2 = person("I2");
+    gedcom.addPerson(p2);
+    assertSame(gedcom.getPerson("I2"), p2);
+
+    gedcom.addPerson(person(null));
+    assertEquals(gedcom.getPeople().size(), 3);
+
+    List<Person> people = new ArrayList<Person>();
+    Person p3 = person("I3");
+    people.add(p3);
+    gedcom.setPeople(people);
+    assertNull(gedcom.getPerson("I1"));
+    assertSame(gedcom.getPerson("I3"), p3);
+
+    // changing a list directly requires createIndexes
+    Person p4 = person("I4");
+    people.add(p4);
+    gedcom.createIndexes();
+    assertSame(gedcom.getPerson("I4"), p4);
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final Gedcom gedcom = new Gedcom();
+    for (int i = 0; i < 10000; i++) {
+      gedcom.addPerson(person("I" + i));
+      Family family = new Family();
+      family.setId("F" + i);
+      gedcom.addFamily(family);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          int found = 0;
+          for (int i = 0; i < 10000; i++) {
+            if (gedcom.getPerson("I" + i) != null && gedcom.getFamily("F" + i) != null) {
+              found++;
+            }
+          }
+          return found;
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        assertEquals(future.get().intValue(), 10000);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Address;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class FieldRefTest {
+  @Test
+  public void testSetGetAppend() throws Exception {
+    Address address = new Address();
+    FieldRef fieldRef = new FieldRef(address, "City");
+    fieldRef.setValue("Hometown");
+    assertEquals(fieldRef.getValue(), "Hometown");
+    fieldRef.appendValue(" Heights");
+    assertEquals(address.getCity(), "Hometown Heights");
+
+    FieldRef value = new FieldRef(new Address(), "Value");
+    value.appendValue("line");
+    assertEquals(value.getValue(), "line");
+  }
+
+  @Test
+  public void testAppendFallsBackToAdd() throws Exception {
+    Person person = new Person();
+    FieldRef fieldRef = new FieldRef(person, "ReferenceNumber");
+    fieldRef.appendValue("R1");
+    fieldRef.appendValue("R2");
+    assertEquals(person.getReferenceNumbers(), Arrays.asList("R1", "R2"));
+  }
+
+  @Test
+  public void testMissingMethods() {
+    FieldRef fieldRef = new FieldRef(new Person(), "NoSuchField");
+    try {
+      fieldRef.setValue("x");
+      fail();
+    } catch (NoSuchMethodException e) {
+      // expected
+    }
+    try {
+      fieldRef.getValue();
+      fail();
+    } catch (NoSuchMethodException e) {
+      // expected
+    }
+    try {
+      fieldRef.appendValue("x");
+      fail();
+    } catch (NoSuchMethodException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAccessorsAreCompiledOncePerClass() {
+    FieldAccessors.Accessor accessor = FieldAccessors.get(Address.class, "City");
+    assertSame(FieldAccessors.get(Address.class, "City"), accessor);
+    assertFalse(accessor.setter.getClass().isAnonymousClass(), "setter was not compiled");
+    assertFalse(accessor.getter.getClass().isAnonymousClass(), "getter was not compiled");
+    assertNull(accessor.adder);
+  }
+}
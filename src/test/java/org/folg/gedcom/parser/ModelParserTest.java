@@ -149,4 +149,20 @@ public class ModelParserTest {
     assertNotNull(gedcom);
   }
 
+  @Test
+  public void testLongContinuations() throws Exception {
+    StringBuilder gedcomText = new StringBuilder("0 HEAD\n0 @N1@ NOTE first\n");
+    StringBuilder expected = new StringBuilder("first");
+    for (int i = 0; i < 20000; i++) {
+      gedcomText.append("1 CONT line ").append(i).append("\n1 CONC  more\n");
+      expected.append("\nline ").append(i).append(" more");
+    }
+    gedcomText.append("0 @S1@ SOUR\n1 TITL A\n2 CONC B\n2 CONT C\n1 TITL second\n0 TRLR\n");
+
+    Gedcom gedcom = new ModelParser().parseGedcom(new java.io.StringReader(gedcomText.toString()));
+    assertEquals(gedcom.getNotes().get(0).getValue(), expected.toString());
+    // the first TITL is complete before the second one is seen, so the second becomes an extension
+    assertEquals(gedcom.getSources().get(0).getTitle(), "AB\nC");
+  }
+
 }
@@ -0,0 +1,111 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Gedcom;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+
+public class ParallelModelParserTest {
+
+  private static class RecordingErrorHandler implements ErrorHandler {
+    private final List<String> errors = new ArrayList<String>();
+
+    public void warning(String message, int lineNumber) {
+      errors.add("warning " + lineNumber + " " + message);
+    }
+
+    public void error(String message, int lineNumber) {
+      errors.add("error " + lineNumber + " " + message);
+    }
+
+    public void fatalError(String message, int lineNumber) {
+      errors.add("fatal " + lineNumber + " " + message);
+    }
+  }
+
+  private String buildGedcom() {
+    StringBuilder buf = new StringBuilder();
+    buf.append("0 HEAD\n1 SOUR Test\n1 CHAR UTF-8\n1 SUBN\n2 _X extension\n1 SUBM @SUB1@\n");
+    buf.append("0 @SUB1@ SUBM\n1 NAME Submitter\n");
+    for (int i = 0; i < 300; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n");
+      buf.append("1 NAME John /Smith").append(i % 7).append("/\n");
+      buf.append("1 BIRT\n2 DATE ").append(1800 + i).append("\n2 PLAC Town ").append(i % 5).append("\n");
+      buf.append("1 FAMS @F").append(i / 2).append("@\n");
+      if (i % 10 == 0) {
+        buf.append("1 _CUSTOM tag ").append(i).append("\n");
+        buf.append("3 DATE skipped level\n");
+        buf.append("not a gedcom line ").append(i).append("\n");
+        buf.append("1 NOTE line one\n2 CONT line two\n2 CONC  continued\n");
+      }
+      if (i % 2 == 1) {
+        buf.append("0 @F").append(i / 2).append("@ FAM\n");
+        buf.append("1 HUSB @I").append(i - 1).append("@\n1 WIFE @I").append(i).append("@\n");
+      }
+      if (i % 50 == 25) {
+        buf.append("0 @S").append(i).append("@ SOUR\n1 TITL Source ").append(i).append("\n");
+        buf.append("0 _TOP top-level extension ").append(i).append("\n");
+      }
+      if (i == 200) {
+        buf.append("0 HEAD\n1 SOUR Duplicate\n0 SUBN\n1 NAME Duplicate\n");
+      }
+    }
+    buf.append("0 TRLR\n");
+    return buf.toString();
+  }
+
+  private void assertSameAsModelParser(String gedcomText, int chunkSize) throws Exception {
+    RecordingErrorHandler serialErrors = new RecordingErrorHandler();
+    ModelParser modelParser = new ModelParser();
+    modelParser.setErrorHandler(serialErrors);
+    Gedcom serial = modelParser.parseGedcom(new StringReader(gedcomText));
+
+    RecordingErrorHandler parallelErrors = new RecordingErrorHandler();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Gedcom parallel;
+    try {
+      ParallelModelParser parallelParser = new ParallelModelParser(pool, chunkSize);
+      parallelParser.setErrorHandler(parallelErrors);
+      parallel = parallelParser.parseGedcom(new StringReader(gedcomText));
+    }
+    finally {
+      pool.shutdown();
+    }
+
+    JsonParser jsonParser = new JsonParser();
+    assertEquals(jsonParser.toJson(parallel), jsonParser.toJson(serial), "chunk size " + chunkSize);
+    assertEquals(parallelErrors.errors, serialErrors.errors, "chunk size " + chunkSize);
+  }
+
+  @Test
+  public void testSameResultAsModelParser() throws Exception {
+    String gedcomText = buildGedcom();
+    for (int chunkSize : new int[]{1, 100, 1000, 10000, ParallelModelParser.DEFAULT_CHUNK_SIZE}) {
+      assertSameAsModelParser(gedcomText, chunkSize);
+    }
+  }
+
+  @Test
+  public void testFile() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+    File gedcomFile = new File(gedcomUrl.toURI());
+    Gedcom serial = new ModelParser().parseGedcom(gedcomFile);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    Gedcom parallel;
+    try {
+      parallel = new ParallelModelParser(pool, 200).parseGedcom(gedcomFile);
+    }
+    finally {
+      pool.shutdown();
+    }
+    JsonParser jsonParser = new JsonParser();
+    assertEquals(jsonParser.toJson(parallel), jsonParser.toJson(serial));
+  }
+}
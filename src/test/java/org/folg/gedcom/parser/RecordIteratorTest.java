@@ -0,0 +1,95 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class RecordIteratorTest {
+  private static final String GEDCOM =
+        "0 HEAD\n1 SOUR Test\n1 CHAR UTF-8\n" +
+        "0 @I1@ INDI\n1 NAME John /Smith/\n1 BIRT\n2 PLAC Boston\n" +
+        "0 @F1@ FAM\n1 HUSB @I1@\n" +
+        "0 @I2@ INDI\n1 NAME Mary /Jones/\n" +
+        "0 @N1@ NOTE A note\n1 CONT continued\n" +
+        "0 @S1@ SOUR\n1 TITL A source\n" +
+        "0 _TOP extension\n" +
+        "0 TRLR\n";
+
+  private String describe(ExtensionContainer record) {
+    String name = record.getClass().getSimpleName();
+    if (record instanceof Person) {
+      return name + " " + ((Person)record).getId();
+    }
+    return name;
+  }
+
+  @Test
+  public void testRecordHandler() throws Exception {
+    final List<String> records = new ArrayList<String>();
+    ModelParser modelParser = new ModelParser();
+    modelParser.setRecordHandler(new RecordHandler() {
+      public void handleRecord(ExtensionContainer record) {
+        records.add(describe(record));
+      }
+    });
+    Gedcom gedcom = modelParser.parseGedcom(new StringReader(GEDCOM));
+
+    assertEquals(records.toString(), "[Header, Person I1, Family, Person I2, Note, Source]");
+    assertNotNull(gedcom.getHeader());
+    assertEquals(gedcom.getPeople().size(), 0);
+    assertEquals(gedcom.getFamilies().size(), 0);
+    assertNotNull(gedcom.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY));
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    Stream<ExtensionContainer> stream = new RecordIterator(new ModelParser(), new StringReader(GEDCOM)).stream();
+    List<String> records = stream.map(this::describe).collect(Collectors.toList());
+    stream.close();
+    assertEquals(records.toString(), "[Header, Person I1, Family, Person I2, Note, Source]");
+
+    try (Stream<ExtensionContainer> people = new RecordIterator(new ModelParser(), new StringReader(GEDCOM)).stream()) {
+      Person person = (Person)people
+            .filter(record -> record instanceof Person)
+            .findFirst().get();
+      assertEquals(person.getEventsFacts().get(0).getPlace(), "Boston");
+    }
+  }
+
+  @Test
+  public void testCloseEarly() throws Exception {
+    StringBuilder buf = new StringBuilder("0 HEAD\n");
+    for (int i = 0; i < 10000; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n1 NAME Person ").append(i).append("\n");
+    }
+    RecordIterator iterator = new RecordIterator(new ModelParser(), new StringReader(buf.toString()));
+    assertTrue(iterator.next() instanceof Header);
+    assertEquals(((Person)iterator.next()).getId(), "I0");
+    iterator.close();
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testParseFailure() throws Exception {
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      buf.append("not gedcom\n");
+    }
+    RecordIterator iterator = new RecordIterator(new ModelParser(), new StringReader(buf.toString()));
+    try {
+      iterator.hasNext();
+      fail("expected a parse failure");
+    }
+    catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof org.xml.sax.SAXParseException);
+    }
+    assertFalse(iterator.hasNext());
+  }
+}
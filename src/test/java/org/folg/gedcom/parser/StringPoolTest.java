@@ -0,0 +1,68 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomTag;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class StringPoolTest {
+  @Test
+  public void testPooling() {
+    StringPool pool = new StringPool(16, 8);
+    char[] buf = "xx1 JAN 1900 yy 1 JAN 1900".toCharArray();
+    String first = pool.get(buf, 2, 10);
+    String second = pool.get(buf, 16, 10);
+    assertEquals(first, "1 JAN 1900");
+    assertNotSame(first, second, "longer than maxLength");
+
+    String y = pool.get(new char[] {'Y'}, 0, 1);
+    assertSame(pool.get(new char[] {'Y'}, 0, 1), y);
+    assertSame(pool.get(new String("Y")), y);
+    assertNull(pool.get(null));
+    assertEquals(pool.getHits(), 2);
+    assertEquals(pool.getMisses(), 1);
+    assertEquals(pool.getHitRate(), 2.0 / 3.0, 1e-9);
+
+    pool.clear();
+    assertEquals(pool.getHits(), 0);
+    assertNotSame(pool.get(new char[] {'Y'}, 0, 1), y);
+  }
+
+  @Test
+  public void testBounded() {
+    StringPool pool = new StringPool(4, 8);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(pool.get(Integer.toString(i).toCharArray(), 0, Integer.toString(i).length()), Integer.toString(i));
+    }
+    assertEquals(pool.getMisses() + pool.getHits(), 1000);
+  }
+
+  @Test
+  public void testParsersShareValues() throws Exception {
+    String gedcomText = "0 HEAD\n" +
+          "0 @I1@ INDI\n1 BIRT\n2 DATE 1 JAN 1900\n2 PLAC Boston\n1 FAMS @F1@\n" +
+          "0 @I2@ INDI\n1 BIRT\n2 DATE 1 JAN 1900\n2 PLAC Boston\n1 FAMS @F1@\n" +
+          "0 @F1@ FAM\n1 HUSB @I1@\n0 TRLR\n";
+
+    ModelParser modelParser = new ModelParser();
+    modelParser.setStringPool(new StringPool());
+    Gedcom gedcom = modelParser.parseGedcom(new StringReader(gedcomText));
+    EventFact birth1 = gedcom.getPeople().get(0).getEventsFacts().get(0);
+    EventFact birth2 = gedcom.getPeople().get(1).getEventsFacts().get(0);
+    assertSame(birth1.getDate(), birth2.getDate());
+    assertSame(birth1.getPlace(), birth2.getPlace());
+    assertEquals(gedcom.getPeople().get(0).getId(), gedcom.getFamilies().get(0).getHusbandRefs().get(0).getRef());
+    assertEquals(modelParser.getStringPool().getHits(), 2);
+
+    TreeParser treeParser = new TreeParser();
+    treeParser.setStringPool(new StringPool());
+    List<GedcomTag> tags = treeParser.parseGedcom(new StringReader(gedcomText));
+    assertSame(tags.get(1).getChildren().get(0).getChildren().get(1).getValue(),
+          tags.get(2).getChildren().get(0).getChildren().get(1).getValue());
+  }
+}
@@ -0,0 +1,49 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.EventFact;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class TagTableTest {
+  @Test
+  public void testLookupMatchesToUpperCase() {
+    Set<String> names = new HashSet<String>(EventFact.PERSONAL_EVENT_FACT_TAGS);
+    names.addAll(EventFact.FAMILY_EVENT_FACT_TAGS);
+    for (ModelParser.Tag tag : ModelParser.Tag.values()) {
+      names.add(tag.name());
+    }
+    for (String name : names) {
+      for (String tagName : new String[] {name, name.toLowerCase(), name.substring(0, 1) + name.substring(1).toLowerCase()}) {
+        TagTable.Entry entry = TagTable.lookup(tagName);
+        assertNotNull(entry, tagName);
+        assertEquals(entry.name, name);
+        assertEquals(entry.personalEventFact, EventFact.PERSONAL_EVENT_FACT_TAGS.contains(name), tagName);
+        assertEquals(entry.familyEventFact, EventFact.FAMILY_EVENT_FACT_TAGS.contains(name), tagName);
+        if (entry.tag != null) {
+          assertEquals(entry.tag.name(), name);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownAndNonAsciiTags() {
+    assertNull(TagTable.lookup("_CUSTOM"));
+    assertNull(TagTable.lookup(""));
+    assertNull(TagTable.lookup("BIRTX"));
+    assertEquals(TagTable.lookup("CAUS").tag, ModelParser.Tag.CAUS);
+    assertTrue(TagTable.lookup("CAUS").personalEventFact);
+    // dotless i upper-cases to ASCII I, as Tag.valueOf(tagName.toUpperCase()) would see it
+    assertEquals(TagTable.lookup("bırt").name, "BIRT");
+    assertEquals(TagTable.lookup("tıtl").tag, ModelParser.Tag.TITL);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testEventFactTagsAreFixed() {
+    EventFact.PERSONAL_EVENT_FACT_TAGS.add("_XEVT");
+  }
+}
@@ -70,4 +70,13 @@ public class TreeParserTest {
         assertEquals(4, gedcomTags.size());
     }
 
+    @Test
+    public void testNonStandardLinesAppendedToValue() throws Exception {
+        String gedcomText = "0 HEAD\n0 @N1@ NOTE first\nsecond\nthird\n1 CONT fourth\n0 TRLR\n";
+        List<GedcomTag> gedcomTags = new TreeParser().parseGedcom(new java.io.StringReader(gedcomText));
+        GedcomTag note = gedcomTags.get(1);
+        assertEquals(note.getValue(), "firstsecondthird");
+        assertEquals(note.getChildren().get(0).getValue(), "fourth");
+    }
+
 }
@@ -0,0 +1,194 @@
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.journal.ChangeJournal;
+import org.folg.gedcom.model.ExtensionContainer;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomListener;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class CompactGedcomTest {
+  private String write(Gedcom gedcom) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GedcomWriter().write(gedcom, out);
+    return out.toString("UTF-8");
+  }
+
+  static String generate(int people) {
+    StringBuilder buf = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n0 @U1@ SUBM\n1 NAME Submitter\n");
+    for (int i = 0; i < people; i++) {
+      buf.append("0 @I").append(i).append("@ INDI\n1 NAME Person").append(i).append(" /Surname").append(i % 100)
+         .append("/\n1 SEX ").append(i % 2 == 0 ? "M" : "F").append("\n1 BIRT\n2 DATE ").append(1800 + i % 200)
+         .append("\n2 PLAC Town ").append(i % 50).append(", Ünterland\n1 NOTE line one\n2 CONT line two\n");
+      if (i > 0) {
+        buf.append("1 FAMC @F").append(i - 1).append("@\n");
+      }
+      buf.append("0 @F").append(i).append("@ FAM\n1 HUSB @I").append(i).append("@\n");
+    }
+    buf.append("0 _TOP extension\n0 TRLR\n");
+    return buf.toString();
+  }
+
+  @Test
+  public void testSameAsModelParser() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+    File file = new File(gedcomUrl.toURI());
+    Gedcom expected = new ModelParser().parseGedcom(file);
+    CompactGedcom gedcom = CompactGedcom.parse(file);
+    assertEquals(write(gedcom), write(expected));
+    assertEquals(gedcom.getPeople().size(), expected.getPeople().size());
+    assertEquals(gedcom.getRepositories().size(), expected.getRepositories().size());
+
+    String text = generate(2000);
+    expected = new ModelParser().parseGedcom(new StringReader(text));
+    gedcom = CompactGedcom.parse(new StringReader(text));
+    assertEquals(write(gedcom), write(expected));
+    assertNotNull(gedcom.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY));
+    assertEquals(gedcom.getSubmitter("U1").getName(), "Submitter");
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    CompactGedcom gedcom = CompactGedcom.parse(new StringReader(generate(5000)));
+    assertEquals(gedcom.getPeople().size(), 5000);
+    assertEquals(gedcom.getFamilies().size(), 5000);
+    Person person = gedcom.getPerson("I4321");
+    assertEquals(person.getNames().get(0).getValue(), "Person4321 /Surname21/");
+    assertEquals(person.getEventsFacts().get(1).getPlace(), "Town 21, Ünterland");
+    assertEquals(person.getNotes().get(0).getValue(), "line one\nline two");
+    assertEquals(person.getParentFamilies(gedcom).get(0).getId(), "F4320");
+    assertEquals(gedcom.getFamily("F17").getHusbandRefs().get(0).getRef(), "I17");
+    assertNull(gedcom.getPerson("F17"));
+    assertNull(gedcom.getPerson("I5000"));
+    assertNull(gedcom.getPerson(null));
+    assertNotSame(gedcom.getPerson("I1"), gedcom.getPerson("I1"));
+    assertTrue(gedcom.getOffHeapSize() > 0);
+  }
+
+  @Test
+  public void testAddAndUpdate() throws Exception {
+    CompactGedcom gedcom = CompactGedcom.parse(new StringReader(generate(10)));
+    Person person = new Person();
+    person.setId("I100");
+    Name name = new Name();
+    name.setValue("New /Person/");
+    person.addName(name);
+    gedcom.addPerson(person);
+    assertEquals(gedcom.getPeople().size(), 11);
+    assertEquals(gedcom.getPerson("I100").getNames().get(0).getValue(), "New /Person/");
+
+    Person stored = gedcom.getPerson("I3");
+    stored.getNames().get(0).setValue("Changed /Name/");
+    assertEquals(gedcom.getPerson("I3").getNames().get(0).getValue(), "Person3 /Surname3/");
+    gedcom.notifyRecordUpdated(stored);
+    assertEquals(gedcom.getPerson("I3").getNames().get(0).getValue(), "Changed /Name/");
+    assertEquals(gedcom.getPeople().get(3).getNames().get(0).getValue(), "Changed /Name/");
+    assertEquals(gedcom.getPeople().size(), 11);
+
+    try {
+      gedcom.getPeople().add(person);
+      fail("expected UnsupportedOperationException");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRemoveReplaceAndFreeze() throws Exception {
+    CompactGedcom gedcom = CompactGedcom.parse(new StringReader(generate(10)));
+    final List<String> removed = new ArrayList<String>();
+    gedcom.addListener(new GedcomListener() {
+      public void recordAdded(ExtensionContainer record) {
+      }
+
+      public void recordRemoved(ExtensionContainer record) {
+        removed.add(((Person)record).getId());
+      }
+    });
+    Person person = gedcom.getPerson("I3");
+    assertTrue(gedcom.removePerson(person));
+    assertFalse(gedcom.removePerson(person));
+    assertTrue(gedcom.removePerson(gedcom.getPeople().get(0)));
+    assertTrue(gedcom.removePerson(gedcom.getPeople().get(2)));
+    assertFalse(gedcom.removePerson(new Person()));
+    assertEquals(removed, Arrays.asList("I3", "I0", "I4"));
+    assertNull(gedcom.getPerson("I3"));
+    assertEquals(gedcom.getPeople().size(), 7);
+    List<String> ids = new ArrayList<String>();
+    for (Person stored : gedcom.getPeople()) {
+      ids.add(stored.getId());
+    }
+    assertEquals(ids, Arrays.asList("I1", "I2", "I5", "I6", "I7", "I8", "I9"));
+
+    // a removed id can be added again, and gets a new place at the end
+    person = new Person();
+    person.setId("I3");
+    gedcom.addPerson(person);
+    assertEquals(gedcom.getPerson("I3").getId(), "I3");
+    assertEquals(gedcom.getPeople().get(7).getId(), "I3");
+
+    gedcom.setPeople(gedcom.getPeople().subList(1, 3));
+    assertEquals(gedcom.getPeople().size(), 2);
+    assertEquals(gedcom.getPeople().get(0).getId(), "I2");
+    assertEquals(gedcom.getPeople().get(1).getId(), "I5");
+    assertNull(gedcom.getPerson("I1"));
+    assertEquals(gedcom.getPerson("I5").getNames().get(0).getValue(), "Person5 /Surname5/");
+
+    assertSame(gedcom.freeze(), gedcom);
+    assertTrue(gedcom.isFrozen());
+    assertEquals(gedcom.getPerson("I2").getId(), "I2");
+    try {
+      gedcom.removePerson(gedcom.getPerson("I2"));
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      gedcom.addPerson(person);
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(gedcom.getPeople().size(), 2);
+  }
+
+  @Test
+  public void testReplayJournal() throws Exception {
+    File journalFile = File.createTempFile("compact", ".journal");
+    journalFile.deleteOnExit();
+    String text = generate(10);
+    Gedcom expected = new ModelParser().parseGedcom(new StringReader(text));
+    CompactGedcom gedcom = CompactGedcom.parse(new StringReader(text));
+    ChangeJournal journal = new ChangeJournal(gedcom, journalFile);
+    Person person = gedcom.getPerson("I3");
+    person.getNames().get(0).setValue("Changed /Name/");
+    gedcom.notifyRecordUpdated(person);
+    assertTrue(gedcom.removePerson(gedcom.getPerson("I7")));
+    assertTrue(gedcom.removeFamily(gedcom.getFamily("F2")));
+    journal.close();
+
+    ChangeJournal.replay(expected, journalFile);
+    CompactGedcom replayed = CompactGedcom.parse(new StringReader(text));
+    ChangeJournal.replay(replayed, journalFile);
+    assertEquals(write(replayed), write(expected));
+    assertEquals(replayed.getPeople().size(), 9);
+    assertNull(replayed.getPerson("I7"));
+    assertEquals(replayed.getPerson("I3").getNames().get(0).getValue(), "Changed /Name/");
+  }
+}
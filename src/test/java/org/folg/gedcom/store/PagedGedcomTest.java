@@ -0,0 +1,194 @@
+package org.folg.gedcom.store;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import static org.testng.Assert.*;
+
+public class PagedGedcomTest {
+  private String write(Gedcom gedcom) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GedcomWriter().write(gedcom, out);
+    return out.toString("UTF-8");
+  }
+
+  private File tempStore() throws Exception {
+    File store = File.createTempFile("paged", "");
+    store.deleteOnExit();
+    new File(store.getPath() + ".index").deleteOnExit();
+    new File(store.getPath() + ".records").deleteOnExit();
+    return store;
+  }
+
+  private File generatedFile(int people) throws Exception {
+    File file = File.createTempFile("paged", ".ged");
+    file.deleteOnExit();
+    OutputStream out = new FileOutputStream(file);
+    out.write(CompactGedcomTest.generate(people).getBytes("UTF-8"));
+    out.close();
+    return file;
+  }
+
+  @Test
+  public void testSameAsModelParser() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+    File file = new File(gedcomUrl.toURI());
+    PagedGedcom gedcom = PagedGedcom.importGedcom(file, tempStore(), PagedGedcom.DEFAULT_MEMORY_BUDGET);
+    assertEquals(write(gedcom), write(new ModelParser().parseGedcom(file)));
+    gedcom.close();
+
+    file = generatedFile(3000);
+    // the smallest budget, so most reads fault pages in
+    gedcom = PagedGedcom.importGedcom(file, tempStore(), 0);
+    assertEquals(write(gedcom), write(new ModelParser().parseGedcom(file)));
+    assertTrue(gedcom.getPageFaults() > 0);
+    gedcom.close();
+  }
+
+  @Test
+  public void testLookupAndReopen() throws Exception {
+    File store = tempStore();
+    PagedGedcom gedcom = PagedGedcom.importGedcom(generatedFile(5000), store, 0);
+    assertEquals(gedcom.getPeople().size(), 5000);
+    Person person = gedcom.getPerson("I4321");
+    assertEquals(person.getNames().get(0).getValue(), "Person4321 /Surname21/");
+    assertEquals(person.getParentFamilies(gedcom).get(0).getId(), "F4320");
+    assertEquals(gedcom.getPeople().get(17).getId(), "I17");
+    assertNull(gedcom.getPerson("F17"));
+    assertNull(gedcom.getPerson("I5000"));
+
+    Person added = new Person();
+    added.setId("I9999");
+    Name name = new Name();
+    name.setValue("New /Person/");
+    added.addName(name);
+    gedcom.addPerson(added);
+    Person stored = gedcom.getPerson("I3");
+    stored.getNames().get(0).setValue("Changed /Name/");
+    gedcom.notifyRecordUpdated(stored);
+    String text = write(gedcom);
+    gedcom.close();
+    try {
+      gedcom.getPerson("I1");
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+
+    gedcom = PagedGedcom.open(store, 0);
+    assertEquals(write(gedcom), text);
+    assertEquals(gedcom.getPeople().size(), 5001);
+    assertEquals(gedcom.getPerson("I9999").getNames().get(0).getValue(), "New /Person/");
+    assertEquals(gedcom.getPerson("I3").getNames().get(0).getValue(), "Changed /Name/");
+    assertEquals(gedcom.getFamily("F4999").getHusbandRefs().get(0).getRef(), "I4999");
+    assertEquals(gedcom.getSubmitter("U1").getName(), "Submitter");
+    gedcom.close();
+  }
+
+  @Test
+  public void testRemoveAndReopen() throws Exception {
+    File store = tempStore();
+    PagedGedcom gedcom = PagedGedcom.importGedcom(generatedFile(1000), store, 0);
+    for (int i = 0; i < 1000; i += 3) {
+      assertTrue(gedcom.removePerson(gedcom.getPerson("I" + i)));
+    }
+    assertTrue(gedcom.removePerson(gedcom.getPeople().get(0)));
+    assertEquals(gedcom.getPeople().get(0).getId(), "I2");
+    gedcom.setFamilies(gedcom.getFamilies().subList(10, 20));
+    gedcom.close();
+
+    gedcom = PagedGedcom.open(store, 0);
+    assertEquals(gedcom.getPeople().size(), 1000 - 334 - 1);
+    assertNull(gedcom.getPerson("I999"));
+    assertNull(gedcom.getPerson("I1"));
+    assertEquals(gedcom.getPerson("I998").getId(), "I998");
+    assertEquals(gedcom.getPeople().get(0).getId(), "I2");
+    assertEquals(gedcom.getPeople().get(gedcom.getPeople().size() - 1).getId(), "I998");
+    assertEquals(gedcom.getFamilies().size(), 10);
+    assertEquals(gedcom.getFamilies().get(0).getId(), "F10");
+    assertNull(gedcom.getFamily("F0"));
+
+    Person person = new Person();
+    person.setId("I0");
+    gedcom.addPerson(person);
+    assertEquals(gedcom.getPerson("I0").getId(), "I0");
+    gedcom.freeze();
+    try {
+      gedcom.setPeople(null);
+      fail("expected IllegalStateException");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    gedcom.close();
+  }
+
+  @Test
+  public void testCreateEmpty() throws Exception {
+    File store = tempStore();
+    PagedGedcom gedcom = PagedGedcom.create(store, 0);
+    for (int i = 0; i < 2000; i++) {
+      Person person = new Person();
+      person.setId("P" + i);
+      gedcom.addPerson(person);
+    }
+    gedcom.close();
+    gedcom = PagedGedcom.open(store);
+    assertEquals(gedcom.getPeople().size(), 2000);
+    assertEquals(gedcom.getPerson("P1234").getId(), "P1234");
+    gedcom.close();
+  }
+
+  @Test
+  public void testUnflushedStoreIsRefused() throws Exception {
+    File store = tempStore();
+    PagedGedcom gedcom = PagedGedcom.create(store, 0);
+    for (int i = 0; i < 20000; i++) {
+      Person person = new Person();
+      person.setId("I" + i);
+      gedcom.addPerson(person);
+      if (i == 100) {
+        gedcom.flush();
+      }
+    }
+    try {
+      PagedGedcom.open(store, 0);
+      fail("expected IOException");
+    }
+    catch (IOException e) {
+      // expected
+    }
+    gedcom.close();
+    gedcom = PagedGedcom.open(store, 0);
+    assertEquals(gedcom.getPeople().size(), 20000);
+    assertEquals(gedcom.getPerson("I0").getId(), "I0");
+    gedcom.close();
+  }
+
+  @Test
+  public void testFlushWithoutChangesDoesNotGrow() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+    File store = tempStore();
+    PagedGedcom gedcom = PagedGedcom.importGedcom(new File(gedcomUrl.toURI()), store, 0);
+    File records = new File(store.getPath() + ".records");
+    long length = records.length();
+    for (int i = 0; i < 100; i++) {
+      gedcom.flush();
+    }
+    assertEquals(records.length(), length);
+    gedcom.close();
+    assertEquals(records.length(), length);
+  }
+}
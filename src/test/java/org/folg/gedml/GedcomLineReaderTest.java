@@ -0,0 +1,65 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomLineReader;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class GedcomLineReaderTest {
+
+    private List<String> readWithLineReader(String text, int bufferSize) throws Exception {
+        GedcomLineReader reader = new GedcomLineReader(new StringReader(text), bufferSize);
+        List<String> lines = new ArrayList<String>();
+        while (reader.readLine()) {
+            lines.add(new String(reader.buffer(), reader.lineStart(), reader.lineEnd() - reader.lineStart()));
+        }
+        return lines;
+    }
+
+    private List<String> readWithBufferedReader(String text) throws Exception {
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLineEndingsMatchBufferedReader() throws Exception {
+        String[] texts = {
+                "",
+                "0 HEAD",
+                "0 HEAD\n",
+                "0 HEAD\r\n1 CHAR UTF-8\r\n0 TRLR\r\n",
+                "0 HEAD\r1 CHAR UTF-8\r0 TRLR",
+                "0 HEAD\n\n\r\n\r\r1 NOTE a much longer line than the buffer holds at first\n0 TRLR",
+                "\r\n\n\r",
+        };
+        for (String text : texts) {
+            for (int bufferSize : new int[]{16, 17, 8192}) {
+                assertEquals(readWithLineReader(text, bufferSize), readWithBufferedReader(text),
+                        "buffer " + bufferSize + " text " + text);
+            }
+        }
+    }
+
+    @Test
+    public void testCrLfSplitAcrossFills() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("1 NOTE ");
+            for (int j = 0; j < i; j++) {
+                text.append('x');
+            }
+            text.append("\r\n");
+        }
+        assertEquals(readWithLineReader(text.toString(), 16), readWithBufferedReader(text.toString()));
+    }
+}
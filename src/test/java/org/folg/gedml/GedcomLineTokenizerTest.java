@@ -0,0 +1,161 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomLineParser;
+import org.gedml.GedcomLineTokenizer;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks that GedcomLineTokenizer accepts and splits lines exactly like the regular expression in GedcomLineParser
+ */
+public class GedcomLineTokenizerTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "0 HEAD",
+            "1 CHAR UTF-8",
+            "0 @I1@ INDI",
+            "1 NAME John /Smith/",
+            "1 FAMC @F1@",
+            "1 FAMS @F1@ ",
+            "1 FAMS @F1@  trailing",
+            "1 FAMS @F1@x",
+            "1 FAMS @F1@@",
+            "1 FAMS @@",
+            "1 FAMS @ F1@",
+            "1 FAMS @F 1@",
+            "1 FAMS @F\t1@",
+            "1 FAMS \t @F1@",
+            "1 NOTE @N1@ @N2@",
+            "1 NOTE",
+            "1 NOTE ",
+            "1 NOTE  ",
+            "1 NOTE\t",
+            "1 NOTE\tvalue",
+            "   2   DATE   1 JAN 1900  ",
+            "\t0 TRLR",
+            "0  @S1@   SOUR",
+            "0 @S1@SOUR",
+            "0 @S1@",
+            "0 @S1@ ",
+            "0 @@ SOUR",
+            "0 @S@1@ SOUR",
+            "10 NOTE level too big",
+            "0HEAD",
+            "0",
+            "0 ",
+            "",
+            " ",
+            "x 0 HEAD",
+            "0 _CUSTOM value",
+            "0 _cust.om value",
+            "0 TAG-WITH-DASH value",
+            "0 TAG:value",
+            "0 TAG@F1@",
+            "1 CONC été",
+            "1 CONC 中文",
+            "0 HEAD\u2028",
+            "0 HEAD\u2029",
+            "0 HEAD\u0085",
+            "0 HEAD\u2028\u2028",
+            "0 HEAD\u2028x",
+            "0 HEAD\r\n",
+            "0 HEAD\n",
+            "0 HEAD\r",
+            "1 FAMC @F1@\u2028",
+            "1 FAMC @F1@\u2028x",
+            "1 FAMC @F1@\r\n",
+            "0 HEAD\u000B",
+            "0 HEAD\fvalue",
+            "\u00a00 HEAD",
+            "0\u00a0HEAD",
+            "0 HEAD\u00a0value",
+            "1 SOUR @S1@ @S2@ text"
+    );
+
+    private static final char[] ALPHABET = {
+            '0', '1', '2', '9', ' ', ' ', ' ', '\t', '@', '@', 'A', 'b', 'Z', '_', '.', '-', 'x', ':', '/',
+            '\r', '\n', '\u000B', '\f', '\u0085', '\u2028', '\u2029', '\u00a0', 'é'
+    };
+
+    private void assertConforms(String line) {
+        GedcomLineParser expected = new GedcomLineParser();
+        GedcomLineTokenizer actual = new GedcomLineTokenizer();
+        boolean matched = expected.parse(line);
+        assertEquals(actual.parse(line), matched, "accept/reject differs for " + escape(line));
+        if (matched) {
+            assertEquals(Integer.toString(actual.getLevel()), expected.getLevel(), "level for " + escape(line));
+            assertEquals(actual.getID(), expected.getID(), "id for " + escape(line));
+            assertEquals(actual.getTag(), expected.getTag(), "tag for " + escape(line));
+            assertEquals(actual.getXRef(), expected.getXRef(), "xref for " + escape(line));
+            assertEquals(actual.getValue(), expected.getValue(), "value for " + escape(line));
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder buf = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c < 32 || c > 126) {
+                buf.append(String.format("\\u%04x", (int) c));
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.append('"').toString();
+    }
+
+    @Test
+    public void testKnownLines() {
+        for (String line : LINES) {
+            assertConforms(line);
+        }
+    }
+
+    @Test
+    public void testRandomLines() {
+        Random random = new Random(20111225L);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder buf = new StringBuilder();
+            int len = random.nextInt(16);
+            for (int j = 0; j < len; j++) {
+                buf.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertConforms(buf.toString());
+        }
+    }
+
+    @Test
+    public void testGedcomShapedRandomLines() {
+        Random random = new Random(12252011L);
+        String[] pieces = {"0", "1", "2", " ", "  ", "\t", "@I1@", "@F1@", "@", "@@", "NAME", "_X", "FAMC",
+                "John /Smith/", "\u2028", "\r", "\n", "x", ""};
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder buf = new StringBuilder();
+            int len = random.nextInt(8);
+            for (int j = 0; j < len; j++) {
+                buf.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertConforms(buf.toString());
+        }
+    }
+
+    @Test
+    public void testOffsetsIntoBuffer() {
+        char[] buf = "junk1 FAMS @F12@ some value junk".toCharArray();
+        GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+        assertTrue(tokenizer.parse(buf, 4, buf.length - 5));
+        assertEquals(tokenizer.getLevel(), 1);
+        assertEquals(tokenizer.getIdStart(), -1);
+        assertEquals(new String(buf, tokenizer.getTagStart(), tokenizer.getTagEnd() - tokenizer.getTagStart()), "FAMS");
+        assertEquals(new String(buf, tokenizer.getXRefStart(), tokenizer.getXRefEnd() - tokenizer.getXRefStart()), "F12");
+        assertEquals(new String(buf, tokenizer.getValueStart(), tokenizer.getValueEnd() - tokenizer.getValueStart()), "some value");
+
+        assertFalse(tokenizer.parse(buf, 0, buf.length));
+    }
+}
@@ -0,0 +1,77 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomParser;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Counts the bytes allocated while parsing, to check that ordinary lines don't create garbage
+ */
+public class GedcomParserAllocationTest {
+
+    private static final int RECORDS = 20000;
+    private static final int LINES_PER_RECORD = 8;
+
+    private String buildGedcom() {
+        StringBuilder buf = new StringBuilder("0 HEAD\r\n1 CHAR UTF-8\r\n");
+        for (int i = 0; i < RECORDS; i++) {
+            buf.append("0 NOTE A note about the family\r\n");
+            buf.append("1 CONT Born in the old country and moved west\r\n");
+            buf.append("1 CONC with two brothers\r\n");
+            buf.append("1 SOUR Parish register\r\n");
+            buf.append("2 PAGE Entry ").append(i).append("\r\n");
+            buf.append("2 DATA\r\n");
+            buf.append("3 DATE 12 MAR 1850\r\n");
+            buf.append("3 TEXT Baptized the same day\r\n");
+        }
+        buf.append("0 TRLR\r\n");
+        return buf.toString();
+    }
+
+    private long parseAndCountAllocatedBytes(com.sun.management.ThreadMXBean bean, String gedcom) throws Exception {
+        GedcomParser parser = new GedcomParser();
+        parser.setContentHandler(new DefaultHandler());
+        parser.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException e) {
+            }
+
+            public void error(SAXParseException e) {
+            }
+
+            public void fatalError(SAXParseException e) {
+            }
+        });
+        StringReader reader = new StringReader(gedcom);
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        parser.parse(reader);
+        return bean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    @Test
+    public void testParseAllocatesLittlePerLine() throws Exception {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("thread allocation counting is not available");
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            throw new SkipException("thread allocation counting is not enabled");
+        }
+
+        String gedcom = buildGedcom();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            best = Math.min(best, parseAndCountAllocatedBytes(bean, gedcom));
+        }
+        long bytesPerLine = best / (RECORDS * LINES_PER_RECORD);
+        assertTrue(bytesPerLine < 8, "allocated " + bytesPerLine + " bytes per line");
+    }
+}
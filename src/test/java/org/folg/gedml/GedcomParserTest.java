@@ -1,5 +1,6 @@
 package org.folg.gedml;
 
+import org.gedml.GedcomEncodingDetector;
 import org.gedml.GedcomParser;
 import org.testng.annotations.Test;
 import org.xml.sax.*;
@@ -20,9 +21,11 @@ public class GedcomParserTest {
     class MockContentHandler implements ContentHandler {
 
         final List<String> tags;
+        final StringBuilder text;
 
         MockContentHandler() {
             this.tags = new ArrayList<String>();
+            this.text = new StringBuilder();
         }
 
         @Override
@@ -62,7 +65,7 @@ public class GedcomParserTest {
 
         @Override
         public void characters(char[] ch, int start, int length) {
-
+            this.text.append(ch, start, length).append('|');
         }
 
         @Override
@@ -217,4 +220,98 @@ public class GedcomParserTest {
         assertEquals(contentHandler.tags.get(1), "HEAD");
     }
 
+    @Test
+    public void testParse_withFile() throws Exception {
+        MockContentHandler contentHandler = new MockContentHandler();
+        MockErrorHandler errorHandler = new MockErrorHandler();
+
+        URL gedcomUrl = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+        File gedcomFile = new File(gedcomUrl.toURI());
+
+        GedcomParser parser = new GedcomParser();
+        parser.setContentHandler(contentHandler);
+        parser.setErrorHandler(errorHandler);
+        parser.parse(gedcomFile);
+
+        assertEquals(parser.getSystemId(), gedcomFile.toURI().toString());
+        assertEquals(contentHandler.tags.size(), 91);
+        assertEquals(contentHandler.tags.get(0), "GED");
+        assertEquals(contentHandler.tags.get(1), "HEAD");
+    }
+
+    private MockContentHandler parseBytes(byte[] bytes) throws Exception {
+        MockContentHandler contentHandler = new MockContentHandler();
+        GedcomParser parser = new GedcomParser();
+        parser.setContentHandler(contentHandler);
+        parser.setErrorHandler(new MockErrorHandler());
+        // wrap in a stream without mark support so the parser has to buffer the detection window itself
+        parser.parse(new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        });
+        return contentHandler;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    @Test
+    public void testEncoding_utf16LittleEndianWithoutBom() throws Exception {
+        byte[] bytes = "0 HEAD\r\n1 CHAR UNICODE\r\n0 @I1@ INDI\r\n1 NAME Ren\u00e9e /\u5f20/\r\n".getBytes("UTF-16LE");
+        MockContentHandler contentHandler = parseBytes(bytes);
+        assertEquals(contentHandler.tags, Arrays.asList("GED", "HEAD", "CHAR", "INDI", "NAME"));
+        assertEquals(contentHandler.text.toString(), "UNICODE|Ren\u00e9e /\u5f20/|");
+    }
+
+    @Test
+    public void testEncoding_utf16BigEndianWithBom() throws Exception {
+        byte[] bytes = "\ufeff0 HEAD\n1 CHAR UNICODE\n0 @I1@ INDI\n1 NAME Ren\u00e9e\n".getBytes("UTF-16BE");
+        MockContentHandler contentHandler = parseBytes(bytes);
+        assertEquals(contentHandler.text.toString(), "UNICODE|Ren\u00e9e|");
+    }
+
+    @Test
+    public void testEncoding_utf8WithBomAndJunk() throws Exception {
+        byte[] bytes = concat(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x', 'y'},
+                "0 HEAD\n1 CHAR UTF-8\n0 @I1@ INDI\n1 NAME Ren\u00e9e\n".getBytes("UTF-8"));
+        MockContentHandler contentHandler = parseBytes(bytes);
+        assertEquals(contentHandler.tags, Arrays.asList("GED", "HEAD", "CHAR", "INDI", "NAME"));
+        assertEquals(contentHandler.text.toString(), "UTF-8|Ren\u00e9e|");
+    }
+
+    @Test
+    public void testEncoding_utf8BomWithoutCharLine() throws Exception {
+        byte[] text = "0 HEAD\n0 @I1@ INDI\n1 NAME Ren\u00e9e\n".getBytes("UTF-8");
+        byte[] bytes = concat(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, text);
+        assertEquals(new GedcomEncodingDetector(bytes, bytes.length).getEncoding(), "UTF-8");
+        assertEquals(new GedcomEncodingDetector(text, text.length).getEncoding(), GedcomEncodingDetector.DEFAULT_ENCODING);
+        MockContentHandler contentHandler = parseBytes(bytes);
+        assertEquals(contentHandler.tags, Arrays.asList("GED", "HEAD", "INDI", "NAME"));
+        assertEquals(contentHandler.text.toString(), "Ren\u00e9e|");
+    }
+
+    @Test
+    public void testEncoding_ansiHeader() throws Exception {
+        byte[] bytes = "0 HEAD\n1 SOUR PAF\n1 CHAR ANSI\n0 @I1@ INDI\n1 NAME Ren\u00e9e\n".getBytes("windows-1252");
+        MockContentHandler contentHandler = parseBytes(bytes);
+        assertEquals(contentHandler.text.toString(), "PAF|ANSI|Ren\u00e9e|");
+    }
+
+    @Test
+    public void testEncoding_fileLargerThanDetectionWindow() throws Exception {
+        StringBuilder gedcom = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n");
+        int people = 20000;
+        for (int i = 0; i < people; i++) {
+            gedcom.append("0 @I").append(i).append("@ INDI\n1 NAME Ren\u00e9e /").append(i).append("/\n");
+        }
+        MockContentHandler contentHandler = parseBytes(gedcom.toString().getBytes("UTF-8"));
+        assertEquals(contentHandler.tags.size(), 3 + 2 * people);
+        assertTrue(contentHandler.text.toString().endsWith("|Ren\u00e9e /" + (people - 1) + "/|"));
+    }
+
 }
@@ -0,0 +1,93 @@
+package org.folg.gedml;
+
+import org.gedml.MappedFileInputStream;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import static org.testng.Assert.assertEquals;
+
+public class MappedFileInputStreamTest {
+
+    private static final String TEXT = "0 HEAD\n1 NOTE été 中文 😀 Ünïcödé\n1 CONC ßøå\n0 TRLR\n";
+
+    private File writeTempFile(byte[] bytes) throws IOException {
+        File file = File.createTempFile("mapped", ".ged");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+        return file;
+    }
+
+    private String repeat(String s, int n) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            buf.append(s);
+        }
+        return buf.toString();
+    }
+
+    @Test
+    public void testReadBytesAcrossWindows() throws Exception {
+        byte[] bytes = repeat(TEXT, 20).getBytes("UTF-8");
+        MappedFileInputStream in = new MappedFileInputStream(writeTempFile(bytes), 16);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[7];
+        int n;
+        while ((n = in.read(chunk, 0, chunk.length)) >= 0) {
+            out.write(chunk, 0, n);
+        }
+        in.close();
+        assertEquals(out.toByteArray(), bytes);
+    }
+
+    @Test
+    public void testMarkAndResetAcrossWindows() throws Exception {
+        byte[] bytes = repeat(TEXT, 5).getBytes("UTF-8");
+        MappedFileInputStream in = new MappedFileInputStream(writeTempFile(bytes), 16);
+        in.skip(3);
+        in.mark(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(in.read(), bytes[3 + i] & 0xff);
+        }
+        in.reset();
+        assertEquals(in.position(), 3);
+        assertEquals(in.read(), bytes[3] & 0xff);
+        in.close();
+    }
+
+    @Test
+    public void testDecodeAcrossWindows() throws Exception {
+        String text = repeat(TEXT, 20);
+        for (String charsetName : new String[]{"UTF-8", "UTF-16LE", "UTF-16"}) {
+            Charset charset = Charset.forName(charsetName);
+            for (int window : new int[]{16, 17, 31, 1 << 20}) {
+                MappedFileInputStream in = new MappedFileInputStream(writeTempFile(text.getBytes(charset)), window);
+                Reader reader = in.newReader(charset);
+                StringBuilder buf = new StringBuilder();
+                char[] chunk = new char[1];
+                int n;
+                while ((n = reader.read(chunk, 0, chunk.length)) >= 0) {
+                    buf.append(chunk, 0, n);
+                }
+                reader.close();
+                assertEquals(buf.toString(), text, charsetName + " window " + window);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        MappedFileInputStream in = new MappedFileInputStream(writeTempFile(new byte[0]));
+        assertEquals(in.read(), -1);
+        assertEquals(in.newReader(Charset.forName("UTF-8")).read(new char[4], 0, 4), -1);
+        in.close();
+    }
+}